@@ -0,0 +1,210 @@
+package com.broadblog.cache;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.lang.Nullable;
+
+/**
+ * Records which cache keys are looked up most, across all nodes, so a starting node can warm
+ * exactly those.
+ * <p>
+ * One lookup in {@code sampleRate} is counted locally; every {@code flushInterval} the counts
+ * are added to a Redis sorted set per {@code window} ({@code cache:access:<window index>}) in
+ * one pipelined round trip. {@link #topKeys(int)} merges the current and the previous window,
+ * so the ranking always covers at least one full window. At most {@code maxPendingKeys}
+ * distinct keys are counted between flushes; lookups of further keys are not counted.
+ * <p>
+ * Members are {@code <cache>::<type>:<key>} with type {@code L} (Long), {@code I} (Integer) or
+ * {@code S} (String), so keys come back with the type the cache was called with. Lookups of
+ * other key types are not recorded.
+ */
+public class CacheAccessRecorder implements AutoCloseable {
+
+    /**
+     * A recorded key and its sampled lookups over the last windows.
+     */
+    public record AccessedKey(String cacheName, Object key, double score) {
+    }
+
+    private static final Logger logger = LoggerFactory.getLogger(CacheAccessRecorder.class);
+
+    private static final String ACCESS_PREFIX = "cache:access:";
+    private static final String SEPARATOR = "::";
+
+    private final StringRedisTemplate redisTemplate;
+    private final int sampleRate;
+    private final long windowMillis;
+    private final int maxPendingKeys;
+    @Nullable
+    private final RedisCircuitBreaker circuitBreaker;
+    private final ConcurrentMap<String, LongAdder> pending = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService flusher;
+
+    public CacheAccessRecorder(StringRedisTemplate redisTemplate, int sampleRate, Duration window,
+                               Duration flushInterval, int maxPendingKeys,
+                               @Nullable RedisCircuitBreaker circuitBreaker) {
+        this.redisTemplate = redisTemplate;
+        this.sampleRate = Math.max(1, sampleRate);
+        this.windowMillis = window.toMillis();
+        this.maxPendingKeys = maxPendingKeys;
+        this.circuitBreaker = circuitBreaker;
+        this.flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "cache-access-recorder");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long intervalMillis = Math.max(1, flushInterval.toMillis());
+        flusher.scheduleWithFixedDelay(this::flushSafely, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Count a lookup of {@code key} in {@code cacheName}, if it is sampled.
+     */
+    public void record(String cacheName, Object key) {
+        if (sampleRate > 1 && ThreadLocalRandom.current().nextInt(sampleRate) != 0) {
+            return;
+        }
+        String member = encode(cacheName, key);
+        if (member == null) {
+            return;
+        }
+        LongAdder count = pending.get(member);
+        if (count == null) {
+            if (pending.size() >= maxPendingKeys) {
+                return;
+            }
+            count = pending.computeIfAbsent(member, m -> new LongAdder());
+        }
+        count.increment();
+    }
+
+    /**
+     * Add the counts recorded so far to the current window. Called periodically.
+     */
+    public synchronized void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        Map<byte[], Long> counts = new HashMap<>();
+        for (String member : pending.keySet()) {
+            LongAdder count = pending.remove(member);
+            if (count != null) {
+                counts.put(member.getBytes(StandardCharsets.UTF_8), count.sum());
+            }
+        }
+        long window = System.currentTimeMillis() / windowMillis;
+        byte[] windowKey = (ACCESS_PREFIX + window).getBytes(StandardCharsets.UTF_8);
+        // Read up to one window after this one ends
+        long ttlSeconds = Math.max(1, windowMillis * 2 / 1000);
+        Runnable write = () -> redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            counts.forEach((member, count) -> connection.zSetCommands().zIncrBy(windowKey, count, member));
+            connection.keyCommands().expire(windowKey, ttlSeconds);
+            return null;
+        });
+        if (circuitBreaker != null) {
+            // Counts taken while Redis is down are dropped; they only steer warm-up
+            circuitBreaker.execute(write, () -> { });
+        } else {
+            write.run();
+        }
+    }
+
+    /**
+     * The {@code limit} most looked-up keys of the current and the previous window, most
+     * looked-up first.
+     */
+    public List<AccessedKey> topKeys(int limit) {
+        long window = System.currentTimeMillis() / windowMillis;
+        Map<String, Double> scores = new HashMap<>();
+        for (long w = window - 1; w <= window; w++) {
+            Set<ZSetOperations.TypedTuple<String>> top =
+                    redisTemplate.opsForZSet().reverseRangeWithScores(ACCESS_PREFIX + w, 0, limit - 1);
+            if (top == null) {
+                continue;
+            }
+            for (ZSetOperations.TypedTuple<String> tuple : top) {
+                if (tuple.getValue() != null && tuple.getScore() != null) {
+                    scores.merge(tuple.getValue(), tuple.getScore(), Double::sum);
+                }
+            }
+        }
+        List<AccessedKey> keys = new ArrayList<>(scores.size());
+        scores.forEach((member, score) -> {
+            AccessedKey key = decode(member, score);
+            if (key != null) {
+                keys.add(key);
+            }
+        });
+        keys.sort((a, b) -> Double.compare(b.score(), a.score()));
+        return keys.size() > limit ? new ArrayList<>(keys.subList(0, limit)) : keys;
+    }
+
+    @Nullable
+    static String encode(String cacheName, Object key) {
+        String typed;
+        if (key instanceof Long) {
+            typed = "L:" + key;
+        } else if (key instanceof Integer) {
+            typed = "I:" + key;
+        } else if (key instanceof String) {
+            typed = "S:" + key;
+        } else {
+            return null;
+        }
+        return cacheName + SEPARATOR + typed;
+    }
+
+    @Nullable
+    static AccessedKey decode(String member, double score) {
+        int separator = member.indexOf(SEPARATOR);
+        int keyStart = separator + SEPARATOR.length() + 2;
+        if (separator <= 0 || member.length() < keyStart || member.charAt(keyStart - 1) != ':') {
+            return null;
+        }
+        String cacheName = member.substring(0, separator);
+        String rawKey = member.substring(keyStart);
+        try {
+            Object key = switch (member.charAt(keyStart - 2)) {
+                case 'L' -> Long.parseLong(rawKey);
+                case 'I' -> Integer.parseInt(rawKey);
+                case 'S' -> rawKey;
+                default -> null;
+            };
+            return key != null ? new AccessedKey(cacheName, key, score) : null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private void flushSafely() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            logger.warn("Failed to record cache key accesses: {}", e.getMessage());
+        }
+    }
+
+    @Override
+    public void close() {
+        flusher.shutdown();
+        flushSafely();
+    }
+}
@@ -0,0 +1,20 @@
+package com.broadblog.cache;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Multi-key access to the L2 entries of a Spring cache, one round trip per call.
+ * Keys are cache keys as the cache sees them; the implementation maps them to the same
+ * storage keys and value encoding the cache itself uses.
+ */
+public interface CacheBulkOperations {
+
+    /**
+     * The values present for {@code keys}; absent keys are left out.
+     */
+    Map<Object, Object> getAll(String cacheName, List<?> keys);
+
+    void putAll(String cacheName, Map<?, ?> entries, Duration ttl);
+}
@@ -0,0 +1,157 @@
+package com.broadblog.cache;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.lang.Nullable;
+
+/**
+ * Generation counters for cache namespaces, kept in Redis under {@code cache:gen:<namespace>}.
+ * <p>
+ * A versioned cache folds the generations of a key's namespaces into the stored key, so
+ * invalidating a namespace is a single {@code INCR}: entries written under the old
+ * generation are never read again and simply age out of L1 and L2.
+ * <p>
+ * Generations are read through a small local map refreshed every {@code refreshInterval}.
+ * Bumps are also pushed to other nodes over the {@link CacheInvalidationBus}, so in practice
+ * a peer sees a new generation within milliseconds.
+ * <p>
+ * While the {@link RedisCircuitBreaker}, if given, is open, the last known generations are
+ * served without refreshing and {@link #bump(String)} fails at once.
+ */
+public class CacheGenerations {
+
+    private static final Logger logger = LoggerFactory.getLogger(CacheGenerations.class);
+
+    private static final String GENERATION_PREFIX = "cache:gen:";
+
+    private final StringRedisTemplate redisTemplate;
+    private final long refreshIntervalNanos;
+    @Nullable
+    private final CacheInvalidationBus invalidationBus;
+    @Nullable
+    private final RedisCircuitBreaker circuitBreaker;
+    private final ConcurrentMap<String, Generation> local = new ConcurrentHashMap<>();
+
+    public CacheGenerations(StringRedisTemplate redisTemplate, Duration refreshInterval,
+                            @Nullable CacheInvalidationBus invalidationBus) {
+        this(redisTemplate, refreshInterval, invalidationBus, null);
+    }
+
+    public CacheGenerations(StringRedisTemplate redisTemplate, Duration refreshInterval,
+                            @Nullable CacheInvalidationBus invalidationBus,
+                            @Nullable RedisCircuitBreaker circuitBreaker) {
+        this.redisTemplate = redisTemplate;
+        this.circuitBreaker = circuitBreaker;
+        this.refreshIntervalNanos = refreshInterval.toNanos();
+        this.invalidationBus = invalidationBus;
+        if (invalidationBus != null) {
+            invalidationBus.addListener(event -> {
+                if (event.getType() == CacheInvalidationEvent.Type.GENERATION && event.getKey() instanceof Long value) {
+                    observe(event.getCacheName(), value);
+                }
+            });
+        }
+    }
+
+    /**
+     * The combined generation token of {@code namespaces}, e.g. {@code "3.0.12"}.
+     * Stale local values are refreshed with a single MGET.
+     */
+    public String token(List<String> namespaces) {
+        long now = System.nanoTime();
+        long[] values = new long[namespaces.size()];
+        List<Integer> stale = null;
+        for (int i = 0; i < namespaces.size(); i++) {
+            Generation generation = local.get(namespaces.get(i));
+            if (generation == null || now - generation.fetchedAt > refreshIntervalNanos) {
+                if (stale == null) {
+                    stale = new ArrayList<>();
+                }
+                stale.add(i);
+            }
+            values[i] = generation != null ? generation.value : 0;
+        }
+        if (stale != null) {
+            refresh(namespaces, stale, values, now);
+        }
+        StringBuilder token = new StringBuilder();
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                token.append('.');
+            }
+            token.append(values[i]);
+        }
+        return token.toString();
+    }
+
+    private void refresh(List<String> namespaces, List<Integer> stale, long[] values, long now) {
+        List<String> keys = new ArrayList<>(stale.size());
+        for (int index : stale) {
+            keys.add(GENERATION_PREFIX + namespaces.get(index));
+        }
+        List<String> fetched;
+        try {
+            fetched = circuitBreaker != null
+                    ? circuitBreaker.execute(() -> redisTemplate.opsForValue().multiGet(keys), () -> null)
+                    : redisTemplate.opsForValue().multiGet(keys);
+            if (fetched == null && circuitBreaker != null) {
+                return;
+            }
+        } catch (RuntimeException e) {
+            // Keep serving the last known generations; a bump we missed only delays invalidation
+            logger.warn("Failed to refresh cache generations {}: {}", keys, e.getMessage());
+            return;
+        }
+        for (int i = 0; i < stale.size(); i++) {
+            String raw = fetched != null ? fetched.get(i) : null;
+            long value = raw != null ? Long.parseLong(raw) : 0;
+            int index = stale.get(i);
+            values[index] = value;
+            local.put(namespaces.get(index), new Generation(value, now));
+        }
+    }
+
+    /**
+     * Invalidate everything cached under {@code namespace} on every node.
+     */
+    public long bump(String namespace) {
+        if (circuitBreaker != null && circuitBreaker.isOpen()) {
+            throw new RedisConnectionFailureException("Redis circuit breaker is open");
+        }
+        Long value;
+        try {
+            value = redisTemplate.opsForValue().increment(GENERATION_PREFIX + namespace);
+        } catch (RuntimeException e) {
+            if (circuitBreaker != null && RedisCircuitBreaker.isUnavailable(e)) {
+                circuitBreaker.recordFailure(e);
+            }
+            throw e;
+        }
+        long generation = value != null ? value : 0;
+        observe(namespace, generation);
+        if (invalidationBus != null) {
+            invalidationBus.publishGeneration(namespace, generation);
+        }
+        return generation;
+    }
+
+    /**
+     * Record a generation learned from another node. Generations only move forward.
+     */
+    public void observe(String namespace, long generation) {
+        long now = System.nanoTime();
+        local.merge(namespace, new Generation(generation, now),
+                (current, seen) -> seen.value >= current.value ? seen : current);
+    }
+
+    private record Generation(long value, long fetchedAt) {
+    }
+}
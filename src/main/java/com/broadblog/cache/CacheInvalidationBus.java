@@ -0,0 +1,240 @@
+package com.broadblog.cache;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.lang.Nullable;
+
+/**
+ * Broadcasts L1 invalidations to the other nodes of the cluster.
+ * <p>
+ * Events are queued and flushed by a single background thread every {@code flushInterval},
+ * so a burst of evictions becomes a handful of messages. Within a batch, a clear of a cache
+ * absorbs every key eviction of that cache. If the queue overflows, the affected caches are
+ * cleared on the other nodes instead of dropping invalidations silently. The same happens to
+ * events that could not be sent: their caches are cleared on the next flush. Sends go through
+ * the {@link RedisCircuitBreaker}, if given, so an outage skips them instead of waiting for
+ * the command timeout.
+ * <p>
+ * Namespace generation bumps travel on the same channel, so peers pick them up without
+ * waiting for their next generation refresh.
+ */
+public class CacheInvalidationBus implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(CacheInvalidationBus.class);
+
+    private final String nodeId = UUID.randomUUID().toString();
+    private final CacheInvalidationTransport transport;
+    private final RedisCircuitBreaker circuitBreaker;
+    private final int maxBatchSize;
+    private final LinkedBlockingQueue<CacheInvalidationEvent> queue;
+    private final Set<String> overflowedCaches = ConcurrentHashMap.newKeySet();
+    private final List<Consumer<CacheInvalidationEvent>> listeners = new CopyOnWriteArrayList<>();
+    private final ScheduledExecutorService flusher;
+
+    private final AtomicLong published = new AtomicLong();
+    private final AtomicLong received = new AtomicLong();
+    private final AtomicLong overflows = new AtomicLong();
+
+    public CacheInvalidationBus(CacheInvalidationTransport transport, Duration flushInterval,
+                                int maxBatchSize, int queueCapacity) {
+        this(transport, flushInterval, maxBatchSize, queueCapacity, null);
+    }
+
+    public CacheInvalidationBus(CacheInvalidationTransport transport, Duration flushInterval,
+                                int maxBatchSize, int queueCapacity, @Nullable RedisCircuitBreaker circuitBreaker) {
+        this.transport = transport;
+        this.circuitBreaker = circuitBreaker;
+        this.maxBatchSize = maxBatchSize;
+        this.queue = new LinkedBlockingQueue<>(queueCapacity);
+        this.flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "cache-invalidation-bus");
+            thread.setDaemon(true);
+            return thread;
+        });
+        transport.subscribe(this::onMessage);
+        long intervalMicros = Math.max(1, flushInterval.toNanos() / 1000);
+        flusher.scheduleWithFixedDelay(this::flushSafely, intervalMicros, intervalMicros, TimeUnit.MICROSECONDS);
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    /**
+     * Register a receiver for invalidations published by other nodes.
+     */
+    public void addListener(Consumer<CacheInvalidationEvent> listener) {
+        listeners.add(listener);
+    }
+
+    public void publishEvict(String cacheName, Object key) {
+        if (!CacheInvalidationMessage.isSupportedKey(key)) {
+            publishClear(cacheName);
+            return;
+        }
+        enqueue(CacheInvalidationEvent.evict(cacheName, key));
+    }
+
+    public void publishClear(String cacheName) {
+        enqueue(CacheInvalidationEvent.clear(cacheName));
+    }
+
+    public void publishGeneration(String namespace, long generation) {
+        CacheInvalidationEvent event = CacheInvalidationEvent.generation(namespace, generation);
+        if (!queue.offer(event)) {
+            // Not a cache name, so it cannot be turned into a clear; peers catch up on their next refresh
+            overflows.incrementAndGet();
+        }
+    }
+
+    private void enqueue(CacheInvalidationEvent event) {
+        if (!queue.offer(event)) {
+            overflows.incrementAndGet();
+            overflowedCaches.add(event.getCacheName());
+        }
+    }
+
+    /**
+     * Send everything queued so far. Called periodically by the flusher thread.
+     */
+    public synchronized void flush() {
+        if (queue.isEmpty() && overflowedCaches.isEmpty()) {
+            return;
+        }
+        List<CacheInvalidationEvent> drained = new ArrayList<>(queue.size());
+        queue.drainTo(drained);
+
+        Set<String> cleared = new LinkedHashSet<>();
+        for (String cacheName : overflowedCaches) {
+            overflowedCaches.remove(cacheName);
+            cleared.add(cacheName);
+        }
+        for (CacheInvalidationEvent event : drained) {
+            if (event.getType() == CacheInvalidationEvent.Type.CLEAR) {
+                cleared.add(event.getCacheName());
+            }
+        }
+
+        Set<CacheInvalidationEvent> batch = new LinkedHashSet<>();
+        for (String cacheName : cleared) {
+            batch.add(CacheInvalidationEvent.clear(cacheName));
+        }
+        for (CacheInvalidationEvent event : drained) {
+            if (event.getType() != CacheInvalidationEvent.Type.EVICT || !cleared.contains(event.getCacheName())) {
+                batch.add(event);
+            }
+        }
+
+        List<CacheInvalidationEvent> events = new ArrayList<>(batch);
+        for (int start = 0; start < events.size(); start += maxBatchSize) {
+            List<CacheInvalidationEvent> chunk = new ArrayList<>(
+                    events.subList(start, Math.min(start + maxBatchSize, events.size())));
+            boolean sent;
+            try {
+                sent = send(chunk);
+            } catch (RuntimeException e) {
+                retryLater(events.subList(start, events.size()));
+                throw e;
+            }
+            if (!sent) {
+                retryLater(events.subList(start, events.size()));
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return {@code false} if the breaker is open or Redis went away
+     */
+    private boolean send(List<CacheInvalidationEvent> chunk) {
+        CacheInvalidationMessage message = new CacheInvalidationMessage(nodeId, chunk);
+        boolean sent;
+        if (circuitBreaker != null) {
+            sent = circuitBreaker.execute(() -> {
+                transport.send(message);
+                return true;
+            }, () -> false);
+        } else {
+            transport.send(message);
+            sent = true;
+        }
+        if (sent) {
+            published.addAndGet(chunk.size());
+        }
+        return sent;
+    }
+
+    /**
+     * Keep unsent events for the next flush: evictions and clears as clears of their caches,
+     * generation bumps as they are, while the queue has room.
+     */
+    private void retryLater(List<CacheInvalidationEvent> unsent) {
+        for (CacheInvalidationEvent event : unsent) {
+            if (event.getType() == CacheInvalidationEvent.Type.GENERATION) {
+                if (!queue.offer(event)) {
+                    overflows.incrementAndGet();
+                }
+            } else {
+                overflowedCaches.add(event.getCacheName());
+            }
+        }
+    }
+
+    private void flushSafely() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            // Unsent invalidations go out as clears on the next flush
+            logger.warn("Failed to publish cache invalidations: {}", e.getMessage());
+        }
+    }
+
+    private void onMessage(CacheInvalidationMessage message) {
+        if (nodeId.equals(message.getOriginId())) {
+            return; // already applied locally
+        }
+        for (CacheInvalidationEvent event : message.getEvents()) {
+            received.incrementAndGet();
+            for (Consumer<CacheInvalidationEvent> listener : listeners) {
+                try {
+                    listener.accept(event);
+                } catch (RuntimeException e) {
+                    logger.warn("Failed to apply cache invalidation {}: {}", event, e.getMessage());
+                }
+            }
+        }
+    }
+
+    public long getPublishedCount() {
+        return published.get();
+    }
+
+    public long getReceivedCount() {
+        return received.get();
+    }
+
+    public long getOverflowCount() {
+        return overflows.get();
+    }
+
+    @Override
+    public void close() {
+        flusher.shutdown();
+        flushSafely();
+    }
+}
@@ -0,0 +1,76 @@
+package com.broadblog.cache;
+
+import java.util.Objects;
+
+import org.springframework.lang.Nullable;
+
+/**
+ * A single L1 invalidation: either one key of a cache, or the whole cache. A
+ * {@link Type#GENERATION} event instead announces a new generation of a cache namespace,
+ * carried as {@code cacheName} and a {@code Long} key.
+ */
+public final class CacheInvalidationEvent {
+
+    public enum Type { EVICT, CLEAR, GENERATION }
+
+    private final Type type;
+    private final String cacheName;
+    @Nullable
+    private final Object key;
+
+    private CacheInvalidationEvent(Type type, String cacheName, @Nullable Object key) {
+        this.type = type;
+        this.cacheName = cacheName;
+        this.key = key;
+    }
+
+    public static CacheInvalidationEvent evict(String cacheName, Object key) {
+        return new CacheInvalidationEvent(Type.EVICT, cacheName, key);
+    }
+
+    public static CacheInvalidationEvent clear(String cacheName) {
+        return new CacheInvalidationEvent(Type.CLEAR, cacheName, null);
+    }
+
+    public static CacheInvalidationEvent generation(String namespace, long generation) {
+        return new CacheInvalidationEvent(Type.GENERATION, namespace, generation);
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public String getCacheName() {
+        return cacheName;
+    }
+
+    @Nullable
+    public Object getKey() {
+        return key;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof CacheInvalidationEvent other)) {
+            return false;
+        }
+        return type == other.type && cacheName.equals(other.cacheName) && Objects.equals(key, other.key);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(type, cacheName, key);
+    }
+
+    @Override
+    public String toString() {
+        return switch (type) {
+            case CLEAR -> "clear(" + cacheName + ")";
+            case GENERATION -> "generation(" + cacheName + "=" + key + ")";
+            default -> "evict(" + cacheName + "::" + key + ")";
+        };
+    }
+}
@@ -0,0 +1,116 @@
+package com.broadblog.cache;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A batch of invalidation events published by one node.
+ * <p>
+ * The wire format is a small tagged binary layout rather than Java serialization, so that
+ * keys keep their exact type ({@code Long 5} must not come back as {@code Integer 5}, or the
+ * receiving L1 would miss it) and nothing arbitrary is deserialized off the channel.
+ */
+public final class CacheInvalidationMessage {
+
+    private static final byte FORMAT_VERSION = 1;
+
+    private static final byte KEY_NONE = 'N';
+    private static final byte KEY_STRING = 'S';
+    private static final byte KEY_LONG = 'L';
+    private static final byte KEY_INT = 'I';
+
+    private final String originId;
+    private final List<CacheInvalidationEvent> events;
+
+    public CacheInvalidationMessage(String originId, List<CacheInvalidationEvent> events) {
+        this.originId = originId;
+        this.events = Collections.unmodifiableList(new ArrayList<>(events));
+    }
+
+    public String getOriginId() {
+        return originId;
+    }
+
+    public List<CacheInvalidationEvent> getEvents() {
+        return events;
+    }
+
+    /**
+     * Whether {@code key} can be carried in a message; other keys are sent as a cache clear.
+     */
+    public static boolean isSupportedKey(Object key) {
+        return key instanceof String || key instanceof Long || key instanceof Integer;
+    }
+
+    public byte[] encode() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + events.size() * 32);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(FORMAT_VERSION);
+            out.writeUTF(originId);
+            out.writeInt(events.size());
+            for (CacheInvalidationEvent event : events) {
+                out.writeByte(event.getType().ordinal());
+                out.writeUTF(event.getCacheName());
+                Object key = event.getKey();
+                if (key == null) {
+                    out.writeByte(KEY_NONE);
+                } else if (key instanceof String s) {
+                    out.writeByte(KEY_STRING);
+                    out.writeUTF(s);
+                } else if (key instanceof Long l) {
+                    out.writeByte(KEY_LONG);
+                    out.writeLong(l);
+                } else if (key instanceof Integer i) {
+                    out.writeByte(KEY_INT);
+                    out.writeInt(i);
+                } else {
+                    throw new IllegalArgumentException("Unsupported invalidation key type: " + key.getClass());
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    public static CacheInvalidationMessage decode(byte[] payload) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload))) {
+            byte version = in.readByte();
+            if (version != FORMAT_VERSION) {
+                throw new IllegalArgumentException("Unknown invalidation message version: " + version);
+            }
+            String originId = in.readUTF();
+            int size = in.readInt();
+            List<CacheInvalidationEvent> events = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                CacheInvalidationEvent.Type type = CacheInvalidationEvent.Type.values()[in.readByte()];
+                String cacheName = in.readUTF();
+                byte keyTag = in.readByte();
+                Object key = switch (keyTag) {
+                    case KEY_NONE -> null;
+                    case KEY_STRING -> in.readUTF();
+                    case KEY_LONG -> in.readLong();
+                    case KEY_INT -> in.readInt();
+                    default -> throw new IllegalArgumentException("Unknown invalidation key tag: " + keyTag);
+                };
+                if (type == CacheInvalidationEvent.Type.GENERATION && key instanceof Long generation) {
+                    events.add(CacheInvalidationEvent.generation(cacheName, generation));
+                } else if (type == CacheInvalidationEvent.Type.CLEAR || key == null) {
+                    events.add(CacheInvalidationEvent.clear(cacheName));
+                } else {
+                    events.add(CacheInvalidationEvent.evict(cacheName, key));
+                }
+            }
+            return new CacheInvalidationMessage(originId, events);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
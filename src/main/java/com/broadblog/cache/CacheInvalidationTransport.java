@@ -0,0 +1,15 @@
+package com.broadblog.cache;
+
+import java.util.function.Consumer;
+
+/**
+ * Carries invalidation batches between nodes. {@link RedisCacheInvalidationTransport} is
+ * the production implementation; {@link LocalCacheInvalidationTransport} connects several
+ * managers inside one JVM.
+ */
+public interface CacheInvalidationTransport {
+
+    void send(CacheInvalidationMessage message);
+
+    void subscribe(Consumer<CacheInvalidationMessage> receiver);
+}
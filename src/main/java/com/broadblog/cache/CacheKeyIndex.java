@@ -0,0 +1,227 @@
+package com.broadblog.cache;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+/**
+ * Tracks which Redis cache keys exist per invalidation group, so that a prefix can be
+ * invalidated by deleting exactly its members instead of scanning the keyspace.
+ * <p>
+ * Every L2 key {@code <cache>::<segment>:<rest>} is registered under two groups: the whole
+ * cache ({@code posts::}) and its first key segment ({@code posts::page:}). Keys without a
+ * segment, such as {@code posts::42}, only join the cache group. Group sets expire a little
+ * after the entries they track, and stale members are harmless to delete.
+ * <p>
+ * Keys written before the index existed are not in any set, so the index only answers for
+ * a prefix once it has been recording for longer than the L2 TTL. Until then, and for any
+ * prefix that is not a group, {@link #invalidate(String)} falls back to a bounded SCAN.
+ * The start marker expires like the sets once nothing has been registered for that long.
+ * <p>
+ * Caches passed to {@link #excludeCache(String)} are never indexed: versioned caches move to
+ * new keys on every generation bump, so their sets would only grow, and a prefix invalidation
+ * of such a cache always scans.
+ */
+public class CacheKeyIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(CacheKeyIndex.class);
+
+    private static final String INDEX_PREFIX = "cache:index:";
+    private static final String SINCE_KEY = "cache:index-since";
+    private static final String SEPARATOR = "::";
+    private static final Duration INDEX_SLACK = Duration.ofMinutes(5);
+
+    private final StringRedisTemplate redisTemplate;
+    private final Duration entryTtl;
+    private final int batchSize;
+    private final Set<String> excludedGroups = ConcurrentHashMap.newKeySet();
+    private volatile long authoritativeFromMillis = -1;
+
+    public CacheKeyIndex(StringRedisTemplate redisTemplate, Duration entryTtl, int batchSize) {
+        this.redisTemplate = redisTemplate;
+        this.entryTtl = entryTtl;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Stop indexing the keys of {@code cacheName}; prefixes of the cache are then always scanned.
+     */
+    public void excludeCache(String cacheName) {
+        excludedGroups.add(cacheName + SEPARATOR);
+    }
+
+    /**
+     * Record that {@code redisKey} was written. One pipelined round trip.
+     */
+    public void register(String redisKey) {
+        registerAll(List.of(redisKey));
+    }
+
+    /**
+     * Record that all of {@code redisKeys} were written, in one pipelined round trip.
+     */
+    public void registerAll(Collection<String> redisKeys) {
+        Map<String, List<byte[]>> membersByGroup = new LinkedHashMap<>();
+        for (String redisKey : redisKeys) {
+            List<String> groups = groupsOf(redisKey);
+            if (!groups.isEmpty() && excludedGroups.contains(groups.get(0))) {
+                continue;
+            }
+            byte[] member = redisKey.getBytes(StandardCharsets.UTF_8);
+            for (String group : groups) {
+                membersByGroup.computeIfAbsent(group, g -> new ArrayList<>()).add(member);
+            }
+        }
+        if (membersByGroup.isEmpty()) {
+            return;
+        }
+        long ttlSeconds = indexTtl().toSeconds();
+        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            membersByGroup.forEach((group, members) -> {
+                byte[] indexKey = indexKey(group);
+                connection.setCommands().sAdd(indexKey, members.toArray(new byte[0][]));
+                connection.keyCommands().expire(indexKey, ttlSeconds);
+            });
+            connection.keyCommands().expire(SINCE_KEY.getBytes(StandardCharsets.UTF_8), ttlSeconds);
+            return null;
+        });
+    }
+
+    /**
+     * Delete every key starting with {@code prefix}, returning how many keys were removed.
+     */
+    public long invalidate(String prefix) {
+        if (isGroup(prefix) && !excludedGroups.contains(cacheGroupOf(prefix)) && isAuthoritative()) {
+            return invalidateGroup(prefix);
+        }
+        return scanAndDelete(prefix + "*");
+    }
+
+    /**
+     * Delete every key matching {@code pattern} using SCAN, never KEYS.
+     */
+    public long scanAndDelete(String pattern) {
+        ScanOptions options = ScanOptions.scanOptions().match(pattern).count(batchSize).build();
+        long deleted = 0;
+        List<String> chunk = new ArrayList<>(batchSize);
+        try (Cursor<String> cursor = redisTemplate.scan(options)) {
+            while (cursor.hasNext()) {
+                chunk.add(cursor.next());
+                if (chunk.size() == batchSize) {
+                    deleted += unlink(chunk);
+                    chunk.clear();
+                }
+            }
+        }
+        if (!chunk.isEmpty()) {
+            deleted += unlink(chunk);
+        }
+        return deleted;
+    }
+
+    private long invalidateGroup(String group) {
+        byte[] indexKey = indexKey(group);
+        ScanOptions options = ScanOptions.scanOptions().count(batchSize).build();
+        Long deleted = redisTemplate.execute((RedisCallback<Long>) connection -> {
+            long removed = 0;
+            List<byte[]> chunk = new ArrayList<>(batchSize);
+            try (Cursor<byte[]> members = connection.setCommands().sScan(indexKey, options)) {
+                while (members.hasNext()) {
+                    chunk.add(members.next());
+                    if (chunk.size() == batchSize) {
+                        removed += unlink(connection, chunk);
+                        chunk.clear();
+                    }
+                }
+            }
+            if (!chunk.isEmpty()) {
+                removed += unlink(connection, chunk);
+            }
+            connection.keyCommands().unlink(indexKey);
+            return removed;
+        });
+        return deleted != null ? deleted : 0;
+    }
+
+    private static long unlink(RedisConnection connection, List<byte[]> keys) {
+        Long removed = connection.keyCommands().unlink(keys.toArray(new byte[0][]));
+        return removed != null ? removed : 0;
+    }
+
+    private long unlink(List<String> keys) {
+        Long removed = redisTemplate.unlink(keys);
+        return removed != null ? removed : 0;
+    }
+
+    private boolean isAuthoritative() {
+        long since = authoritativeFromMillis;
+        if (since < 0) {
+            try {
+                redisTemplate.opsForValue().setIfAbsent(SINCE_KEY, String.valueOf(System.currentTimeMillis()), indexTtl());
+                String value = redisTemplate.opsForValue().get(SINCE_KEY);
+                since = Long.parseLong(value) + entryTtl.toMillis();
+                authoritativeFromMillis = since;
+            } catch (RuntimeException e) {
+                logger.warn("Failed to read cache key index start time: {}", e.getMessage());
+                return false;
+            }
+        }
+        return System.currentTimeMillis() >= since;
+    }
+
+    /**
+     * Whether {@code prefix} names a group that {@link #register(String)} maintains.
+     */
+    static boolean isGroup(String prefix) {
+        int separator = prefix.indexOf(SEPARATOR);
+        if (separator <= 0) {
+            return false;
+        }
+        String rest = prefix.substring(separator + SEPARATOR.length());
+        if (rest.isEmpty()) {
+            return true;
+        }
+        int colon = rest.indexOf(':');
+        return colon == rest.length() - 1 && rest.indexOf('*') < 0;
+    }
+
+    static List<String> groupsOf(String redisKey) {
+        int separator = redisKey.indexOf(SEPARATOR);
+        if (separator <= 0) {
+            return List.of();
+        }
+        int restStart = separator + SEPARATOR.length();
+        String cacheGroup = redisKey.substring(0, restStart);
+        int colon = redisKey.indexOf(':', restStart);
+        if (colon < 0) {
+            return List.of(cacheGroup);
+        }
+        return List.of(cacheGroup, redisKey.substring(0, colon + 1));
+    }
+
+    private Duration indexTtl() {
+        return entryTtl.plus(INDEX_SLACK);
+    }
+
+    private static String cacheGroupOf(String group) {
+        return group.substring(0, group.indexOf(SEPARATOR) + SEPARATOR.length());
+    }
+
+    private static byte[] indexKey(String group) {
+        return (INDEX_PREFIX + group).getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,18 @@
+package com.broadblog.cache;
+
+/**
+ * A cluster-wide lease guarding the loader of a single cache entry, so that at most
+ * one node recomputes a missing key while the others wait for the shared L2 copy.
+ */
+public interface CacheLoadLease {
+
+    /**
+     * Try to become the loader for {@code key}. Returns false if another node holds the lease.
+     */
+    boolean tryAcquire(String cacheName, Object key);
+
+    /**
+     * Release a lease previously obtained by {@link #tryAcquire(String, Object)}.
+     */
+    void release(String cacheName, Object key);
+}
@@ -0,0 +1,168 @@
+package com.broadblog.cache;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.lang.Nullable;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.HistogramSnapshot;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+
+/**
+ * Hit, miss, latency and size metrics of one two-level cache, registered as Micrometer meters
+ * tagged with the cache name and readable as a plain snapshot for the admin endpoint.
+ * <p>
+ * Meters live under {@code cache.twolevel.*} so they do not clash with the per-level
+ * {@code cache.*} meters Spring Boot binds for plain Caffeine and Redis caches. A lookup is
+ * counted once: as an L1 hit, else as a hit on a pinned hot key, else as an L2 hit, else as a miss. Lookups that skipped L2 because
+ * Redis was unavailable count as misses and, separately, as {@code cache.twolevel.l2.unavailable}.
+ */
+public class CacheMetrics {
+
+    private static final double[] PERCENTILES = {0.5, 0.95, 0.99};
+
+    private final LongAdder l1Hits = new LongAdder();
+    private final LongAdder pinnedHits = new LongAdder();
+    private final LongAdder l2Hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder explicitEvictions = new LongAdder();
+    private final LongAdder l2Unavailable = new LongAdder();
+    private final Timer l2Gets;
+    private final Timer l2Puts;
+    private final Timer loads;
+    private final Timer loadFailures;
+    @Nullable
+    private final com.github.benmanes.caffeine.cache.Cache<?, ?> l1;
+
+    /**
+     * @param l1 the native Caffeine cache of L1, for its size and evictions; {@code null} if
+     *           the cache has no Caffeine level
+     */
+    public CacheMetrics(String cacheName, MeterRegistry registry,
+                        @Nullable com.github.benmanes.caffeine.cache.Cache<?, ?> l1) {
+        this.l1 = l1;
+        Tags tags = Tags.of("cache", cacheName);
+        FunctionCounter.builder("cache.twolevel.gets", l1Hits, LongAdder::sum)
+                .tags(tags).tags("level", "l1", "result", "hit").register(registry);
+        FunctionCounter.builder("cache.twolevel.gets", pinnedHits, LongAdder::sum)
+                .tags(tags).tags("level", "pinned", "result", "hit").register(registry);
+        FunctionCounter.builder("cache.twolevel.gets", l2Hits, LongAdder::sum)
+                .tags(tags).tags("level", "l2", "result", "hit").register(registry);
+        FunctionCounter.builder("cache.twolevel.gets", misses, LongAdder::sum)
+                .tags(tags).tags("level", "l2", "result", "miss").register(registry);
+        FunctionCounter.builder("cache.twolevel.evictions", explicitEvictions, LongAdder::sum)
+                .tags(tags).tags("cause", "explicit").register(registry);
+        FunctionCounter.builder("cache.twolevel.evictions", this, CacheMetrics::l1Evictions)
+                .tags(tags).tags("cause", "l1-policy").register(registry);
+        FunctionCounter.builder("cache.twolevel.l2.unavailable", l2Unavailable, LongAdder::sum)
+                .tags(tags).register(registry);
+        Gauge.builder("cache.twolevel.size", this, CacheMetrics::l1Size)
+                .tags(tags).tags("level", "l1").register(registry);
+        this.l2Gets = latencyTimer("cache.twolevel.l2.latency", tags.and("operation", "get"), registry);
+        this.l2Puts = latencyTimer("cache.twolevel.l2.latency", tags.and("operation", "put"), registry);
+        this.loads = latencyTimer("cache.twolevel.load", tags.and("result", "success"), registry);
+        this.loadFailures = latencyTimer("cache.twolevel.load", tags.and("result", "failure"), registry);
+    }
+
+    private static Timer latencyTimer(String name, Tags tags, MeterRegistry registry) {
+        return Timer.builder(name)
+                .tags(tags)
+                .publishPercentiles(PERCENTILES)
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+
+    public void recordL1Hit() {
+        l1Hits.increment();
+    }
+
+    public void recordPinnedHit() {
+        pinnedHits.increment();
+    }
+
+    public void recordL2Get(long nanos, boolean hit) {
+        l2Gets.record(nanos, TimeUnit.NANOSECONDS);
+        (hit ? l2Hits : misses).increment();
+    }
+
+    /**
+     * One multi-key L2 read covering {@code hits + misses} lookups.
+     */
+    public void recordL2MultiGet(long nanos, int hits, int misses) {
+        l2Gets.record(nanos, TimeUnit.NANOSECONDS);
+        l2Hits.add(hits);
+        this.misses.add(misses);
+    }
+
+    /**
+     * {@code lookups} that went without L2 because Redis is down; no latency is recorded.
+     */
+    public void recordL2Unavailable(int lookups) {
+        l2Unavailable.add(lookups);
+        misses.add(lookups);
+    }
+
+    public void recordL2Put(long nanos) {
+        l2Puts.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordLoad(long nanos, boolean success) {
+        (success ? loads : loadFailures).record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordEviction() {
+        explicitEvictions.increment();
+    }
+
+    private double l1Size() {
+        return l1 != null ? l1.estimatedSize() : 0;
+    }
+
+    private double l1Evictions() {
+        return l1 != null && l1.policy().isRecordingStats() ? l1.stats().evictionCount() : 0;
+    }
+
+    public Map<String, Object> snapshot() {
+        long l1 = l1Hits.sum();
+        long pinned = pinnedHits.sum();
+        long l2 = l2Hits.sum();
+        long miss = misses.sum();
+        long lookups = l1 + pinned + l2 + miss;
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        snapshot.put("l1Hits", l1);
+        snapshot.put("pinnedHits", pinned);
+        snapshot.put("l2Hits", l2);
+        snapshot.put("misses", miss);
+        snapshot.put("hitRatio", lookups == 0 ? 0.0 : (double) (l1 + pinned + l2) / lookups);
+        snapshot.put("l1HitRatio", lookups == 0 ? 0.0 : (double) l1 / lookups);
+        snapshot.put("l1Entries", (long) l1Size());
+        snapshot.put("l1Evictions", (long) l1Evictions());
+        snapshot.put("explicitEvictions", explicitEvictions.sum());
+        snapshot.put("l2Unavailable", l2Unavailable.sum());
+        snapshot.put("loads", loads.count());
+        snapshot.put("loadFailures", loadFailures.count());
+        snapshot.put("loadMillis", latency(loads));
+        snapshot.put("l2GetMillis", latency(l2Gets));
+        snapshot.put("l2PutMillis", latency(l2Puts));
+        return snapshot;
+    }
+
+    private static Map<String, Object> latency(Timer timer) {
+        HistogramSnapshot histogram = timer.takeSnapshot();
+        Map<String, Object> latency = new LinkedHashMap<>();
+        latency.put("count", histogram.count());
+        latency.put("mean", histogram.mean(TimeUnit.MILLISECONDS));
+        for (ValueAtPercentile percentile : histogram.percentileValues()) {
+            latency.put("p" + Math.round(percentile.percentile() * 100), percentile.value(TimeUnit.MILLISECONDS));
+        }
+        latency.put("max", histogram.max(TimeUnit.MILLISECONDS));
+        return latency;
+    }
+}
@@ -0,0 +1,18 @@
+package com.broadblog.cache;
+
+import java.util.List;
+
+/**
+ * Maps a cache key to the namespaces whose generations it depends on, in addition to the
+ * namespace of the whole cache. Bumping any of them makes the key miss.
+ */
+@FunctionalInterface
+public interface CacheNamespaceResolver {
+
+    /**
+     * A resolver for caches that are only versioned as a whole.
+     */
+    CacheNamespaceResolver CACHE_ONLY = key -> List.of();
+
+    List<String> namespacesOf(Object key);
+}
@@ -0,0 +1,97 @@
+package com.broadblog.cache;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs refresh-ahead reloads of cache entries on a small bounded pool.
+ * <p>
+ * At most one reload per cache key is queued or running at a time. When the queue is full
+ * the reload is skipped rather than run on the caller's thread: the caller already has a
+ * (stale) value to return, and the entry will be offered for refresh again on a later hit.
+ */
+public class CacheRefresher implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(CacheRefresher.class);
+
+    private final ThreadPoolExecutor executor;
+    private final Set<String> inFlight = ConcurrentHashMap.newKeySet();
+
+    private final AtomicLong scheduled = new AtomicLong();
+    private final AtomicLong succeeded = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong deduplicated = new AtomicLong();
+
+    public CacheRefresher(int threads, int queueCapacity) {
+        AtomicInteger threadIndex = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(queueCapacity), r -> {
+                    Thread thread = new Thread(r, "cache-refresh-" + threadIndex.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Reload {@code key} of {@code cacheName} in the background and hand the result to
+     * {@code store}. Returns whether a reload was scheduled.
+     */
+    public boolean refresh(String cacheName, Object key, Callable<?> loader, Consumer<Object> store) {
+        String id = cacheName + "::" + key;
+        if (!inFlight.add(id)) {
+            deduplicated.incrementAndGet();
+            return false;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    store.accept(loader.call());
+                    succeeded.incrementAndGet();
+                } catch (Exception e) {
+                    // The stale value keeps being served until its hard TTL
+                    failed.incrementAndGet();
+                    logger.warn("Refresh-ahead of {} failed: {}", id, e.getMessage());
+                } finally {
+                    inFlight.remove(id);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            inFlight.remove(id);
+            rejected.incrementAndGet();
+            return false;
+        }
+        scheduled.incrementAndGet();
+        return true;
+    }
+
+    public Map<String, Long> getStats() {
+        Map<String, Long> stats = new LinkedHashMap<>();
+        stats.put("scheduled", scheduled.get());
+        stats.put("succeeded", succeeded.get());
+        stats.put("failed", failed.get());
+        stats.put("rejected", rejected.get());
+        stats.put("deduplicated", deduplicated.get());
+        stats.put("queued", (long) executor.getQueue().size());
+        return stats;
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+}
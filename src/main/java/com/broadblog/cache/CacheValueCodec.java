@@ -0,0 +1,188 @@
+package com.broadblog.cache;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+import org.springframework.lang.Nullable;
+
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.annotation.PropertyAccessor;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.jsontype.impl.LaissezFaireSubTypeValidator;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileGenerator;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+
+/**
+ * Serializer for L2 cache values: Jackson JSON or Smile, optionally Deflate-compressed.
+ * <p>
+ * Values are written as {@code [marker][format][flags]([inflated length])[body]}. The marker
+ * byte can never start a JSON document, so values without it are read as the plain typed JSON
+ * written before this codec existed. Every node reads every format; only the format it writes
+ * is configured. {@link Format#LEGACY_JSON} writes that plain typed JSON without a header or
+ * compression, exactly as the old serializer did, so a rolling deploy keeps it until no node
+ * runs a version without this codec; only then can nodes switch to {@code JSON} or {@code SMILE}.
+ * <p>
+ * Both formats keep the default typing of the JSON serializer, so values come back as the
+ * same classes. Smile shares repeated strings within a value, which removes most of the cost
+ * of the class names that default typing writes for every nested object.
+ */
+public class CacheValueCodec implements RedisSerializer<Object> {
+
+    public enum Format { LEGACY_JSON, JSON, SMILE }
+
+    private static final byte MARKER = (byte) 0xCB;
+    private static final byte FORMAT_JSON = 'J';
+    private static final byte FORMAT_SMILE = 'S';
+    private static final byte FLAG_DEFLATED = 1;
+    private static final int HEADER_LENGTH = 3;
+
+    private final ObjectMapper jsonMapper;
+    private final ObjectMapper smileMapper;
+    private final GenericJackson2JsonRedisSerializer legacySerializer;
+    private final Format writeFormat;
+    private final int compressionThreshold;
+
+    /**
+     * @param compressionThreshold bodies of at least this many bytes are deflated; negative disables
+     */
+    public CacheValueCodec(Format writeFormat, int compressionThreshold) {
+        this.jsonMapper = cacheObjectMapper(new JsonFactory());
+        SmileFactory smileFactory = new SmileFactory();
+        smileFactory.enable(SmileGenerator.Feature.CHECK_SHARED_STRING_VALUES);
+        this.smileMapper = cacheObjectMapper(smileFactory);
+        this.legacySerializer = new GenericJackson2JsonRedisSerializer(cacheObjectMapper(new JsonFactory()));
+        this.writeFormat = writeFormat;
+        this.compressionThreshold = compressionThreshold;
+    }
+
+    /**
+     * The mapper configuration shared by all cache value formats: field access, default
+     * typing for non-final types and Java time support.
+     */
+    public static ObjectMapper cacheObjectMapper(JsonFactory factory) {
+        ObjectMapper objectMapper = new ObjectMapper(factory);
+        objectMapper.setVisibility(PropertyAccessor.ALL, JsonAutoDetect.Visibility.ANY);
+        objectMapper.activateDefaultTyping(LaissezFaireSubTypeValidator.instance, ObjectMapper.DefaultTyping.NON_FINAL);
+        objectMapper.registerModule(new JavaTimeModule());
+        return objectMapper;
+    }
+
+    @Override
+    public byte[] serialize(@Nullable Object value) throws SerializationException {
+        if (value == null) {
+            return new byte[0];
+        }
+        if (writeFormat == Format.LEGACY_JSON) {
+            return legacySerializer.serialize(value);
+        }
+        byte[] body;
+        try {
+            body = (writeFormat == Format.SMILE ? smileMapper : jsonMapper).writeValueAsBytes(value);
+        } catch (IOException e) {
+            throw new SerializationException("Could not write cache value: " + e.getMessage(), e);
+        }
+        byte format = writeFormat == Format.SMILE ? FORMAT_SMILE : FORMAT_JSON;
+        if (compressionThreshold >= 0 && body.length >= compressionThreshold) {
+            byte[] deflated = deflate(body);
+            if (deflated.length + Integer.BYTES < body.length) {
+                return ByteBuffer.allocate(HEADER_LENGTH + Integer.BYTES + deflated.length)
+                        .put(MARKER).put(format).put(FLAG_DEFLATED)
+                        .putInt(body.length)
+                        .put(deflated)
+                        .array();
+            }
+        }
+        return ByteBuffer.allocate(HEADER_LENGTH + body.length)
+                .put(MARKER).put(format).put((byte) 0)
+                .put(body)
+                .array();
+    }
+
+    @Override
+    @Nullable
+    public Object deserialize(@Nullable byte[] bytes) throws SerializationException {
+        if (bytes == null || bytes.length == 0) {
+            return null;
+        }
+        try {
+            if (bytes[0] != MARKER) {
+                // Written by the plain JSON serializer
+                return legacySerializer.deserialize(bytes);
+            }
+            if (bytes.length < HEADER_LENGTH) {
+                throw new SerializationException("Truncated cache value header");
+            }
+            byte format = bytes[1];
+            byte flags = bytes[2];
+            byte[] body;
+            int offset = HEADER_LENGTH;
+            int length = bytes.length - HEADER_LENGTH;
+            if ((flags & FLAG_DEFLATED) != 0) {
+                int inflatedLength = ByteBuffer.wrap(bytes, HEADER_LENGTH, Integer.BYTES).getInt();
+                body = inflate(bytes, HEADER_LENGTH + Integer.BYTES, inflatedLength);
+                offset = 0;
+                length = body.length;
+            } else {
+                body = bytes;
+            }
+            ObjectMapper mapper = switch (format) {
+                case FORMAT_SMILE -> smileMapper;
+                case FORMAT_JSON -> jsonMapper;
+                default -> throw new SerializationException("Unknown cache value format: " + format);
+            };
+            return mapper.readValue(body, offset, length, Object.class);
+        } catch (IOException e) {
+            throw new SerializationException("Could not read cache value: " + e.getMessage(), e);
+        }
+    }
+
+    private static byte[] deflate(byte[] input) {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(input);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(input.length / 2);
+            byte[] buffer = new byte[8192];
+            while (!deflater.finished()) {
+                int written = deflater.deflate(buffer);
+                out.write(buffer, 0, written);
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] inflate(byte[] input, int offset, int inflatedLength) {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(input, offset, input.length - offset);
+            byte[] output = new byte[inflatedLength];
+            int read = 0;
+            while (read < inflatedLength && !inflater.finished()) {
+                int n = inflater.inflate(output, read, inflatedLength - read);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                read += n;
+            }
+            if (read != inflatedLength) {
+                throw new SerializationException("Corrupt compressed cache value");
+            }
+            return output;
+        } catch (DataFormatException e) {
+            throw new SerializationException("Corrupt compressed cache value: " + e.getMessage(), e);
+        } finally {
+            inflater.end();
+        }
+    }
+}
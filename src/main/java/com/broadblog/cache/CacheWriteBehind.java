@@ -0,0 +1,243 @@
+package com.broadblog.cache;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.lang.Nullable;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Write-behind queue for L2 writes of caches that opt in.
+ * <p>
+ * The caller's value is already in L1; the L2 write is queued and a single background
+ * thread flushes the queue every {@code flushInterval}, at most {@code maxBatchSize} entries
+ * per round, with one {@link BatchWriter} call (one pipeline) per cache. A key queued again
+ * before its flush only replaces the queued value. When {@code queueCapacity} keys are pending,
+ * new writes are dropped and counted: the entry stays in L1 and is simply missing from L2.
+ * <p>
+ * An eviction {@link #cancel(String, Object, Runnable) cancels} the queued write of its key.
+ * If that write is being flushed at that very moment, the eviction is repeated after the
+ * flush, so a value written behind can never outlive its eviction in L2.
+ */
+public class CacheWriteBehind implements AutoCloseable {
+
+    /**
+     * Writes one cache's batch to L2.
+     */
+    @FunctionalInterface
+    public interface BatchWriter {
+        /**
+         * @return {@code false} if the batch was skipped because Redis is unavailable
+         */
+        boolean write(Map<Object, Object> entries);
+    }
+
+    private static final Logger logger = LoggerFactory.getLogger(CacheWriteBehind.class);
+
+    private final int maxBatchSize;
+    private final LinkedBlockingQueue<PendingKey> order;
+    private final ConcurrentMap<PendingKey, PendingWrite> pending = new ConcurrentHashMap<>();
+    private final Set<PendingKey> inFlight = ConcurrentHashMap.newKeySet();
+    private final Queue<Runnable> afterFlush = new ConcurrentLinkedQueue<>();
+    private final ScheduledExecutorService flusher;
+
+    private final LongAdder queued = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder overflows = new LongAdder();
+    private final LongAdder cancelled = new LongAdder();
+    private final LongAdder written = new LongAdder();
+    private final LongAdder skipped = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+
+    public CacheWriteBehind(Duration flushInterval, int maxBatchSize, int queueCapacity,
+                            @Nullable MeterRegistry registry) {
+        this.maxBatchSize = maxBatchSize;
+        this.order = new LinkedBlockingQueue<>(queueCapacity);
+        this.flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "cache-write-behind");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long intervalMicros = Math.max(1, flushInterval.toNanos() / 1000);
+        flusher.scheduleWithFixedDelay(this::flushSafely, intervalMicros, intervalMicros, TimeUnit.MICROSECONDS);
+        if (registry != null) {
+            registerMeters(registry);
+        }
+    }
+
+    private void registerMeters(MeterRegistry registry) {
+        Map<String, LongAdder> outcomes = new LinkedHashMap<>();
+        outcomes.put("queued", queued);
+        outcomes.put("coalesced", coalesced);
+        outcomes.put("overflow", overflows);
+        outcomes.put("cancelled", cancelled);
+        outcomes.put("written", written);
+        outcomes.put("skipped", skipped);
+        outcomes.put("failed", failed);
+        outcomes.forEach((result, counter) -> FunctionCounter.builder("cache.twolevel.writebehind", counter, LongAdder::sum)
+                .tags("result", result).register(registry));
+        Gauge.builder("cache.twolevel.writebehind.pending", pending, Map::size).register(registry);
+    }
+
+    /**
+     * Queue the L2 write of {@code key}; {@code writer} is the same for every key of a cache.
+     *
+     * @return {@code false} if the queue is full and the write was dropped
+     */
+    public boolean enqueue(String cacheName, Object key, Object value, BatchWriter writer) {
+        PendingKey id = new PendingKey(cacheName, key);
+        if (pending.put(id, new PendingWrite(value, writer)) != null) {
+            coalesced.increment();
+            return true;
+        }
+        if (!order.offer(id)) {
+            pending.remove(id);
+            overflows.increment();
+            return false;
+        }
+        queued.increment();
+        return true;
+    }
+
+    /**
+     * Drop the queued write of {@code key}, if any. {@code evictAgain} runs after the current
+     * flush if the key is part of it.
+     */
+    public void cancel(String cacheName, Object key, Runnable evictAgain) {
+        PendingKey id = new PendingKey(cacheName, key);
+        if (pending.remove(id) != null) {
+            cancelled.increment();
+        }
+        if (inFlight.contains(id)) {
+            afterFlush.add(evictAgain);
+        }
+    }
+
+    /**
+     * Drop every queued write of {@code cacheName}; {@code evictAgain} is applied after the
+     * current flush to the keys of the cache that are part of it.
+     */
+    public void cancelAll(String cacheName, Consumer<Object> evictAgain) {
+        for (PendingKey id : pending.keySet()) {
+            if (id.cacheName().equals(cacheName) && pending.remove(id) != null) {
+                cancelled.increment();
+            }
+        }
+        for (PendingKey id : inFlight) {
+            if (id.cacheName().equals(cacheName)) {
+                afterFlush.add(() -> evictAgain.accept(id.key()));
+            }
+        }
+    }
+
+    /**
+     * Write everything queued so far. Called periodically by the flusher thread.
+     */
+    public synchronized void flush() {
+        List<PendingKey> ids = new ArrayList<>(Math.min(order.size(), maxBatchSize));
+        while (order.drainTo(ids, maxBatchSize) > 0) {
+            Map<String, Batch> byCache = new LinkedHashMap<>();
+            for (PendingKey id : ids) {
+                inFlight.add(id);
+                PendingWrite write = pending.remove(id);
+                if (write == null) {
+                    inFlight.remove(id);
+                    continue; // cancelled
+                }
+                byCache.computeIfAbsent(id.cacheName(), name -> new Batch(write.writer(), new LinkedHashMap<>()))
+                        .entries().put(id.key(), write.value());
+            }
+            try {
+                byCache.forEach(this::write);
+            } finally {
+                inFlight.clear();
+                Runnable evictAgain;
+                while ((evictAgain = afterFlush.poll()) != null) {
+                    try {
+                        evictAgain.run();
+                    } catch (RuntimeException e) {
+                        logger.warn("Failed to repeat cache eviction after write-behind flush: {}", e.getMessage());
+                    }
+                }
+            }
+            ids.clear();
+        }
+    }
+
+    private void write(String cacheName, Batch batch) {
+        int size = batch.entries().size();
+        try {
+            if (batch.writer().write(batch.entries())) {
+                written.add(size);
+                batches.increment();
+            } else {
+                skipped.add(size);
+            }
+        } catch (RuntimeException e) {
+            // The entries are still in L1; L2 is refilled on the next miss
+            failed.add(size);
+            logger.warn("Failed to write {} entries of cache {} behind: {}", size, cacheName, e.getMessage());
+        }
+    }
+
+    private void flushSafely() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            logger.warn("Cache write-behind flush failed: {}", e.getMessage());
+        }
+    }
+
+    public int getPendingCount() {
+        return pending.size();
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("pending", pending.size());
+        stats.put("queued", queued.sum());
+        stats.put("coalesced", coalesced.sum());
+        stats.put("overflows", overflows.sum());
+        stats.put("cancelled", cancelled.sum());
+        stats.put("written", written.sum());
+        stats.put("batches", batches.sum());
+        stats.put("skipped", skipped.sum());
+        stats.put("failed", failed.sum());
+        return stats;
+    }
+
+    @Override
+    public void close() {
+        flusher.shutdown();
+        flushSafely();
+    }
+
+    private record PendingKey(String cacheName, Object key) {
+    }
+
+    private record PendingWrite(Object value, BatchWriter writer) {
+    }
+
+    private record Batch(BatchWriter writer, Map<Object, Object> entries) {
+    }
+}
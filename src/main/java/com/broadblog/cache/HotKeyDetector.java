@@ -0,0 +1,150 @@
+package com.broadblog.cache;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Spots the cache keys read far more often than the rest, so they can be pinned on every node
+ * instead of hammering the one Redis shard that holds them.
+ * <p>
+ * One lookup in {@code sampleRate} is counted in a count-min sketch (four rows of
+ * {@code width} counters). Every {@code window} all counters are halved, so the sketch tracks
+ * recent traffic and a decayed count settles at about twice the sampled lookups per window;
+ * {@link #record(String, Object)} turns it back into lookups per second. Keys at or above
+ * {@code threshold} per second are hot. The sketch can only overestimate, by roughly
+ * {@code e / width} of all sampled lookups, which at the default sizes stays far below any
+ * useful threshold. Up to {@code maxHotKeys} hot keys are remembered for reporting.
+ */
+public class HotKeyDetector {
+
+    private static final int DEPTH = 4;
+    private static final long[] SEEDS = {
+            0x9E3779B97F4A7C15L, 0xC2B2AE3D27D4EB4FL, 0x165667B19E3779F9L, 0xD6E8FEB86659FD93L};
+
+    private final int sampleRate;
+    private final double threshold;
+    private final long windowNanos;
+    private final int maxHotKeys;
+    private final int widthMask;
+    private final AtomicIntegerArray counters;
+    private final AtomicLong windowStart = new AtomicLong(System.nanoTime());
+    private final ConcurrentMap<HotKey, Double> recentHotKeys = new ConcurrentHashMap<>();
+
+    /**
+     * @param width counters per row, rounded up to a power of two
+     */
+    public HotKeyDetector(int sampleRate, double threshold, Duration window, int width, int maxHotKeys) {
+        this.sampleRate = Math.max(1, sampleRate);
+        this.threshold = threshold;
+        this.windowNanos = window.toNanos();
+        this.maxHotKeys = maxHotKeys;
+        int roundedWidth = Integer.highestOneBit(Math.max(2, width - 1)) << 1;
+        this.widthMask = roundedWidth - 1;
+        this.counters = new AtomicIntegerArray(DEPTH * roundedWidth);
+    }
+
+    /**
+     * Count a lookup of {@code key}, if it is sampled.
+     *
+     * @return whether the lookup was sampled and the key is hot
+     */
+    public boolean record(String cacheName, Object key) {
+        if (sampleRate > 1 && ThreadLocalRandom.current().nextInt(sampleRate) != 0) {
+            return false;
+        }
+        decayIfDue();
+        long hash = mix(cacheName.hashCode() * 31L + key.hashCode());
+        int estimate = Integer.MAX_VALUE;
+        for (int row = 0; row < DEPTH; row++) {
+            int index = row * (widthMask + 1) + (int) (mix(hash ^ SEEDS[row]) & widthMask);
+            estimate = Math.min(estimate, counters.incrementAndGet(index));
+        }
+        double rate = rateOf(estimate);
+        if (rate < threshold) {
+            return false;
+        }
+        remember(new HotKey(cacheName, key), rate);
+        return true;
+    }
+
+    private double rateOf(int decayedCount) {
+        return (double) decayedCount * sampleRate / 2 / (windowNanos / 1e9);
+    }
+
+    private void remember(HotKey hotKey, double rate) {
+        if (recentHotKeys.size() < maxHotKeys || recentHotKeys.containsKey(hotKey)) {
+            recentHotKeys.put(hotKey, rate);
+            return;
+        }
+        // Full: take the place of the coolest key if this one is hotter
+        recentHotKeys.entrySet().stream()
+                .min(Map.Entry.comparingByValue())
+                .filter(coolest -> coolest.getValue() < rate && recentHotKeys.remove(coolest.getKey(), coolest.getValue()))
+                .ifPresent(coolest -> recentHotKeys.put(hotKey, rate));
+    }
+
+    private void decayIfDue() {
+        long start = windowStart.get();
+        long now = System.nanoTime();
+        if (now - start < windowNanos || !windowStart.compareAndSet(start, now)) {
+            return;
+        }
+        // Halving races with concurrent increments; losing a few samples is harmless
+        for (int i = 0; i < counters.length(); i++) {
+            int value = counters.get(i);
+            if (value != 0) {
+                counters.set(i, value >>> 1);
+            }
+        }
+        // Reported rates decay along with the counters; keys that cooled off are dropped
+        recentHotKeys.replaceAll((hotKey, rate) -> rate / 2);
+        recentHotKeys.values().removeIf(rate -> rate < threshold);
+    }
+
+    /**
+     * Whether {@code key} was hot at its last sampled lookup.
+     */
+    public boolean isHot(String cacheName, Object key) {
+        return recentHotKeys.containsKey(new HotKey(cacheName, key));
+    }
+
+    /**
+     * The hot keys of {@code cacheName} with their estimated lookups per second, hottest first.
+     */
+    public Map<Object, Double> hotKeys(String cacheName) {
+        List<Map.Entry<HotKey, Double>> entries = new ArrayList<>();
+        recentHotKeys.forEach((hotKey, rate) -> {
+            if (hotKey.cacheName().equals(cacheName)) {
+                entries.add(Map.entry(hotKey, rate));
+            }
+        });
+        entries.sort(Map.Entry.<HotKey, Double>comparingByValue(Comparator.reverseOrder()));
+        Map<Object, Double> result = new LinkedHashMap<>();
+        for (Map.Entry<HotKey, Double> entry : entries) {
+            result.put(entry.getKey().key(), Math.round(entry.getValue() * 10) / 10.0);
+        }
+        return result;
+    }
+
+    private static long mix(long value) {
+        // MurmurHash3 finalizer
+        value ^= value >>> 33;
+        value *= 0xff51afd7ed558ccdL;
+        value ^= value >>> 33;
+        value *= 0xc4ceb9fe1a85ec53L;
+        value ^= value >>> 33;
+        return value;
+    }
+
+    private record HotKey(String cacheName, Object key) {
+    }
+}
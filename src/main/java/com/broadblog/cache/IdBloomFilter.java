@@ -0,0 +1,385 @@
+package com.broadblog.cache;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.connection.RedisStringCommands;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.types.Expiration;
+import org.springframework.lang.Nullable;
+
+/**
+ * A Bloom filter over the IDs of one entity type, used to turn lookups of IDs that were never
+ * created into misses without touching the database.
+ * <p>
+ * Each node holds the filter in memory and mirrors it to a Redis bitmap. An ID the local
+ * filter rejects is checked against the bitmap before it is reported absent, so IDs created
+ * on other nodes are found without a broadcast. The filter answers "might exist" until its
+ * first {@link #rebuild(Iterable)} and whenever Redis cannot be reached, so it can only ever
+ * cost a database query, never hide a row. Redis calls go through the
+ * {@link RedisCircuitBreaker}, if given, so an outage lets lookups through at once.
+ * <p>
+ * {@link #sync()} ORs the shared bitmap into the local filter (and writes back IDs whose
+ * mirroring failed). Run periodically, it lets a node find IDs created elsewhere locally, and
+ * it allows {@code checkShared} to be turned off: a local rejection is then final, saving the
+ * round trip per unknown ID, at the cost of hiding IDs created on other nodes until the next sync.
+ * <p>
+ * Deleted IDs stay in the filter; they are rare and only add to the false-positive rate.
+ */
+public class IdBloomFilter {
+
+    private static final Logger logger = LoggerFactory.getLogger(IdBloomFilter.class);
+
+    private static final Duration REBUILD_KEY_TTL = Duration.ofMinutes(5);
+
+    private final String name;
+    private final long expectedInsertions;
+    private final double fpp;
+    private final long bitCount;
+    private final int hashCount;
+    @Nullable
+    private final StringRedisTemplate redisTemplate;
+    private final byte[] redisKey;
+    @Nullable
+    private final RedisCircuitBreaker circuitBreaker;
+    private final boolean checkShared;
+
+    private volatile AtomicLongArray bits;
+    // While a rebuild runs, new IDs go into both arrays
+    @Nullable
+    private volatile AtomicLongArray rebuilding;
+    private final Set<Long> addedDuringRebuild = ConcurrentHashMap.newKeySet();
+    private volatile boolean ready;
+    // A failed mirror leaves IDs out of the shared bitmap until the next sync publishes them
+    private volatile boolean unpublished;
+
+    private final AtomicLong insertions = new AtomicLong();
+    private final AtomicLong checks = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong foundInShared = new AtomicLong();
+    private final AtomicLong sharedErrors = new AtomicLong();
+    private final AtomicLong syncs = new AtomicLong();
+
+    /**
+     * @param expectedInsertions IDs the filter is sized for; past that the false-positive rate rises
+     * @param fpp                target false-positive rate at {@code expectedInsertions}
+     * @param redisTemplate      where the shared bitmap lives; {@code null} keeps the filter local
+     */
+    public IdBloomFilter(String name, long expectedInsertions, double fpp, @Nullable StringRedisTemplate redisTemplate) {
+        this(name, expectedInsertions, fpp, redisTemplate, null, true);
+    }
+
+    /**
+     * @param checkShared whether a local rejection is checked against the shared bitmap
+     */
+    public IdBloomFilter(String name, long expectedInsertions, double fpp, @Nullable StringRedisTemplate redisTemplate,
+                         @Nullable RedisCircuitBreaker circuitBreaker, boolean checkShared) {
+        if (expectedInsertions <= 0 || fpp <= 0 || fpp >= 1) {
+            throw new IllegalArgumentException("Invalid Bloom filter sizing for " + name);
+        }
+        this.name = name;
+        this.expectedInsertions = expectedInsertions;
+        this.fpp = fpp;
+        long optimalBits = (long) Math.ceil(-expectedInsertions * Math.log(fpp) / (Math.log(2) * Math.log(2)));
+        this.bitCount = ((optimalBits + 63) / 64) * 64;
+        this.hashCount = Math.max(1, (int) Math.round((double) bitCount / expectedInsertions * Math.log(2)));
+        this.redisTemplate = redisTemplate;
+        this.circuitBreaker = circuitBreaker;
+        this.checkShared = checkShared;
+        // The sizing is part of the key, so nodes configured differently never share a bitmap
+        this.redisKey = ("bloom:" + name + ":" + bitCount + ":" + hashCount).getBytes(StandardCharsets.UTF_8);
+        this.bits = new AtomicLongArray((int) (bitCount / 64));
+    }
+
+    /**
+     * {@code false} only if {@code id} was certainly never added.
+     */
+    public boolean mightContain(@Nullable Long id) {
+        if (id == null || !ready) {
+            return true;
+        }
+        checks.incrementAndGet();
+        long[] positions = positions(id);
+        if (allSet(bits, positions)) {
+            return true;
+        }
+        if (checkShared && sharedContains(positions)) {
+            setAll(bits, positions);
+            foundInShared.incrementAndGet();
+            return true;
+        }
+        rejected.incrementAndGet();
+        return false;
+    }
+
+    /**
+     * Record a newly created ID, locally and in the shared bitmap.
+     */
+    public void add(@Nullable Long id) {
+        if (id == null) {
+            return;
+        }
+        long[] positions = positions(id);
+        // Read in the reverse order of rebuild()'s writes, so no add misses the swap
+        AtomicLongArray pending = rebuilding;
+        setAll(bits, positions);
+        if (pending != null) {
+            setAll(pending, positions);
+            addedDuringRebuild.add(id);
+        }
+        insertions.incrementAndGet();
+        mirror(positions);
+    }
+
+    /**
+     * Replace the local filter with one built from {@code ids} (every existing ID) and merge
+     * it into the shared bitmap. Until the first rebuild the filter rejects nothing.
+     */
+    public synchronized void rebuild(Iterable<Long> ids) {
+        AtomicLongArray fresh = new AtomicLongArray(bits.length());
+        addedDuringRebuild.clear();
+        rebuilding = fresh;
+        long count = 0;
+        try {
+            for (Long id : ids) {
+                if (id != null) {
+                    setAll(fresh, positions(id));
+                    count++;
+                }
+            }
+            bits = fresh;
+        } finally {
+            rebuilding = null;
+        }
+        insertions.set(count + addedDuringRebuild.size());
+        if (!publish(fresh)) {
+            unpublished = true;
+        }
+        // An add racing the merge may have been written before the merged bitmap: write it again
+        for (Long id : addedDuringRebuild) {
+            mirror(positions(id));
+        }
+        addedDuringRebuild.clear();
+        ready = true;
+    }
+
+    /**
+     * Pull IDs added on other nodes from the shared bitmap into the local filter, after
+     * publishing the local filter if some of its IDs could not be mirrored.
+     */
+    public void sync() {
+        if (redisTemplate == null || !ready) {
+            return;
+        }
+        if (unpublished) {
+            unpublished = false;
+            if (!publish(bits)) {
+                unpublished = true;
+                return;
+            }
+        }
+        byte[] shared = callRedis(() -> redisTemplate.execute(
+                (RedisCallback<byte[]>) connection -> connection.stringCommands().get(redisKey)), () -> null);
+        if (shared == null) {
+            return;
+        }
+        AtomicLongArray local = bits;
+        int words = Math.min(local.length(), shared.length / 8);
+        for (int w = 0; w < words; w++) {
+            long word = fromRedisBitmap(shared, w);
+            if (word != 0) {
+                local.getAndAccumulate(w, word, (current, added) -> current | added);
+            }
+        }
+        syncs.incrementAndGet();
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("ready", ready);
+        stats.put("expectedInsertions", expectedInsertions);
+        stats.put("insertions", insertions.get());
+        stats.put("bits", bitCount);
+        stats.put("hashes", hashCount);
+        stats.put("targetFpp", fpp);
+        stats.put("estimatedFpp", estimatedFpp());
+        stats.put("checks", checks.get());
+        stats.put("rejected", rejected.get());
+        stats.put("foundInShared", foundInShared.get());
+        stats.put("sharedErrors", sharedErrors.get());
+        stats.put("checkShared", checkShared);
+        stats.put("syncs", syncs.get());
+        return stats;
+    }
+
+    /**
+     * The false-positive rate implied by the current number of insertions.
+     */
+    public double estimatedFpp() {
+        double filled = 1 - Math.exp(-(double) hashCount * insertions.get() / bitCount);
+        return Math.pow(filled, hashCount);
+    }
+
+    private boolean sharedContains(long[] positions) {
+        if (redisTemplate == null) {
+            return false;
+        }
+        // Cannot tell: let the lookup through
+        return callRedis(() -> {
+            List<Object> results = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                for (long position : positions) {
+                    connection.stringCommands().getBit(redisKey, position);
+                }
+                return null;
+            });
+            for (Object result : results) {
+                if (!Boolean.TRUE.equals(result)) {
+                    return false;
+                }
+            }
+            return true;
+        }, () -> true);
+    }
+
+    private void mirror(long[] positions) {
+        if (redisTemplate == null) {
+            return;
+        }
+        boolean mirrored = callRedis(() -> {
+            redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                for (long position : positions) {
+                    connection.stringCommands().setBit(redisKey, position, true);
+                }
+                return null;
+            });
+            return true;
+        }, () -> false);
+        if (!mirrored) {
+            unpublished = true;
+        }
+    }
+
+    /**
+     * Run {@code call} through the breaker, if any; {@code fallback} if the breaker is open or
+     * the call fails.
+     */
+    private <T> T callRedis(Supplier<T> call, Supplier<T> fallback) {
+        Supplier<T> failed = () -> {
+            sharedErrors.incrementAndGet();
+            return fallback.get();
+        };
+        try {
+            return circuitBreaker != null ? circuitBreaker.execute(call, failed) : call.get();
+        } catch (RuntimeException e) {
+            logger.warn("Shared ID filter {} unavailable: {}", name, e.getMessage());
+            return failed.get();
+        }
+    }
+
+    /**
+     * OR the local filter into the shared bitmap, so a rebuild never drops IDs that other
+     * nodes added after this node read the table.
+     */
+    private boolean publish(AtomicLongArray source) {
+        if (redisTemplate == null) {
+            return true;
+        }
+        byte[] bitmap = toRedisBitmap(source);
+        byte[] tempKey = (new String(redisKey, StandardCharsets.UTF_8) + ":rebuild:" + System.nanoTime())
+                .getBytes(StandardCharsets.UTF_8);
+        return callRedis(() -> {
+            redisTemplate.execute((RedisCallback<Object>) connection -> {
+                connection.stringCommands().set(tempKey, bitmap, Expiration.from(REBUILD_KEY_TTL),
+                        RedisStringCommands.SetOption.upsert());
+                connection.stringCommands().bitOp(RedisStringCommands.BitOperation.OR, redisKey, redisKey, tempKey);
+                connection.keyCommands().del(tempKey);
+                return null;
+            });
+            return true;
+        }, () -> false);
+    }
+
+    /**
+     * Redis numbers bitmap bits from the most significant bit of the first byte; the local
+     * words number them from the least significant bit.
+     */
+    private static byte[] toRedisBitmap(AtomicLongArray words) {
+        byte[] bitmap = new byte[words.length() * 8];
+        for (int w = 0; w < words.length(); w++) {
+            long word = words.get(w);
+            for (int b = 0; b < 8; b++) {
+                int value = (int) (word >>> (b * 8)) & 0xFF;
+                bitmap[w * 8 + b] = (byte) (Integer.reverse(value) >>> 24);
+            }
+        }
+        return bitmap;
+    }
+
+    /**
+     * Word {@code w} of the local layout, read from a Redis bitmap.
+     */
+    private static long fromRedisBitmap(byte[] bitmap, int w) {
+        long word = 0;
+        for (int b = 0; b < 8; b++) {
+            int value = Integer.reverse(bitmap[w * 8 + b] & 0xFF) >>> 24;
+            word |= (long) value << (b * 8);
+        }
+        return word;
+    }
+
+    private long[] positions(long id) {
+        // Double hashing over a 64-bit mix of the ID (Kirsch and Mitzenmacher)
+        long h1 = mix(id);
+        long h2 = mix(h1 ^ 0x9E3779B97F4A7C15L);
+        long[] positions = new long[hashCount];
+        for (int i = 0; i < hashCount; i++) {
+            positions[i] = ((h1 + i * h2) & Long.MAX_VALUE) % bitCount;
+        }
+        return positions;
+    }
+
+    private static long mix(long value) {
+        // MurmurHash3 finalizer
+        value ^= value >>> 33;
+        value *= 0xff51afd7ed558ccdL;
+        value ^= value >>> 33;
+        value *= 0xc4ceb9fe1a85ec53L;
+        value ^= value >>> 33;
+        return value;
+    }
+
+    private static boolean allSet(AtomicLongArray words, long[] positions) {
+        for (long position : positions) {
+            if ((words.get((int) (position >>> 6)) & (1L << position)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void setAll(AtomicLongArray words, long[] positions) {
+        for (long position : positions) {
+            int index = (int) (position >>> 6);
+            long mask = 1L << position;
+            long current;
+            do {
+                current = words.get(index);
+            } while ((current & mask) == 0 && !words.compareAndSet(index, current, current | mask));
+        }
+    }
+}
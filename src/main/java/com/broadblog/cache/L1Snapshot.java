@@ -0,0 +1,238 @@
+package com.broadblog.cache;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.lang.Nullable;
+
+/**
+ * A file holding the hottest L1 entries of every cache, written on shutdown and read back on
+ * startup so a restarted node does not begin with an empty L1.
+ * <p>
+ * The file is written and read through a memory mapping:
+ * <pre>
+ * magic "BBL1", version, created-at millis, cache count
+ * per cache:  name, entry count
+ * per entry:  written-at millis, key (tag + Long, Integer or String), value length, value
+ * CRC32 of everything before it
+ * </pre>
+ * Values are encoded with the {@link CacheValueCodec} of L2, so anything that can be cached in
+ * Redis can be snapshotted. Entries with other key types, or values the codec cannot write, are
+ * left out. The file is written next to its final path and moved into place, so a crash while
+ * writing leaves the previous snapshot intact; a truncated or corrupt file fails its CRC and is
+ * ignored as a whole.
+ */
+public class L1Snapshot {
+
+    /**
+     * One L1 entry and the wall-clock time it was written to L1.
+     */
+    public record Entry(Object key, Object value, long writtenAtMillis) {
+    }
+
+    /**
+     * The entries read back from a snapshot, by cache name, hottest first.
+     */
+    public record Contents(long createdAtMillis, Map<String, List<Entry>> caches) {
+    }
+
+    private static final Logger logger = LoggerFactory.getLogger(L1Snapshot.class);
+
+    private static final int MAGIC = 0x42424C31; // "BBL1"
+    private static final short VERSION = 1;
+    private static final byte KEY_LONG = 'L';
+    private static final byte KEY_INT = 'I';
+    private static final byte KEY_STRING = 'S';
+
+    private final Path path;
+    private final CacheValueCodec codec;
+
+    public L1Snapshot(Path path, CacheValueCodec codec) {
+        this.path = path;
+        this.codec = codec;
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * Replace the snapshot with {@code caches}.
+     *
+     * @return the number of entries written
+     */
+    public int write(Map<String, List<Entry>> caches) throws IOException {
+        // Encode first: the mapping needs the exact file size up front
+        Map<byte[], List<EncodedEntry>> encoded = new LinkedHashMap<>();
+        long size = Integer.BYTES + Short.BYTES + Long.BYTES + Integer.BYTES;
+        int written = 0;
+        for (Map.Entry<String, List<Entry>> cache : caches.entrySet()) {
+            byte[] name = cache.getKey().getBytes(StandardCharsets.UTF_8);
+            List<EncodedEntry> entries = new ArrayList<>(cache.getValue().size());
+            for (Entry entry : cache.getValue()) {
+                EncodedEntry encodedEntry = encode(cache.getKey(), entry);
+                if (encodedEntry != null) {
+                    entries.add(encodedEntry);
+                    size += encodedEntry.size();
+                }
+            }
+            encoded.put(name, entries);
+            size += Short.BYTES + name.length + Integer.BYTES;
+            written += entries.size();
+        }
+        size += Long.BYTES; // CRC
+
+        Path parent = path.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            buffer.putInt(MAGIC).putShort(VERSION).putLong(System.currentTimeMillis()).putInt(encoded.size());
+            encoded.forEach((name, entries) -> {
+                buffer.putShort((short) name.length).put(name).putInt(entries.size());
+                for (EncodedEntry entry : entries) {
+                    entry.writeTo(buffer);
+                }
+            });
+            CRC32 crc = new CRC32();
+            crc.update(buffer.duplicate().flip());
+            buffer.putLong(crc.getValue());
+            buffer.force();
+        }
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return written;
+    }
+
+    @Nullable
+    private EncodedEntry encode(String cacheName, Entry entry) {
+        byte tag;
+        byte[] key = null;
+        if (entry.key() instanceof Long) {
+            tag = KEY_LONG;
+        } else if (entry.key() instanceof Integer) {
+            tag = KEY_INT;
+        } else if (entry.key() instanceof String stringKey) {
+            tag = KEY_STRING;
+            key = stringKey.getBytes(StandardCharsets.UTF_8);
+        } else {
+            return null;
+        }
+        try {
+            return new EncodedEntry(entry.writtenAtMillis(), tag, entry.key(), key, codec.serialize(entry.value()));
+        } catch (RuntimeException e) {
+            logger.debug("Skipping L1 snapshot entry {}::{}: {}", cacheName, entry.key(), e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Read the snapshot back.
+     *
+     * @return {@code null} if there is no snapshot or it cannot be read
+     */
+    @Nullable
+    public Contents read() {
+        if (!Files.isRegularFile(path)) {
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.limit() < Integer.BYTES + Short.BYTES + Long.BYTES * 2 + Integer.BYTES
+                    || buffer.getInt() != MAGIC || buffer.getShort() != VERSION) {
+                logger.warn("Ignoring L1 snapshot {}: unknown format", path);
+                return null;
+            }
+            CRC32 crc = new CRC32();
+            crc.update(buffer.duplicate().position(0).limit(buffer.limit() - Long.BYTES));
+            if (crc.getValue() != buffer.getLong(buffer.limit() - Long.BYTES)) {
+                logger.warn("Ignoring L1 snapshot {}: checksum mismatch", path);
+                return null;
+            }
+            long createdAt = buffer.getLong();
+            int cacheCount = buffer.getInt();
+            Map<String, List<Entry>> caches = new LinkedHashMap<>();
+            for (int c = 0; c < cacheCount; c++) {
+                String name = readString(buffer, Short.toUnsignedInt(buffer.getShort()));
+                int entryCount = buffer.getInt();
+                List<Entry> entries = new ArrayList<>(entryCount);
+                for (int e = 0; e < entryCount; e++) {
+                    Entry entry = readEntry(name, buffer);
+                    if (entry != null) {
+                        entries.add(entry);
+                    }
+                }
+                caches.put(name, entries);
+            }
+            return new Contents(createdAt, caches);
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Ignoring unreadable L1 snapshot {}: {}", path, e.getMessage());
+            return null;
+        }
+    }
+
+    @Nullable
+    private Entry readEntry(String cacheName, ByteBuffer buffer) {
+        long writtenAt = buffer.getLong();
+        byte tag = buffer.get();
+        Object key = switch (tag) {
+            case KEY_LONG -> buffer.getLong();
+            case KEY_INT -> buffer.getInt();
+            case KEY_STRING -> readString(buffer, buffer.getInt());
+            default -> throw new IllegalStateException("Unknown key tag " + tag);
+        };
+        byte[] value = new byte[buffer.getInt()];
+        buffer.get(value);
+        try {
+            return new Entry(key, codec.deserialize(value), writtenAt);
+        } catch (RuntimeException e) {
+            // A class that changed shape since the snapshot; it is simply loaded again
+            logger.debug("Skipping L1 snapshot entry {}::{}: {}", cacheName, key, e.getMessage());
+            return null;
+        }
+    }
+
+    private static String readString(ByteBuffer buffer, int length) {
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private record EncodedEntry(long writtenAtMillis, byte tag, Object key, @Nullable byte[] stringKey, byte[] value) {
+
+        long size() {
+            int keySize = switch (tag) {
+                case KEY_LONG -> Long.BYTES;
+                case KEY_INT -> Integer.BYTES;
+                default -> Integer.BYTES + stringKey.length;
+            };
+            return Long.BYTES + 1 + keySize + Integer.BYTES + value.length;
+        }
+
+        void writeTo(ByteBuffer buffer) {
+            buffer.putLong(writtenAtMillis).put(tag);
+            switch (tag) {
+                case KEY_LONG -> buffer.putLong((Long) key);
+                case KEY_INT -> buffer.putInt((Integer) key);
+                default -> buffer.putInt(stringKey.length).put(stringKey);
+            }
+            buffer.putInt(value.length).put(value);
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.broadblog.cache;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * In-process stand-in for the Redis channel: every message is delivered synchronously to
+ * all subscribers, including the sender (which filters its own messages by origin).
+ */
+public class LocalCacheInvalidationTransport implements CacheInvalidationTransport {
+
+    private final List<Consumer<CacheInvalidationMessage>> receivers = new CopyOnWriteArrayList<>();
+
+    @Override
+    public void send(CacheInvalidationMessage message) {
+        // Round-trip through the wire format so tests exercise encoding as well
+        byte[] payload = message.encode();
+        for (Consumer<CacheInvalidationMessage> receiver : receivers) {
+            receiver.accept(CacheInvalidationMessage.decode(payload));
+        }
+    }
+
+    @Override
+    public void subscribe(Consumer<CacheInvalidationMessage> receiver) {
+        receivers.add(receiver);
+    }
+}
@@ -0,0 +1,65 @@
+package com.broadblog.cache;
+
+import java.util.List;
+
+/**
+ * Namespaces of the {@code posts} cache, matching the keys used by {@code PostService}.
+ * <ul>
+ *   <li>{@code page:<page>:<size>} and {@code all} depend on {@value #FEED}; the first
+ *       {@code headPages} pages and {@code all} also depend on {@value #FEED_HEAD}.</li>
+ *   <li>{@code author:<id>} and {@code authorPage:<id>:<page>:<size>} depend on
+ *       {@code posts:author:<id>}.</li>
+ *   <li>Single posts, keyed by id, only depend on the cache itself and are evicted directly.</li>
+ * </ul>
+ * A new or deleted post shifts every feed page, so it bumps {@value #FEED}. An edit leaves
+ * the page layout intact and only bumps {@value #FEED_HEAD} and the author's namespace;
+ * deeper feed pages show the edit once their entries expire.
+ */
+public class PostCacheNamespaces implements CacheNamespaceResolver {
+
+    public static final String FEED = "posts:feed";
+    public static final String FEED_HEAD = "posts:feed:head";
+
+    private static final String AUTHOR_PREFIX = "posts:author:";
+
+    private final int headPages;
+
+    public PostCacheNamespaces(int headPages) {
+        this.headPages = headPages;
+    }
+
+    public static String author(Long authorId) {
+        return AUTHOR_PREFIX + authorId;
+    }
+
+    @Override
+    public List<String> namespacesOf(Object key) {
+        if (!(key instanceof String stringKey)) {
+            return List.of();
+        }
+        if (stringKey.equals("all")) {
+            return List.of(FEED, FEED_HEAD);
+        }
+        String[] parts = stringKey.split(":");
+        switch (parts[0]) {
+            case "page":
+                if (parts.length > 1 && isHeadPage(parts[1])) {
+                    return List.of(FEED, FEED_HEAD);
+                }
+                return List.of(FEED);
+            case "author":
+            case "authorPage":
+                return parts.length > 1 ? List.of(AUTHOR_PREFIX + parts[1]) : List.of();
+            default:
+                return List.of();
+        }
+    }
+
+    private boolean isHeadPage(String page) {
+        try {
+            return Integer.parseInt(page) <= headPages;
+        } catch (NumberFormatException e) {
+            return true;
+        }
+    }
+}
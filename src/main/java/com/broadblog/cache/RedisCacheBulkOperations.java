@@ -0,0 +1,75 @@
+package com.broadblog.cache;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.data.redis.connection.RedisStringCommands;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.types.Expiration;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+/**
+ * {@link CacheBulkOperations} over the entries written by Spring's {@code RedisCache}: keys are
+ * {@code "<cacheName>::<key>"} and values go through the same serializer, so entries written
+ * one at a time by the cache and in bulk here are interchangeable. Reads are one MGET, writes
+ * one pipeline of SETs with the entry TTL.
+ */
+public class RedisCacheBulkOperations implements CacheBulkOperations {
+
+    private final StringRedisTemplate redisTemplate;
+    private final RedisSerializer<Object> valueSerializer;
+
+    public RedisCacheBulkOperations(StringRedisTemplate redisTemplate, RedisSerializer<Object> valueSerializer) {
+        this.redisTemplate = redisTemplate;
+        this.valueSerializer = valueSerializer;
+    }
+
+    @Override
+    public Map<Object, Object> getAll(String cacheName, List<?> keys) {
+        Map<Object, Object> found = new HashMap<>();
+        if (keys.isEmpty()) {
+            return found;
+        }
+        byte[][] rawKeys = new byte[keys.size()][];
+        for (int i = 0; i < keys.size(); i++) {
+            rawKeys[i] = redisKey(cacheName, keys.get(i));
+        }
+        List<byte[]> values = redisTemplate.execute(
+                (RedisCallback<List<byte[]>>) connection -> connection.stringCommands().mGet(rawKeys));
+        if (values == null) {
+            return found;
+        }
+        for (int i = 0; i < values.size(); i++) {
+            Object value = valueSerializer.deserialize(values.get(i));
+            if (value != null) {
+                found.put(keys.get(i), value);
+            }
+        }
+        return found;
+    }
+
+    @Override
+    public void putAll(String cacheName, Map<?, ?> entries, Duration ttl) {
+        if (entries.isEmpty()) {
+            return;
+        }
+        Expiration expiration = Expiration.from(ttl);
+        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (Map.Entry<?, ?> entry : entries.entrySet()) {
+                connection.stringCommands().set(redisKey(cacheName, entry.getKey()),
+                        valueSerializer.serialize(entry.getValue()), expiration,
+                        RedisStringCommands.SetOption.upsert());
+            }
+            return null;
+        });
+    }
+
+    private static byte[] redisKey(String cacheName, Object key) {
+        // Mirrors the default RedisCache key layout: "<cacheName>::<key>"
+        return (cacheName + "::" + key).getBytes(StandardCharsets.UTF_8);
+    }
+}
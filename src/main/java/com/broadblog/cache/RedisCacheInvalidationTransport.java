@@ -0,0 +1,62 @@
+package com.broadblog.cache;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.lang.Nullable;
+
+/**
+ * {@link CacheInvalidationTransport} over Redis pub/sub. Register it with a
+ * {@code RedisMessageListenerContainer} on {@link #getChannel()} to receive messages.
+ */
+public class RedisCacheInvalidationTransport implements CacheInvalidationTransport, MessageListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(RedisCacheInvalidationTransport.class);
+
+    private final StringRedisTemplate redisTemplate;
+    private final String channel;
+    private final byte[] channelBytes;
+    private final List<Consumer<CacheInvalidationMessage>> receivers = new CopyOnWriteArrayList<>();
+
+    public RedisCacheInvalidationTransport(StringRedisTemplate redisTemplate, String channel) {
+        this.redisTemplate = redisTemplate;
+        this.channel = channel;
+        this.channelBytes = redisTemplate.getStringSerializer().serialize(channel);
+    }
+
+    public String getChannel() {
+        return channel;
+    }
+
+    @Override
+    public void send(CacheInvalidationMessage message) {
+        byte[] payload = message.encode();
+        redisTemplate.execute((RedisCallback<Long>) connection -> connection.publish(channelBytes, payload));
+    }
+
+    @Override
+    public void subscribe(Consumer<CacheInvalidationMessage> receiver) {
+        receivers.add(receiver);
+    }
+
+    @Override
+    public void onMessage(Message message, @Nullable byte[] pattern) {
+        CacheInvalidationMessage decoded;
+        try {
+            decoded = CacheInvalidationMessage.decode(message.getBody());
+        } catch (RuntimeException e) {
+            logger.warn("Dropping malformed cache invalidation message: {}", e.getMessage());
+            return;
+        }
+        for (Consumer<CacheInvalidationMessage> receiver : receivers) {
+            receiver.accept(decoded);
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.broadblog.cache;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+
+/**
+ * {@link CacheLoadLease} backed by {@code SET NX PX}. The lease value is this node's id,
+ * so a release never deletes a lease that has since expired and been taken by another node.
+ */
+public class RedisCacheLoadLease implements CacheLoadLease {
+
+    private static final Logger logger = LoggerFactory.getLogger(RedisCacheLoadLease.class);
+
+    private static final String LEASE_PREFIX = "cache:lease:";
+
+    private static final RedisScript<Long> RELEASE_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('del', KEYS[1]) else return 0 end",
+            Long.class);
+
+    private final StringRedisTemplate redisTemplate;
+    private final Duration leaseTtl;
+    private final String nodeId = UUID.randomUUID().toString();
+
+    public RedisCacheLoadLease(StringRedisTemplate redisTemplate, Duration leaseTtl) {
+        this.redisTemplate = redisTemplate;
+        this.leaseTtl = leaseTtl;
+    }
+
+    @Override
+    public boolean tryAcquire(String cacheName, Object key) {
+        try {
+            return Boolean.TRUE.equals(
+                    redisTemplate.opsForValue().setIfAbsent(leaseKey(cacheName, key), nodeId, leaseTtl));
+        } catch (RuntimeException e) {
+            // Without Redis we cannot coordinate; let this node load on its own.
+            logger.warn("Failed to acquire load lease for {}::{}: {}", cacheName, key, e.getMessage());
+            return true;
+        }
+    }
+
+    @Override
+    public void release(String cacheName, Object key) {
+        try {
+            redisTemplate.execute(RELEASE_SCRIPT, List.of(leaseKey(cacheName, key)), nodeId);
+        } catch (RuntimeException e) {
+            // The lease expires on its own after leaseTtl.
+            logger.warn("Failed to release load lease for {}::{}: {}", cacheName, key, e.getMessage());
+        }
+    }
+
+    private static String leaseKey(String cacheName, Object key) {
+        return LEASE_PREFIX + cacheName + "::" + key;
+    }
+}
@@ -0,0 +1,225 @@
+package com.broadblog.cache;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.lang.Nullable;
+
+/**
+ * Circuit breaker for calls to Redis.
+ * <p>
+ * After {@code failureThreshold} consecutive connection failures or timeouts the breaker
+ * opens: callers skip Redis at once and take their fallback instead of each waiting out the
+ * command timeout. While open, a background probe pings Redis every {@code probeInterval}.
+ * After a successful ping the recovery listeners replay whatever was buffered during the
+ * outage, and only then does the breaker close, so callers never read L2 entries that a
+ * buffered eviction has yet to remove. Other errors (wrong type, serialization) say
+ * nothing about availability: they are rethrown and do not count.
+ */
+public class RedisCircuitBreaker implements AutoCloseable {
+
+    public enum State { CLOSED, OPEN }
+
+    private static final Logger logger = LoggerFactory.getLogger(RedisCircuitBreaker.class);
+
+    private final int failureThreshold;
+    private final Duration probeInterval;
+    private final Runnable probe;
+    private final ScheduledExecutorService scheduler;
+    private final List<Runnable> recoveryListeners = new CopyOnWriteArrayList<>();
+
+    private volatile State state = State.CLOSED;
+    private volatile long openedAtMillis;
+    private ScheduledFuture<?> probeTask;
+    // Replay goes through the breaker like any caller, but must not be short-circuited
+    @Nullable
+    private volatile Thread recoveryThread;
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong shortCircuited = new AtomicLong();
+    private final AtomicLong opened = new AtomicLong();
+    private volatile String lastFailure;
+
+    /**
+     * @param probe a cheap Redis call such as PING; throwing means Redis is still down
+     */
+    public RedisCircuitBreaker(int failureThreshold, Duration probeInterval, Runnable probe) {
+        this.failureThreshold = failureThreshold;
+        this.probeInterval = probeInterval;
+        this.probe = probe;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "redis-circuit-probe");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Run on the probe thread once Redis answers again, before the breaker closes. A listener
+     * failing because Redis is unavailable keeps the breaker open until the next probe.
+     */
+    public void addRecoveryListener(Runnable listener) {
+        recoveryListeners.add(listener);
+    }
+
+    /**
+     * Whether Redis is to be skipped; always {@code false} for the recovery listeners.
+     */
+    public boolean isOpen() {
+        return state == State.OPEN && Thread.currentThread() != recoveryThread;
+    }
+
+    /**
+     * Whether Redis should be called now. Counts a short-circuited call when it should not.
+     */
+    public boolean allowsCalls() {
+        if (isOpen()) {
+            shortCircuited.incrementAndGet();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Run {@code call} against Redis, or {@code fallback} if the breaker is open or the call
+     * fails because Redis is unavailable.
+     */
+    public <T> T execute(Supplier<T> call, Supplier<T> fallback) {
+        if (!allowsCalls()) {
+            return fallback.get();
+        }
+        T result;
+        try {
+            result = call.get();
+        } catch (RuntimeException e) {
+            if (!isUnavailable(e)) {
+                throw e;
+            }
+            recordFailure(e);
+            return fallback.get();
+        }
+        if (consecutiveFailures.get() != 0) {
+            consecutiveFailures.set(0);
+        }
+        return result;
+    }
+
+    /**
+     * Run {@code call} against Redis, or {@code fallback} if it cannot be.
+     */
+    public void execute(Runnable call, Runnable fallback) {
+        execute(() -> {
+            call.run();
+            return null;
+        }, () -> {
+            fallback.run();
+            return null;
+        });
+    }
+
+    public static boolean isUnavailable(Throwable e) {
+        // RedisConnectionFailureException is a DataAccessResourceFailureException
+        return e instanceof DataAccessResourceFailureException || e instanceof QueryTimeoutException;
+    }
+
+    public void recordFailure(Throwable e) {
+        failures.incrementAndGet();
+        lastFailure = e.getClass().getSimpleName() + ": " + e.getMessage();
+        if (consecutiveFailures.incrementAndGet() >= failureThreshold) {
+            open();
+        }
+    }
+
+    private synchronized void open() {
+        if (state == State.OPEN) {
+            return;
+        }
+        state = State.OPEN;
+        openedAtMillis = System.currentTimeMillis();
+        opened.incrementAndGet();
+        logger.warn("Redis unavailable ({}), serving caches from L1 and the database", lastFailure);
+        long interval = probeInterval.toMillis();
+        probeTask = scheduler.scheduleWithFixedDelay(this::probe, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    private void probe() {
+        try {
+            probe.run();
+        } catch (RuntimeException e) {
+            return;
+        }
+        if (!runRecoveryListeners()) {
+            return;
+        }
+        synchronized (this) {
+            state = State.CLOSED;
+            consecutiveFailures.set(0);
+            probeTask.cancel(false);
+        }
+        logger.info("Redis is back after {} ms, buffered writes replayed",
+                System.currentTimeMillis() - openedAtMillis);
+        // Writes buffered while the first pass ran
+        runRecoveryListeners();
+    }
+
+    /**
+     * @return {@code false} if Redis went away again
+     */
+    private boolean runRecoveryListeners() {
+        recoveryThread = Thread.currentThread();
+        try {
+            for (Runnable listener : recoveryListeners) {
+                try {
+                    listener.run();
+                } catch (RuntimeException e) {
+                    if (isUnavailable(e)) {
+                        if (state == State.CLOSED) {
+                            recordFailure(e);
+                        } else {
+                            lastFailure = e.getClass().getSimpleName() + ": " + e.getMessage();
+                        }
+                        return false;
+                    }
+                    logger.warn("Cache recovery step failed: {}", e.getMessage());
+                }
+            }
+            return true;
+        } finally {
+            recoveryThread = null;
+        }
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("state", state.name());
+        stats.put("openedAt", state == State.OPEN ? openedAtMillis : null);
+        stats.put("timesOpened", opened.get());
+        stats.put("failures", failures.get());
+        stats.put("shortCircuitedCalls", shortCircuited.get());
+        stats.put("lastFailure", lastFailure);
+        return stats;
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+    }
+}
@@ -0,0 +1,36 @@
+package com.broadblog.cache;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
+
+/**
+ * Typed helper for sending several Redis commands in one pipeline.
+ * <p>
+ * {@link SessionCallback} hands the callback an untyped view of the template it was called
+ * on, with the connection already bound to the current thread. The commands are therefore
+ * issued through the typed template itself, which joins the same pipeline,
+ * and no raw {@link RedisOperations} or unchecked cast is needed.
+ */
+public final class RedisPipelines {
+
+    private RedisPipelines() {
+    }
+
+    /**
+     * Send {@code commands} in one pipeline and return their replies in order.
+     */
+    public static List<Object> pipelined(RedisTemplate<String, Object> redisTemplate,
+                                         Consumer<RedisTemplate<String, Object>> commands) {
+        return redisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            public <K, V> Object execute(RedisOperations<K, V> operations) {
+                commands.accept(redisTemplate);
+                return null;
+            }
+        });
+    }
+}
@@ -0,0 +1,190 @@
+package com.broadblog.cache;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+
+/**
+ * Writes held back while Redis is unavailable, replayed once it is back.
+ * <p>
+ * Counter increments and sorted-set score increments are merged per key and member, so a
+ * long outage costs memory per distinct key rather than per write. Other writes (evictions,
+ * generation bumps, expirations) are deferred as actions under an id; deferring the same id
+ * again replaces the earlier action. When more than {@code capacity} distinct entries are
+ * pending, new ones are dropped and counted: counters then undercount, and deferred evictions
+ * fall back to the entry TTL.
+ */
+public class RedisWriteBuffer {
+
+    private static final Logger logger = LoggerFactory.getLogger(RedisWriteBuffer.class);
+
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final int capacity;
+
+    // Merged and drained one entry at a time with atomic map operations, so a delta added
+    // concurrently with replay lands either in this replay or in the buffer, never in between
+    private final ConcurrentMap<String, Long> counters = new ConcurrentHashMap<>();
+    private final ConcurrentMap<ScoreKey, Double> scores = new ConcurrentHashMap<>();
+    private final Map<String, Runnable> actions = new LinkedHashMap<>();
+
+    private final AtomicInteger pending = new AtomicInteger();
+    private final AtomicLong buffered = new AtomicLong();
+    private final AtomicLong replayed = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+
+    private record ScoreKey(String key, Object member) {
+    }
+
+    public RedisWriteBuffer(RedisTemplate<String, Object> redisTemplate, int capacity) {
+        this.redisTemplate = redisTemplate;
+        this.capacity = capacity;
+    }
+
+    /**
+     * Hold back {@code INCRBY key delta}.
+     */
+    public void increment(String key, long delta) {
+        if (!counters.containsKey(key) && isFull()) {
+            dropped.incrementAndGet();
+            return;
+        }
+        counters.compute(key, (k, current) -> {
+            if (current == null) {
+                pending.incrementAndGet();
+                return delta;
+            }
+            return current + delta;
+        });
+        buffered.incrementAndGet();
+    }
+
+    /**
+     * Hold back {@code ZINCRBY key delta member}.
+     */
+    public void incrementScore(String key, Object member, double delta) {
+        ScoreKey scoreKey = new ScoreKey(key, member);
+        if (!scores.containsKey(scoreKey) && isFull()) {
+            dropped.incrementAndGet();
+            return;
+        }
+        scores.compute(scoreKey, (k, current) -> {
+            if (current == null) {
+                pending.incrementAndGet();
+                return delta;
+            }
+            return current + delta;
+        });
+        buffered.incrementAndGet();
+    }
+
+    /**
+     * Run {@code action} on replay, replacing any action already deferred under {@code id}.
+     */
+    public void defer(String id, Runnable action) {
+        synchronized (actions) {
+            if (!actions.containsKey(id) && isFull()) {
+                dropped.incrementAndGet();
+                return;
+            }
+            if (actions.remove(id) == null) {
+                pending.incrementAndGet();
+            }
+            actions.put(id, action);
+        }
+        buffered.incrementAndGet();
+    }
+
+    /**
+     * Distinct pending entries: counters, sorted-set members and actions.
+     */
+    public int size() {
+        return pending.get();
+    }
+
+    private boolean isFull() {
+        return pending.get() >= capacity;
+    }
+
+    /**
+     * Apply everything buffered: counters and scores in one pipeline, then the deferred
+     * actions in the order they were deferred. An action that fails because Redis went away
+     * again is deferred anew, along with the ones after it.
+     */
+    public void replay() {
+        Map<String, Long> counterDeltas = new LinkedHashMap<>();
+        for (String key : new ArrayList<>(counters.keySet())) {
+            Long delta = counters.remove(key);
+            if (delta != null) {
+                pending.decrementAndGet();
+                counterDeltas.put(key, delta);
+            }
+        }
+        Map<String, Map<Object, Double>> scoreDeltas = new LinkedHashMap<>();
+        for (ScoreKey scoreKey : new ArrayList<>(scores.keySet())) {
+            Double delta = scores.remove(scoreKey);
+            if (delta != null) {
+                pending.decrementAndGet();
+                scoreDeltas.computeIfAbsent(scoreKey.key(), k -> new LinkedHashMap<>()).put(scoreKey.member(), delta);
+            }
+        }
+        if (!counterDeltas.isEmpty() || !scoreDeltas.isEmpty()) {
+            try {
+                replayIncrements(counterDeltas, scoreDeltas);
+                replayed.addAndGet(counterDeltas.size() + scoreDeltas.values().stream().mapToInt(Map::size).sum());
+            } catch (RuntimeException e) {
+                // Put them back for the next recovery
+                counterDeltas.forEach(this::increment);
+                scoreDeltas.forEach((key, deltas) -> deltas.forEach((member, delta) -> incrementScore(key, member, delta)));
+                throw e;
+            }
+        }
+        List<Map.Entry<String, Runnable>> deferred;
+        synchronized (actions) {
+            deferred = new ArrayList<>(actions.entrySet());
+            pending.addAndGet(-actions.size());
+            actions.clear();
+        }
+        for (int i = 0; i < deferred.size(); i++) {
+            try {
+                deferred.get(i).getValue().run();
+                replayed.incrementAndGet();
+            } catch (RuntimeException e) {
+                if (!RedisCircuitBreaker.isUnavailable(e)) {
+                    logger.warn("Dropping buffered cache write {}: {}", deferred.get(i).getKey(), e.getMessage());
+                    continue;
+                }
+                for (Map.Entry<String, Runnable> rest : deferred.subList(i, deferred.size())) {
+                    defer(rest.getKey(), rest.getValue());
+                }
+                throw e;
+            }
+        }
+    }
+
+    private void replayIncrements(Map<String, Long> counterDeltas, Map<String, Map<Object, Double>> scoreDeltas) {
+        RedisPipelines.pipelined(redisTemplate, operations -> {
+            counterDeltas.forEach((key, delta) -> operations.opsForValue().increment(key, delta));
+            scoreDeltas.forEach((key, deltas) -> deltas.forEach(
+                    (member, delta) -> operations.opsForZSet().incrementScore(key, member, delta)));
+        });
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("pending", size());
+        stats.put("capacity", capacity);
+        stats.put("buffered", buffered.get());
+        stats.put("replayed", replayed.get());
+        stats.put("dropped", dropped.get());
+        return stats;
+    }
+}
@@ -0,0 +1,158 @@
+package com.broadblog.cache;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.time.temporal.TemporalAccessor;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.hibernate.Hibernate;
+import org.hibernate.proxy.HibernateProxy;
+
+import com.github.benmanes.caffeine.cache.Weigher;
+
+/**
+ * Weighs L1 entries by a rough estimate of their retained heap size, in bytes.
+ * <p>
+ * The estimate walks the object graph by reflection, counting each object once. It does
+ * not follow Hibernate proxies or uninitialized lazy collections (that would load them) and
+ * treats JDK types it does not model as opaque, so it stays cheap and never touches the
+ * database. It is meant to tell a page of posts from a boolean, not to be exact.
+ */
+public class SizeEstimatingWeigher implements Weigher<Object, Object> {
+
+    private static final int OBJECT_HEADER = 16;
+    private static final int REFERENCE = 8;
+    private static final int OPAQUE_OBJECT = 64;
+    private static final int MAX_DEPTH = 12;
+
+    private static final ClassValue<List<Field>> INSTANCE_FIELDS = new ClassValue<>() {
+        @Override
+        protected List<Field> computeValue(Class<?> type) {
+            List<Field> fields = new ArrayList<>();
+            for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+                if (isJdkType(c)) {
+                    return null;
+                }
+                for (Field field : c.getDeclaredFields()) {
+                    if (Modifier.isStatic(field.getModifiers())) {
+                        continue;
+                    }
+                    try {
+                        field.setAccessible(true);
+                    } catch (RuntimeException e) {
+                        return null;
+                    }
+                    fields.add(field);
+                }
+            }
+            return Collections.unmodifiableList(fields);
+        }
+    };
+
+    @Override
+    public int weigh(Object key, Object value) {
+        long size = estimate(key) + estimate(value);
+        return (int) Math.max(1, Math.min(Integer.MAX_VALUE, size));
+    }
+
+    public static long estimate(Object root) {
+        return sizeOf(root, Collections.newSetFromMap(new IdentityHashMap<>()), 0);
+    }
+
+    private static long sizeOf(Object value, Set<Object> visited, int depth) {
+        if (value == null || !visited.add(value)) {
+            return 0;
+        }
+        if (value instanceof HibernateProxy || !Hibernate.isInitialized(value)) {
+            return REFERENCE;
+        }
+        if (value instanceof String s) {
+            return 40 + 2L * s.length();
+        }
+        if (value instanceof Number || value instanceof Boolean || value instanceof Character
+                || value instanceof Enum<?>) {
+            return OBJECT_HEADER;
+        }
+        if (value instanceof TemporalAccessor) {
+            return OBJECT_HEADER + 16;
+        }
+        if (depth >= MAX_DEPTH) {
+            return REFERENCE;
+        }
+        Class<?> type = value.getClass();
+        if (type.isArray()) {
+            return sizeOfArray(value, type.getComponentType(), visited, depth);
+        }
+        if (value instanceof Collection<?> collection) {
+            long size = OBJECT_HEADER + 16;
+            for (Object element : collection) {
+                size += REFERENCE + sizeOf(element, visited, depth + 1);
+            }
+            return size;
+        }
+        if (value instanceof Map<?, ?> map) {
+            long size = OBJECT_HEADER + 32;
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                size += 32 + sizeOf(entry.getKey(), visited, depth + 1) + sizeOf(entry.getValue(), visited, depth + 1);
+            }
+            return size;
+        }
+        List<Field> fields = INSTANCE_FIELDS.get(type);
+        if (fields == null) {
+            return OPAQUE_OBJECT;
+        }
+        long size = OBJECT_HEADER;
+        for (Field field : fields) {
+            Class<?> fieldType = field.getType();
+            if (fieldType.isPrimitive()) {
+                size += primitiveSize(fieldType);
+                continue;
+            }
+            size += REFERENCE;
+            try {
+                size += sizeOf(field.get(value), visited, depth + 1);
+            } catch (IllegalAccessException e) {
+                // Counted as a bare reference
+            }
+        }
+        return size;
+    }
+
+    private static long sizeOfArray(Object array, Class<?> componentType, Set<Object> visited, int depth) {
+        int length = Array.getLength(array);
+        if (componentType.isPrimitive()) {
+            return OBJECT_HEADER + (long) length * primitiveSize(componentType);
+        }
+        long size = OBJECT_HEADER + (long) length * REFERENCE;
+        for (Object element : (Object[]) array) {
+            size += sizeOf(element, visited, depth + 1);
+        }
+        return size;
+    }
+
+    private static int primitiveSize(Class<?> type) {
+        if (type == long.class || type == double.class) {
+            return 8;
+        }
+        if (type == int.class || type == float.class) {
+            return 4;
+        }
+        if (type == short.class || type == char.class) {
+            return 2;
+        }
+        return 1;
+    }
+
+    private static boolean isJdkType(Class<?> type) {
+        String name = type.getName();
+        return name.startsWith("java.") || name.startsWith("javax.") || name.startsWith("jdk.")
+                || name.startsWith("sun.");
+    }
+}
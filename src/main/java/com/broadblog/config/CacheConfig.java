@@ -1,70 +1,242 @@
 package com.broadblog.config;
 
-import java.time.Duration;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
 
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.EnableCaching;
 import org.springframework.cache.caffeine.CaffeineCacheManager;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Primary;
+import org.springframework.data.redis.cache.BatchStrategies;
 import org.springframework.data.redis.cache.RedisCacheConfiguration;
 import org.springframework.data.redis.cache.RedisCacheManager;
+import org.springframework.data.redis.cache.RedisCacheWriter;
+import org.springframework.data.redis.connection.RedisConnection;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
-import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.data.redis.serializer.RedisSerializationContext;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
 
-import com.fasterxml.jackson.annotation.JsonAutoDetect;
-import com.fasterxml.jackson.annotation.PropertyAccessor;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.jsontype.impl.LaissezFaireSubTypeValidator;
-import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.broadblog.cache.CacheAccessRecorder;
+import com.broadblog.cache.CacheGenerations;
+import com.broadblog.cache.CacheInvalidationBus;
+import com.broadblog.cache.CacheKeyIndex;
+import com.broadblog.cache.CacheNamespaceResolver;
+import com.broadblog.cache.CacheRefresher;
+import com.broadblog.cache.PostCacheNamespaces;
+import com.broadblog.cache.RedisCacheBulkOperations;
+import com.broadblog.cache.RedisCacheInvalidationTransport;
+import com.broadblog.cache.CacheValueCodec;
+import com.broadblog.cache.CacheWriteBehind;
+import com.broadblog.cache.HotKeyDetector;
+import com.broadblog.cache.L1Snapshot;
+import com.broadblog.cache.RedisCacheLoadLease;
+import com.broadblog.cache.RedisCircuitBreaker;
+import com.broadblog.cache.RedisWriteBuffer;
 import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
 
 @Configuration
 @EnableCaching
 public class CacheConfig {
 
     @Bean
-    public CaffeineCacheManager caffeineCacheManager() {
+    public CaffeineCacheManager caffeineCacheManager(TwoLevelCacheProperties properties) {
+        // Default spec only; TwoLevelCacheManager registers each L1 from its CachePolicy
+        CachePolicy defaults = properties.policyFor("");
         CaffeineCacheManager manager = new CaffeineCacheManager();
         manager.setCaffeine(
                 Caffeine.newBuilder()
                         .initialCapacity(200)
-                        .maximumSize(5000)
-                        .expireAfterWrite(Duration.ofMinutes(2))
+                        .maximumSize(defaults.getMaxEntries())
+                        .expireAfterWrite(defaults.getL1Ttl())
                         .recordStats()
         );
         return manager;
     }
 
     @Bean
-    public CacheManager redisSpringCacheManager(RedisConnectionFactory connectionFactory) {
-        ObjectMapper objectMapper = new ObjectMapper();
-        objectMapper.setVisibility(PropertyAccessor.ALL, JsonAutoDetect.Visibility.ANY);
-        objectMapper.activateDefaultTyping(LaissezFaireSubTypeValidator.instance, ObjectMapper.DefaultTyping.NON_FINAL);
-        objectMapper.registerModule(new JavaTimeModule());
+    public CacheValueCodec cacheValueCodec(TwoLevelCacheProperties properties) {
+        TwoLevelCacheProperties.Codec codec = properties.getCodec();
+        int compressionThreshold = codec.isCompress() ? (int) codec.getCompressionThreshold().toBytes() : -1;
+        return new CacheValueCodec(codec.getFormat(), compressionThreshold);
+    }
 
-        GenericJackson2JsonRedisSerializer jsonSerializer = new GenericJackson2JsonRedisSerializer(objectMapper);
+    @Bean
+    public CacheManager redisSpringCacheManager(RedisConnectionFactory connectionFactory, CacheValueCodec valueCodec,
+                                                TwoLevelCacheProperties properties) {
         StringRedisSerializer stringSerializer = new StringRedisSerializer();
 
         RedisCacheConfiguration config = RedisCacheConfiguration.defaultCacheConfig()
-                .entryTtl(Duration.ofHours(1))
+                .entryTtl(properties.getL2Ttl())
                 .serializeKeysWith(RedisSerializationContext.SerializationPair.fromSerializer(stringSerializer))
-                .serializeValuesWith(RedisSerializationContext.SerializationPair.fromSerializer(jsonSerializer))
+                .serializeValuesWith(RedisSerializationContext.SerializationPair.fromSerializer(valueCodec))
                 .disableCachingNullValues();
 
-        return RedisCacheManager.builder(connectionFactory)
+        // allEntries evictions clear with SCAN batches instead of a blocking KEYS
+        RedisCacheWriter cacheWriter = RedisCacheWriter.nonLockingRedisCacheWriter(connectionFactory,
+                BatchStrategies.scan(properties.getKeyIndex().getBatchSize()));
+        Map<String, RedisCacheConfiguration> perCache = new HashMap<>();
+        for (String cacheName : properties.getCaches().keySet()) {
+            perCache.put(cacheName, config.entryTtl(properties.policyFor(cacheName).getL2Ttl()));
+        }
+        return RedisCacheManager.builder(cacheWriter)
                 .cacheDefaults(config)
+                .withInitialCacheConfigurations(perCache)
                 .build();
     }
 
+    @Bean
+    public RedisCacheInvalidationTransport cacheInvalidationTransport(StringRedisTemplate stringRedisTemplate,
+                                                                      TwoLevelCacheProperties properties) {
+        return new RedisCacheInvalidationTransport(stringRedisTemplate, properties.getInvalidation().getChannel());
+    }
+
+    @Bean
+    public RedisMessageListenerContainer cacheInvalidationListenerContainer(RedisConnectionFactory connectionFactory,
+                                                                            RedisCacheInvalidationTransport transport) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        container.addMessageListener(transport, new ChannelTopic(transport.getChannel()));
+        return container;
+    }
+
+    @Bean
+    public CacheInvalidationBus cacheInvalidationBus(RedisCacheInvalidationTransport transport,
+                                                     RedisCircuitBreaker redisCircuitBreaker,
+                                                     TwoLevelCacheProperties properties) {
+        TwoLevelCacheProperties.Invalidation invalidation = properties.getInvalidation();
+        return new CacheInvalidationBus(transport, invalidation.getFlushInterval(),
+                invalidation.getMaxBatchSize(), invalidation.getQueueCapacity(), redisCircuitBreaker);
+    }
+
+    @Bean
+    public CacheKeyIndex cacheKeyIndex(StringRedisTemplate stringRedisTemplate, TwoLevelCacheProperties properties) {
+        return new CacheKeyIndex(stringRedisTemplate, properties.getMaxL2Ttl(), properties.getKeyIndex().getBatchSize());
+    }
+
+    @Bean
+    public RedisCircuitBreaker redisCircuitBreaker(StringRedisTemplate stringRedisTemplate,
+                                                   TwoLevelCacheProperties properties) {
+        TwoLevelCacheProperties.CircuitBreaker circuitBreaker = properties.getCircuitBreaker();
+        // Disabled: a breaker that never opens, so callers need no null checks
+        int failureThreshold = circuitBreaker.isEnabled() ? circuitBreaker.getFailureThreshold() : Integer.MAX_VALUE;
+        return new RedisCircuitBreaker(failureThreshold, circuitBreaker.getProbeInterval(),
+                () -> stringRedisTemplate.execute(RedisConnection::ping));
+    }
+
+    @Bean
+    public RedisWriteBuffer redisWriteBuffer(RedisTemplate<String, Object> redisTemplate,
+                                             RedisCircuitBreaker redisCircuitBreaker,
+                                             TwoLevelCacheProperties properties) {
+        RedisWriteBuffer writeBuffer = new RedisWriteBuffer(redisTemplate, properties.getCircuitBreaker().getBufferCapacity());
+        redisCircuitBreaker.addRecoveryListener(writeBuffer::replay);
+        return writeBuffer;
+    }
+
+    @Bean
+    public CacheGenerations cacheGenerations(StringRedisTemplate stringRedisTemplate,
+                                             CacheInvalidationBus cacheInvalidationBus,
+                                             RedisCircuitBreaker redisCircuitBreaker,
+                                             TwoLevelCacheProperties properties) {
+        CacheInvalidationBus bus = properties.getInvalidation().isEnabled() ? cacheInvalidationBus : null;
+        return new CacheGenerations(stringRedisTemplate, properties.getGenerations().getRefreshInterval(), bus,
+                redisCircuitBreaker);
+    }
+
+    @Bean
+    public CacheRefresher cacheRefresher(TwoLevelCacheProperties properties) {
+        TwoLevelCacheProperties.RefreshAhead refreshAhead = properties.getRefreshAhead();
+        return new CacheRefresher(refreshAhead.getThreads(), refreshAhead.getQueueCapacity());
+    }
+
+    @Bean
+    public CacheWriteBehind cacheWriteBehind(ObjectProvider<MeterRegistry> meterRegistry,
+                                             TwoLevelCacheProperties properties) {
+        TwoLevelCacheProperties.WriteBehind writeBehind = properties.getWriteBehind();
+        return new CacheWriteBehind(writeBehind.getFlushInterval(), writeBehind.getMaxBatchSize(),
+                writeBehind.getQueueCapacity(), meterRegistry.getIfAvailable());
+    }
+
+    @Bean
+    public CacheAccessRecorder cacheAccessRecorder(StringRedisTemplate stringRedisTemplate,
+                                                   RedisCircuitBreaker redisCircuitBreaker,
+                                                   TwoLevelCacheProperties properties) {
+        TwoLevelCacheProperties.WarmUp warmUp = properties.getWarmUp();
+        return new CacheAccessRecorder(stringRedisTemplate, warmUp.getSampleRate(), warmUp.getWindow(),
+                warmUp.getFlushInterval(), warmUp.getMaxPendingKeys(), redisCircuitBreaker);
+    }
+
+    @Bean
+    public L1SnapshotLifecycle l1SnapshotLifecycle(TwoLevelCacheManager cacheManager, CacheValueCodec cacheValueCodec,
+                                                   TwoLevelCacheProperties properties) {
+        TwoLevelCacheProperties.Snapshot snapshot = properties.getSnapshot();
+        L1SnapshotLifecycle lifecycle = new L1SnapshotLifecycle(cacheManager,
+                new L1Snapshot(Path.of(snapshot.getPath()), cacheValueCodec),
+                snapshot.getMaxEntriesPerCache(), snapshot.getMaxAge());
+        // Never started, it neither restores nor writes a snapshot
+        lifecycle.setAutoStartup(snapshot.isEnabled());
+        return lifecycle;
+    }
+
     @Primary
     @Bean
-    public CacheManager cacheManager(CaffeineCacheManager caffeineManager, CacheManager redisSpringCacheManager) {
+    public TwoLevelCacheManager cacheManager(CaffeineCacheManager caffeineManager, CacheManager redisSpringCacheManager,
+                                             StringRedisTemplate stringRedisTemplate, CacheInvalidationBus cacheInvalidationBus,
+                                             CacheKeyIndex cacheKeyIndex, CacheGenerations cacheGenerations,
+                                             CacheRefresher cacheRefresher, ObjectProvider<MeterRegistry> meterRegistry,
+                                             CacheValueCodec cacheValueCodec, RedisCircuitBreaker redisCircuitBreaker,
+                                             RedisWriteBuffer redisWriteBuffer, CacheWriteBehind cacheWriteBehind,
+                                             CacheAccessRecorder cacheAccessRecorder,
+                                             TwoLevelCacheProperties properties) {
         // Two-level manager: L1 (Caffeine) + L2 (Redis)
-        return new TwoLevelCacheManager(caffeineManager, redisSpringCacheManager);
+        TwoLevelCacheSupport support = new TwoLevelCacheSupport();
+        support.setPolicies(properties::policyFor);
+        support.setRefresher(cacheRefresher);
+        support.setMeterRegistry(meterRegistry.getIfAvailable());
+        support.setBulkOperations(new RedisCacheBulkOperations(stringRedisTemplate, cacheValueCodec));
+        support.setCircuitBreaker(redisCircuitBreaker);
+        support.setWriteBuffer(redisWriteBuffer);
+        support.setWriteBehind(cacheWriteBehind);
+        if (properties.getWarmUp().isEnabled()) {
+            support.setAccessRecorder(cacheAccessRecorder);
+        }
+        TwoLevelCacheProperties.HotKeys hotKeys = properties.getHotKeys();
+        if (hotKeys.isEnabled()) {
+            support.setHotKeyDetector(new HotKeyDetector(hotKeys.getSampleRate(), hotKeys.getThreshold(),
+                    hotKeys.getWindow(), hotKeys.getSketchWidth(), hotKeys.getMaxHotKeys()));
+            support.setPinnedMaxEntries(hotKeys.getPinnedMaxEntries());
+            support.setPinnedTtl(hotKeys.getPinnedTtl());
+        }
+        TwoLevelCacheProperties.SingleFlight singleFlight = properties.getSingleFlight();
+        if (singleFlight.isDistributedLease()) {
+            support.setLoadLease(new RedisCacheLoadLease(stringRedisTemplate, singleFlight.getLeaseTtl()));
+            support.setLeaseWait(singleFlight.getLeaseWait());
+        }
+        if (properties.getInvalidation().isEnabled()) {
+            support.setInvalidationBus(cacheInvalidationBus);
+        }
+        if (properties.getKeyIndex().isEnabled()) {
+            support.setKeyIndex(cacheKeyIndex);
+        }
+        TwoLevelCacheProperties.Generations generations = properties.getGenerations();
+        if (generations.isEnabled()) {
+            // Writes bump namespaces instead of evicting allEntries of these caches
+            support.setGenerations(cacheGenerations);
+            support.addVersionedCache("posts", new PostCacheNamespaces(generations.getFeedHeadPages()));
+            support.addVersionedCache("searchResults", CacheNamespaceResolver.CACHE_ONLY);
+            // Their keys change with every bump, so indexing them would only grow the sets
+            cacheKeyIndex.excludeCache("posts");
+            cacheKeyIndex.excludeCache("searchResults");
+        }
+        return new TwoLevelCacheManager(caffeineManager, redisSpringCacheManager, support);
     }
 }
 
@@ -0,0 +1,132 @@
+package com.broadblog.config;
+
+import java.time.Duration;
+
+import org.springframework.util.unit.DataSize;
+
+/**
+ * How one cache is laid out over the two levels, bound from
+ * {@code cache.two-level.caches.<name>.*}. Unset fields inherit the defaults of
+ * {@link TwoLevelCacheProperties}.
+ */
+public class CachePolicy {
+
+    public enum Mode {
+        /** Caffeine in front of Redis. */
+        BOTH,
+        /** Per-node only; invalidations are still broadcast. */
+        L1_ONLY,
+        /** Shared only, for entries too large or too volatile to copy onto every node. */
+        L2_ONLY
+    }
+
+    private Mode mode;
+    /**
+     * Upper bound of L1 by entry count; ignored when {@code maxWeight} is set.
+     */
+    private Long maxEntries;
+    /**
+     * Upper bound of L1 by estimated retained size, so a few large pages cannot push out
+     * thousands of small entries.
+     */
+    private DataSize maxWeight;
+    private Duration l1Ttl;
+    private Duration l2Ttl;
+    /**
+     * After this long, an L1 hit triggers a background re-read of the entry from L2 while the
+     * current value keeps being served.
+     */
+    private Duration refreshInterval;
+    /**
+     * Refresh-ahead: a hit on an L1 entry older than this returns the entry at once and
+     * reloads it from the source in the background. The L1/L2 TTLs stay the hard limits,
+     * reached only if reloads keep failing. Takes precedence over {@code refreshInterval}.
+     */
+    private Duration softTtl;
+    /**
+     * Write L2 asynchronously through the {@link com.broadblog.cache.CacheWriteBehind} queue:
+     * a miss returns as soon as L1 holds the value. For caches of derived data only, whose
+     * entries may go missing from L2 without harm. Ignored unless the mode is {@code BOTH}.
+     */
+    private Boolean writeBehind;
+
+    /**
+     * A copy of this policy with every unset field taken from {@code defaults}.
+     */
+    public CachePolicy withDefaults(CachePolicy defaults) {
+        CachePolicy merged = new CachePolicy();
+        merged.mode = mode != null ? mode : defaults.mode;
+        merged.maxEntries = maxEntries != null ? maxEntries : defaults.maxEntries;
+        merged.maxWeight = maxWeight != null ? maxWeight : defaults.maxWeight;
+        merged.l1Ttl = l1Ttl != null ? l1Ttl : defaults.l1Ttl;
+        merged.l2Ttl = l2Ttl != null ? l2Ttl : defaults.l2Ttl;
+        merged.refreshInterval = refreshInterval != null ? refreshInterval : defaults.refreshInterval;
+        merged.softTtl = softTtl != null ? softTtl : defaults.softTtl;
+        merged.writeBehind = writeBehind != null ? writeBehind : defaults.writeBehind;
+        return merged;
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public void setMode(Mode mode) {
+        this.mode = mode;
+    }
+
+    public Long getMaxEntries() {
+        return maxEntries;
+    }
+
+    public void setMaxEntries(Long maxEntries) {
+        this.maxEntries = maxEntries;
+    }
+
+    public DataSize getMaxWeight() {
+        return maxWeight;
+    }
+
+    public void setMaxWeight(DataSize maxWeight) {
+        this.maxWeight = maxWeight;
+    }
+
+    public Duration getL1Ttl() {
+        return l1Ttl;
+    }
+
+    public void setL1Ttl(Duration l1Ttl) {
+        this.l1Ttl = l1Ttl;
+    }
+
+    public Duration getL2Ttl() {
+        return l2Ttl;
+    }
+
+    public void setL2Ttl(Duration l2Ttl) {
+        this.l2Ttl = l2Ttl;
+    }
+
+    public Duration getRefreshInterval() {
+        return refreshInterval;
+    }
+
+    public void setRefreshInterval(Duration refreshInterval) {
+        this.refreshInterval = refreshInterval;
+    }
+
+    public Duration getSoftTtl() {
+        return softTtl;
+    }
+
+    public void setSoftTtl(Duration softTtl) {
+        this.softTtl = softTtl;
+    }
+
+    public Boolean getWriteBehind() {
+        return writeBehind;
+    }
+
+    public void setWriteBehind(Boolean writeBehind) {
+        this.writeBehind = writeBehind;
+    }
+}
@@ -0,0 +1,116 @@
+package com.broadblog.config;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.SmartLifecycle;
+
+import com.broadblog.cache.L1Snapshot;
+
+/**
+ * Restores the L1 of every two-level cache from an {@link L1Snapshot} when the context
+ * starts, and snapshots the hottest {@code maxEntriesPerCache} entries of each cache when it
+ * stops.
+ * <p>
+ * It runs in an early phase, so the restore happens before the web server takes requests and
+ * the snapshot after the server has stopped serving them. A snapshot older than
+ * {@code maxAge} is ignored; within it, entries past their L1 TTL and versioned entries whose
+ * generations moved on are skipped. Single-key evictions broadcast while the node was down
+ * are not seen, which is what {@code maxAge} bounds.
+ */
+public class L1SnapshotLifecycle implements SmartLifecycle {
+
+    private static final Logger logger = LoggerFactory.getLogger(L1SnapshotLifecycle.class);
+
+    private final TwoLevelCacheManager cacheManager;
+    private final L1Snapshot snapshot;
+    private final int maxEntriesPerCache;
+    private final Duration maxAge;
+    private boolean autoStartup = true;
+    private volatile boolean running;
+
+    public L1SnapshotLifecycle(TwoLevelCacheManager cacheManager, L1Snapshot snapshot, int maxEntriesPerCache,
+                               Duration maxAge) {
+        this.cacheManager = cacheManager;
+        this.snapshot = snapshot;
+        this.maxEntriesPerCache = maxEntriesPerCache;
+        this.maxAge = maxAge;
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        try {
+            restore();
+        } catch (RuntimeException e) {
+            // A cold L1 is the normal state without a snapshot; never fail startup over it
+            logger.warn("Failed to restore L1 snapshot {}: {}", snapshot.getPath(), e.getMessage());
+        }
+    }
+
+    /**
+     * @return the number of entries restored
+     */
+    public int restore() {
+        long start = System.nanoTime();
+        L1Snapshot.Contents contents = snapshot.read();
+        if (contents == null) {
+            return 0;
+        }
+        long age = System.currentTimeMillis() - contents.createdAtMillis();
+        if (age > maxAge.toMillis()) {
+            logger.info("Ignoring L1 snapshot {}: {}s old", snapshot.getPath(), age / 1000);
+            return 0;
+        }
+        int restored = cacheManager.restoreL1(contents.caches());
+        int total = contents.caches().values().stream().mapToInt(List::size).sum();
+        logger.info("Restored {} of {} L1 entries from {} in {} ms", restored, total, snapshot.getPath(),
+                (System.nanoTime() - start) / 1_000_000);
+        return restored;
+    }
+
+    @Override
+    public void stop() {
+        try {
+            save();
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Failed to write L1 snapshot {}: {}", snapshot.getPath(), e.getMessage());
+        } finally {
+            running = false;
+        }
+    }
+
+    /**
+     * @return the number of entries written
+     */
+    public int save() throws IOException {
+        Map<String, List<L1Snapshot.Entry>> entries = cacheManager.snapshotL1(maxEntriesPerCache);
+        int written = snapshot.write(entries);
+        logger.info("Wrote {} L1 entries of {} caches to {}", written, entries.size(), snapshot.getPath());
+        return written;
+    }
+
+    public void setAutoStartup(boolean autoStartup) {
+        this.autoStartup = autoStartup;
+    }
+
+    @Override
+    public boolean isAutoStartup() {
+        return autoStartup;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public int getPhase() {
+        // Web server lifecycles run in the last phases: start after us, stop before us
+        return 0;
+    }
+}
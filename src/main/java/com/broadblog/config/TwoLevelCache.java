@@ -1,25 +1,137 @@
 package com.broadblog.config;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.cache.Cache;
+import org.springframework.cache.support.NoOpCache;
 import org.springframework.cache.support.SimpleValueWrapper;
 import org.springframework.lang.Nullable;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import com.broadblog.cache.CacheAccessRecorder;
+import com.broadblog.cache.CacheBulkOperations;
+import com.broadblog.cache.CacheGenerations;
+import com.broadblog.cache.CacheInvalidationBus;
+import com.broadblog.cache.CacheKeyIndex;
+import com.broadblog.cache.CacheLoadLease;
+import com.broadblog.cache.CacheMetrics;
+import com.broadblog.cache.CacheNamespaceResolver;
+import com.broadblog.cache.CacheRefresher;
+import com.broadblog.cache.CacheWriteBehind;
+import com.broadblog.cache.HotKeyDetector;
+import com.broadblog.cache.L1Snapshot;
+import com.broadblog.cache.RedisCircuitBreaker;
+import com.broadblog.cache.RedisWriteBuffer;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
 /**
  * A two-level cache that checks Caffeine (L1) first, then Redis (L2).
  * On L2 hits, it back-fills L1 to speed up subsequent reads.
+ * <p>
+ * Misses in {@link #get(Object, Callable)} are coalesced per key: only one caller on this
+ * node runs the loader while concurrent callers for the same key wait for its result.
+ * With a {@link CacheLoadLease} the same holds across nodes, where the losers poll L2
+ * for the winner's value instead of hitting the database.
+ * <p>
+ * Evictions and clears are broadcast on the {@link CacheInvalidationBus}, if present, so
+ * the L1 copies held by other nodes are dropped as well. L2 writes are registered in the
+ * {@link CacheKeyIndex}, if present, so prefixes can be invalidated without scanning Redis.
+ * <p>
+ * A versioned cache stores every key as {@code <key>@v<token>}, where the token folds in the
+ * {@link CacheGenerations} of the cache and of the key's namespaces. Bumping a namespace
+ * therefore hides its entries at once, and {@link #clear()} becomes a single bump.
+ * <p>
+ * With a soft TTL in its {@link CachePolicy}, a hit in {@link #get(Object, Callable)} on an
+ * L1 entry older than the soft TTL still returns that entry, and the {@link CacheRefresher}
+ * reloads it in the background. Only if those reloads keep failing does the entry reach its
+ * hard (L1/L2) TTL and fall back to a blocking load.
+ * <p>
+ * Lookups, loads and L2 round trips are recorded in {@link CacheMetrics}.
+ * <p>
+ * {@link #getAll(Collection, Function)} resolves many keys in three round trips at most:
+ * L1, one multi-get from L2 through {@link CacheBulkOperations}, and one bulk load.
+ * <p>
+ * With a {@link RedisCircuitBreaker}, L2 calls stop once Redis is found unavailable: reads
+ * are answered from L1 and the loader, writes stay in L1, and evictions and clears of L2 are
+ * deferred to the {@link RedisWriteBuffer} until Redis is back.
+ * <p>
+ * A cache whose policy enables write-behind hands its L2 writes to the
+ * {@link CacheWriteBehind} queue, so loads return once L1 holds the value.
+ * <p>
+ * Keys the {@link HotKeyDetector} finds hot are pinned in a small region of their own with a
+ * longer TTL, consulted after L1 and before L2. A hot key that drops out of L1 is then still
+ * served locally instead of going to the Redis shard that holds it. Evictions and clears,
+ * local or broadcast, remove pinned entries as well.
+ * <p>
+ * Lookups are sampled by the {@link CacheAccessRecorder}, if present, with the keys as
+ * callers pass them, so a starting node can warm the keys the cluster reads most.
+ * <p>
+ * {@link #hottestLocal(int)} and {@link #restoreLocal(L1Snapshot.Entry)} carry the hottest
+ * L1 entries across a restart through an {@link L1Snapshot}.
  */
 public class TwoLevelCache implements Cache {
 
+    private static final Logger logger = LoggerFactory.getLogger(TwoLevelCache.class);
+
+    private static final long LEASE_POLL_INTERVAL_MILLIS = 50;
+
     private final String cacheName;
     private final Cache l1CaffeineCache;
     private final Cache l2RedisCache;
+    private final TwoLevelCacheSupport support;
+    private final ConcurrentMap<Object, CompletableFuture<Object>> inFlightLoads = new ConcurrentHashMap<>();
+    @Nullable
+    private final Duration softTtl;
+    @Nullable
+    private final Duration l2Ttl;
+    private final CacheMetrics metrics;
+    @Nullable
+    private final CacheWriteBehind writeBehind;
+    @Nullable
+    private final HotKeyDetector hotKeyDetector;
+    @Nullable
+    private final com.github.benmanes.caffeine.cache.Cache<Object, Object> pinned;
 
     public TwoLevelCache(String cacheName, Cache l1CaffeineCache, Cache l2RedisCache) {
+        this(cacheName, l1CaffeineCache, l2RedisCache, new TwoLevelCacheSupport());
+    }
+
+    public TwoLevelCache(String cacheName, Cache l1CaffeineCache, Cache l2RedisCache,
+                         TwoLevelCacheSupport support) {
         this.cacheName = cacheName;
         this.l1CaffeineCache = l1CaffeineCache;
         this.l2RedisCache = l2RedisCache;
+        this.support = support;
+        CachePolicy policy = support.getPolicies() != null ? support.getPolicies().apply(cacheName) : null;
+        this.softTtl = policy != null ? policy.getSoftTtl() : null;
+        this.l2Ttl = policy != null ? policy.getL2Ttl() : null;
+        // Without L1 a value written behind would be nowhere until the flush
+        this.writeBehind = policy != null && Boolean.TRUE.equals(policy.getWriteBehind())
+                && policy.getMode() == CachePolicy.Mode.BOTH ? support.getWriteBehind() : null;
+        // Pinning only saves L2 round trips
+        this.hotKeyDetector = l2RedisCache instanceof NoOpCache ? null : support.getHotKeyDetector();
+        this.pinned = hotKeyDetector == null ? null : Caffeine.newBuilder()
+                .maximumSize(support.getPinnedMaxEntries())
+                .expireAfterWrite(support.getPinnedTtl())
+                .build();
+        this.metrics = new CacheMetrics(cacheName,
+                support.getMeterRegistry() != null ? support.getMeterRegistry() : new SimpleMeterRegistry(),
+                l1CaffeineCache.getNativeCache() instanceof com.github.benmanes.caffeine.cache.Cache<?, ?> nativeL1 ? nativeL1 : null);
     }
 
     @Override
@@ -35,16 +147,30 @@ public class TwoLevelCache implements Cache {
     @Override
     @Nullable
     public ValueWrapper get(Object key) {
+        recordAccess(key);
+        return getStored(storageKey(key));
+    }
+
+    @Nullable
+    private ValueWrapper getStored(Object key) {
         // 1) Try L1
         ValueWrapper l1 = l1CaffeineCache.get(key);
         if (l1 != null) {
+            metrics.recordL1Hit();
+            recordLookup(key, l1.get());
             return l1;
         }
-        // 2) Try L2
-        ValueWrapper l2 = l2RedisCache.get(key);
+        // 2) Try the pinned hot keys
+        Object hot = getPinned(key);
+        if (hot != null) {
+            return new SimpleValueWrapper(hot);
+        }
+        // 3) Try L2
+        ValueWrapper l2 = timedL2Get(key);
         if (l2 != null) {
             // back-fill L1
             l1CaffeineCache.put(key, l2.get());
+            recordLookup(key, l2.get());
             return new SimpleValueWrapper(l2.get());
         }
         return null;
@@ -52,57 +178,473 @@ public class TwoLevelCache implements Cache {
 
     @Override
     @Nullable
+    @SuppressWarnings("unchecked")
     public <T> T get(Object key, @Nullable Class<T> type) {
+        recordAccess(key);
+        key = storageKey(key);
         T l1 = l1CaffeineCache.get(key, type);
         if (l1 != null) {
+            metrics.recordL1Hit();
+            recordLookup(key, l1);
             return l1;
         }
-        T l2 = l2RedisCache.get(key, type);
+        Object hot = getPinned(key);
+        if (hot != null && (type == null || type.isInstance(hot))) {
+            return (T) hot;
+        }
+        Object storedKey = key;
+        T l2 = callL2(() -> {
+            long start = System.nanoTime();
+            T value = l2RedisCache.get(storedKey, type);
+            metrics.recordL2Get(System.nanoTime() - start, value != null);
+            return value;
+        }, () -> {
+            metrics.recordL2Unavailable(1);
+            return null;
+        });
         if (l2 != null) {
             l1CaffeineCache.put(key, l2);
+            recordLookup(key, l2);
             return l2;
         }
         return null;
     }
 
     @Override
+    @SuppressWarnings("unchecked")
     public <T> T get(Object key, Callable<T> valueLoader) {
-        // First try L1, then L2; if both miss, load and write-through
+        // First try L1, then L2; if both miss, load once per key and write-through
+        recordAccess(key);
+        key = storageKey(key);
+        ValueWrapper cached = getStored(key);
+        if (cached != null) {
+            refreshIfStale(key, valueLoader);
+            return (T) cached.get();
+        }
+
+        CompletableFuture<Object> pending = new CompletableFuture<>();
+        CompletableFuture<Object> leader = inFlightLoads.putIfAbsent(key, pending);
+        if (leader != null) {
+            return (T) awaitLeader(key, valueLoader, leader);
+        }
+        try {
+            T loaded = loadOnce(key, valueLoader);
+            pending.complete(loaded);
+            return loaded;
+        } catch (Throwable ex) {
+            // Errors too: waiters block on the future without a timeout
+            pending.completeExceptionally(ex);
+            throw ex;
+        } finally {
+            inFlightLoads.remove(key, pending);
+        }
+    }
+
+    /**
+     * Look up many keys at once: L1 first, then the rest from L2 in one multi-get, then the
+     * remaining misses through a single call of {@code bulkLoader}, whose results are written
+     * back to both levels. Keys the loader does not return are left out of the result, which
+     * keeps the order of {@code keys}.
+     * <p>
+     * Unlike {@link #get(Object, Callable)}, concurrent bulk loads of the same keys are not
+     * coalesced; callers are expected to be list reads whose loader is one {@code IN} query.
+     */
+    @SuppressWarnings("unchecked")
+    public <K, V> Map<K, V> getAll(Collection<K> keys, Function<List<K>, Map<K, V>> bulkLoader) {
+        Map<K, Object> storageKeys = new LinkedHashMap<>();
+        for (K key : keys) {
+            recordAccess(key);
+            storageKeys.put(key, storageKey(key));
+        }
+        Map<K, V> found = new LinkedHashMap<>();
+        List<K> missing = new ArrayList<>();
+        // 1) L1
+        storageKeys.forEach((key, storageKey) -> {
+            ValueWrapper l1 = l1CaffeineCache.get(storageKey);
+            if (l1 != null) {
+                metrics.recordL1Hit();
+                recordLookup(storageKey, l1.get());
+                found.put(key, (V) l1.get());
+                return;
+            }
+            Object hot = getPinned(storageKey);
+            if (hot != null) {
+                found.put(key, (V) hot);
+            } else {
+                missing.add(key);
+            }
+        });
+        // 2) L2
+        if (!missing.isEmpty()) {
+            Map<K, Object> fromL2 = multiGetL2(missing, storageKeys);
+            fromL2.forEach((key, value) -> {
+                l1CaffeineCache.put(storageKeys.get(key), value);
+                found.put(key, (V) value);
+            });
+            missing.removeAll(fromL2.keySet());
+        }
+        // 3) Source of truth
+        if (!missing.isEmpty()) {
+            Map<K, V> loaded;
+            long start = System.nanoTime();
+            try {
+                loaded = bulkLoader.apply(missing);
+            } catch (RuntimeException ex) {
+                metrics.recordLoad(System.nanoTime() - start, false);
+                throw ex;
+            }
+            metrics.recordLoad(System.nanoTime() - start, true);
+            Map<Object, Object> toStore = new LinkedHashMap<>();
+            for (K key : missing) {
+                V value = loaded.get(key);
+                if (value != null) {
+                    found.put(key, value);
+                    toStore.put(storageKeys.get(key), value);
+                }
+            }
+            putAllStored(toStore);
+        }
+        Map<K, V> ordered = new LinkedHashMap<>();
+        for (K key : keys) {
+            V value = found.get(key);
+            if (value != null) {
+                ordered.put(key, value);
+            }
+        }
+        return ordered;
+    }
+
+    private <K> Map<K, Object> multiGetL2(List<K> keys, Map<K, Object> storageKeys) {
+        Map<K, Object> found = new LinkedHashMap<>();
+        if (l2RedisCache instanceof NoOpCache) {
+            return found;
+        }
+        CacheBulkOperations bulkOperations = support.getBulkOperations();
+        if (bulkOperations == null) {
+            for (K key : keys) {
+                ValueWrapper l2 = timedL2Get(storageKeys.get(key));
+                if (l2 != null && l2.get() != null) {
+                    found.put(key, l2.get());
+                }
+            }
+            return found;
+        }
+        List<Object> l2Keys = new ArrayList<>(keys.size());
+        for (K key : keys) {
+            l2Keys.add(storageKeys.get(key));
+        }
+        Map<Object, Object> values = callL2(() -> {
+            long start = System.nanoTime();
+            Map<Object, Object> fetched = bulkOperations.getAll(cacheName, l2Keys);
+            metrics.recordL2MultiGet(System.nanoTime() - start, fetched.size(), keys.size() - fetched.size());
+            return fetched;
+        }, () -> {
+            metrics.recordL2Unavailable(keys.size());
+            return Map.of();
+        });
+        for (K key : keys) {
+            Object value = values.get(storageKeys.get(key));
+            if (value != null) {
+                found.put(key, value);
+            }
+        }
+        return found;
+    }
+
+    private void putAllStored(Map<Object, Object> entries) {
+        if (entries.isEmpty()) {
+            return;
+        }
+        CacheBulkOperations bulkOperations = support.getBulkOperations();
+        if (writeBehind != null || bulkOperations == null || l2Ttl == null || l2RedisCache instanceof NoOpCache) {
+            entries.forEach(this::putStored);
+            return;
+        }
+        entries.forEach(l1CaffeineCache::put);
+        writeL2(entries);
+    }
+
+    /**
+     * Write {@code entries} to L2, in one pipeline if bulk operations are available.
+     *
+     * @return {@code false} if L2 was skipped because Redis is unavailable
+     */
+    private boolean writeL2(Map<Object, Object> entries) {
+        CacheBulkOperations bulkOperations = support.getBulkOperations();
+        if (bulkOperations == null || l2Ttl == null || l2RedisCache instanceof NoOpCache) {
+            for (Map.Entry<Object, Object> entry : entries.entrySet()) {
+                if (!writeL2(entry.getKey(), entry.getValue())) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        boolean written = callL2(() -> {
+            long start = System.nanoTime();
+            bulkOperations.putAll(cacheName, entries, l2Ttl);
+            metrics.recordL2Put(System.nanoTime() - start);
+            return true;
+        }, () -> false);
+        CacheKeyIndex keyIndex = support.getKeyIndex();
+        // Versioned caches are not indexed: each generation bump moves them to new keys
+        if (written && keyIndex != null && support.getNamespaceResolver(cacheName) == null) {
+            List<String> redisKeys = new ArrayList<>(entries.size());
+            for (Object key : entries.keySet()) {
+                redisKeys.add(cacheName + "::" + key);
+            }
+            try {
+                callL2(() -> {
+                    keyIndex.registerAll(redisKeys);
+                    return null;
+                }, () -> null);
+            } catch (RuntimeException e) {
+                logger.warn("Failed to index {} keys of cache {}: {}", redisKeys.size(), cacheName, e.getMessage());
+            }
+        }
+        return written;
+    }
+
+    /**
+     * Runs on the single local leader for {@code key}.
+     */
+    @SuppressWarnings("unchecked")
+    private <T> T loadOnce(Object key, Callable<T> valueLoader) {
+        // A previous leader may have finished between our miss and taking the slot
         ValueWrapper l1 = l1CaffeineCache.get(key);
         if (l1 != null) {
-            @SuppressWarnings("unchecked")
-            T value = (T) l1.get();
-            return value;
+            return (T) l1.get();
         }
-        ValueWrapper l2 = l2RedisCache.get(key);
-        if (l2 != null) {
-            @SuppressWarnings("unchecked")
-            T value = (T) l2.get();
-            l1CaffeineCache.put(key, value);
-            return value;
+        CacheLoadLease loadLease = support.getLoadLease();
+        if (loadLease == null) {
+            return loadAndStore(key, valueLoader);
         }
+        Boolean acquired = callL2(() -> loadLease.tryAcquire(cacheName, key), () -> null);
+        if (acquired == null) {
+            // Redis is down: no lease to take and no L2 to share the value through
+            return loadAndStore(key, valueLoader);
+        }
+        if (acquired) {
+            try {
+                return loadAndStore(key, valueLoader);
+            } finally {
+                callL2(() -> {
+                    loadLease.release(cacheName, key);
+                    return null;
+                }, () -> null);
+            }
+        }
+        // Another node is loading: wait for its value to show up in L2
+        ValueWrapper shared = pollL2(key);
+        if (shared != null) {
+            l1CaffeineCache.put(key, shared.get());
+            return (T) shared.get();
+        }
+        return loadAndStore(key, valueLoader);
+    }
+
+    private <T> T loadAndStore(Object key, Callable<T> valueLoader) {
+        T loaded;
+        long start = System.nanoTime();
         try {
-            T loaded = valueLoader.call();
-            // write-through to both caches
-            put(key, loaded);
-            return loaded;
+            loaded = valueLoader.call();
         } catch (Exception ex) {
+            metrics.recordLoad(System.nanoTime() - start, false);
             throw new ValueRetrievalException(key, valueLoader, ex);
         }
+        metrics.recordLoad(System.nanoTime() - start, true);
+        // write-through to both caches
+        putStored(key, loaded);
+        return loaded;
+    }
+
+    /**
+     * Schedule a background reload of {@code key} if its L1 copy is past the soft TTL.
+     */
+    private void refreshIfStale(Object key, Callable<?> valueLoader) {
+        CacheRefresher refresher = support.getRefresher();
+        if (softTtl == null || refresher == null
+                || !(l1CaffeineCache.getNativeCache() instanceof com.github.benmanes.caffeine.cache.Cache<?, ?> nativeL1)) {
+            return;
+        }
+        @SuppressWarnings("unchecked")
+        com.github.benmanes.caffeine.cache.Cache<Object, Object> l1 =
+                (com.github.benmanes.caffeine.cache.Cache<Object, Object>) nativeL1;
+        boolean stale = l1.policy().expireAfterWrite()
+                .flatMap(expiration -> expiration.ageOf(key))
+                .map(age -> age.compareTo(softTtl) >= 0)
+                .orElse(false);
+        if (stale) {
+            refresher.refresh(cacheName, key, valueLoader, value -> putStored(key, value));
+        }
+    }
+
+    @Nullable
+    private ValueWrapper timedL2Get(Object key) {
+        return callL2(() -> {
+            long start = System.nanoTime();
+            ValueWrapper l2 = l2RedisCache.get(key);
+            metrics.recordL2Get(System.nanoTime() - start, l2 != null);
+            return l2;
+        }, () -> {
+            metrics.recordL2Unavailable(1);
+            return null;
+        });
+    }
+
+    /**
+     * Count a lookup of {@code key}, as the caller passed it, for the warm-up plan of the next
+     * node to start.
+     */
+    private void recordAccess(Object key) {
+        CacheAccessRecorder accessRecorder = support.getAccessRecorder();
+        if (accessRecorder != null) {
+            accessRecorder.record(cacheName, key);
+        }
+    }
+
+    /**
+     * Feed a lookup that found {@code value} to the hot-key detector, pinning the key if it
+     * turns out to be hot.
+     */
+    private void recordLookup(Object key, @Nullable Object value) {
+        if (pinned != null && value != null && hotKeyDetector.record(cacheName, key)) {
+            pinned.put(key, value);
+        }
+    }
+
+    @Nullable
+    private Object getPinned(Object key) {
+        if (pinned == null) {
+            return null;
+        }
+        Object value = pinned.getIfPresent(key);
+        if (value != null) {
+            metrics.recordPinnedHit();
+        }
+        return value;
+    }
+
+    /**
+     * Run an L2 call through the circuit breaker, if there is one; {@code fallback} stands in
+     * for the call while Redis is unavailable.
+     */
+    private <T> T callL2(Supplier<T> call, Supplier<T> fallback) {
+        RedisCircuitBreaker breaker = support.getCircuitBreaker();
+        if (breaker == null || l2RedisCache instanceof NoOpCache) {
+            return call.get();
+        }
+        return breaker.execute(call, fallback);
+    }
+
+    private boolean isL2Unavailable() {
+        RedisCircuitBreaker breaker = support.getCircuitBreaker();
+        return breaker != null && breaker.isOpen();
+    }
+
+    /**
+     * Hold back an L2 write that could not be made, to be replayed once Redis is back.
+     */
+    private void deferL2(String id, Runnable write) {
+        RedisWriteBuffer writeBuffer = support.getWriteBuffer();
+        if (writeBuffer != null) {
+            writeBuffer.defer(id, write);
+        }
+    }
+
+    @Nullable
+    private ValueWrapper pollL2(Object key) {
+        long deadline = System.nanoTime() + support.getLeaseWait().toNanos();
+        while (System.nanoTime() < deadline) {
+            try {
+                Thread.sleep(LEASE_POLL_INTERVAL_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            }
+            if (isL2Unavailable()) {
+                return null;
+            }
+            ValueWrapper l2 = callL2(() -> l2RedisCache.get(key), () -> null);
+            if (l2 != null) {
+                return l2;
+            }
+        }
+        return null;
+    }
+
+    private Object awaitLeader(Object key, Callable<?> valueLoader, CompletableFuture<Object> leader) {
+        try {
+            return leader.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ValueRetrievalException(key, valueLoader, e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new ValueRetrievalException(key, valueLoader, e.getCause());
+        }
     }
 
     @Override
     public void put(Object key, @Nullable Object value) {
+        putStored(storageKey(key), value);
+    }
+
+    private void putStored(Object key, @Nullable Object value) {
+        if (value == null) {
+            // L2 is configured with disableCachingNullValues(); keep both levels consistent
+            return;
+        }
         l1CaffeineCache.put(key, value);
-        l2RedisCache.put(key, value);
+        if (pinned != null) {
+            // Keep a pinned copy current; only lookups pin new keys
+            pinned.asMap().replace(key, value);
+        }
+        if (writeBehind != null) {
+            writeBehind.enqueue(cacheName, key, value, this::writeL2);
+            return;
+        }
+        writeL2(key, value);
+    }
+
+    private boolean writeL2(Object key, Object value) {
+        boolean written = callL2(() -> {
+            long start = System.nanoTime();
+            l2RedisCache.put(key, value);
+            metrics.recordL2Put(System.nanoTime() - start);
+            return true;
+        }, () -> false);
+        if (written) {
+            registerL2Key(key);
+        }
+        return written;
+    }
+
+    private void registerL2Key(Object key) {
+        CacheKeyIndex keyIndex = support.getKeyIndex();
+        if (keyIndex == null || support.getNamespaceResolver(cacheName) != null || l2RedisCache instanceof NoOpCache) {
+            return;
+        }
+        try {
+            // Mirrors the default RedisCache key layout: "<cacheName>::<key>"
+            callL2(() -> {
+                keyIndex.register(cacheName + "::" + key);
+                return null;
+            }, () -> null);
+        } catch (RuntimeException e) {
+            // An unindexed key is still removed by the SCAN fallback or its TTL
+            logger.warn("Failed to index cache key {}::{}: {}", cacheName, key, e.getMessage());
+        }
     }
 
     @Override
     @Nullable
     public ValueWrapper putIfAbsent(Object key, @Nullable Object value) {
-        ValueWrapper existing = get(key);
+        key = storageKey(key);
+        ValueWrapper existing = getStored(key);
         if (existing == null) {
-            put(key, value);
+            putStored(key, value);
             return null;
         }
         return existing;
@@ -110,15 +652,202 @@ public class TwoLevelCache implements Cache {
 
     @Override
     public void evict(Object key) {
-        l1CaffeineCache.evict(key);
-        l2RedisCache.evict(key);
+        Object storedKey = storageKey(key);
+        l1CaffeineCache.evict(storedKey);
+        unpin(storedKey);
+        if (writeBehind != null) {
+            writeBehind.cancel(cacheName, storedKey, () -> evictL2(storedKey));
+        }
+        evictL2(storedKey);
+        metrics.recordEviction();
+        CacheInvalidationBus invalidationBus = support.getInvalidationBus();
+        if (invalidationBus != null) {
+            invalidationBus.publishEvict(cacheName, storedKey);
+        }
+    }
+
+    private void evictL2(Object storedKey) {
+        callL2(() -> {
+            l2RedisCache.evict(storedKey);
+            return null;
+        }, () -> {
+            deferL2("evict:" + cacheName + "::" + storedKey, () -> l2RedisCache.evict(storedKey));
+            return null;
+        });
     }
 
     @Override
     public void clear() {
         l1CaffeineCache.clear();
-        l2RedisCache.clear();
+        unpinAll();
+        if (writeBehind != null) {
+            writeBehind.cancelAll(cacheName, this::evictL2);
+        }
+        if (!bumpOwnGeneration()) {
+            callL2(() -> {
+                l2RedisCache.clear();
+                return null;
+            }, () -> {
+                deferL2("clear:" + cacheName, () -> {
+                    if (!bumpOwnGeneration()) {
+                        l2RedisCache.clear();
+                    }
+                });
+                return null;
+            });
+        }
+        CacheInvalidationBus invalidationBus = support.getInvalidationBus();
+        if (invalidationBus != null) {
+            invalidationBus.publishClear(cacheName);
+        }
     }
-}
 
+    private boolean bumpOwnGeneration() {
+        CacheGenerations generations = support.getGenerations();
+        if (support.getNamespaceResolver(cacheName) == null || generations == null) {
+            return false;
+        }
+        try {
+            generations.bump(cacheName);
+            return true;
+        } catch (RuntimeException e) {
+            logger.warn("Failed to bump generation of cache {}, clearing L2 instead: {}", cacheName, e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * The key as stored in L1 and L2: unchanged, or suffixed with its generation token if
+     * this cache is versioned.
+     */
+    private Object storageKey(Object key) {
+        CacheNamespaceResolver resolver = support.getNamespaceResolver(cacheName);
+        CacheGenerations generations = support.getGenerations();
+        if (resolver == null || generations == null) {
+            return key;
+        }
+        List<String> keyNamespaces = resolver.namespacesOf(key);
+        List<String> namespaces = new ArrayList<>(keyNamespaces.size() + 1);
+        namespaces.add(cacheName);
+        namespaces.addAll(keyNamespaces);
+        return key + "@v" + generations.token(namespaces);
+    }
+
+    public CacheMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Drop {@code key} from this node's L1 only; applied for invalidations from other nodes.
+     */
+    public void evictLocal(Object key) {
+        l1CaffeineCache.evict(key);
+        unpin(key);
+    }
+
+    /**
+     * Drop this node's whole L1 for the cache; applied for invalidations from other nodes.
+     */
+    public void clearLocal() {
+        l1CaffeineCache.clear();
+        unpinAll();
+    }
+
+    private void unpin(Object key) {
+        if (pinned != null) {
+            pinned.invalidate(key);
+        }
+    }
+
+    private void unpinAll() {
+        if (pinned != null) {
+            pinned.invalidateAll();
+        }
+    }
+
+    /**
+     * Up to {@code limit} entries of this node's L1, hottest first when L1 is size-bounded,
+     * with the time each was written to L1.
+     */
+    public List<L1Snapshot.Entry> hottestLocal(int limit) {
+        List<L1Snapshot.Entry> entries = new ArrayList<>();
+        com.github.benmanes.caffeine.cache.Cache<Object, Object> nativeL1 = nativeL1();
+        if (nativeL1 == null || limit <= 0) {
+            return entries;
+        }
+        Map<Object, Object> hottest = nativeL1.policy().eviction()
+                .map(eviction -> eviction.hottest(limit))
+                .orElse(nativeL1.asMap());
+        long now = System.currentTimeMillis();
+        for (Map.Entry<Object, Object> entry : hottest.entrySet()) {
+            if (entries.size() >= limit) {
+                break;
+            }
+            long age = nativeL1.policy().expireAfterWrite()
+                    .flatMap(expiration -> expiration.ageOf(entry.getKey()))
+                    .map(Duration::toMillis)
+                    .orElse(0L);
+            entries.add(new L1Snapshot.Entry(entry.getKey(), entry.getValue(), now - age));
+        }
+        return entries;
+    }
+
+    /**
+     * Put a snapshotted entry back into this node's L1 only, unless it has outlived the L1 TTL
+     * or, in a versioned cache, its generation token is no longer current.
+     *
+     * @return whether the entry was restored
+     */
+    public boolean restoreLocal(L1Snapshot.Entry entry) {
+        com.github.benmanes.caffeine.cache.Cache<Object, Object> nativeL1 = nativeL1();
+        if (nativeL1 == null || entry.value() == null) {
+            return false;
+        }
+        long age = System.currentTimeMillis() - entry.writtenAtMillis();
+        boolean expired = nativeL1.policy().expireAfterWrite()
+                .map(expiration -> age >= expiration.getExpiresAfter().toMillis())
+                .orElse(false);
+        if (expired || !isCurrentVersion(entry.key())) {
+            return false;
+        }
+        l1CaffeineCache.put(entry.key(), entry.value());
+        return true;
+    }
 
+    private boolean isCurrentVersion(Object storedKey) {
+        if (support.getNamespaceResolver(cacheName) == null || support.getGenerations() == null) {
+            return true;
+        }
+        // Stored keys are "<key>@v<token>"; resolvers only look at the key's string form
+        String stored = storedKey.toString();
+        int version = stored.lastIndexOf("@v");
+        return version > 0 && stored.equals(storageKey(stored.substring(0, version)));
+    }
+
+    @Nullable
+    @SuppressWarnings("unchecked")
+    private com.github.benmanes.caffeine.cache.Cache<Object, Object> nativeL1() {
+        return l1CaffeineCache.getNativeCache() instanceof com.github.benmanes.caffeine.cache.Cache<?, ?> nativeL1
+                ? (com.github.benmanes.caffeine.cache.Cache<Object, Object>) nativeL1
+                : null;
+    }
+
+    /**
+     * The keys currently hot in this cache, hottest first, with their estimated lookups per
+     * second on this node and whether they are pinned here.
+     */
+    public List<Map<String, Object>> getHotKeys() {
+        List<Map<String, Object>> hotKeys = new ArrayList<>();
+        if (hotKeyDetector == null) {
+            return hotKeys;
+        }
+        hotKeyDetector.hotKeys(cacheName).forEach((key, rate) -> {
+            Map<String, Object> hotKey = new LinkedHashMap<>();
+            hotKey.put("key", key);
+            hotKey.put("lookupsPerSecond", rate);
+            hotKey.put("pinned", pinned.getIfPresent(key) != null);
+            hotKeys.add(hotKey);
+        });
+        return hotKeys;
+    }
+}
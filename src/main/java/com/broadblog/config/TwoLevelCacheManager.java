@@ -1,48 +1,276 @@
 package com.broadblog.config;
 
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.cache.Cache;
 import org.springframework.cache.CacheManager;
 import org.springframework.cache.caffeine.CaffeineCacheManager;
 import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.cache.support.NoOpCache;
+
+import com.broadblog.cache.CacheGenerations;
+import com.broadblog.cache.CacheInvalidationBus;
+import com.broadblog.cache.CacheInvalidationEvent;
+import com.broadblog.cache.L1Snapshot;
+import com.broadblog.cache.RedisCircuitBreaker;
+import com.broadblog.cache.RedisWriteBuffer;
+import com.broadblog.cache.SizeEstimatingWeigher;
+import com.github.benmanes.caffeine.cache.CacheLoader;
+import com.github.benmanes.caffeine.cache.Caffeine;
 
 /**
  * A CacheManager that wraps two managers: L1 (Caffeine) and L2 (Redis).
- * It returns a {@link TwoLevelCache} that delegates to the two levels.
+ * It returns a {@link TwoLevelCache} that delegates to the two levels. With per-cache
+ * {@link CachePolicy policies}, each cache gets its own L1 bounds, TTL and refresh interval,
+ * or no L1 or L2 at all.
+ * When an invalidation bus is given, evictions received from other nodes are applied
+ * to the local L1 of the matching cache.
+ * <p>
+ * Versioned caches are invalidated through {@link #bumpGeneration(String)}, which scopes an
+ * invalidation to one namespace (an author's pages, the feed) instead of a whole cache.
  */
 public class TwoLevelCacheManager implements CacheManager {
 
+    private static final Logger logger = LoggerFactory.getLogger(TwoLevelCacheManager.class);
+
     private final CaffeineCacheManager l1CaffeineManager;
     private final CacheManager l2RedisManager;
-    private final Map<String, Cache> cacheByName = new LinkedHashMap<>();
+    private final TwoLevelCacheSupport support;
+    // Concurrent so that all callers of a name share one cache (and its in-flight loads)
+    private final Map<String, Cache> cacheByName = new ConcurrentHashMap<>();
 
     public TwoLevelCacheManager(CaffeineCacheManager l1CaffeineManager, CacheManager l2RedisManager) {
+        this(l1CaffeineManager, l2RedisManager, new TwoLevelCacheSupport());
+    }
+
+    public TwoLevelCacheManager(CaffeineCacheManager l1CaffeineManager, CacheManager l2RedisManager,
+                                TwoLevelCacheSupport support) {
         this.l1CaffeineManager = l1CaffeineManager;
         this.l2RedisManager = l2RedisManager;
+        this.support = support;
+        CacheInvalidationBus invalidationBus = support.getInvalidationBus();
+        if (invalidationBus != null) {
+            invalidationBus.addListener(this::applyRemoteInvalidation);
+        }
     }
 
     @Override
     public Cache getCache(String name) {
         return cacheByName.computeIfAbsent(name, n -> {
-            Cache l1 = l1CaffeineManager.getCache(n);
-            Cache l2 = l2RedisManager.getCache(n);
+            Function<String, CachePolicy> policies = support.getPolicies();
+            CachePolicy policy = policies != null ? policies.apply(n) : null;
+            Cache l2 = policy != null && policy.getMode() == CachePolicy.Mode.L1_ONLY
+                    ? new NoOpCache(n)
+                    : l2RedisManager.getCache(n);
+            Cache l1;
+            if (policy == null) {
+                l1 = l1CaffeineManager.getCache(n);
+            } else if (policy.getMode() == CachePolicy.Mode.L2_ONLY) {
+                l1 = new NoOpCache(n);
+            } else {
+                l1CaffeineManager.registerCustomCache(n, buildL1(policy, l2));
+                l1 = l1CaffeineManager.getCache(n);
+            }
             if (l1 == null || l2 == null) {
                 // Fallback to a simple local cache if anything missing
                 ConcurrentMapCacheManager fallback = new ConcurrentMapCacheManager(n);
                 return fallback.getCache(n);
             }
-            return new TwoLevelCache(n, l1, l2);
+            return new TwoLevelCache(n, l1, l2, support);
+        });
+    }
+
+    private com.github.benmanes.caffeine.cache.Cache<Object, Object> buildL1(CachePolicy policy, Cache l2) {
+        Caffeine<Object, Object> builder = Caffeine.newBuilder()
+                .expireAfterWrite(policy.getL1Ttl())
+                .recordStats();
+        if (policy.getMaxWeight() != null) {
+            builder.maximumWeight(policy.getMaxWeight().toBytes()).weigher(new SizeEstimatingWeigher());
+        } else {
+            builder.maximumSize(policy.getMaxEntries());
+        }
+        Duration refresh = policy.getRefreshInterval();
+        // A soft TTL is measured on the L1 write age, which re-reading L2 would keep resetting
+        if (refresh == null || policy.getSoftTtl() != null || policy.getMode() != CachePolicy.Mode.BOTH
+                || refresh.compareTo(policy.getL1Ttl()) >= 0) {
+            return builder.build();
+        }
+        return builder.refreshAfterWrite(refresh).build(new CacheLoader<>() {
+            @Override
+            public Object load(Object key) {
+                return null; // misses fall through to L2 in TwoLevelCache
+            }
+
+            @Override
+            public Object reload(Object key, Object oldValue) {
+                RedisCircuitBreaker breaker = support.getCircuitBreaker();
+                if (breaker != null && breaker.isOpen()) {
+                    return oldValue;
+                }
+                // A null result drops the entry: it is gone from L2 as well
+                Cache.ValueWrapper current = l2.get(key);
+                return current != null ? current.get() : null;
+            }
         });
     }
 
+    private void applyRemoteInvalidation(CacheInvalidationEvent event) {
+        // Caches never used on this node have nothing in L1 to drop
+        if (!(cacheByName.get(event.getCacheName()) instanceof TwoLevelCache cache)) {
+            return;
+        }
+        if (event.getType() == CacheInvalidationEvent.Type.CLEAR) {
+            cache.clearLocal();
+        } else if (event.getType() == CacheInvalidationEvent.Type.EVICT) {
+            cache.evictLocal(event.getKey());
+        }
+    }
+
+    /**
+     * Invalidate every entry that depends on {@code namespace}, on every node. Namespaces are
+     * named {@code <cache>[:<scope>...]}; without generations the whole cache is cleared.
+     * A failed bump is logged rather than thrown: the write that triggered it has already
+     * happened, and the stale entries still expire with their TTL. If Redis is unavailable,
+     * the bump is deferred to the write buffer and this node's L1 of the cache is dropped, so
+     * the node at least reads its own writes.
+     */
+    public void bumpGeneration(String namespace) {
+        CacheGenerations generations = support.getGenerations();
+        int scope = namespace.indexOf(':');
+        String cacheName = scope < 0 ? namespace : namespace.substring(0, scope);
+        if (generations == null) {
+            getCache(cacheName).clear();
+            return;
+        }
+        try {
+            generations.bump(namespace);
+        } catch (RuntimeException e) {
+            RedisWriteBuffer writeBuffer = support.getWriteBuffer();
+            if (writeBuffer == null || !RedisCircuitBreaker.isUnavailable(e)) {
+                logger.warn("Failed to bump cache generation {}: {}", namespace, e.getMessage());
+                return;
+            }
+            writeBuffer.defer("bump:" + namespace, () -> generations.bump(namespace));
+            if (cacheByName.get(cacheName) instanceof TwoLevelCache cache) {
+                cache.clearLocal();
+            }
+        }
+    }
+
+    /**
+     * Bulk lookup through {@link TwoLevelCache#getAll(Collection, Function)}; for the fallback
+     * local cache, misses are still loaded with one call of {@code bulkLoader}.
+     */
+    @SuppressWarnings("unchecked")
+    public <K, V> Map<K, V> getAll(String cacheName, Collection<K> keys, Function<List<K>, Map<K, V>> bulkLoader) {
+        Cache cache = getCache(cacheName);
+        if (cache instanceof TwoLevelCache twoLevelCache) {
+            return twoLevelCache.getAll(keys, bulkLoader);
+        }
+        Map<K, V> found = new LinkedHashMap<>();
+        List<K> missing = new ArrayList<>();
+        for (K key : keys) {
+            Cache.ValueWrapper cached = cache.get(key);
+            if (cached != null && cached.get() != null) {
+                found.put(key, (V) cached.get());
+            } else {
+                missing.add(key);
+            }
+        }
+        if (!missing.isEmpty()) {
+            bulkLoader.apply(missing).forEach((key, value) -> {
+                cache.put(key, value);
+                found.put(key, value);
+            });
+        }
+        Map<K, V> ordered = new LinkedHashMap<>();
+        for (K key : keys) {
+            if (found.containsKey(key)) {
+                ordered.put(key, found.get(key));
+            }
+        }
+        return ordered;
+    }
+
+    /**
+     * A snapshot of the metrics of every two-level cache created so far, by cache name.
+     */
+    public Map<String, Map<String, Object>> getMetrics() {
+        Map<String, Map<String, Object>> metrics = new TreeMap<>();
+        cacheByName.forEach((name, cache) -> {
+            if (cache instanceof TwoLevelCache twoLevelCache) {
+                metrics.put(name, twoLevelCache.getMetrics().snapshot());
+            }
+        });
+        return metrics;
+    }
+
+    /**
+     * The current hot keys of every two-level cache that has any, by cache name.
+     */
+    public Map<String, List<Map<String, Object>>> getHotKeys() {
+        Map<String, List<Map<String, Object>>> hotKeys = new TreeMap<>();
+        cacheByName.forEach((name, cache) -> {
+            if (cache instanceof TwoLevelCache twoLevelCache) {
+                List<Map<String, Object>> keys = twoLevelCache.getHotKeys();
+                if (!keys.isEmpty()) {
+                    hotKeys.put(name, keys);
+                }
+            }
+        });
+        return hotKeys;
+    }
+
+    /**
+     * Up to {@code limitPerCache} of the hottest L1 entries of every two-level cache, by
+     * cache name.
+     */
+    public Map<String, List<L1Snapshot.Entry>> snapshotL1(int limitPerCache) {
+        Map<String, List<L1Snapshot.Entry>> snapshot = new TreeMap<>();
+        cacheByName.forEach((name, cache) -> {
+            if (cache instanceof TwoLevelCache twoLevelCache) {
+                List<L1Snapshot.Entry> entries = twoLevelCache.hottestLocal(limitPerCache);
+                if (!entries.isEmpty()) {
+                    snapshot.put(name, entries);
+                }
+            }
+        });
+        return snapshot;
+    }
+
+    /**
+     * Put snapshotted entries back into the L1 of their caches, creating the caches as needed.
+     *
+     * @return the number of entries restored; stale ones are skipped
+     */
+    public int restoreL1(Map<String, List<L1Snapshot.Entry>> snapshot) {
+        int restored = 0;
+        for (Map.Entry<String, List<L1Snapshot.Entry>> entries : snapshot.entrySet()) {
+            if (!(getCache(entries.getKey()) instanceof TwoLevelCache cache)) {
+                continue;
+            }
+            for (L1Snapshot.Entry entry : entries.getValue()) {
+                if (cache.restoreLocal(entry)) {
+                    restored++;
+                }
+            }
+        }
+        return restored;
+    }
+
     @Override
     public Collection<String> getCacheNames() {
         return Collections.unmodifiableSet(cacheByName.keySet());
     }
 }
-
-
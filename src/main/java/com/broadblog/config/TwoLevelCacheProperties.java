@@ -0,0 +1,722 @@
+package com.broadblog.config;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
+
+import com.broadblog.cache.CacheValueCodec;
+
+/**
+ * Tunables for the two-level (Caffeine + Redis) cache, bound from {@code cache.two-level.*}.
+ * The top-level sizes and TTLs are defaults; {@code caches.<name>.*} overrides them per cache.
+ */
+@Configuration
+@ConfigurationProperties(prefix = "cache.two-level")
+public class TwoLevelCacheProperties {
+
+    // Without cross-node invalidation, L1 may only lag the other nodes by this much
+    private static final Duration UNBROADCAST_L1_TTL = Duration.ofMinutes(2);
+
+    /**
+     * How long L1 keeps an entry. Peers are told about evictions over the invalidation bus,
+     * so this only bounds staleness when a broadcast is lost.
+     */
+    private Duration l1Ttl = Duration.ofMinutes(10);
+
+    private Duration l2Ttl = Duration.ofHours(1);
+
+    private long l1MaxEntries = 5000;
+
+    private final Map<String, CachePolicy> caches = new HashMap<>();
+
+    private final SingleFlight singleFlight = new SingleFlight();
+    private final Invalidation invalidation = new Invalidation();
+    private final KeyIndex keyIndex = new KeyIndex();
+    private final Generations generations = new Generations();
+    private final Codec codec = new Codec();
+    private final RefreshAhead refreshAhead = new RefreshAhead();
+    private final WriteBehind writeBehind = new WriteBehind();
+    private final HotKeys hotKeys = new HotKeys();
+    private final IdFilter idFilter = new IdFilter();
+    private final CircuitBreaker circuitBreaker = new CircuitBreaker();
+    private final Snapshot snapshot = new Snapshot();
+    private final WarmUp warmUp = new WarmUp();
+
+    public Duration getL1Ttl() {
+        return l1Ttl;
+    }
+
+    public void setL1Ttl(Duration l1Ttl) {
+        this.l1Ttl = l1Ttl;
+    }
+
+    public Duration getL2Ttl() {
+        return l2Ttl;
+    }
+
+    public void setL2Ttl(Duration l2Ttl) {
+        this.l2Ttl = l2Ttl;
+    }
+
+    public long getL1MaxEntries() {
+        return l1MaxEntries;
+    }
+
+    public void setL1MaxEntries(long l1MaxEntries) {
+        this.l1MaxEntries = l1MaxEntries;
+    }
+
+    public Map<String, CachePolicy> getCaches() {
+        return caches;
+    }
+
+    /**
+     * The effective policy of {@code cacheName}, with defaults filled in.
+     */
+    public CachePolicy policyFor(String cacheName) {
+        CachePolicy defaults = new CachePolicy();
+        defaults.setMode(CachePolicy.Mode.BOTH);
+        defaults.setMaxEntries(l1MaxEntries);
+        defaults.setL1Ttl(l1Ttl);
+        defaults.setL2Ttl(l2Ttl);
+        defaults.setWriteBehind(false);
+        CachePolicy policy = caches.getOrDefault(cacheName, new CachePolicy()).withDefaults(defaults);
+        if (!invalidation.isEnabled() && policy.getL1Ttl().compareTo(UNBROADCAST_L1_TTL) > 0) {
+            policy.setL1Ttl(UNBROADCAST_L1_TTL);
+        }
+        return policy;
+    }
+
+    /**
+     * The longest L2 TTL of any cache, which bounds how long an L2 key can outlive its write.
+     */
+    public Duration getMaxL2Ttl() {
+        Duration max = l2Ttl;
+        for (CachePolicy policy : caches.values()) {
+            if (policy.getL2Ttl() != null && policy.getL2Ttl().compareTo(max) > 0) {
+                max = policy.getL2Ttl();
+            }
+        }
+        return max;
+    }
+
+    public SingleFlight getSingleFlight() {
+        return singleFlight;
+    }
+
+    public Invalidation getInvalidation() {
+        return invalidation;
+    }
+
+    public KeyIndex getKeyIndex() {
+        return keyIndex;
+    }
+
+    public Generations getGenerations() {
+        return generations;
+    }
+
+    public Codec getCodec() {
+        return codec;
+    }
+
+    public RefreshAhead getRefreshAhead() {
+        return refreshAhead;
+    }
+
+    public WriteBehind getWriteBehind() {
+        return writeBehind;
+    }
+
+    public HotKeys getHotKeys() {
+        return hotKeys;
+    }
+
+    public IdFilter getIdFilter() {
+        return idFilter;
+    }
+
+    public CircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+
+    public Snapshot getSnapshot() {
+        return snapshot;
+    }
+
+    public WarmUp getWarmUp() {
+        return warmUp;
+    }
+
+    /**
+     * Request coalescing for cache misses. Within one node only one loader runs per key;
+     * with {@code distributedLease} a short Redis lease extends that across nodes.
+     */
+    public static class SingleFlight {
+
+        private boolean distributedLease = false;
+        private Duration leaseTtl = Duration.ofSeconds(5);
+        private Duration leaseWait = Duration.ofSeconds(3);
+
+        public boolean isDistributedLease() {
+            return distributedLease;
+        }
+
+        public void setDistributedLease(boolean distributedLease) {
+            this.distributedLease = distributedLease;
+        }
+
+        public Duration getLeaseTtl() {
+            return leaseTtl;
+        }
+
+        public void setLeaseTtl(Duration leaseTtl) {
+            this.leaseTtl = leaseTtl;
+        }
+
+        public Duration getLeaseWait() {
+            return leaseWait;
+        }
+
+        public void setLeaseWait(Duration leaseWait) {
+            this.leaseWait = leaseWait;
+        }
+    }
+
+    /**
+     * Cross-node L1 invalidation over Redis pub/sub.
+     */
+    public static class Invalidation {
+
+        private boolean enabled = true;
+        private String channel = "cache:invalidation";
+        private Duration flushInterval = Duration.ofMillis(5);
+        private int maxBatchSize = 500;
+        private int queueCapacity = 10_000;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public String getChannel() {
+            return channel;
+        }
+
+        public void setChannel(String channel) {
+            this.channel = channel;
+        }
+
+        public Duration getFlushInterval() {
+            return flushInterval;
+        }
+
+        public void setFlushInterval(Duration flushInterval) {
+            this.flushInterval = flushInterval;
+        }
+
+        public int getMaxBatchSize() {
+            return maxBatchSize;
+        }
+
+        public void setMaxBatchSize(int maxBatchSize) {
+            this.maxBatchSize = maxBatchSize;
+        }
+
+        public int getQueueCapacity() {
+            return queueCapacity;
+        }
+
+        public void setQueueCapacity(int queueCapacity) {
+            this.queueCapacity = queueCapacity;
+        }
+    }
+
+    /**
+     * Per-group Redis sets of cache keys, used to invalidate prefixes without KEYS.
+     */
+    public static class KeyIndex {
+
+        private boolean enabled = true;
+        private int batchSize = 500;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public int getBatchSize() {
+            return batchSize;
+        }
+
+        public void setBatchSize(int batchSize) {
+            this.batchSize = batchSize;
+        }
+    }
+
+    /**
+     * Generation-versioned namespaces for the {@code posts} and {@code searchResults} caches.
+     */
+    public static class Generations {
+
+        private boolean enabled = true;
+        /**
+         * How long a node trusts its local copy of a generation when no bump was broadcast.
+         */
+        private Duration refreshInterval = Duration.ofSeconds(5);
+        /**
+         * Feed pages that an edited post invalidates; deeper pages wait for their TTL.
+         */
+        private int feedHeadPages = 3;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public Duration getRefreshInterval() {
+            return refreshInterval;
+        }
+
+        public void setRefreshInterval(Duration refreshInterval) {
+            this.refreshInterval = refreshInterval;
+        }
+
+        public int getFeedHeadPages() {
+            return feedHeadPages;
+        }
+
+        public void setFeedHeadPages(int feedHeadPages) {
+            this.feedHeadPages = feedHeadPages;
+        }
+    }
+
+    /**
+     * Encoding of L2 values. Every format is readable regardless of this setting, but nodes
+     * without {@link CacheValueCodec} only read headerless JSON: while rolling out to them, write
+     * {@code LEGACY_JSON}, and switch to {@code SMILE} once every node runs this version.
+     */
+    public static class Codec {
+
+        private CacheValueCodec.Format format = CacheValueCodec.Format.SMILE;
+        private boolean compress = true;
+        private DataSize compressionThreshold = DataSize.ofKilobytes(1);
+
+        public CacheValueCodec.Format getFormat() {
+            return format;
+        }
+
+        public void setFormat(CacheValueCodec.Format format) {
+            this.format = format;
+        }
+
+        public boolean isCompress() {
+            return compress;
+        }
+
+        public void setCompress(boolean compress) {
+            this.compress = compress;
+        }
+
+        public DataSize getCompressionThreshold() {
+            return compressionThreshold;
+        }
+
+        public void setCompressionThreshold(DataSize compressionThreshold) {
+            this.compressionThreshold = compressionThreshold;
+        }
+    }
+
+    /**
+     * The shared pool that reloads entries past their soft TTL ({@code caches.<name>.soft-ttl}).
+     * Reloads that do not fit the queue are skipped; the entry is offered again on its next hit.
+     */
+    public static class RefreshAhead {
+
+        private int threads = 2;
+        private int queueCapacity = 256;
+
+        public int getThreads() {
+            return threads;
+        }
+
+        public void setThreads(int threads) {
+            this.threads = threads;
+        }
+
+        public int getQueueCapacity() {
+            return queueCapacity;
+        }
+
+        public void setQueueCapacity(int queueCapacity) {
+            this.queueCapacity = queueCapacity;
+        }
+    }
+
+    /**
+     * The shared queue behind caches with {@code caches.<name>.write-behind=true}: their L2
+     * writes are flushed every {@code flushInterval} in pipelined batches of up to
+     * {@code maxBatchSize}. Writes beyond {@code queueCapacity} pending keys are dropped.
+     */
+    public static class WriteBehind {
+
+        private Duration flushInterval = Duration.ofMillis(10);
+        private int maxBatchSize = 500;
+        private int queueCapacity = 10_000;
+
+        public Duration getFlushInterval() {
+            return flushInterval;
+        }
+
+        public void setFlushInterval(Duration flushInterval) {
+            this.flushInterval = flushInterval;
+        }
+
+        public int getMaxBatchSize() {
+            return maxBatchSize;
+        }
+
+        public void setMaxBatchSize(int maxBatchSize) {
+            this.maxBatchSize = maxBatchSize;
+        }
+
+        public int getQueueCapacity() {
+            return queueCapacity;
+        }
+
+        public void setQueueCapacity(int queueCapacity) {
+            this.queueCapacity = queueCapacity;
+        }
+    }
+
+    /**
+     * Hot-key detection: one lookup in {@code sampleRate} is counted, and keys looked up at
+     * least {@code threshold} times per second on a node are pinned there, outside L1, for
+     * {@code pinnedTtl}. Invalidations still remove pinned entries.
+     */
+    public static class HotKeys {
+
+        private boolean enabled = true;
+        private int sampleRate = 8;
+        private double threshold = 500;
+        private Duration window = Duration.ofSeconds(1);
+        private int sketchWidth = 4096;
+        private int maxHotKeys = 64;
+        private long pinnedMaxEntries = 256;
+        private Duration pinnedTtl = Duration.ofMinutes(30);
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public int getSampleRate() {
+            return sampleRate;
+        }
+
+        public void setSampleRate(int sampleRate) {
+            this.sampleRate = sampleRate;
+        }
+
+        public double getThreshold() {
+            return threshold;
+        }
+
+        public void setThreshold(double threshold) {
+            this.threshold = threshold;
+        }
+
+        public Duration getWindow() {
+            return window;
+        }
+
+        public void setWindow(Duration window) {
+            this.window = window;
+        }
+
+        public int getSketchWidth() {
+            return sketchWidth;
+        }
+
+        public void setSketchWidth(int sketchWidth) {
+            this.sketchWidth = sketchWidth;
+        }
+
+        public int getMaxHotKeys() {
+            return maxHotKeys;
+        }
+
+        public void setMaxHotKeys(int maxHotKeys) {
+            this.maxHotKeys = maxHotKeys;
+        }
+
+        public long getPinnedMaxEntries() {
+            return pinnedMaxEntries;
+        }
+
+        public void setPinnedMaxEntries(long pinnedMaxEntries) {
+            this.pinnedMaxEntries = pinnedMaxEntries;
+        }
+
+        public Duration getPinnedTtl() {
+            return pinnedTtl;
+        }
+
+        public void setPinnedTtl(Duration pinnedTtl) {
+            this.pinnedTtl = pinnedTtl;
+        }
+    }
+
+    /**
+     * Bloom filters of existing post, user and tag IDs, which answer lookups of IDs that were
+     * never created without a database query. Sized per entity by expected row count. Every
+     * {@code syncInterval} each node pulls the shared bitmap; with {@code checkShared} off, a
+     * local rejection is final and IDs created on other nodes are found after the next sync.
+     */
+    public static class IdFilter {
+
+        private boolean enabled = true;
+        private double fpp = 0.01;
+        private boolean checkShared = true;
+        private Duration syncInterval = Duration.ofMinutes(1);
+        private final Map<String, Long> expectedInsertions = new HashMap<>(Map.of(
+                "posts", 1_000_000L,
+                "users", 1_000_000L,
+                "tags", 100_000L));
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public double getFpp() {
+            return fpp;
+        }
+
+        public void setFpp(double fpp) {
+            this.fpp = fpp;
+        }
+
+        public Map<String, Long> getExpectedInsertions() {
+            return expectedInsertions;
+        }
+
+        public boolean isCheckShared() {
+            return checkShared;
+        }
+
+        public void setCheckShared(boolean checkShared) {
+            this.checkShared = checkShared;
+        }
+
+        public Duration getSyncInterval() {
+            return syncInterval;
+        }
+
+        public void setSyncInterval(Duration syncInterval) {
+            this.syncInterval = syncInterval;
+        }
+    }
+
+    /**
+     * Degradation while Redis is down. After {@code failureThreshold} consecutive connection
+     * failures or timeouts, caches skip L2 and serve from L1 and the database, and counter and
+     * ranking writes are held in a buffer of up to {@code bufferCapacity} distinct entries
+     * until a probe every {@code probeInterval} finds Redis back. Disabled, the breaker never
+     * opens and every call waits out the Redis timeout.
+     */
+    public static class CircuitBreaker {
+
+        private boolean enabled = true;
+        private int failureThreshold = 3;
+        private Duration probeInterval = Duration.ofSeconds(1);
+        private int bufferCapacity = 10_000;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public int getFailureThreshold() {
+            return failureThreshold;
+        }
+
+        public void setFailureThreshold(int failureThreshold) {
+            this.failureThreshold = failureThreshold;
+        }
+
+        public Duration getProbeInterval() {
+            return probeInterval;
+        }
+
+        public void setProbeInterval(Duration probeInterval) {
+            this.probeInterval = probeInterval;
+        }
+
+        public int getBufferCapacity() {
+            return bufferCapacity;
+        }
+
+        public void setBufferCapacity(int bufferCapacity) {
+            this.bufferCapacity = bufferCapacity;
+        }
+    }
+
+    /**
+     * L1 snapshot across restarts: on shutdown the hottest {@code maxEntriesPerCache} entries
+     * of each cache are written to {@code path}, and on startup a snapshot younger than
+     * {@code maxAge} is loaded back into L1.
+     */
+    public static class Snapshot {
+
+        private boolean enabled = true;
+        private String path = "cache/l1.snapshot";
+        private int maxEntriesPerCache = 1000;
+        private Duration maxAge = Duration.ofMinutes(5);
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public String getPath() {
+            return path;
+        }
+
+        public void setPath(String path) {
+            this.path = path;
+        }
+
+        public int getMaxEntriesPerCache() {
+            return maxEntriesPerCache;
+        }
+
+        public void setMaxEntriesPerCache(int maxEntriesPerCache) {
+            this.maxEntriesPerCache = maxEntriesPerCache;
+        }
+
+        public Duration getMaxAge() {
+            return maxAge;
+        }
+
+        public void setMaxAge(Duration maxAge) {
+            this.maxAge = maxAge;
+        }
+    }
+
+    /**
+     * Access-driven warm-up. One cache lookup in {@code sampleRate} is counted in Redis per
+     * {@code window}, flushed every {@code flushInterval}. On startup the {@code topKeys} most
+     * read keys are warmed by {@code threads} workers within {@code timeBudget}; the node
+     * reports ready once {@code readyShare} of them are warm, or when the budget runs out.
+     */
+    public static class WarmUp {
+
+        private boolean enabled = true;
+        private int sampleRate = 16;
+        private Duration window = Duration.ofHours(1);
+        private Duration flushInterval = Duration.ofSeconds(10);
+        private int maxPendingKeys = 10_000;
+        private int topKeys = 500;
+        private int threads = 4;
+        private Duration timeBudget = Duration.ofSeconds(30);
+        private double readyShare = 0.8;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public int getSampleRate() {
+            return sampleRate;
+        }
+
+        public void setSampleRate(int sampleRate) {
+            this.sampleRate = sampleRate;
+        }
+
+        public Duration getWindow() {
+            return window;
+        }
+
+        public void setWindow(Duration window) {
+            this.window = window;
+        }
+
+        public Duration getFlushInterval() {
+            return flushInterval;
+        }
+
+        public void setFlushInterval(Duration flushInterval) {
+            this.flushInterval = flushInterval;
+        }
+
+        public int getMaxPendingKeys() {
+            return maxPendingKeys;
+        }
+
+        public void setMaxPendingKeys(int maxPendingKeys) {
+            this.maxPendingKeys = maxPendingKeys;
+        }
+
+        public int getTopKeys() {
+            return topKeys;
+        }
+
+        public void setTopKeys(int topKeys) {
+            this.topKeys = topKeys;
+        }
+
+        public int getThreads() {
+            return threads;
+        }
+
+        public void setThreads(int threads) {
+            this.threads = threads;
+        }
+
+        public Duration getTimeBudget() {
+            return timeBudget;
+        }
+
+        public void setTimeBudget(Duration timeBudget) {
+            this.timeBudget = timeBudget;
+        }
+
+        public double getReadyShare() {
+            return readyShare;
+        }
+
+        public void setReadyShare(double readyShare) {
+            this.readyShare = readyShare;
+        }
+    }
+}
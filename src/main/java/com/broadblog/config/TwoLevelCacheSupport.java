@@ -0,0 +1,234 @@
+package com.broadblog.config;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+import org.springframework.lang.Nullable;
+
+import com.broadblog.cache.CacheGenerations;
+import com.broadblog.cache.CacheInvalidationBus;
+import com.broadblog.cache.CacheKeyIndex;
+import com.broadblog.cache.CacheLoadLease;
+import com.broadblog.cache.CacheNamespaceResolver;
+import com.broadblog.cache.CacheBulkOperations;
+import com.broadblog.cache.CacheAccessRecorder;
+import com.broadblog.cache.CacheRefresher;
+import com.broadblog.cache.CacheWriteBehind;
+import com.broadblog.cache.HotKeyDetector;
+import com.broadblog.cache.RedisCircuitBreaker;
+import com.broadblog.cache.RedisWriteBuffer;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Collaborators shared by every {@link TwoLevelCache} of one {@link TwoLevelCacheManager}.
+ * All of them are optional; a default instance gives plain L1 + L2 behaviour.
+ */
+public class TwoLevelCacheSupport {
+
+    @Nullable
+    private CacheLoadLease loadLease;
+    private Duration leaseWait = Duration.ZERO;
+    @Nullable
+    private CacheInvalidationBus invalidationBus;
+    @Nullable
+    private CacheKeyIndex keyIndex;
+    @Nullable
+    private CacheGenerations generations;
+    private final Map<String, CacheNamespaceResolver> namespaceResolvers = new HashMap<>();
+    @Nullable
+    private Function<String, CachePolicy> policies;
+    @Nullable
+    private CacheRefresher refresher;
+    @Nullable
+    private MeterRegistry meterRegistry;
+    @Nullable
+    private CacheBulkOperations bulkOperations;
+    @Nullable
+    private RedisCircuitBreaker circuitBreaker;
+    @Nullable
+    private RedisWriteBuffer writeBuffer;
+    @Nullable
+    private CacheWriteBehind writeBehind;
+    @Nullable
+    private HotKeyDetector hotKeyDetector;
+    @Nullable
+    private CacheAccessRecorder accessRecorder;
+    private long pinnedMaxEntries = 256;
+    private Duration pinnedTtl = Duration.ofMinutes(30);
+
+    @Nullable
+    public CacheLoadLease getLoadLease() {
+        return loadLease;
+    }
+
+    public void setLoadLease(@Nullable CacheLoadLease loadLease) {
+        this.loadLease = loadLease;
+    }
+
+    public Duration getLeaseWait() {
+        return leaseWait;
+    }
+
+    public void setLeaseWait(Duration leaseWait) {
+        this.leaseWait = leaseWait;
+    }
+
+    @Nullable
+    public CacheInvalidationBus getInvalidationBus() {
+        return invalidationBus;
+    }
+
+    public void setInvalidationBus(@Nullable CacheInvalidationBus invalidationBus) {
+        this.invalidationBus = invalidationBus;
+    }
+
+    @Nullable
+    public CacheKeyIndex getKeyIndex() {
+        return keyIndex;
+    }
+
+    public void setKeyIndex(@Nullable CacheKeyIndex keyIndex) {
+        this.keyIndex = keyIndex;
+    }
+
+    @Nullable
+    public CacheGenerations getGenerations() {
+        return generations;
+    }
+
+    public void setGenerations(@Nullable CacheGenerations generations) {
+        this.generations = generations;
+    }
+
+    /**
+     * Version {@code cacheName} through {@link #getGenerations()}, with {@code resolver}
+     * naming the extra namespaces each key depends on.
+     */
+    public void addVersionedCache(String cacheName, CacheNamespaceResolver resolver) {
+        namespaceResolvers.put(cacheName, resolver);
+    }
+
+    /**
+     * The resolver of a versioned cache, or {@code null} if the cache is not versioned.
+     */
+    @Nullable
+    public CacheNamespaceResolver getNamespaceResolver(String cacheName) {
+        return generations != null ? namespaceResolvers.get(cacheName) : null;
+    }
+
+    /**
+     * Per-cache policies used to build each level, or {@code null} to take both levels from
+     * the underlying cache managers as configured.
+     */
+    @Nullable
+    public Function<String, CachePolicy> getPolicies() {
+        return policies;
+    }
+
+    public void setPolicies(@Nullable Function<String, CachePolicy> policies) {
+        this.policies = policies;
+    }
+
+    @Nullable
+    public CacheRefresher getRefresher() {
+        return refresher;
+    }
+
+    public void setRefresher(@Nullable CacheRefresher refresher) {
+        this.refresher = refresher;
+    }
+
+    @Nullable
+    public MeterRegistry getMeterRegistry() {
+        return meterRegistry;
+    }
+
+    public void setMeterRegistry(@Nullable MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Nullable
+    public CacheBulkOperations getBulkOperations() {
+        return bulkOperations;
+    }
+
+    public void setBulkOperations(@Nullable CacheBulkOperations bulkOperations) {
+        this.bulkOperations = bulkOperations;
+    }
+
+    /**
+     * Guards every L2 call; while it is open the caches run on L1 and their loaders alone.
+     */
+    @Nullable
+    public RedisCircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+
+    public void setCircuitBreaker(@Nullable RedisCircuitBreaker circuitBreaker) {
+        this.circuitBreaker = circuitBreaker;
+    }
+
+    /**
+     * Holds L2 evictions and clears that could not reach Redis, for replay on recovery.
+     */
+    @Nullable
+    public RedisWriteBuffer getWriteBuffer() {
+        return writeBuffer;
+    }
+
+    public void setWriteBuffer(@Nullable RedisWriteBuffer writeBuffer) {
+        this.writeBuffer = writeBuffer;
+    }
+
+    /**
+     * Queue for the L2 writes of caches whose policy enables write-behind.
+     */
+    @Nullable
+    public CacheWriteBehind getWriteBehind() {
+        return writeBehind;
+    }
+
+    public void setWriteBehind(@Nullable CacheWriteBehind writeBehind) {
+        this.writeBehind = writeBehind;
+    }
+
+    /**
+     * Spots hot keys; each cache with L2 then pins them in a region of its own, outside L1,
+     * bounded by {@link #getPinnedMaxEntries()} and expiring after {@link #getPinnedTtl()}.
+     */
+    @Nullable
+    public HotKeyDetector getHotKeyDetector() {
+        return hotKeyDetector;
+    }
+
+    public void setHotKeyDetector(@Nullable HotKeyDetector hotKeyDetector) {
+        this.hotKeyDetector = hotKeyDetector;
+    }
+
+    @Nullable
+    public CacheAccessRecorder getAccessRecorder() {
+        return accessRecorder;
+    }
+
+    public void setAccessRecorder(@Nullable CacheAccessRecorder accessRecorder) {
+        this.accessRecorder = accessRecorder;
+    }
+
+    public long getPinnedMaxEntries() {
+        return pinnedMaxEntries;
+    }
+
+    public void setPinnedMaxEntries(long pinnedMaxEntries) {
+        this.pinnedMaxEntries = pinnedMaxEntries;
+    }
+
+    public Duration getPinnedTtl() {
+        return pinnedTtl;
+    }
+
+    public void setPinnedTtl(Duration pinnedTtl) {
+        this.pinnedTtl = pinnedTtl;
+    }
+}
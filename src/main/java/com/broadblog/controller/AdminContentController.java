@@ -7,7 +7,6 @@ import java.util.Optional;
 import java.util.stream.Collectors;
 
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.domain.Page;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
@@ -23,6 +22,8 @@ import org.springframework.web.bind.annotation.RestController;
 
 import com.broadblog.dto.CommentDTO;
 import com.broadblog.dto.PostDTO;
+import com.broadblog.dto.PostPage;
+import com.broadblog.dto.PostSummary;
 import com.broadblog.dto.TagDTO;
 import com.broadblog.entity.Comment;
 import com.broadblog.entity.Post;
@@ -90,13 +91,10 @@ public class AdminContentController {
                     .body("{\"error\": \"Access denied. Admin role required.\"}");
             }
 
-            Page<Post> pagePosts = postService.getPostsByPage(page, size);
-            List<PostDTO> postDTOs = pagePosts.getContent().stream()
-                .map(postMapper::toDTO)
-                .collect(Collectors.toList());
+            PostPage pagePosts = postService.getPostsByPage(page, size);
 
             Map<String, Object> result = new HashMap<>();
-            result.put("data", postDTOs);
+            result.put("data", pagePosts.getContent());
             result.put("currentPage", page);
             result.put("pageSize", size);
             result.put("totalElements", pagePosts.getTotalElements());
@@ -308,7 +306,7 @@ public class AdminContentController {
                     .body("{\"error\": \"Access denied. Admin role required.\"}");
             }
 
-            List<Post> allPosts = postService.getAllPosts();
+            List<PostSummary> allPosts = postService.getAllPosts();
             List<Comment> allComments = commentService.getAllComments();
             List<Tag> allTags = tagService.getAllTags();
 
@@ -14,12 +14,14 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
-import com.broadblog.dto.PostDTO;
-import com.broadblog.entity.Post;
+import com.broadblog.cache.CacheRefresher;
+import com.broadblog.cache.CacheWriteBehind;
+import com.broadblog.config.TwoLevelCacheManager;
+import com.broadblog.dto.PostDetail;
 import com.broadblog.entity.Tag;
-import com.broadblog.mapper.PostMapper;
 import com.broadblog.service.CacheService;
 import com.broadblog.service.CacheWarmUpService;
+import com.broadblog.service.EntityIdFilterService;
 import com.broadblog.service.PostService;
 import com.broadblog.service.TagService;
 import com.broadblog.service.UserService;
@@ -47,9 +49,18 @@ public class CacheController {
     
     @Autowired
     private UserService userService;
-    
+
     @Autowired
-    private PostMapper postMapper;
+    private CacheRefresher cacheRefresher;
+
+    @Autowired
+    private EntityIdFilterService idFilterService;
+
+    @Autowired
+    private TwoLevelCacheManager twoLevelCacheManager;
+
+    @Autowired
+    private CacheWriteBehind cacheWriteBehind;
 
     /**
      * 获取缓存状态信息
@@ -60,7 +71,7 @@ public class CacheController {
         
         // 检查各种缓存键是否存在
         String[] cacheKeys = {
-            "hot_posts",
+            "trending:24h",
             "popular_tags_ranking", 
             "stats:total_users",
             "stats:total_admins"
@@ -77,6 +88,74 @@ public class CacheController {
         return ResponseEntity.ok(status);
     }
     
+    /**
+     * 获取二级缓存各层指标（L1/L2 命中、未命中、加载耗时、L2 往返延迟、淘汰数、条目数）
+     * 以及异步回写 L2 队列的统计（排队、合并、溢出丢弃、写入失败）
+     */
+    @GetMapping("/metrics")
+    public ResponseEntity<Map<String, Object>> getCacheMetrics() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("caches", twoLevelCacheManager.getMetrics());
+        response.put("writeBehind", cacheWriteBehind.getStats());
+        response.put("message", "cache metrics query success");
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * 获取当前节点的热点键（估算每秒访问次数、是否已固定在本地）
+     */
+    @GetMapping("/hot-keys")
+    public ResponseEntity<Map<String, Object>> getHotKeys() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("hotKeys", twoLevelCacheManager.getHotKeys());
+        response.put("message", "hot keys query success");
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * 获取缓存后台刷新统计（软过期后的异步重载）
+     */
+    @GetMapping("/refresh-stats")
+    public ResponseEntity<Map<String, Object>> getRefreshStats() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("refresh", cacheRefresher.getStats());
+        response.put("message", "cache refresh stats query success");
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * 获取 ID 布隆过滤器统计（拦截的不存在 ID 数、估算误判率等）
+     */
+    @GetMapping("/id-filters")
+    public ResponseEntity<Map<String, Object>> getIdFilterStats() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("filters", idFilterService.getStats());
+        response.put("message", "id filter stats query success");
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * 获取 Redis 熔断器状态（CLOSED/OPEN）和故障期间暂存的写入
+     */
+    @GetMapping("/redis-health")
+    public ResponseEntity<Map<String, Object>> getRedisHealth() {
+        Map<String, Object> response = new HashMap<>();
+        response.putAll(cacheService.getRedisHealth());
+        response.put("message", "redis health query success");
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * 获取缓存预热进度
+     */
+    @GetMapping("/warmup/status")
+    public ResponseEntity<Map<String, Object>> getWarmUpStatus() {
+        Map<String, Object> response = new HashMap<>();
+        response.putAll(cacheWarmUpService.getWarmUpStatus());
+        response.put("message", "warm up status query success");
+        return ResponseEntity.ok(response);
+    }
+
     /**
      * 手动预热缓存
      */
@@ -125,14 +204,10 @@ public class CacheController {
      * 获取热门文章排行
      */
     @GetMapping("/hot-posts")
-    public ResponseEntity<List<PostDTO>> getHotPosts(@RequestParam(defaultValue = "10") int top) {
+    public ResponseEntity<List<PostDetail>> getHotPosts(@RequestParam(defaultValue = "10") int top) {
         try {
-            List<Post> hotPosts = postService.getHotPosts(top);
-            List<PostDTO> hotPostDTOs = hotPosts.stream()
-                .map(postMapper::toDTO)
-                .toList();
-            
-            return ResponseEntity.ok(hotPostDTOs);
+            List<PostDetail> hotPosts = postService.getHotPosts(top);
+            return ResponseEntity.ok(hotPosts);
         } catch (Exception e) {
             return ResponseEntity.badRequest().build();
         }
@@ -162,6 +237,7 @@ public class CacheController {
             Map<String, Object> response = new HashMap<>();
             response.put("postId", postId);
             response.put("views", views);
+            response.put("uniqueVisitors", postService.getPostUniqueVisitors(postId));
             
             return ResponseEntity.ok(response);
         } catch (Exception e) {
@@ -22,13 +22,21 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import jakarta.servlet.http.HttpServletRequest;
+
 import com.broadblog.dto.PostDTO;
+import com.broadblog.dto.PostDetail;
+import com.broadblog.dto.PostPage;
+import com.broadblog.dto.PostSummary;
 import com.broadblog.entity.Post;
 import com.broadblog.mapper.PostMapper;
 import com.broadblog.search.PostDocument;
 import com.broadblog.search.PostSearchService;
 import com.broadblog.security.CustomUserDetails;
 import com.broadblog.service.PostService;
+import com.broadblog.service.PostViewCounter;
+import com.broadblog.service.RelatedPostIndex;
+import com.broadblog.service.TrendingService;
 import com.broadblog.service.UserService;
 
 
@@ -59,6 +67,15 @@ public class PostController {
         throw new RuntimeException("User not authenticated");
     }
 
+    // 辅助方法：获取当前登录用户，未登录时返回 null
+    private Long getCurrentUserIdOrNull() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication != null && authentication.getPrincipal() instanceof CustomUserDetails userDetails) {
+            return userDetails.getUser().getId();
+        }
+        return null;
+    }
+
     // 检查权限：用户只能管理自己的帖子，管理员可以管理所有帖子
     private boolean hasPermission(Long postAuthorId) {
         Long currentUserId = getCurrentUserId();
@@ -100,20 +117,20 @@ public class PostController {
 
     // Get all posts
     @GetMapping
-    public ResponseEntity<List<PostDTO>> getAllPosts() {
-        List<Post> posts = postService.getAllPosts();
-        List<PostDTO> postDTOs = posts.stream()
-            .map(postMapper::toDTO)
-            .collect(Collectors.toList());
-        return ResponseEntity.ok(postDTOs);
+    public ResponseEntity<List<PostSummary>> getAllPosts() {
+        return ResponseEntity.ok(postService.getAllPosts());
     }
 
     // Get a post by ID
     @GetMapping("/{id}")
-    public ResponseEntity<PostDTO> getPostById(@PathVariable Long id) {
-        Optional<Post> post = postService.getPostById(id);
-        return post.map(p -> ResponseEntity.ok(postMapper.toDTO(p)))
-                   .orElse(ResponseEntity.notFound().build());
+    public ResponseEntity<PostDetail> getPostById(@PathVariable Long id, HttpServletRequest request) {
+        PostDetail post = postService.getPostDetail(id);
+        if (post == null) {
+            return ResponseEntity.notFound().build();
+        }
+        // 每次阅读都计数，缓存命中也不例外；登录用户按用户 ID、匿名访客按 IP 去重
+        postService.incrementPostViews(id, PostViewCounter.visitorId(getCurrentUserIdOrNull(), request.getRemoteAddr()));
+        return ResponseEntity.ok(post);
     }
 
     // Update a post
@@ -179,15 +196,10 @@ public class PostController {
             @RequestParam(defaultValue = "1") int page,
             @RequestParam(defaultValue = "10") int size
     ) {
-        Page<Post> pagePosts = postService.getPostsByPage(page, size);
-        
-        // 转换为 DTO
-        List<PostDTO> postDTOs = pagePosts.getContent().stream()
-            .map(postMapper::toDTO)
-            .collect(Collectors.toList());
+        PostPage pagePosts = postService.getPostsByPage(page, size);
         
         Map<String, Object> result = new HashMap<>();
-        result.put("data", postDTOs);
+        result.put("data", pagePosts.getContent());
         result.put("currentPage", page);
         result.put("pageSize", size);
         result.put("totalElements", pagePosts.getTotalElements());
@@ -198,6 +210,40 @@ public class PostController {
         return ResponseEntity.ok(result);
     }
     
+    // 获取相关帖子（按共有标签的相似度）
+    @GetMapping("/{id}/related")
+    public ResponseEntity<Map<String, Object>> getRelatedPosts(
+            @PathVariable Long id,
+            @RequestParam(defaultValue = "5") int limit
+    ) {
+        if (limit < 1 || limit > RelatedPostIndex.MAX_RELATED) limit = 5;
+        
+        Map<String, Object> result = new HashMap<>();
+        result.put("data", postService.getRelatedPosts(id, limit));
+        return ResponseEntity.ok(result);
+    }
+    
+    // 获取趋势帖子，window 可选 1h、24h、7d
+    @GetMapping("/trending")
+    public ResponseEntity<Map<String, Object>> getTrendingPosts(
+            @RequestParam(defaultValue = "24h") String window,
+            @RequestParam(defaultValue = "10") int limit
+    ) {
+        Map<String, Object> result = new HashMap<>();
+        TrendingService.Window trendingWindow;
+        try {
+            trendingWindow = TrendingService.Window.of(window);
+        } catch (IllegalArgumentException e) {
+            result.put("error", e.getMessage());
+            return ResponseEntity.badRequest().body(result);
+        }
+        if (limit < 1 || limit > 100) limit = 10;
+        
+        result.put("data", postService.getTrendingPosts(trendingWindow, limit));
+        result.put("window", trendingWindow.getLabel());
+        return ResponseEntity.ok(result);
+    }
+    
     // 分页获取指定用户的帖子
     @GetMapping("/author/{authorId}/page")
     public ResponseEntity<Map<String, Object>> getPostsByAuthorWithPage(
@@ -205,15 +251,10 @@ public class PostController {
             @RequestParam(defaultValue = "1") int page,
             @RequestParam(defaultValue = "10") int size
     ) {
-        Page<Post> pagePosts = postService.getPostsByAuthorIdWithPage(authorId, page, size);
-        
-        // 转换为 DTO
-        List<PostDTO> postDTOs = pagePosts.getContent().stream()
-            .map(postMapper::toDTO)
-            .collect(Collectors.toList());
+        PostPage pagePosts = postService.getPostsByAuthorIdWithPage(authorId, page, size);
         
         Map<String, Object> result = new HashMap<>();
-        result.put("data", postDTOs);
+        result.put("data", pagePosts.getContent());
         result.put("currentPage", page);
         result.put("pageSize", size);
         result.put("totalElements", pagePosts.getTotalElements());
@@ -233,15 +274,10 @@ public class PostController {
     ) {
         try {
             Long currentUserId = getCurrentUserId();
-            Page<Post> pagePosts = postService.getPostsByAuthorIdWithPage(currentUserId, page, size);
-            
-            // 转换为 DTO
-            List<PostDTO> postDTOs = pagePosts.getContent().stream()
-                .map(postMapper::toDTO)
-                .collect(Collectors.toList());
+            PostPage pagePosts = postService.getPostsByAuthorIdWithPage(currentUserId, page, size);
             
             Map<String, Object> result = new HashMap<>();
-            result.put("data", postDTOs);
+            result.put("data", pagePosts.getContent());
             result.put("currentPage", page);
             result.put("pageSize", size);
             result.put("totalElements", pagePosts.getTotalElements());
@@ -262,15 +298,10 @@ public class PostController {
             @RequestParam(defaultValue = "1") int page,
             @RequestParam(defaultValue = "10") int size
     ) {
-        Page<Post> pagePosts = postService.searchPosts(keyword, page, size);
-        
-        // 转换为 DTO
-        List<PostDTO> postDTOs = pagePosts.getContent().stream()
-            .map(postMapper::toDTO)
-            .collect(Collectors.toList());
+        PostPage pagePosts = postService.searchPosts(keyword, page, size);
         
         Map<String, Object> result = new HashMap<>();
-        result.put("data", postDTOs);
+        result.put("data", pagePosts.getContent());
         result.put("currentPage", page);
         result.put("pageSize", size);
         result.put("totalElements", pagePosts.getTotalElements());
@@ -430,14 +461,10 @@ public class PostController {
             @RequestParam(defaultValue = "1") int page,
             @RequestParam(defaultValue = "10") int size
     ) {
-        Page<Post> pagePosts = postService.searchByTitle(title, page, size);
-        
-        List<PostDTO> postDTOs = pagePosts.getContent().stream()
-            .map(postMapper::toDTO)
-            .collect(Collectors.toList());
+        PostPage pagePosts = postService.searchByTitle(title, page, size);
         
         Map<String, Object> result = new HashMap<>();
-        result.put("data", postDTOs);
+        result.put("data", pagePosts.getContent());
         result.put("currentPage", page);
         result.put("pageSize", size);
         result.put("totalElements", pagePosts.getTotalElements());
@@ -455,14 +482,10 @@ public class PostController {
             @RequestParam(defaultValue = "1") int page,
             @RequestParam(defaultValue = "10") int size
     ) {
-        Page<Post> pagePosts = postService.searchByContent(content, page, size);
-        
-        List<PostDTO> postDTOs = pagePosts.getContent().stream()
-            .map(postMapper::toDTO)
-            .collect(Collectors.toList());
+        PostPage pagePosts = postService.searchByContent(content, page, size);
         
         Map<String, Object> result = new HashMap<>();
-        result.put("data", postDTOs);
+        result.put("data", pagePosts.getContent());
         result.put("currentPage", page);
         result.put("pageSize", size);
         result.put("totalElements", pagePosts.getTotalElements());
@@ -480,14 +503,10 @@ public class PostController {
             @RequestParam(defaultValue = "1") int page,
             @RequestParam(defaultValue = "10") int size
     ) {
-        Page<Post> pagePosts = postService.searchByTitleOrContent(keyword, page, size);
-        
-        List<PostDTO> postDTOs = pagePosts.getContent().stream()
-            .map(postMapper::toDTO)
-            .collect(Collectors.toList());
+        PostPage pagePosts = postService.searchByTitleOrContent(keyword, page, size);
         
         Map<String, Object> result = new HashMap<>();
-        result.put("data", postDTOs);
+        result.put("data", pagePosts.getContent());
         result.put("currentPage", page);
         result.put("pageSize", size);
         result.put("totalElements", pagePosts.getTotalElements());
@@ -505,14 +524,10 @@ public class PostController {
             @RequestParam(defaultValue = "1") int page,
             @RequestParam(defaultValue = "10") int size
     ) {
-        Page<Post> pagePosts = postService.searchByTag(tag, page, size);
-        
-        List<PostDTO> postDTOs = pagePosts.getContent().stream()
-            .map(postMapper::toDTO)
-            .collect(Collectors.toList());
+        PostPage pagePosts = postService.searchByTag(tag, page, size);
         
         Map<String, Object> result = new HashMap<>();
-        result.put("data", postDTOs);
+        result.put("data", pagePosts.getContent());
         result.put("currentPage", page);
         result.put("pageSize", size);
         result.put("totalElements", pagePosts.getTotalElements());
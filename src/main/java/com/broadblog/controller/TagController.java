@@ -1,6 +1,8 @@
 package com.broadblog.controller;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -18,6 +20,7 @@ import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import com.broadblog.dto.TagCloudDTO;
@@ -25,7 +28,9 @@ import com.broadblog.dto.TagDTO;
 import com.broadblog.entity.Tag;
 import com.broadblog.mapper.TagMapper;
 import com.broadblog.security.CustomUserDetails;
+import com.broadblog.service.TagCooccurrenceIndex;
 import com.broadblog.service.TagService;
+import com.broadblog.service.TagSuggestionIndex;
 import com.broadblog.service.UserService;
 
 @RestController
@@ -35,12 +40,17 @@ public class TagController {
     private final TagService tagService;
     private final TagMapper tagMapper;
     private final UserService userService;
+    private final TagSuggestionIndex suggestionIndex;
+    private final TagCooccurrenceIndex cooccurrenceIndex;
     
     @Autowired
-    public TagController(TagService tagService, TagMapper tagMapper, UserService userService) {
+    public TagController(TagService tagService, TagMapper tagMapper, UserService userService,
+                         TagSuggestionIndex suggestionIndex, TagCooccurrenceIndex cooccurrenceIndex) {
         this.tagService = tagService;
         this.tagMapper = tagMapper;
         this.userService = userService;
+        this.suggestionIndex = suggestionIndex;
+        this.cooccurrenceIndex = cooccurrenceIndex;
     }
 
     // 获取当前用户ID
@@ -92,6 +102,38 @@ public class TagController {
             .orElse(ResponseEntity.notFound().build());
     }
     
+    // 获取相关标签（和该标签同时出现在帖子中次数最多的标签）
+    @GetMapping("/{id}/related")
+    public ResponseEntity<Map<String, Object>> getRelatedTags(
+            @PathVariable Long id,
+            @RequestParam(defaultValue = "10") int limit
+    ) {
+        if (limit < 1 || limit > 50) limit = 10;
+        
+        List<TagCooccurrenceIndex.RelatedTag> relatedTags = cooccurrenceIndex.relatedTags(id, limit);
+        // 一次批量查出所有相关标签，而不是逐个查缓存
+        Map<Long, Tag> tags = tagService.getTagsByIds(relatedTags.stream()
+            .map(TagCooccurrenceIndex.RelatedTag::tagId)
+            .toList());
+        List<Map<String, Object>> related = new ArrayList<>();
+        for (TagCooccurrenceIndex.RelatedTag relatedTag : relatedTags) {
+            Tag tag = tags.get(relatedTag.tagId());
+            // 已删除的标签在下次快照前仍可能留在索引中，跳过
+            if (tag == null) {
+                continue;
+            }
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("id", tag.getId());
+            item.put("name", tag.getName());
+            item.put("posts", relatedTag.posts());
+            related.add(item);
+        }
+        
+        Map<String, Object> result = new HashMap<>();
+        result.put("data", related);
+        return ResponseEntity.ok(result);
+    }
+    
     @GetMapping("/name/{name}")
     public ResponseEntity<TagDTO> getTagByName(@PathVariable String name) {
         Optional<Tag> tag = tagService.getTagByName(name);
@@ -139,6 +181,20 @@ public class TagController {
         }
     }
     
+    // 按名称前缀补全标签（按使用次数排序，只查内存索引）
+    @GetMapping("/suggest")
+    public ResponseEntity<Map<String, Object>> suggestTags(
+            @RequestParam(defaultValue = "") String prefix,
+            @RequestParam(defaultValue = "10") int limit
+    ) {
+        if (limit < 1 || limit > 50) limit = 10;
+        
+        Map<String, Object> result = new HashMap<>();
+        result.put("data", suggestionIndex.suggest(prefix, limit));
+        result.put("prefix", prefix);
+        return ResponseEntity.ok(result);
+    }
+    
     // 获取热门标签（使用次数 > 0）
     @GetMapping("/popular")
     public ResponseEntity<List<TagCloudDTO>> getPopularTags() {
@@ -0,0 +1,38 @@
+package com.broadblog.dto;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * 帖子详情的只读视图，在列表项基础上带上作者头像
+ */
+@JsonAutoDetect(fieldVisibility = JsonAutoDetect.Visibility.ANY,
+        getterVisibility = JsonAutoDetect.Visibility.NONE,
+        isGetterVisibility = JsonAutoDetect.Visibility.NONE)
+public class PostDetail extends PostSummary {
+
+    private final String authorAvatar;
+
+    @JsonCreator
+    public PostDetail(@JsonProperty("id") Long id,
+                      @JsonProperty("title") String title,
+                      @JsonProperty("content") String content,
+                      @JsonProperty("createdAt") LocalDateTime createdAt,
+                      @JsonProperty("updatedAt") LocalDateTime updatedAt,
+                      @JsonProperty("authorId") Long authorId,
+                      @JsonProperty("authorName") String authorName,
+                      @JsonProperty("authorAvatar") String authorAvatar,
+                      @JsonProperty("tagNames") List<String> tagNames,
+                      @JsonProperty("commentCount") int commentCount) {
+        super(id, title, content, createdAt, updatedAt, authorId, authorName, tagNames, commentCount);
+        this.authorAvatar = authorAvatar;
+    }
+
+    public String getAuthorAvatar() {
+        return authorAvatar;
+    }
+}
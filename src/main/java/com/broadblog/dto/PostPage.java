@@ -0,0 +1,63 @@
+package com.broadblog.dto;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * 帖子分页结果的只读视图，替代缓存中的 Page&lt;Post&gt;（PageImpl 无法反序列化）
+ * page 从 1 开始，与接口参数一致
+ */
+@JsonAutoDetect(fieldVisibility = JsonAutoDetect.Visibility.ANY,
+        getterVisibility = JsonAutoDetect.Visibility.NONE,
+        isGetterVisibility = JsonAutoDetect.Visibility.NONE)
+public class PostPage {
+
+    private final List<PostSummary> content;
+    private final int page;
+    private final int size;
+    private final long totalElements;
+
+    @JsonCreator
+    public PostPage(@JsonProperty("content") List<PostSummary> content,
+                    @JsonProperty("page") int page,
+                    @JsonProperty("size") int size,
+                    @JsonProperty("totalElements") long totalElements) {
+        this.content = content != null ? new ArrayList<>(content) : new ArrayList<>();
+        this.page = page;
+        this.size = size;
+        this.totalElements = totalElements;
+    }
+
+    public List<PostSummary> getContent() {
+        return Collections.unmodifiableList(content);
+    }
+
+    public int getPage() {
+        return page;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public long getTotalElements() {
+        return totalElements;
+    }
+
+    public int getTotalPages() {
+        return size == 0 ? 1 : (int) Math.ceil((double) totalElements / (double) size);
+    }
+
+    public boolean isFirst() {
+        return page <= 1;
+    }
+
+    public boolean isLast() {
+        return page >= getTotalPages();
+    }
+}
@@ -0,0 +1,88 @@
+package com.broadblog.dto;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * 帖子列表项的只读视图，作者名、标签名和评论数在构建时已解析，可直接缓存
+ * 字段与 PostDTO 保持一致，接口返回的 JSON 结构不变
+ * 不声明为 final/record：缓存序列化依赖非 final 类型写入类型信息
+ */
+@JsonAutoDetect(fieldVisibility = JsonAutoDetect.Visibility.ANY,
+        getterVisibility = JsonAutoDetect.Visibility.NONE,
+        isGetterVisibility = JsonAutoDetect.Visibility.NONE)
+public class PostSummary {
+
+    private final Long id;
+    private final String title;
+    private final String content;
+    private final LocalDateTime createdAt;
+    private final LocalDateTime updatedAt;
+    private final Long authorId;
+    private final String authorName;
+    private final List<String> tagNames;
+    private final int commentCount;
+
+    @JsonCreator
+    public PostSummary(@JsonProperty("id") Long id,
+                       @JsonProperty("title") String title,
+                       @JsonProperty("content") String content,
+                       @JsonProperty("createdAt") LocalDateTime createdAt,
+                       @JsonProperty("updatedAt") LocalDateTime updatedAt,
+                       @JsonProperty("authorId") Long authorId,
+                       @JsonProperty("authorName") String authorName,
+                       @JsonProperty("tagNames") List<String> tagNames,
+                       @JsonProperty("commentCount") int commentCount) {
+        this.id = id;
+        this.title = title;
+        this.content = content;
+        this.createdAt = createdAt;
+        this.updatedAt = updatedAt;
+        this.authorId = authorId;
+        this.authorName = authorName;
+        this.tagNames = tagNames != null ? new ArrayList<>(tagNames) : new ArrayList<>();
+        this.commentCount = commentCount;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public String getContent() {
+        return content;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public LocalDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public Long getAuthorId() {
+        return authorId;
+    }
+
+    public String getAuthorName() {
+        return authorName;
+    }
+
+    public List<String> getTagNames() {
+        return Collections.unmodifiableList(tagNames);
+    }
+
+    public int getCommentCount() {
+        return commentCount;
+    }
+}
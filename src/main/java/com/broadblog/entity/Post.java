@@ -37,6 +37,10 @@ public class Post {
 
     private LocalDateTime updatedAt;
 
+    // 累计阅读量，只由 PostViewPersister 批量累加，保存帖子时不覆盖
+    @Column(name = "view_count", nullable = false, updatable = false, columnDefinition = "BIGINT NOT NULL DEFAULT 0")
+    private long viewCount;
+
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "author_id", nullable = false)
     @JsonManagedReference
@@ -69,6 +73,9 @@ public class Post {
     public LocalDateTime getUpdatedAt() { return updatedAt; }
     public void setUpdatedAt(LocalDateTime updatedAt) { this.updatedAt = updatedAt; }
 
+    public long getViewCount() { return viewCount; }
+    public void setViewCount(long viewCount) { this.viewCount = viewCount; }
+
     public User getAuthor() { return author; }
     public void setAuthor(User author) { this.author = author; }
 
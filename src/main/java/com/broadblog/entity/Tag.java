@@ -31,7 +31,8 @@ public class Tag {
     @JoinColumn(name = "category_id")
     private TagCategory category;
 
-    @Column(name = "usage_count", columnDefinition = "int default 0")
+    // 只由 TagUsageAccumulator 原子累加，保存标签时不覆盖
+    @Column(name = "usage_count", columnDefinition = "int default 0", updatable = false)
     private Integer usageCount = 0;
 
     @Column(name = "created_at")
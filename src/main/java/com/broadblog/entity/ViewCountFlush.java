@@ -0,0 +1,42 @@
+package com.broadblog.entity;
+
+import java.time.LocalDateTime;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+
+/**
+ * 阅读量持久化日志，每个已写入 posts.view_count 的批次一行
+ * 批次号作为水位线：同一批次重试时插入失败，不会重复累加
+ */
+@Entity
+@Table(name = "view_count_flushes")
+public class ViewCountFlush {
+    @Id
+    @Column(name = "batch_id")
+    private Long batchId;
+
+    @Column(nullable = false)
+    private int posts;
+
+    @Column(nullable = false)
+    private long views;
+
+    @Column(name = "flushed_at", nullable = false)
+    private LocalDateTime flushedAt;
+
+    // Getters and setters
+    public Long getBatchId() { return batchId; }
+    public void setBatchId(Long batchId) { this.batchId = batchId; }
+
+    public int getPosts() { return posts; }
+    public void setPosts(int posts) { this.posts = posts; }
+
+    public long getViews() { return views; }
+    public void setViews(long views) { this.views = views; }
+
+    public LocalDateTime getFlushedAt() { return flushedAt; }
+    public void setFlushedAt(LocalDateTime flushedAt) { this.flushedAt = flushedAt; }
+}
@@ -1,6 +1,5 @@
 package com.broadblog.mapper;
 
-import java.util.ArrayList;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -67,20 +66,9 @@ public class PostMapper {
             post.setAuthor(author);
         }
         
-        // 处理标签：将标签名称转换为标签实体
+        // 处理标签：将标签名称批量转换为标签实体，不存在的标签一次批量创建
         if (dto.getTagNames() != null && !dto.getTagNames().isEmpty()) {
-            List<Tag> tags = new ArrayList<>();
-            for (String tagName : dto.getTagNames()) {
-                // 尝试查找现有标签，如果不存在则创建新标签
-                Tag tag = tagService.getTagByName(tagName)
-                    .orElseGet(() -> {
-                        Tag newTag = new Tag();
-                        newTag.setName(tagName);
-                        return tagService.saveTag(newTag);
-                    });
-                tags.add(tag);
-            }
-            post.setTags(tags);
+            post.setTags(tagService.resolveOrCreateTags(dto.getTagNames()));
         }
         
         return post;
@@ -0,0 +1,138 @@
+package com.broadblog.mapper;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Page;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.broadblog.dto.PostDetail;
+import com.broadblog.dto.PostPage;
+import com.broadblog.dto.PostSummary;
+import com.broadblog.entity.Post;
+import com.broadblog.entity.Tag;
+import com.broadblog.entity.User;
+import com.broadblog.repository.CommentRepository;
+import com.broadblog.repository.PostRepository;
+
+/**
+ * 将帖子实体构建为可缓存的只读视图
+ * 作者和标签通过一次 JOIN FETCH 批量加载，评论数通过一次分组统计获得，
+ * 无论一页多少条帖子都只需固定的几次查询，也不会触发懒加载
+ */
+@Component
+public class PostViewMapper {
+
+    private final PostRepository postRepository;
+    private final CommentRepository commentRepository;
+
+    @Autowired
+    public PostViewMapper(PostRepository postRepository, CommentRepository commentRepository) {
+        this.postRepository = postRepository;
+        this.commentRepository = commentRepository;
+    }
+
+    @Transactional(readOnly = true)
+    public PostPage toPage(Page<Post> page) {
+        return new PostPage(toSummaries(page.getContent()), page.getNumber() + 1, page.getSize(),
+                page.getTotalElements());
+    }
+
+    @Transactional(readOnly = true)
+    public List<PostSummary> toSummaries(List<Post> posts) {
+        return summariesByIds(posts.stream().map(Post::getId).collect(Collectors.toList()));
+    }
+
+    /**
+     * 按给定 ID 顺序构建列表项，已不存在的帖子会被跳过
+     */
+    @Transactional(readOnly = true)
+    public List<PostSummary> summariesByIds(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+        Map<Long, Post> fetched = fetchWithAuthorAndTags(ids);
+        Map<Long, Integer> commentCounts = countComments(ids);
+
+        List<PostSummary> summaries = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            Post post = fetched.get(id);
+            if (post != null) {
+                summaries.add(toSummary(post, commentCounts.getOrDefault(id, 0)));
+            }
+        }
+        return summaries;
+    }
+
+    /**
+     * 加载单个帖子详情，帖子不存在时返回 null
+     */
+    @Transactional(readOnly = true)
+    public PostDetail loadDetail(Long id) {
+        Post post = fetchWithAuthorAndTags(List.of(id)).get(id);
+        if (post == null) {
+            return null;
+        }
+        return toDetail(post, (int) commentRepository.countByPostId(id));
+    }
+
+    /**
+     * 批量加载帖子详情（一次 JOIN FETCH + 一次评论数统计），不存在的帖子不在结果中
+     */
+    @Transactional(readOnly = true)
+    public Map<Long, PostDetail> detailsByIds(List<Long> ids) {
+        Map<Long, PostDetail> details = new HashMap<>();
+        if (ids.isEmpty()) {
+            return details;
+        }
+        Map<Long, Integer> commentCounts = countComments(ids);
+        fetchWithAuthorAndTags(ids).forEach((id, post) ->
+                details.put(id, toDetail(post, commentCounts.getOrDefault(id, 0))));
+        return details;
+    }
+
+    private PostDetail toDetail(Post post, int commentCount) {
+        User author = post.getAuthor();
+        return new PostDetail(post.getId(), post.getTitle(), post.getContent(),
+                post.getCreatedAt(), post.getUpdatedAt(),
+                author != null ? author.getId() : null,
+                author != null ? author.getUsername() : null,
+                author != null ? author.getAvatar() : null,
+                tagNames(post), commentCount);
+    }
+
+    private PostSummary toSummary(Post post, int commentCount) {
+        User author = post.getAuthor();
+        return new PostSummary(post.getId(), post.getTitle(), post.getContent(),
+                post.getCreatedAt(), post.getUpdatedAt(),
+                author != null ? author.getId() : null,
+                author != null ? author.getUsername() : null,
+                tagNames(post), commentCount);
+    }
+
+    private static List<String> tagNames(Post post) {
+        if (post.getTags() == null) {
+            return new ArrayList<>();
+        }
+        return post.getTags().stream().map(Tag::getName).collect(Collectors.toList());
+    }
+
+    private Map<Long, Post> fetchWithAuthorAndTags(List<Long> ids) {
+        return postRepository.findByIdInWithAuthorAndTags(ids).stream()
+            .collect(Collectors.toMap(Post::getId, Function.identity(), (a, b) -> a));
+    }
+
+    private Map<Long, Integer> countComments(List<Long> ids) {
+        Map<Long, Integer> counts = new HashMap<>();
+        for (Object[] row : commentRepository.countByPostIdIn(ids)) {
+            counts.put((Long) row[0], ((Number) row[1]).intValue());
+        }
+        return counts;
+    }
+}
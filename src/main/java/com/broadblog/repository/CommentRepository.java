@@ -3,6 +3,8 @@ package com.broadblog.repository;
 import java.util.List;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import com.broadblog.entity.Comment;
 
@@ -11,4 +13,8 @@ public interface CommentRepository extends JpaRepository<Comment, Long> {
     List<Comment> findByPostId(Long postId);
     List<Comment> findByParentComment_Id(Long parentCommentId);
     long countByPostId(Long postId);
+
+    // 批量统计多个帖子的评论数，返回 [postId, count]
+    @Query("SELECT c.post.id, COUNT(c) FROM Comment c WHERE c.post.id IN :postIds GROUP BY c.post.id")
+    List<Object[]> countByPostIdIn(@Param("postIds") List<Long> postIds);
 } 
\ No newline at end of file
@@ -1,6 +1,7 @@
 package com.broadblog.repository;
 
 import java.util.List;
+import java.util.Optional;
 
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
@@ -11,7 +12,18 @@ import org.springframework.data.repository.query.Param;
 import com.broadblog.entity.Post;
 
 public interface PostRepository extends JpaRepository<Post, Long> {
+    // 所有帖子 ID（用于重建 ID 布隆过滤器）
+    @Query("SELECT p.id FROM Post p")
+    List<Long> findAllIds();
+
+    // 已持久化的阅读量
+    @Query("SELECT p.viewCount FROM Post p WHERE p.id = :id")
+    Optional<Long> findViewCountById(@Param("id") Long id);
+
     List<Post> findByAuthorId(Long authorId);
+
+    @Query("SELECT p.id FROM Post p WHERE p.author.id = :authorId")
+    List<Long> findIdsByAuthorId(@Param("authorId") Long authorId);
     
     // 分页查询指定用户的帖子
     Page<Post> findByAuthorId(Long authorId, Pageable pageable);
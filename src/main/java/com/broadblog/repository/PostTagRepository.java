@@ -0,0 +1,31 @@
+package com.broadblog.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+/**
+ * 帖子与标签的关联（post_tags）逐行读取，用于重建内存中的倒排索引
+ */
+@Repository
+public class PostTagRepository {
+
+    public interface PostTagConsumer {
+        void accept(long tagId, long postId);
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public PostTagRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * 按标签 ID、帖子 ID 升序逐个返回所有关联
+     */
+    public void forEachPostTag(PostTagConsumer consumer) {
+        jdbcTemplate.query("SELECT tag_id, post_id FROM post_tags ORDER BY tag_id, post_id",
+                rs -> {
+                    consumer.accept(rs.getLong(1), rs.getLong(2));
+                });
+    }
+}
@@ -0,0 +1,44 @@
+package com.broadblog.repository;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * 阅读量批量持久化（JDBC 批处理，不经过实体加载）
+ */
+@Repository
+public class PostViewCountRepository {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public PostViewCountRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * 在一个事务中登记批次并累加各帖子的阅读量
+     * 批次已登记过（上次写入成功但没来得及清理）时不再累加，返回 false
+     */
+    @Transactional
+    public boolean applyBatch(long batchId, Map<Long, Long> deltas) {
+        long views = deltas.values().stream().mapToLong(Long::longValue).sum();
+        int logged = jdbcTemplate.update(
+                "INSERT IGNORE INTO view_count_flushes (batch_id, posts, views, flushed_at) VALUES (?, ?, ?, ?)",
+                batchId, deltas.size(), views, Timestamp.valueOf(LocalDateTime.now()));
+        if (logged == 0) {
+            return false;
+        }
+        List<Object[]> args = new ArrayList<>(deltas.size());
+        deltas.forEach((postId, delta) -> args.add(new Object[] {delta, postId}));
+        // 已删除的帖子更新 0 行，增量直接丢弃
+        jdbcTemplate.batchUpdate("UPDATE posts SET view_count = view_count + ? WHERE id = ?", args);
+        return true;
+    }
+}
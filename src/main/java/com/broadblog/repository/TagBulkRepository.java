@@ -0,0 +1,36 @@
+package com.broadblog.repository;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * 标签批量写入（JDBC 批处理）
+ */
+@Repository
+public class TagBulkRepository {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public TagBulkRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * 批量插入标签，名称已存在（包括其他请求同时插入）的跳过
+     * 只忽略重复键；INSERT IGNORE 会把超长等数据错误降级为警告并截断写入，这里不用
+     */
+    @Transactional
+    public void insertIfAbsent(Collection<String> names) {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        List<Object[]> args = new ArrayList<>(names.size());
+        names.forEach(name -> args.add(new Object[] {name, now}));
+        jdbcTemplate.batchUpdate("INSERT INTO tags (name, usage_count, created_at) VALUES (?, 0, ?) ON DUPLICATE KEY UPDATE id = id", args);
+    }
+}
@@ -0,0 +1,34 @@
+package com.broadblog.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+/**
+ * 标签共现次数查询（JDBC 逐行读取，不把整个结果集放进内存）
+ */
+@Repository
+public class TagCooccurrenceRepository {
+
+    public interface PairConsumer {
+        void accept(long tagId, long otherTagId, int posts);
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public TagCooccurrenceRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * 逐个返回同时出现在至少一个帖子中的标签对（tagId < otherTagId）及共同帖子数
+     */
+    public void forEachPair(PairConsumer consumer) {
+        jdbcTemplate.query(
+                "SELECT a.tag_id, b.tag_id, COUNT(*) FROM post_tags a "
+                        + "JOIN post_tags b ON a.post_id = b.post_id AND a.tag_id < b.tag_id "
+                        + "GROUP BY a.tag_id, b.tag_id",
+                rs -> {
+                    consumer.accept(rs.getLong(1), rs.getLong(2), rs.getInt(3));
+                });
+    }
+}
@@ -1,5 +1,6 @@
 package com.broadblog.repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -11,6 +12,9 @@ import com.broadblog.entity.TagCategory;
 
 public interface TagRepository extends JpaRepository<Tag, Long> {
     Optional<Tag> findByName(String name);
+
+    // 按名称批量查找（一次 IN 查询）
+    List<Tag> findByNameIn(Collection<String> names);
     
     // 按分类查找标签
     List<Tag> findByCategory(TagCategory category);
@@ -26,4 +30,12 @@ public interface TagRepository extends JpaRepository<Tag, Long> {
     // 按分类统计标签数量
     @Query("SELECT t.category.name, COUNT(t) FROM Tag t GROUP BY t.category.name")
     List<Object[]> countTagsByCategory();
+
+    // 所有标签的 ID、名称和使用次数（用于重建标签补全索引）
+    @Query("SELECT t.id, t.name, t.usageCount FROM Tag t")
+    List<Object[]> findIdNameAndUsage();
+
+    // 所有标签 ID（用于重建 ID 布隆过滤器）
+    @Query("SELECT t.id FROM Tag t")
+    List<Long> findAllIds();
 } 
\ No newline at end of file
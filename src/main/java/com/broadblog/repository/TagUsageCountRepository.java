@@ -0,0 +1,33 @@
+package com.broadblog.repository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * 标签使用次数批量更新（JDBC 批处理，原子累加，不经过实体加载）
+ */
+@Repository
+public class TagUsageCountRepository {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public TagUsageCountRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * 在一个事务中把各标签的增量累加到 usage_count，结果不小于 0
+     */
+    @Transactional
+    public void applyDeltas(Map<Long, Long> deltas) {
+        List<Object[]> args = new ArrayList<>(deltas.size());
+        deltas.forEach((tagId, delta) -> args.add(new Object[] {delta, tagId}));
+        jdbcTemplate.batchUpdate(
+                "UPDATE tags SET usage_count = GREATEST(COALESCE(usage_count, 0) + ?, 0) WHERE id = ?", args);
+    }
+}
@@ -1,9 +1,11 @@
 package com.broadblog.repository;
 
+import java.util.List;
 import java.util.Optional;
 
 import com.broadblog.entity.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 
 public interface UserRepository extends JpaRepository<User, Long> {
     // You can add custom query methods here if needed
@@ -11,5 +13,9 @@ public interface UserRepository extends JpaRepository<User, Long> {
     //List<Comment> findByAuthorId(Long authorId);
     Optional<User> findByUsername(String username);
     Optional<User> findByEmail(String email);
+
+    // 所有用户 ID（用于重建 ID 布隆过滤器）
+    @Query("SELECT u.id FROM User u")
+    List<Long> findAllIds();
 }
  
\ No newline at end of file
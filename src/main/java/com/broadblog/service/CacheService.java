@@ -1,21 +1,47 @@
 package com.broadblog.service;
 
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.connection.zset.Aggregate;
+import org.springframework.data.redis.connection.zset.Weights;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
 import org.springframework.stereotype.Service;
 
+import com.broadblog.cache.CacheKeyIndex;
+import com.broadblog.cache.RedisCircuitBreaker;
+import com.broadblog.cache.RedisPipelines;
+import com.broadblog.cache.RedisWriteBuffer;
+
 @Service
 public class CacheService {
 
     @Autowired
     private RedisTemplate<String, Object> redisTemplate;
 
+    @Autowired
+    private CacheKeyIndex cacheKeyIndex;
+
+    @Autowired
+    private RedisCircuitBreaker circuitBreaker;
+
+    @Autowired
+    private RedisWriteBuffer writeBuffer;
+
     // 缓存键前缀常量
     public static final String POST_CACHE_PREFIX = "post:";
     public static final String USER_CACHE_PREFIX = "user:";
@@ -26,18 +52,70 @@ public class CacheService {
     public static final String USER_STATS_CACHE_PREFIX = "stats:user:";
     public static final String SYSTEM_STATS_CACHE_KEY = "stats:system";
 
+    // 脚本参数经值序列化器（JSON）写入，与 SET 写入的值逐字节相同；数字序列化为不带类型信息的整数
+    private static final RedisScript<Long> EXPIRE_IF_VALUE_SCRIPT = new DefaultRedisScript<>(
+        "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('pexpire', KEYS[1], ARGV[2]) else return 0 end",
+        Long.class);
+    private static final RedisScript<Long> RENAME_WITH_MARKER_SCRIPT = new DefaultRedisScript<>(
+        "if redis.call('exists', KEYS[1]) == 0 or redis.call('exists', KEYS[3]) == 1 then return 0 end "
+            + "if redis.call('renamenx', KEYS[1], KEYS[2]) == 0 then return 0 end "
+            + "redis.call('set', KEYS[3], ARGV[1]) return 1",
+        Long.class);
+    private static final RedisScript<Long> DELETE_IF_MARKER_SCRIPT = new DefaultRedisScript<>(
+        "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('del', unpack(KEYS)) else return 0 end",
+        Long.class);
+
     /**
      * 设置缓存
      */
     public void set(String key, Object value, Duration duration) {
-        redisTemplate.opsForValue().set(key, value, duration);
+        // Redis 不可用时跳过：缓存值可以从数据库重新加载
+        run(() -> redisTemplate.opsForValue().set(key, value, duration), () -> { });
     }
 
     /**
      * 设置缓存（默认过期时间）
      */
     public void set(String key, Object value) {
-        redisTemplate.opsForValue().set(key, value, Duration.ofHours(1));
+        set(key, value, Duration.ofHours(1));
+    }
+
+    /**
+     * 键不存在时设置缓存（SET NX），Redis 不可用时返回 false
+     */
+    public boolean setIfAbsent(String key, Object value, Duration duration) {
+        return Boolean.TRUE.equals(call(() -> redisTemplate.opsForValue().setIfAbsent(key, value, duration), () -> false));
+    }
+
+    /**
+     * 键的值等于 value 时设置过期时间（比较和续期在一个脚本中原子执行），用于续约只属于自己的租约
+     * 值不同、键不存在或 Redis 不可用时返回 false
+     */
+    public boolean expireIfValue(String key, Object value, Duration duration) {
+        return call(() -> Long.valueOf(1).equals(
+            redisTemplate.execute(EXPIRE_IF_VALUE_SCRIPT, List.of(key), value, duration.toMillis())), () -> false);
+    }
+
+    /**
+     * 原子地把 source 重命名为 target 并设置 markerKey：只有 source 存在、target 和 markerKey 都不存在时才执行
+     * 未执行或 Redis 不可用时返回 false
+     */
+    public boolean renameWithMarker(String source, String target, String markerKey, Object marker) {
+        return call(() -> Long.valueOf(1).equals(
+            redisTemplate.execute(RENAME_WITH_MARKER_SCRIPT, List.of(source, target, markerKey), marker)), () -> false);
+    }
+
+    /**
+     * markerKey 的值等于 marker 时，原子地删除 markerKey 和 keys；值不同或 Redis 不可用时返回 false
+     */
+    public boolean deleteIfMarker(String markerKey, Object marker, String... keys) {
+        List<String> allKeys = new ArrayList<>();
+        allKeys.add(markerKey);
+        allKeys.addAll(List.of(keys));
+        return call(() -> {
+            Long deleted = redisTemplate.execute(DELETE_IF_MARKER_SCRIPT, allKeys, marker);
+            return deleted != null && deleted > 0;
+        }, () -> false);
     }
 
     /**
@@ -45,39 +123,83 @@ public class CacheService {
      */
     @SuppressWarnings("unchecked")
     public <T> Optional<T> get(String key, Class<T> clazz) {
-        Object value = redisTemplate.opsForValue().get(key);
+        Object value = call(() -> redisTemplate.opsForValue().get(key), () -> null);
         if (value != null && clazz.isInstance(value)) {
             return Optional.of((T) value);
         }
         return Optional.empty();
     }
 
+    /**
+     * 批量获取缓存（一次 MGET），结果按 keys 顺序返回，不存在的键对应 null
+     * Redis 不可用时所有键都按不存在处理
+     */
+    public List<Object> multiGet(Collection<String> keys) {
+        if (keys.isEmpty()) {
+            return new ArrayList<>();
+        }
+        List<Object> values = call(() -> redisTemplate.opsForValue().multiGet(keys), () -> null);
+        return values != null ? values : new ArrayList<>(Collections.nCopies(keys.size(), null));
+    }
+
+    /**
+     * 批量获取缓存，只返回存在的键
+     */
+    public Map<String, Object> multiGetMap(Collection<String> keys) {
+        List<String> orderedKeys = new ArrayList<>(keys);
+        List<Object> values = multiGet(orderedKeys);
+        Map<String, Object> found = new LinkedHashMap<>();
+        for (int i = 0; i < values.size(); i++) {
+            if (values.get(i) != null) {
+                found.put(orderedKeys.get(i), values.get(i));
+            }
+        }
+        return found;
+    }
+
+    /**
+     * 批量设置缓存并指定过期时间（一次管道往返）
+     */
+    public void multiSet(Map<String, Object> entries, Duration duration) {
+        if (entries.isEmpty()) {
+            return;
+        }
+        // 与 set 相同，Redis 不可用时跳过：缓存值可以从数据库重新加载，恢复后回放旧值反而可能覆盖新值
+        run(() -> RedisPipelines.pipelined(redisTemplate,
+            operations -> entries.forEach((key, value) -> operations.opsForValue().set(key, value, duration))), () -> { });
+    }
+
     /**
      * 删除缓存
      */
     public void delete(String key) {
-        redisTemplate.delete(key);
+        run(() -> redisTemplate.delete(key), () -> writeBuffer.defer("delete:" + key, () -> redisTemplate.delete(key)));
     }
 
     /**
      * 批量删除缓存
      */
     public void delete(Set<String> keys) {
-        redisTemplate.delete(keys);
+        if (keys.isEmpty()) {
+            return;
+        }
+        run(() -> redisTemplate.delete(keys),
+            () -> keys.forEach(key -> writeBuffer.defer("delete:" + key, () -> redisTemplate.delete(key))));
     }
 
     /**
      * 检查键是否存在
      */
     public boolean exists(String key) {
-        return Boolean.TRUE.equals(redisTemplate.hasKey(key));
+        return Boolean.TRUE.equals(call(() -> redisTemplate.hasKey(key), () -> false));
     }
 
     /**
      * 设置过期时间
      */
     public void expire(String key, Duration duration) {
-        redisTemplate.expire(key, duration);
+        run(() -> redisTemplate.expire(key, duration),
+            () -> writeBuffer.defer("expire:" + key, () -> redisTemplate.expire(key, duration)));
     }
 
     /**
@@ -89,33 +211,208 @@ public class CacheService {
 
     /**
      * 递增计数器
+     * Redis 不可用时增量暂存在内存中，恢复后合并回放，此时返回 null
      */
     public Long increment(String key) {
-        return redisTemplate.opsForValue().increment(key);
+        return increment(key, 1);
     }
 
     /**
-     * 递增计数器（指定增量）
+     * 递增计数器（指定增量），Redis 不可用时返回 null
      */
     public Long increment(String key, long delta) {
-        return redisTemplate.opsForValue().increment(key, delta);
+        return call(() -> redisTemplate.opsForValue().increment(key, delta), () -> {
+            writeBuffer.increment(key, delta);
+            return null;
+        });
+    }
+
+    /**
+     * 批量递增计数器（一次管道往返），返回各键递增后的值
+     * Redis 不可用时增量暂存，恢复后合并回放，此时各键的值为 null
+     */
+    public Map<String, Long> incrementAll(Map<String, Long> deltas) {
+        Map<String, Long> results = new LinkedHashMap<>();
+        if (deltas.isEmpty()) {
+            return results;
+        }
+        List<String> keys = new ArrayList<>(deltas.keySet());
+        List<Object> values = call(() -> RedisPipelines.pipelined(redisTemplate, operations -> {
+            for (String key : keys) {
+                operations.opsForValue().increment(key, deltas.get(key));
+            }
+        }), () -> {
+            deltas.forEach(writeBuffer::increment);
+            return List.of();
+        });
+        for (int i = 0; i < keys.size(); i++) {
+            results.put(keys.get(i), i < values.size() && values.get(i) instanceof Number n ? n.longValue() : null);
+        }
+        return results;
+    }
+
+    /**
+     * 批量递增计数器和有序集合分数并设置过期时间（一次管道往返，不读取结果）
+     * Redis 不可用时增量暂存，恢复后合并回放
+     */
+    public void incrementBatch(Map<String, Long> counterDeltas, Map<String, Map<Object, Double>> scoreDeltas,
+                               Map<String, Duration> expirations) {
+        incrementBatch(counterDeltas, scoreDeltas, Map.of(), expirations);
+    }
+
+    /**
+     * 同上，并在同一管道中向 HyperLogLog 添加成员（PFADD）
+     * Redis 不可用时 HyperLogLog 的成员不暂存，去重计数少计这段时间的访客
+     */
+    public void incrementBatch(Map<String, Long> counterDeltas, Map<String, Map<Object, Double>> scoreDeltas,
+                               Map<String, Collection<String>> hyperLogLogAdds, Map<String, Duration> expirations) {
+        if (counterDeltas.isEmpty() && scoreDeltas.isEmpty() && hyperLogLogAdds.isEmpty()) {
+            return;
+        }
+        run(() -> RedisPipelines.pipelined(redisTemplate, operations -> {
+            counterDeltas.forEach((key, delta) -> operations.opsForValue().increment(key, delta));
+            scoreDeltas.forEach((key, deltas) -> deltas.forEach(
+                    (member, delta) -> operations.opsForZSet().incrementScore(key, member, delta)));
+            hyperLogLogAdds.forEach((key, members) -> operations.opsForHyperLogLog().add(key, members.toArray()));
+            expirations.forEach((key, duration) -> operations.expire(key, duration));
+        }), () -> {
+            counterDeltas.forEach(writeBuffer::increment);
+            scoreDeltas.forEach((key, deltas) -> deltas.forEach(
+                    (member, delta) -> writeBuffer.incrementScore(key, member, delta)));
+            expirations.forEach((key, duration) ->
+                    writeBuffer.defer("expire:" + key, () -> redisTemplate.expire(key, duration)));
+        });
+    }
+
+    /**
+     * HyperLogLog 去重计数，多个键时返回并集的基数（PFCOUNT），Redis 不可用时返回 0
+     */
+    public long pfCount(String... keys) {
+        Long count = call(() -> redisTemplate.opsForHyperLogLog().size(keys), () -> 0L);
+        return count != null ? count : 0;
+    }
+
+    /**
+     * 批量合并 HyperLogLog（一次管道往返），destination -> 要并入的源键，目标键本身的内容保留
+     * 合并是幂等的，可以重试；Redis 不可用时返回 false
+     */
+    public boolean pfMergeBatch(Map<String, Collection<String>> merges, Map<String, Duration> expirations) {
+        if (merges.isEmpty()) {
+            return true;
+        }
+        return call(() -> {
+            RedisPipelines.pipelined(redisTemplate, operations -> {
+                merges.forEach((destination, sources) ->
+                        operations.opsForHyperLogLog().union(destination, sources.toArray(new String[0])));
+                expirations.forEach((key, duration) -> operations.expire(key, duration));
+            });
+            return true;
+        }, () -> false);
     }
 
     /**
      * 添加到有序集合
      */
     public void zAdd(String key, Object value, double score) {
-        redisTemplate.opsForZSet().add(key, value, score);
+        run(() -> redisTemplate.opsForZSet().add(key, value, score),
+            () -> writeBuffer.defer("zadd:" + key + ":" + value, () -> redisTemplate.opsForZSet().add(key, value, score)));
+    }
+
+    /**
+     * 增加有序集合成员的分数，Redis 不可用时暂存增量，恢复后回放
+     */
+    public void zIncrementScore(String key, Object value, double delta) {
+        run(() -> redisTemplate.opsForZSet().incrementScore(key, value, delta),
+            () -> writeBuffer.incrementScore(key, value, delta));
+    }
+
+    /**
+     * 批量添加到有序集合（一条 ZADD）
+     */
+    public void zAddAll(String key, Map<Object, Double> scores) {
+        if (scores.isEmpty()) {
+            return;
+        }
+        Set<ZSetOperations.TypedTuple<Object>> tuples = new HashSet<>();
+        scores.forEach((value, score) -> tuples.add(ZSetOperations.TypedTuple.of(value, score)));
+        // 全量重建的排行，Redis 恢复后会再次重建，不可用时直接跳过
+        run(() -> redisTemplate.opsForZSet().add(key, tuples), () -> { });
     }
 
     /**
      * 获取有序集合的成员（按分数降序）
      */
     public Set<Object> zRevRange(String key, long start, long end) {
-        return redisTemplate.opsForZSet().reverseRange(key, start, end);
+        return call(() -> redisTemplate.opsForZSet().reverseRange(key, start, end), Set::of);
     }
 
+    /**
+     * 加权合并有序集合到 destination（ZUNIONSTORE ... WEIGHTS），移除分数不高于 minScore 的成员并设置过期时间
+     * 源键都为空时 destination 被删除；Redis 不可用时返回 false
+     */
+    public boolean zUnionStore(String destination, List<String> keys, double[] weights, double minScore, Duration duration) {
+        return call(() -> {
+            RedisPipelines.pipelined(redisTemplate, operations -> {
+                operations.opsForZSet().unionAndStore(keys.get(0), keys.subList(1, keys.size()), destination,
+                        Aggregate.SUM, Weights.of(weights));
+                operations.opsForZSet().removeRangeByScore(destination, -Double.MAX_VALUE, minScore);
+                operations.expire(destination, duration);
+            });
+            return true;
+        }, () -> false);
+    }
+
+    /**
+     * 获取有序集合成员的分数，成员不存在或 Redis 不可用时返回 null
+     */
+    public Double zScore(String key, Object member) {
+        return call(() -> redisTemplate.opsForZSet().score(key, member), () -> null);
+    }
+
+    /**
+     * 获取有序集合的全部成员和分数，Redis 不可用时返回 null（区别于空集合）
+     */
+    public Map<Object, Double> zMembersWithScores(String key) {
+        return call(() -> {
+            Map<Object, Double> members = new LinkedHashMap<>();
+            Set<ZSetOperations.TypedTuple<Object>> tuples = redisTemplate.opsForZSet().rangeWithScores(key, 0, -1);
+            if (tuples != null) {
+                tuples.forEach(tuple -> members.put(tuple.getValue(), tuple.getScore()));
+            }
+            return members;
+        }, () -> null);
+    }
+
+    /**
+     * 获取有序集合的全部成员，Redis 不可用时返回 null（区别于空集合）
+     */
+    public Set<Object> zMembers(String key) {
+        return call(() -> {
+            Set<Object> members = redisTemplate.opsForZSet().range(key, 0, -1);
+            return members != null ? members : Set.of();
+        }, () -> null);
+    }
+
+    /**
+     * Redis 熔断器和写缓冲状态
+     */
+    public Map<String, Object> getRedisHealth() {
+        Map<String, Object> health = new LinkedHashMap<>();
+        health.put("circuitBreaker", circuitBreaker.getStats());
+        health.put("writeBuffer", writeBuffer.getStats());
+        return health;
+    }
+
+    /**
+     * 经熔断器调用 Redis，不可用时执行 fallback
+     */
+    private <T> T call(Supplier<T> redisCall, Supplier<T> fallback) {
+        return circuitBreaker.execute(redisCall, fallback);
+    }
 
+    private void run(Runnable redisCall, Runnable fallback) {
+        circuitBreaker.execute(redisCall, fallback);
+    }
 
     /**
      * 添加到列表
@@ -196,21 +493,17 @@ public class CacheService {
 
     /**
      * 清除所有缓存（谨慎使用）
+     * 使用 SCAN 分批删除，避免 KEYS 阻塞 Redis
      */
     public void clearAll() {
-        Set<String> keys = redisTemplate.keys("*");
-        if (keys != null && !keys.isEmpty()) {
-            redisTemplate.delete(keys);
-        }
+        cacheKeyIndex.scanAndDelete("*");
     }
 
     /**
      * 清除指定前缀的缓存
+     * 前缀是已登记的缓存分组（如 "posts::page:"）时只删除登记的键，否则退化为 SCAN 分批删除
      */
     public void clearByPrefix(String prefix) {
-        Set<String> keys = redisTemplate.keys(prefix + "*");
-        if (keys != null && !keys.isEmpty()) {
-            redisTemplate.delete(keys);
-        }
+        cacheKeyIndex.invalidate(prefix);
     }
 }
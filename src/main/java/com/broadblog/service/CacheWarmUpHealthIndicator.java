@@ -0,0 +1,25 @@
+package com.broadblog.service;
+
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.stereotype.Component;
+
+/**
+ * 缓存预热健康检查
+ * 加入 readiness 组后，预热达到阈值前节点不接收流量
+ */
+@Component
+public class CacheWarmUpHealthIndicator implements HealthIndicator {
+
+    private final CacheWarmUpService cacheWarmUpService;
+
+    public CacheWarmUpHealthIndicator(CacheWarmUpService cacheWarmUpService) {
+        this.cacheWarmUpService = cacheWarmUpService;
+    }
+
+    @Override
+    public Health health() {
+        Health.Builder builder = cacheWarmUpService.isReady() ? Health.up() : Health.outOfService();
+        return builder.withDetails(cacheWarmUpService.getWarmUpStatus()).build();
+    }
+}
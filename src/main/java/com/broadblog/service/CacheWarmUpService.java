@@ -1,133 +1,241 @@
 package com.broadblog.service;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.cache.Cache;
 import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
 
+import com.broadblog.cache.CacheAccessRecorder;
+import com.broadblog.config.TwoLevelCacheManager;
+import com.broadblog.config.TwoLevelCacheProperties;
+
 /**
  * 缓存预热服务
- * 在应用启动完成后，自动预热各种缓存数据
+ * 在应用启动完成后，按访问记录预热最常读取的缓存键，并发执行、限时完成
  */
 @Service
 public class CacheWarmUpService {
 
+    // 一批预热的帖子 ID 数，对应一次 IN 查询
+    private static final int POST_BATCH_SIZE = 100;
+
+    public enum State { PENDING, RUNNING, DONE, TIMED_OUT }
+
     @Autowired
     private PostService postService;
-    
+
     @Autowired
     private TagService tagService;
-    
+
     @Autowired
     private UserService userService;
-    
+
     @Autowired
     private CacheService cacheService;
 
+    @Autowired
+    private TwoLevelCacheManager cacheManager;
+
+    @Autowired
+    private CacheAccessRecorder accessRecorder;
+
+    @Autowired
+    private TwoLevelCacheProperties properties;
+
+    // 预热进度
+    private volatile State state = State.PENDING;
+    private volatile int total;
+    private final AtomicInteger warmed = new AtomicInteger();
+    private final AtomicInteger failed = new AtomicInteger();
+    private volatile long startedAt;
+    private volatile long finishedAt;
+    // 一旦就绪不再回退（手动预热会重置进度）
+    private volatile boolean ready;
+
     /**
-     * 应用启动完成后，自动预热缓存
+     * 应用启动完成后，在后台预热缓存，不阻塞启动线程
      */
     @EventListener(ApplicationReadyEvent.class)
     public void warmUpCacheOnStartup() {
-        System.out.println("application started, warm up cache");
-        
+        Thread runner = new Thread(this::runWarmUp, "cache-warm-up");
+        runner.setDaemon(true);
+        runner.start();
+    }
+
+    /**
+     * 执行一次预热：先固定的首页、热门和统计数据，再按访问次数从高到低预热记录的键
+     */
+    public synchronized void runWarmUp() {
+        TwoLevelCacheProperties.WarmUp warmUp = properties.getWarmUp();
+        List<Callable<Void>> tasks = new ArrayList<>();
+        tasks.add(task(() -> postService.getPostsByPage(1, 10)));
+        tasks.add(task(() -> postService.getHotPosts(10)));
+        tasks.add(task(tagService::warmUpTagCache));
+        tasks.add(task(userService::warmUpUserCache));
+        tasks.add(task(userService::getUserStats));
+        tasks.add(task(tagService::getTagStatistics));
+        if (warmUp.isEnabled()) {
+            tasks.addAll(plan(warmUp.getTopKeys()));
+        }
+
+        total = tasks.size();
+        warmed.set(0);
+        failed.set(0);
+        startedAt = System.currentTimeMillis();
+        finishedAt = 0;
+        state = State.RUNNING;
+        System.out.println("warm up cache: " + total + " tasks");
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, warmUp.getThreads()), r -> {
+            Thread thread = new Thread(r, "cache-warm-up-worker");
+            thread.setDaemon(true);
+            return thread;
+        });
         try {
-            // 预热文章缓存
-            warmUpPostCache();
-            
-            // 预热标签缓存
-            warmUpTagCache();
-            
-            // 预热用户缓存
-            warmUpUserCache();
-            
-            // 预热系统统计缓存
-            warmUpSystemStatsCache();
-            
-            System.out.println("warm up cache done");
-            
-        } catch (Exception e) {
-            System.err.println("warm up cache error: " + e.getMessage());
-            e.printStackTrace();
+            // 超出时间预算的任务被取消，节点照常就绪，剩余的键在首次访问时加载
+            executor.invokeAll(tasks, warmUp.getTimeBudget().toMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            executor.shutdownNow();
         }
+        finishedAt = System.currentTimeMillis();
+        state = warmed.get() + failed.get() < total ? State.TIMED_OUT : State.DONE;
+        System.out.println("warm up cache " + state + ": " + warmed.get() + "/" + total + " warmed, "
+                + failed.get() + " failed in " + (finishedAt - startedAt) + " ms");
     }
-    
+
     /**
-     * 预热文章相关缓存
+     * 根据访问记录生成预热任务；帖子详情按批合并成 IN 查询
      */
-    private void warmUpPostCache() {
-        System.out.println("warm up post cache");
-        
+    private List<Callable<Void>> plan(int topKeys) {
+        List<Callable<Void>> tasks = new ArrayList<>();
+        List<CacheAccessRecorder.AccessedKey> keys;
         try {
-            // 预热第一页文章
-            postService.getPostsByPage(1, 10);
-            
-            // 预热热门文章排行
-            postService.getHotPosts(10);
-            
-            System.out.println("warm up post cache done");
+            keys = accessRecorder.topKeys(topKeys);
         } catch (Exception e) {
-            System.err.println("warm up post cache error: " + e.getMessage());
+            System.err.println("read cache access records error: " + e.getMessage());
+            return tasks;
         }
+        List<Long> postIds = new ArrayList<>();
+        for (CacheAccessRecorder.AccessedKey accessed : keys) {
+            if ("posts".equals(accessed.cacheName()) && accessed.key() instanceof Long id) {
+                postIds.add(id);
+                if (postIds.size() == POST_BATCH_SIZE) {
+                    tasks.add(postBatch(postIds));
+                    postIds = new ArrayList<>();
+                }
+            } else {
+                tasks.add(task(() -> warmKey(accessed.cacheName(), accessed.key())));
+            }
+        }
+        if (!postIds.isEmpty()) {
+            tasks.add(postBatch(postIds));
+        }
+        return tasks;
+    }
+
+    private Callable<Void> postBatch(List<Long> ids) {
+        return task(() -> postService.warmUpPostDetails(ids));
     }
-    
+
     /**
-     * 预热标签相关缓存
+     * 预热单个键：L2 中有则直接回填 L1，否则按键的格式调用对应的查询
      */
-    private void warmUpTagCache() {
-        System.out.println("warm up tag cache");
-        
-        try {
-            tagService.warmUpTagCache();
-        } catch (Exception e) {
-            System.err.println("warm up tag cache error: " + e.getMessage());
+    private void warmKey(String cacheName, Object key) {
+        Cache cache = cacheManager.getCache(cacheName);
+        if (cache == null || cache.get(key) != null) {
+            return;
+        }
+        String[] parts = key instanceof String stringKey ? stringKey.split(":") : new String[0];
+        switch (cacheName) {
+            case "posts":
+                if (parts.length == 3 && parts[0].equals("page")) {
+                    postService.getPostsByPage(Integer.parseInt(parts[1]), Integer.parseInt(parts[2]));
+                } else if (parts.length == 4 && parts[0].equals("authorPage")) {
+                    postService.getPostsByAuthorIdWithPage(Long.parseLong(parts[1]),
+                            Integer.parseInt(parts[2]), Integer.parseInt(parts[3]));
+                }
+                break;
+            case "users":
+                if (key instanceof Long id) {
+                    userService.getUserById(id);
+                }
+                break;
+            case "tags":
+                if (key instanceof Long id) {
+                    tagService.getTagById(id);
+                }
+                break;
+            default:
+                // 其余的键只从 L2 回填，不在启动时访问数据库
+                break;
         }
     }
-    
+
+    private Callable<Void> task(Runnable work) {
+        return () -> {
+            try {
+                work.run();
+                int done = warmed.incrementAndGet();
+                if (total >= 10 && done % (total / 10) == 0) {
+                    System.out.println("warm up cache progress: " + done + "/" + total);
+                }
+            } catch (Exception e) {
+                failed.incrementAndGet();
+                System.err.println("warm up cache task error: " + e.getMessage());
+            }
+            return null;
+        };
+    }
+
     /**
-     * 预热用户相关缓存
+     * 预热完成的比例达到阈值，或预热已结束（包括超时）时，视为就绪
      */
-    private void warmUpUserCache() {
-        System.out.println("warm up user cache");
-        
-        try {
-            userService.warmUpUserCache();
-        } catch (Exception e) {
-            System.err.println("warm up user cache error: " + e.getMessage());
+    public boolean isReady() {
+        if (!ready && (state == State.DONE || state == State.TIMED_OUT
+                || state == State.RUNNING && warmed.get() >= total * properties.getWarmUp().getReadyShare())) {
+            ready = true;
         }
+        return ready;
     }
-    
+
     /**
-     * 预热系统统计缓存
+     * 获取预热进度
      */
-    private void warmUpSystemStatsCache() {
-        System.out.println("warm up system stats cache");
-        
-        try {
-            // 预热用户统计
-            userService.getUserStats();
-            
-            // 预热标签统计
-            tagService.getTagStatistics();
-            
-            System.out.println("warm up system stats cache done");
-        } catch (Exception e) {
-            System.err.println("warm up system stats cache error: " + e.getMessage());
+    public Map<String, Object> getWarmUpStatus() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("state", state);
+        status.put("total", total);
+        status.put("warmed", warmed.get());
+        status.put("failed", failed.get());
+        status.put("ready", isReady());
+        if (startedAt > 0) {
+            status.put("elapsedMs", (finishedAt > 0 ? finishedAt : System.currentTimeMillis()) - startedAt);
         }
+        return status;
     }
-    
+
     /**
      * 手动预热缓存（可以在需要时调用）
      */
     public void manualWarmUp() {
         System.out.println("manual warm up cache");
-        warmUpPostCache();
-        warmUpTagCache();
-        warmUpUserCache();
-        warmUpSystemStatsCache();
+        runWarmUp();
         System.out.println("manual warm up cache done");
     }
-    
+
     /**
      * 清除所有缓存
      */
@@ -136,21 +244,21 @@ public class CacheWarmUpService {
         cacheService.clearAll();
         System.out.println("all cache cleared");
     }
-    
+
     /**
      * 获取缓存状态信息
      */
     public void getCacheStatus() {
         System.out.println("cache status");
-        
+
         // 检查各种缓存键是否存在
         String[] cacheKeys = {
-            "hot_posts",
-            "popular_tags_ranking", 
+            "trending:24h",
+            "popular_tags_ranking",
             "stats:total_users",
             "stats:total_admins"
         };
-        
+
         for (String key : cacheKeys) {
             boolean exists = cacheService.exists(key);
             System.out.println("  " + key + ": " + (exists ? "exists" : "not exists"));
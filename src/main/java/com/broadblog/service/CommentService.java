@@ -20,13 +20,18 @@ public class CommentService {
     private final CommentRepository commentRepository;
     private final UserRepository userRepository;
     private final PostRepository postRepository;
+    private final TrendingService trendingService;
+    private final PostService postService;
 
     public CommentService(NotificationService notificationService, CommentRepository commentRepository,
-                         UserRepository userRepository, PostRepository postRepository) {
+                         UserRepository userRepository, PostRepository postRepository,
+                         TrendingService trendingService, PostService postService) {
         this.notificationService = notificationService;
         this.commentRepository = commentRepository;
         this.userRepository = userRepository;
         this.postRepository = postRepository;
+        this.trendingService = trendingService;
+        this.postService = postService;
     }
 
     /**
@@ -36,6 +41,8 @@ public class CommentService {
         // 转换为实体并保存到数据库
         Comment comment = convertToEntity(commentDto);
         Comment savedComment = commentRepository.save(comment);
+        recordTrending(savedComment);
+        clearPostCache(savedComment);
         
         // 发送通知给文章作者
         notificationService.sendNewCommentNotification(postAuthorId, savedComment);
@@ -50,6 +57,8 @@ public class CommentService {
         // 转换为实体并保存到数据库
         Comment reply = convertToEntity(replyDto);
         Comment savedReply = commentRepository.save(reply);
+        recordTrending(savedReply);
+        clearPostCache(savedReply);
         
         // 发送通知给被回复的评论作者
         notificationService.sendCommentReplyNotification(originalCommentAuthorId, savedReply);
@@ -64,6 +73,7 @@ public class CommentService {
         // 转换为实体并保存到数据库
         Comment like = convertToEntity(likeDto);
         Comment savedLike = commentRepository.save(like);
+        clearPostCache(savedLike);
         
         // 发送通知给被点赞的评论作者
         notificationService.sendLikeNotification(
@@ -79,6 +89,22 @@ public class CommentService {
         return convertToDto(savedLike);
     }
 
+    // 评论和回复计入帖子的趋势分数
+    private void recordTrending(Comment comment) {
+        if (comment.getPost() != null && comment.getPost().getId() != null) {
+            trendingService.recordComment(comment.getPost().getId());
+        }
+    }
+
+    // 帖子详情和列表缓存了评论数，评论变化后清除
+    private void clearPostCache(Comment comment) {
+        Post post = comment.getPost();
+        if (post != null && post.getId() != null) {
+            postService.clearCommentCountCache(post.getId(),
+                post.getAuthor() != null ? post.getAuthor().getId() : null);
+        }
+    }
+
     /**
      * 删除评论
      */
@@ -88,6 +114,7 @@ public class CommentService {
             .orElseThrow(() -> new RuntimeException("Comment not found"));
         comment.setUpdatedAt(java.time.LocalDateTime.now());
         commentRepository.save(comment);
+        clearPostCache(comment);
         
         // 这里可以通过 WebSocket 发送删除通知
     }
@@ -138,7 +165,9 @@ public class CommentService {
      * 保存评论
      */
     public Comment saveComment(Comment comment) {
-        return commentRepository.save(comment);
+        Comment savedComment = commentRepository.save(comment);
+        clearPostCache(savedComment);
+        return savedComment;
     }
 
     /**
@@ -0,0 +1,149 @@
+package com.broadblog.service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Service;
+
+import com.broadblog.cache.IdBloomFilter;
+import com.broadblog.cache.RedisCircuitBreaker;
+import com.broadblog.config.TwoLevelCacheProperties;
+import com.broadblog.repository.PostRepository;
+import com.broadblog.repository.TagRepository;
+import com.broadblog.repository.UserRepository;
+
+/**
+ * 实体 ID 存在性过滤服务
+ * 为帖子、用户、标签各维护一个布隆过滤器（本地内存 + Redis 位图），
+ * 对一定不存在的 ID 直接返回空，避免随机 ID 探测穿透到数据库
+ */
+@Service
+public class EntityIdFilterService implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(EntityIdFilterService.class);
+
+    private final PostRepository postRepository;
+    private final UserRepository userRepository;
+    private final TagRepository tagRepository;
+    private final boolean enabled;
+    private final IdBloomFilter postIds;
+    private final IdBloomFilter userIds;
+    private final IdBloomFilter tagIds;
+    private final ScheduledExecutorService syncer;
+
+    @Autowired
+    public EntityIdFilterService(PostRepository postRepository, UserRepository userRepository,
+                                 TagRepository tagRepository, StringRedisTemplate stringRedisTemplate,
+                                 RedisCircuitBreaker redisCircuitBreaker, TwoLevelCacheProperties properties) {
+        this.postRepository = postRepository;
+        this.userRepository = userRepository;
+        this.tagRepository = tagRepository;
+        TwoLevelCacheProperties.IdFilter idFilter = properties.getIdFilter();
+        this.enabled = idFilter.isEnabled();
+        this.postIds = newFilter("posts", idFilter, stringRedisTemplate, redisCircuitBreaker);
+        this.userIds = newFilter("users", idFilter, stringRedisTemplate, redisCircuitBreaker);
+        this.tagIds = newFilter("tags", idFilter, stringRedisTemplate, redisCircuitBreaker);
+        this.syncer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "id-filter-sync");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long intervalMillis = Math.max(1, idFilter.getSyncInterval().toMillis());
+        syncer.scheduleWithFixedDelay(this::syncSafely, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private static IdBloomFilter newFilter(String name, TwoLevelCacheProperties.IdFilter idFilter,
+                                           StringRedisTemplate stringRedisTemplate,
+                                           RedisCircuitBreaker redisCircuitBreaker) {
+        long expected = idFilter.getExpectedInsertions().getOrDefault(name, 100_000L);
+        return new IdBloomFilter(name, expected, idFilter.getFpp(), stringRedisTemplate, redisCircuitBreaker,
+                idFilter.isCheckShared());
+    }
+
+    /**
+     * 应用启动完成后，从数据库重建过滤器；重建完成前过滤器放行所有 ID
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuildOnStartup() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            rebuildAll();
+        } catch (Exception e) {
+            // 重建失败时过滤器保持放行所有 ID
+            logger.warn("Failed to rebuild ID filters, all IDs are let through", e);
+        }
+    }
+
+    // 重建全部过滤器
+    public void rebuildAll() {
+        postIds.rebuild(postRepository.findAllIds());
+        userIds.rebuild(userRepository.findAllIds());
+        tagIds.rebuild(tagRepository.findAllIds());
+    }
+
+    // 从 Redis 位图拉取其他节点新建的 ID
+    private void syncSafely() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            postIds.sync();
+            userIds.sync();
+            tagIds.sync();
+        } catch (RuntimeException e) {
+            logger.warn("Failed to sync ID filters", e);
+        }
+    }
+
+    // 帖子 ID 可能存在（false 表示一定不存在）
+    public boolean mightContainPost(Long id) {
+        return !enabled || postIds.mightContain(id);
+    }
+
+    public boolean mightContainUser(Long id) {
+        return !enabled || userIds.mightContain(id);
+    }
+
+    public boolean mightContainTag(Long id) {
+        return !enabled || tagIds.mightContain(id);
+    }
+
+    // 新建实体后登记 ID
+    public void addPost(Long id) {
+        postIds.add(id);
+    }
+
+    public void addUser(Long id) {
+        userIds.add(id);
+    }
+
+    public void addTag(Long id) {
+        tagIds.add(id);
+    }
+
+    // 获取各过滤器统计信息
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("posts", postIds.getStats());
+        stats.put("users", userIds.getStats());
+        stats.put("tags", tagIds.getStats());
+        return stats;
+    }
+
+    @Override
+    public void close() {
+        syncer.shutdownNow();
+    }
+}
@@ -1,5 +1,7 @@
 package com.broadblog.service;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
@@ -11,19 +13,25 @@ import java.util.stream.Collectors;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.Cache;
 import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.Cacheable;
 import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import com.broadblog.cache.PostCacheNamespaces;
+import com.broadblog.config.TwoLevelCacheManager;
+import com.broadblog.dto.PostDetail;
+import com.broadblog.dto.PostPage;
+import com.broadblog.dto.PostSummary;
 import com.broadblog.entity.Post;
 import com.broadblog.entity.Tag;
 import com.broadblog.entity.User;
+import com.broadblog.mapper.PostViewMapper;
 import com.broadblog.repository.PostRepository;
 import com.broadblog.repository.UserRepository;
 import com.broadblog.search.PostDocument;
@@ -34,25 +42,48 @@ public class PostService {
 
     private static final Logger logger = LoggerFactory.getLogger(PostService.class);
 
+    // 阅读量总数的缓存时间，过期后从数据库和未持久化的增量重新计算
+    private static final java.time.Duration VIEWS_CACHE_TTL = java.time.Duration.ofMinutes(1);
+
     private final PostRepository postRepository;
     private final UserRepository userRepository;
     private final TagService tagService;
     private final CacheService cacheService;
     private final PostSearchService postSearchService;
+    private final TwoLevelCacheManager cacheManager;
+    private final PostViewMapper postViewMapper;
+    private final EntityIdFilterService idFilterService;
+    private final PostViewCounter postViewCounter;
+    private final TrendingService trendingService;
+    private final PostViewPersister postViewPersister;
+    private final TagCooccurrenceIndex tagCooccurrenceIndex;
+    private final RelatedPostIndex relatedPostIndex;
 
     @Autowired
     public PostService(PostRepository postRepository, UserRepository userRepository, 
-                      TagService tagService, CacheService cacheService, PostSearchService postSearchService) {
+                      TagService tagService, CacheService cacheService, PostSearchService postSearchService,
+                      TwoLevelCacheManager cacheManager, PostViewMapper postViewMapper,
+                      EntityIdFilterService idFilterService, PostViewCounter postViewCounter,
+                      TrendingService trendingService, PostViewPersister postViewPersister,
+                      TagCooccurrenceIndex tagCooccurrenceIndex, RelatedPostIndex relatedPostIndex) {
         this.postRepository = postRepository;
         this.userRepository = userRepository;
         this.tagService = tagService;
         this.cacheService = cacheService;
         this.postSearchService = postSearchService;
+        this.cacheManager = cacheManager;
+        this.postViewMapper = postViewMapper;
+        this.idFilterService = idFilterService;
+        this.postViewCounter = postViewCounter;
+        this.trendingService = trendingService;
+        this.postViewPersister = postViewPersister;
+        this.tagCooccurrenceIndex = tagCooccurrenceIndex;
+        this.relatedPostIndex = relatedPostIndex;
     }
 
     // Create or update a post
-    @CacheEvict(value = {"posts", "hotPosts", "searchResults"}, allEntries = true)
     public Post savePost(Post post) {
+        boolean created = post.getId() == null;
         if (post.getAuthor() != null && post.getAuthor().getId() != null) {
             User author = userRepository.findById(post.getAuthor().getId())
                 .orElseThrow(() -> new RuntimeException("User not found"));
@@ -63,15 +94,22 @@ public class PostService {
         
         // 处理标签使用计数
         Set<Tag> oldTags = new HashSet<>();
+        Long previousAuthorId = null;
         if (post.getId() != null) {
             // 更新帖子：获取原有标签
             Optional<Post> existingPost = postRepository.findById(post.getId());
             if (existingPost.isPresent() && existingPost.get().getTags() != null) {
                 oldTags = new HashSet<>(existingPost.get().getTags());
             }
+            if (existingPost.isPresent() && existingPost.get().getAuthor() != null) {
+                previousAuthorId = existingPost.get().getAuthor().getId();
+            }
         }
         
         Post savedPost = postRepository.save(post);
+        if (created) {
+            idFilterService.addPost(savedPost.getId());
+        }
         // 同步到 Elasticsearch 索引
         try {
             postSearchService.indexPost(savedPost);
@@ -80,40 +118,57 @@ public class PostService {
         }
         
         // 更新标签使用计数
-        updateTagUsageCounts(oldTags, savedPost.getTags() != null ? new HashSet<>(savedPost.getTags()) : new HashSet<>());
+        Set<Tag> newTags = savedPost.getTags() != null ? new HashSet<>(savedPost.getTags()) : new HashSet<>();
+        updateTagUsageCounts(oldTags, newTags);
+        relatedPostIndex.update(savedPost.getId(), tagIds(newTags));
         
         // 清除相关缓存
-        clearPostRelatedCache(savedPost.getId());
+        clearPostRelatedCache(savedPost.getId(), savedPost.getAuthor().getId(), created);
+        if (previousAuthorId != null && !previousAuthorId.equals(savedPost.getAuthor().getId())) {
+            cacheManager.bumpGeneration(PostCacheNamespaces.author(previousAuthorId));
+        }
         
         return savedPost;
     }
 
     // Get all posts
-    @Cacheable(value = "posts", key = "'all'")
-    public List<Post> getAllPosts() {
-        return postRepository.findAll();
+    @Cacheable(value = "posts", key = "'all'", sync = true)
+    public List<PostSummary> getAllPosts() {
+        return postViewMapper.toSummaries(postRepository.findAll());
     }
 
-    // Get a post by ID
-    @Cacheable(value = "posts", key = "#id")
+    // Get a post entity by ID (uncached, for updates and permission checks)
     public Optional<Post> getPostById(Long id) {
-        // 增加阅读量统计
-        incrementPostViews(id);
+        if (!idFilterService.mightContainPost(id)) {
+            return Optional.empty();
+        }
         return postRepository.findById(id);
     }
 
+    // 获取帖子详情（缓存只读视图，帖子不存在时返回 null 且不缓存）
+    @Cacheable(value = "posts", key = "#id", sync = true)
+    public PostDetail getPostDetail(Long id) {
+        // 一定不存在的 ID 直接返回，不访问数据库
+        if (!idFilterService.mightContainPost(id)) {
+            return null;
+        }
+        return postViewMapper.loadDetail(id);
+    }
+
     // Delete a post by ID
-    @CacheEvict(value = {"posts", "hotPosts", "searchResults"}, allEntries = true)
     public void deletePost(Long id) {
         // 获取要删除的帖子的标签，减少使用计数
         Optional<Post> postToDelete = postRepository.findById(id);
+        Long authorId = postToDelete.map(Post::getAuthor).map(User::getId).orElse(null);
         if (postToDelete.isPresent() && postToDelete.get().getTags() != null) {
             for (Tag tag : postToDelete.get().getTags()) {
                 tagService.decrementTagUsage(tag.getId());
             }
+            tagCooccurrenceIndex.update(tagIds(postToDelete.get().getTags()), List.of());
         }
         
         postRepository.deleteById(id);
+        relatedPostIndex.remove(id);
         // 从 Elasticsearch 删除
         try {
             postSearchService.deletePost(id);
@@ -122,40 +177,40 @@ public class PostService {
         }
         
         // 清除相关缓存
-        clearPostRelatedCache(id);
+        clearPostRelatedCache(id, authorId, true);
     }
 
     // Custom: Get posts by author
-    @Cacheable(value = "posts", key = "'author:' + #authorId")
-    public List<Post> getPostsByAuthorId(Long authorId) {
-        return postRepository.findByAuthorId(authorId);
+    @Cacheable(value = "posts", key = "'author:' + #authorId", sync = true)
+    public List<PostSummary> getPostsByAuthorId(Long authorId) {
+        return postViewMapper.toSummaries(postRepository.findByAuthorId(authorId));
     }
 
     // 分页获取帖子（带缓存）
-    @Cacheable(value = "posts", key = "'page:' + #page + ':' + #size")
-    public Page<Post> getPostsByPage(int page, int size) {
+    @Cacheable(value = "posts", key = "'page:' + #page + ':' + #size", sync = true)
+    public PostPage getPostsByPage(int page, int size) {
         // 验证分页参数
         if (page < 1) page = 1;
         if (size < 1 || size > 100) size = 10;
         
         // 按创建时间倒序排列
         Pageable pageable = PageRequest.of(page - 1, size, Sort.by(Sort.Direction.DESC, "createdAt"));
-        return postRepository.findAll(pageable);
+        return postViewMapper.toPage(postRepository.findAll(pageable));
     }
     
     // 根据用户ID分页获取帖子（带缓存）
-    @Cacheable(value = "posts", key = "'authorPage:' + #authorId + ':' + #page + ':' + #size")
-    public Page<Post> getPostsByAuthorIdWithPage(Long authorId, int page, int size) {
+    @Cacheable(value = "posts", key = "'authorPage:' + #authorId + ':' + #page + ':' + #size", sync = true)
+    public PostPage getPostsByAuthorIdWithPage(Long authorId, int page, int size) {
         if (page < 1) page = 1;
         if (size < 1 || size > 100) size = 10;
         
         Pageable pageable = PageRequest.of(page - 1, size, Sort.by(Sort.Direction.DESC, "createdAt"));
-        return postRepository.findByAuthorId(authorId, pageable);
+        return postViewMapper.toPage(postRepository.findByAuthorId(authorId, pageable));
     }
     
     // 搜索帖子（综合搜索：标题、内容、标签）- 带缓存
-    @Cacheable(value = "searchResults", key = "'search:' + #keyword + ':' + #page + ':' + #size")
-    public Page<Post> searchPosts(String keyword, int page, int size) {
+    @Cacheable(value = "searchResults", key = "'search:' + #keyword + ':' + #page + ':' + #size", sync = true)
+    public PostPage searchPosts(String keyword, int page, int size) {
         if (page < 1) page = 1;
         if (size < 1 || size > 100) size = 10;
         
@@ -163,50 +218,33 @@ public class PostService {
         
         // 如果关键词为空，返回所有帖子
         if (keyword == null || keyword.trim().isEmpty()) {
-            return postRepository.findAll(pageable);
+            return postViewMapper.toPage(postRepository.findAll(pageable));
         }
         
-        return postRepository.searchPosts(keyword.trim(), pageable);
+        return postViewMapper.toPage(postRepository.searchPosts(keyword.trim(), pageable));
     }
 
     // 使用 Elasticsearch 进行全文搜索
-    @Cacheable(value = "searchResults", key = "'es:' + #keyword + ':' + #page + ':' + #size")
+    @Cacheable(value = "searchResults", key = "'es:' + #keyword + ':' + #page + ':' + #size", sync = true)
     @Transactional(readOnly = true)
-    public Page<Post> searchPostsEs(String keyword, int page, int size) {
+    public PostPage searchPostsEs(String keyword, int page, int size) {
         if (page < 1) page = 1;
         if (size < 1 || size > 100) size = 10;
         Pageable pageable = PageRequest.of(page - 1, size, Sort.by(Sort.Direction.DESC, "createdAt"));
 
         if (keyword == null || keyword.trim().isEmpty()) {
-            return postRepository.findAll(pageable);
+            return postViewMapper.toPage(postRepository.findAll(pageable));
         }
 
         try {
             // 获取ES搜索结果
             Page<PostDocument> docPage = postSearchService.search(keyword.trim(), page, size);
             
-            if (docPage.getContent().isEmpty()) {
-                return new PageImpl<>(List.of(), pageable, 0);
-            }
-            
-            // 只获取ID列表，避免序列化问题
+            // 只取ID列表，按ES结果顺序批量构建视图
             List<Long> ids = docPage.getContent().stream()
                 .map(PostDocument::getId)
                 .collect(Collectors.toList());
-            
-            // 使用JOIN FETCH预加载关联数据，避免懒加载问题
-            List<Post> posts = postRepository.findByIdInWithAuthorAndTags(ids);
-            
-            // 按ES结果顺序重新排列
-            Map<Long, Post> postMap = posts.stream()
-                .collect(Collectors.toMap(Post::getId, post -> post));
-            
-            List<Post> orderedPosts = ids.stream()
-                .map(id -> postMap.get(id))
-                .filter(Objects::nonNull)
-                .collect(Collectors.toList());
-            
-            return new PageImpl<>(orderedPosts, pageable, docPage.getTotalElements());
+            return new PostPage(postViewMapper.summariesByIds(ids), page, size, docPage.getTotalElements());
             
         } catch (Exception e) {
             // 如果ES搜索失败，降级到数据库搜索
@@ -216,39 +254,25 @@ public class PostService {
     }
     
     // 使用 Elasticsearch 按标签搜索
-    @Cacheable(value = "searchResults", key = "'es_tag:' + #tagName + ':' + #page + ':' + #size")
+    @Cacheable(value = "searchResults", key = "'es_tag:' + #tagName + ':' + #page + ':' + #size", sync = true)
     @Transactional(readOnly = true)
-    public Page<Post> searchPostsByTagEs(String tagName, int page, int size) {
+    public PostPage searchPostsByTagEs(String tagName, int page, int size) {
         if (page < 1) page = 1;
         if (size < 1 || size > 100) size = 10;
         Pageable pageable = PageRequest.of(page - 1, size, Sort.by(Sort.Direction.DESC, "createdAt"));
 
         if (tagName == null || tagName.trim().isEmpty()) {
-            return postRepository.findAll(pageable);
+            return postViewMapper.toPage(postRepository.findAll(pageable));
         }
 
         try {
             Page<PostDocument> docPage = postSearchService.searchByTag(tagName.trim(), page, size);
             
-            if (docPage.getContent().isEmpty()) {
-                return new PageImpl<>(List.of(), pageable, 0);
-            }
-            
+            // 只取ID列表，按ES结果顺序批量构建视图
             List<Long> ids = docPage.getContent().stream()
                 .map(PostDocument::getId)
                 .collect(Collectors.toList());
-            
-            List<Post> posts = postRepository.findByIdInWithAuthorAndTags(ids);
-            
-            Map<Long, Post> postMap = posts.stream()
-                .collect(Collectors.toMap(Post::getId, post -> post));
-            
-            List<Post> orderedPosts = ids.stream()
-                .map(id -> postMap.get(id))
-                .filter(Objects::nonNull)
-                .collect(Collectors.toList());
-            
-            return new PageImpl<>(orderedPosts, pageable, docPage.getTotalElements());
+            return new PostPage(postViewMapper.summariesByIds(ids), page, size, docPage.getTotalElements());
             
         } catch (Exception e) {
             logger.warn("ES tag search failed for tag '{}', falling back to database search: {}", tagName, e.getMessage());
@@ -257,39 +281,25 @@ public class PostService {
     }
     
     // 使用 Elasticsearch 按作者搜索
-    @Cacheable(value = "searchResults", key = "'es_author:' + #authorId + ':' + #page + ':' + #size")
+    @Cacheable(value = "searchResults", key = "'es_author:' + #authorId + ':' + #page + ':' + #size", sync = true)
     @Transactional(readOnly = true)
-    public Page<Post> searchPostsByAuthorEs(Long authorId, int page, int size) {
+    public PostPage searchPostsByAuthorEs(Long authorId, int page, int size) {
         if (page < 1) page = 1;
         if (size < 1 || size > 100) size = 10;
         Pageable pageable = PageRequest.of(page - 1, size, Sort.by(Sort.Direction.DESC, "createdAt"));
 
         if (authorId == null) {
-            return postRepository.findAll(pageable);
+            return postViewMapper.toPage(postRepository.findAll(pageable));
         }
 
         try {
             Page<PostDocument> docPage = postSearchService.searchByAuthor(authorId, page, size);
             
-            if (docPage.getContent().isEmpty()) {
-                return new PageImpl<>(List.of(), pageable, 0);
-            }
-            
+            // 只取ID列表，按ES结果顺序批量构建视图
             List<Long> ids = docPage.getContent().stream()
                 .map(PostDocument::getId)
                 .collect(Collectors.toList());
-            
-            List<Post> posts = postRepository.findByIdInWithAuthorAndTags(ids);
-            
-            Map<Long, Post> postMap = posts.stream()
-                .collect(Collectors.toMap(Post::getId, post -> post));
-            
-            List<Post> orderedPosts = ids.stream()
-                .map(id -> postMap.get(id))
-                .filter(Objects::nonNull)
-                .collect(Collectors.toList());
-            
-            return new PageImpl<>(orderedPosts, pageable, docPage.getTotalElements());
+            return new PostPage(postViewMapper.summariesByIds(ids), page, size, docPage.getTotalElements());
             
         } catch (Exception e) {
             logger.warn("ES author search failed for author {}, falling back to database search: {}", authorId, e.getMessage());
@@ -305,156 +315,175 @@ public class PostService {
     }
     
     // 按标题搜索 - 带缓存
-    @Cacheable(value = "searchResults", key = "'title:' + #title + ':' + #page + ':' + #size")
-    public Page<Post> searchByTitle(String title, int page, int size) {
+    @Cacheable(value = "searchResults", key = "'title:' + #title + ':' + #page + ':' + #size", sync = true)
+    public PostPage searchByTitle(String title, int page, int size) {
         if (page < 1) page = 1;
         if (size < 1 || size > 100) size = 10;
         
         Pageable pageable = PageRequest.of(page - 1, size, Sort.by(Sort.Direction.DESC, "createdAt"));
-        return postRepository.findByTitleContainingIgnoreCase(title, pageable);
+        return postViewMapper.toPage(postRepository.findByTitleContainingIgnoreCase(title, pageable));
     }
     
     // 按内容搜索 - 带缓存
-    @Cacheable(value = "searchResults", key = "'content:' + #content + ':' + #page + ':' + #size")
-    public Page<Post> searchByContent(String content, int page, int size) {
+    @Cacheable(value = "searchResults", key = "'content:' + #content + ':' + #page + ':' + #size", sync = true)
+    public PostPage searchByContent(String content, int page, int size) {
         if (page < 1) page = 1;
         if (size < 1 || size > 100) size = 10;
         
         Pageable pageable = PageRequest.of(page - 1, size, Sort.by(Sort.Direction.DESC, "createdAt"));
-        return postRepository.findByContentContainingIgnoreCase(content, pageable);
+        return postViewMapper.toPage(postRepository.findByContentContainingIgnoreCase(content, pageable));
     }
     
     // 按标题或内容搜索（复合搜索）- 带缓存
-    @Cacheable(value = "searchResults", key = "'titleContent:' + #keyword + ':' + #page + ':' + #size")
-    public Page<Post> searchByTitleOrContent(String keyword, int page, int size) {
+    @Cacheable(value = "searchResults", key = "'titleContent:' + #keyword + ':' + #page + ':' + #size", sync = true)
+    public PostPage searchByTitleOrContent(String keyword, int page, int size) {
         if (page < 1) page = 1;
         if (size < 1 || size > 100) size = 10;
         
         Pageable pageable = PageRequest.of(page - 1, size, Sort.by(Sort.Direction.DESC, "createdAt"));
-        return postRepository.findByTitleOrContentContaining(keyword, pageable);
+        return postViewMapper.toPage(postRepository.findByTitleOrContentContaining(keyword, pageable));
     }
     
     // 按标签搜索 - 带缓存
-    @Cacheable(value = "searchResults", key = "'tag:' + #tagName + ':' + #page + ':' + #size")
-    public Page<Post> searchByTag(String tagName, int page, int size) {
+    @Cacheable(value = "searchResults", key = "'tag:' + #tagName + ':' + #page + ':' + #size", sync = true)
+    public PostPage searchByTag(String tagName, int page, int size) {
         if (page < 1) page = 1;
         if (size < 1 || size > 100) size = 10;
         
         Pageable pageable = PageRequest.of(page - 1, size, Sort.by(Sort.Direction.DESC, "createdAt"));
-        return postRepository.findByTagsNameContaining(tagName, pageable);
+        return postViewMapper.toPage(postRepository.findByTagsNameContaining(tagName, pageable));
     }
 
-    public List<Post> getHotPosts(int top) {
-        String hotPostsKey = "hot_posts";
-        
-        // 从Redis获取热门文章ID列表
-        Set<Object> hotPostIds = cacheService.zRevRange(hotPostsKey, 0, top - 1);
-        
-        if (hotPostIds == null || hotPostIds.isEmpty()) {
-            // 缓存中没有数据，从数据库获取并构建缓存
-            return buildHotPostsCache(top);
+    public List<PostDetail> getHotPosts(int top) {
+        return getTrendingPosts(TrendingService.Window.DAY, top);
+    }
+
+    /**
+     * 获取时间窗口内的趋势帖子
+     * 排行由 TrendingService 在后台增量计算；窗口内还没有阅读时返回最新的帖子
+     */
+    public List<PostDetail> getTrendingPosts(TrendingService.Window window, int limit) {
+        // 多取一些，排行中已删除的帖子在加载详情时被过滤
+        List<Long> ids = trendingService.topPostIds(window, limit * 2);
+        if (ids.isEmpty()) {
+            ids = postRepository.findAll(PageRequest.of(0, limit, Sort.by(Sort.Direction.DESC, "createdAt")))
+                .getContent().stream().map(Post::getId).collect(Collectors.toList());
         }
         
-        // 根据ID列表获取文章详情，使用JOIN FETCH避免懒加载
-        List<Long> ids = hotPostIds.stream()
-            .map(id -> Long.valueOf(id.toString()))
+        // 批量读取帖子详情：先查 L1，再一次 MGET 查 L2，剩余的一次 IN 查询加载并回填缓存
+        Map<Long, PostDetail> details = cacheManager.getAll("posts", ids, postViewMapper::detailsByIds);
+        return ids.stream()
+            .map(details::get)
+            .filter(Objects::nonNull)
+            .limit(limit)
             .collect(Collectors.toList());
-        
-        try {
-            return postRepository.findByIdInWithAuthorAndTags(ids);
-        } catch (Exception e) {
-            logger.warn("Failed to get hot posts with JOIN FETCH, falling back to simple query: {}", e.getMessage());
-            // 降级到简单查询
-            return hotPostIds.stream()
-                .map(id -> postRepository.findById(Long.valueOf(id.toString())))
-                .filter(Optional::isPresent)
-                .map(Optional::get)
-                .collect(Collectors.toList());
-        }
     }
     
     /**
-     * 构建热门文章缓存
-     * 从数据库获取文章，按阅读量排序，存入Redis
+     * 获取相关帖子：按共有标签的加权 Jaccard 相似度排序，由 RelatedPostIndex 在内存中计算并缓存
      */
-    private List<Post> buildHotPostsCache(int top) {
-        // 这里需要先实现阅读量统计，暂时返回空列表
-        // TODO: 实现阅读量统计后，这里可以按阅读量排序
-        List<Post> posts = postRepository.findAll();
-        
-        // 暂时按创建时间排序，取最新的文章
-        List<Post> topPosts = posts.stream()
-            .sorted((p1, p2) -> p2.getCreatedAt().compareTo(p1.getCreatedAt()))
-            .limit(top)
+    public List<PostDetail> getRelatedPosts(Long id, int limit) {
+        // 多取一些，索引中已删除的帖子在加载详情时被过滤
+        List<Long> ids = relatedPostIndex.relatedPosts(id, limit * 2).stream()
+            .map(RelatedPostIndex.RelatedPost::postId)
             .collect(Collectors.toList());
-        
-        // 将结果存入Redis缓存
-        String hotPostsKey = "hot_posts";
-        for (Post post : topPosts) {
-            // 暂时使用创建时间作为分数，后续可以改为阅读量
-            double score = post.getCreatedAt().toEpochSecond(java.time.ZoneOffset.UTC);
-            cacheService.zAdd(hotPostsKey, post.getId().toString(), score);
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
         }
         
-        // 设置缓存过期时间
-        cacheService.expire(hotPostsKey, java.time.Duration.ofHours(6));
-        
-        return topPosts;
+        Map<Long, PostDetail> details = cacheManager.getAll("posts", ids, postViewMapper::detailsByIds);
+        return ids.stream()
+            .map(details::get)
+            .filter(Objects::nonNull)
+            .limit(limit)
+            .collect(Collectors.toList());
     }
     
     /**
-     * 增加文章阅读量
-     * 使用Redis计数器实现
+     * 批量预热帖子详情缓存（一次 IN 查询，不计阅读量）
      */
-    public void incrementPostViews(Long postId) {
-        String viewKey = "post:" + postId + ":views";
-        String hotPostsKey = "hot_posts";
-        
-        // 增加阅读量
-        Long views = cacheService.increment(viewKey);
-        
-        // 更新热门文章排行
-        cacheService.zAdd(hotPostsKey, postId.toString(), views.doubleValue());
-        
-        // 设置阅读量缓存的过期时间（30天）
-        cacheService.expire(viewKey, java.time.Duration.ofDays(30));
-        
-        // 设置热门文章排行的过期时间（6小时）
-        cacheService.expire(hotPostsKey, java.time.Duration.ofHours(6));
-        
-        System.out.println("post " + postId + " views increased to: " + views);
+    public int warmUpPostDetails(List<Long> ids) {
+        return cacheManager.getAll("posts", ids, postViewMapper::detailsByIds).size();
+    }
+
+    /**
+     * 增加文章阅读量，并记录独立访客（visitorId 为空时只计阅读量）
+     * 每次阅读调用（在缓存之外），只在内存中累加，由 PostViewCounter 批量写入 Redis
+     */
+    public void incrementPostViews(Long postId, String visitorId) {
+        postViewCounter.record(postId, visitorId);
     }
     
     /**
      * 获取文章阅读量
      */
     public Long getPostViews(Long postId) {
-        String viewKey = "post:" + postId + ":views";
-        Optional<Long> views = cacheService.get(viewKey, Long.class);
-        return views.orElse(0L);
+        String viewsKey = PostViewCounter.viewsKey(postId);
+        Optional<Number> cached = cacheService.get(viewsKey, Number.class);
+        long views;
+        if (cached.isPresent()) {
+            views = cached.get().longValue();
+        } else {
+            // 数据库中已持久化的阅读量加上 Redis 中尚未持久化的增量，短时间缓存
+            views = postRepository.findViewCountById(postId).orElse(0L) + postViewPersister.unpersistedViews(postId);
+            cacheService.set(viewsKey, views, VIEWS_CACHE_TTL);
+        }
+        // 加上本节点尚未写入 Redis 的阅读量
+        return views + postViewCounter.pendingViews(postId);
+    }
+
+    /**
+     * 获取文章独立访客数（今天、本周、全部时间，近似值）
+     */
+    public Map<String, Long> getPostUniqueVisitors(Long postId) {
+        return postViewCounter.uniqueVisitors(postId);
     }
 
     /**
      * 清除文章相关的缓存
+     * 通过递增命名空间的版本号使旧缓存失效，只影响相关的作者分页和首页，旧条目随 TTL 自然过期
      */
-    private void clearPostRelatedCache(Long postId) {
+    private void clearPostRelatedCache(Long postId, Long authorId, boolean feedChanged) {
         // 清除单个文章缓存
-        cacheService.delete("posts::" + postId);
+        cacheManager.getCache("posts").evict(postId);
         
-        // 清除分页缓存（因为文章数量可能发生变化）
-        cacheService.clearByPrefix("posts::page:");
-        cacheService.clearByPrefix("posts::authorPage:");
+        // 新增或删除会让所有分页错位，编辑只影响前几页
+        cacheManager.bumpGeneration(feedChanged ? PostCacheNamespaces.FEED : PostCacheNamespaces.FEED_HEAD);
+        if (authorId != null) {
+            cacheManager.bumpGeneration(PostCacheNamespaces.author(authorId));
+        }
         
         // 清除搜索缓存（因为文章内容可能发生变化）
-        cacheService.clearByPrefix("searchResults::");
-        
-        // 清除热门文章排行缓存
-        cacheService.delete("hot_posts");
+        cacheManager.bumpGeneration("searchResults");
         
         System.out.println("post " + postId + " related cache cleared");
     }
     
-    // 辅助方法：更新标签使用计数
+    /**
+     * 评论增删后清除帖子的读模型缓存
+     * 详情按 ID 直接删除，列表中的评论数只刷新首页和作者分页，更深的分页随 TTL 过期
+     */
+    public void clearCommentCountCache(Long postId, Long authorId) {
+        cacheManager.getCache("posts").evict(postId);
+        cacheManager.bumpGeneration(PostCacheNamespaces.FEED_HEAD);
+        if (authorId != null) {
+            cacheManager.bumpGeneration(PostCacheNamespaces.author(authorId));
+        }
+    }
+
+    /**
+     * 用户修改用户名或头像后清除其帖子读模型中的作者信息
+     */
+    public void clearAuthorProfileCache(Long authorId) {
+        Cache posts = cacheManager.getCache("posts");
+        for (Long postId : postRepository.findIdsByAuthorId(authorId)) {
+            posts.evict(postId);
+        }
+        cacheManager.bumpGeneration(PostCacheNamespaces.FEED_HEAD);
+        cacheManager.bumpGeneration(PostCacheNamespaces.author(authorId));
+    }
+    
+    // 辅助方法：按新旧标签的差异更新标签使用计数和标签共现
     private void updateTagUsageCounts(Set<Tag> oldTags, Set<Tag> newTags) {
         // 找出被移除的标签，减少使用计数
         for (Tag oldTag : oldTags) {
@@ -469,5 +498,12 @@ public class PostService {
                 tagService.incrementTagUsage(newTag.getId());
             }
         }
+        tagCooccurrenceIndex.update(tagIds(oldTags), tagIds(newTags));
+    }
+    
+    private static List<Long> tagIds(Collection<Tag> tags) {
+        List<Long> ids = new ArrayList<>(tags.size());
+        tags.forEach(tag -> ids.add(tag.getId()));
+        return ids;
     }
 }
\ No newline at end of file
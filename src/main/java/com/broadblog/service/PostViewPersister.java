@@ -0,0 +1,151 @@
+package com.broadblog.service;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.broadblog.repository.PostViewCountRepository;
+
+/**
+ * 阅读量持久化
+ * 只在持有租约的节点上运行：定期把 Redis 中待持久化的增量（post:views:pending）重命名为一个编号的批次，
+ * 用 JDBC 批处理累加到 posts.view_count，成功后删除批次。
+ * 批次号同时写入数据库的持久化日志，节点在写入后、清理前宕机时，下一个节点重试同一批次不会重复累加。
+ */
+@Service
+public class PostViewPersister implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(PostViewPersister.class);
+
+    // 正在持久化的批次和它的编号
+    public static final String PERSISTING_VIEWS_KEY = "post:views:persisting";
+    private static final String BATCH_KEY = "post:views:persisting:batch";
+    private static final String BATCH_SEQUENCE_KEY = "post:views:batch-seq";
+    private static final String LEADER_KEY = "post:views:persister";
+
+    private final CacheService cacheService;
+    private final PostViewCountRepository viewCountRepository;
+    private final ScheduledExecutorService persister;
+    private final Duration leaseTtl;
+    private final String nodeId = UUID.randomUUID().toString();
+
+    private final AtomicLong persistedBatches = new AtomicLong();
+    private final AtomicLong persistedViews = new AtomicLong();
+    private final AtomicLong skippedBatches = new AtomicLong();
+
+    @Autowired
+    public PostViewPersister(CacheService cacheService, PostViewCountRepository viewCountRepository,
+                             @Value("${post.views.persist-interval:30s}") Duration persistInterval) {
+        this.cacheService = cacheService;
+        this.viewCountRepository = viewCountRepository;
+        // 租约覆盖几个周期，持有者宕机后由其他节点接手
+        this.leaseTtl = persistInterval.multipliedBy(3);
+        this.persister = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "post-view-persister");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long intervalMillis = Math.max(1, persistInterval.toMillis());
+        persister.scheduleWithFixedDelay(this::persistSafely, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 获取或续约持久化租约；续约时比较持有者和延长有效期是一步原子操作，不会续上其他节点刚取得的租约
+     */
+    boolean tryLead() {
+        return cacheService.setIfAbsent(LEADER_KEY, nodeId, leaseTtl)
+            || cacheService.expireIfValue(LEADER_KEY, nodeId, leaseTtl);
+    }
+
+    /**
+     * 持久化一个批次：先完成上次未清理的批次，否则取走当前累计的增量
+     * 返回写入数据库的阅读量，不是租约持有者或没有增量时返回 0
+     */
+    public synchronized long persist() {
+        if (!tryLead()) {
+            return 0;
+        }
+        Optional<Number> inFlight = cacheService.get(BATCH_KEY, Number.class);
+        long batchId;
+        if (inFlight.isPresent()) {
+            batchId = inFlight.get().longValue();
+        } else {
+            if (!cacheService.exists(PostViewCounter.PENDING_VIEWS_KEY)) {
+                return 0;
+            }
+            Long next = cacheService.increment(BATCH_SEQUENCE_KEY);
+            // 重命名之后的阅读量写入新的 pending，不会混入这个批次
+            // 只有没有进行中的批次时才重命名（与检查原子执行），不会覆盖另一个节点正在读取的批次
+            if (next == null || !cacheService.renameWithMarker(
+                    PostViewCounter.PENDING_VIEWS_KEY, PERSISTING_VIEWS_KEY, BATCH_KEY, next)) {
+                return 0;
+            }
+            batchId = next;
+        }
+
+        Map<Object, Double> members = cacheService.zMembersWithScores(PERSISTING_VIEWS_KEY);
+        if (members == null) {
+            return 0;
+        }
+        Map<Long, Long> deltas = new LinkedHashMap<>();
+        members.forEach((postId, delta) -> deltas.put(Long.valueOf(postId.toString()), delta.longValue()));
+        long views = deltas.values().stream().mapToLong(Long::longValue).sum();
+        if (!deltas.isEmpty()) {
+            if (viewCountRepository.applyBatch(batchId, deltas)) {
+                persistedBatches.incrementAndGet();
+                persistedViews.addAndGet(views);
+            } else {
+                skippedBatches.incrementAndGet();
+                logger.info("View count batch {} was already persisted, clearing it", batchId);
+                views = 0;
+            }
+        }
+        // 只清理自己的批次：另一个节点已清理并开始下一批次时不动它
+        cacheService.deleteIfMarker(BATCH_KEY, batchId, PERSISTING_VIEWS_KEY);
+        return views;
+    }
+
+    /**
+     * 尚未写入数据库的阅读量：待持久化和正在持久化的增量之和
+     */
+    public long unpersistedViews(Long postId) {
+        Double pending = cacheService.zScore(PostViewCounter.PENDING_VIEWS_KEY, postId.toString());
+        Double persisting = cacheService.zScore(PERSISTING_VIEWS_KEY, postId.toString());
+        return (pending != null ? pending.longValue() : 0) + (persisting != null ? persisting.longValue() : 0);
+    }
+
+    private void persistSafely() {
+        try {
+            persist();
+        } catch (RuntimeException e) {
+            // 批次留在 Redis 中，下个周期重试
+            logger.warn("Failed to persist post views: {}", e.getMessage());
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("leader", nodeId.equals(cacheService.get(LEADER_KEY, String.class).orElse(null)));
+        stats.put("persistedBatches", persistedBatches.get());
+        stats.put("persistedViews", persistedViews.get());
+        stats.put("skippedBatches", skippedBatches.get());
+        return stats;
+    }
+
+    @Override
+    public void close() {
+        persister.shutdown();
+    }
+}
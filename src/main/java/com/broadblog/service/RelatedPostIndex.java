@@ -0,0 +1,308 @@
+package com.broadblog.service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import com.broadblog.repository.PostTagRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+/**
+ * 相关帖子索引
+ * 内存中保存标签 ID 到帖子 ID 的倒排表（升序 long[]）和每个帖子的标签，按标签加权的 Jaccard 相似度排序：
+ * 共有标签的权重之和 / 两个帖子全部标签的权重之和，标签权重为 ln(1 + 帖子数 / 使用该标签的帖子数)，冷门标签相同更能说明相关
+ * 每个帖子的结果在本地缓存，帖子的标签变化时清除它和所有与它共有新旧标签的帖子的结果；
+ * 定期从 post_tags 重新加载，同步其他节点的改动；加载期间本节点的更新在替换前重放到新的倒排表上
+ */
+@Service
+public class RelatedPostIndex implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(RelatedPostIndex.class);
+
+    // 每个帖子缓存的相关帖子数，请求的数量不超过它时直接截取
+    public static final int MAX_RELATED = 50;
+    private static final long[] NONE = new long[0];
+
+    public record RelatedPost(Long postId, double score, int sharedTags) {
+    }
+
+    // 倒排表和帖子标签一起整体替换
+    private record State(Map<Long, long[]> postsByTag, Map<Long, long[]> tagsByPost) {
+    }
+
+    private final PostTagRepository postTagRepository;
+    private final ScheduledExecutorService reloader;
+    private final Cache<Long, List<RelatedPost>> results;
+
+    private volatile State state = new State(new ConcurrentHashMap<>(), new ConcurrentHashMap<>());
+    private volatile LocalDateTime loadedAt;
+    // 重新加载期间本节点的更新（帖子 ID -> 保存后的标签），加载完成后重放；不在加载时为 null
+    private Map<Long, long[]> updatesDuringReload;
+    private final AtomicLong computations = new AtomicLong();
+
+    @Autowired
+    public RelatedPostIndex(PostTagRepository postTagRepository,
+                            @Value("${post.related.reload-interval:30m}") Duration reloadInterval,
+                            @Value("${post.related.cache-size:10000}") long cacheSize) {
+        this.postTagRepository = postTagRepository;
+        this.results = Caffeine.newBuilder().maximumSize(cacheSize).recordStats().build();
+        this.reloader = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "related-post-index");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long intervalMillis = Math.max(1, reloadInterval.toMillis());
+        reloader.scheduleWithFixedDelay(this::reloadSafely, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 应用启动完成后在后台加载，不阻塞启动
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void reloadOnStartup() {
+        reloader.execute(this::reloadSafely);
+    }
+
+    /**
+     * 从 post_tags 重建倒排表（查询结果已按标签、帖子排序，倒排表无需再排序），构建完成后整体替换并清空结果缓存
+     * 读取期间本节点保存或删除的帖子记录下来，替换前在新的倒排表上重放（重放的是保存后的标签，读取已包含的也不会重复）
+     */
+    public void reload() {
+        long startedAt = System.nanoTime();
+        synchronized (this) {
+            updatesDuringReload = new LinkedHashMap<>();
+        }
+        State loaded;
+        try {
+            Map<Long, LongArrayBuilder> postsByTag = new HashMap<>();
+            Map<Long, LongArrayBuilder> tagsByPost = new HashMap<>();
+            postTagRepository.forEachPostTag((tagId, postId) -> {
+                postsByTag.computeIfAbsent(tagId, id -> new LongArrayBuilder()).add(postId);
+                tagsByPost.computeIfAbsent(postId, id -> new LongArrayBuilder()).add(tagId);
+            });
+            Map<Long, long[]> loadedPostsByTag = new ConcurrentHashMap<>(postsByTag.size());
+            postsByTag.forEach((tagId, posts) -> loadedPostsByTag.put(tagId, posts.toArray()));
+            Map<Long, long[]> loadedTagsByPost = new ConcurrentHashMap<>(tagsByPost.size());
+            tagsByPost.forEach((postId, tags) -> loadedTagsByPost.put(postId, tags.toArray()));
+            loaded = new State(loadedPostsByTag, loadedTagsByPost);
+        } catch (RuntimeException e) {
+            synchronized (this) {
+                updatesDuringReload = null;
+            }
+            throw e;
+        }
+        synchronized (this) {
+            updatesDuringReload.forEach((postId, tags) -> apply(loaded, postId, tags));
+            updatesDuringReload = null;
+            state = loaded;
+            results.invalidateAll();
+        }
+        loadedAt = LocalDateTime.now();
+        logger.info("Loaded related post index of {} posts and {} tags in {} ms", loaded.tagsByPost().size(),
+                loaded.postsByTag().size(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt));
+    }
+
+    private void reloadSafely() {
+        try {
+            reload();
+        } catch (RuntimeException e) {
+            logger.warn("Failed to reload related post index: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 帖子保存后的标签（为空时等同于删除）
+     */
+    public synchronized void update(Long postId, Collection<Long> tagIds) {
+        long[] newTags = tagIds.stream().mapToLong(Long::longValue).distinct().sorted().toArray();
+        if (updatesDuringReload != null) {
+            updatesDuringReload.put(postId, newTags);
+        }
+        apply(state, postId, newTags);
+    }
+
+    private void apply(State current, Long postId, long[] newTags) {
+        long[] oldTags = current.tagsByPost().getOrDefault(postId, NONE);
+        if (Arrays.equals(oldTags, newTags)) {
+            return;
+        }
+        // 共有新旧标签的帖子的结果都可能变化，先按旧的倒排表清除
+        invalidateSharing(current, postId, oldTags);
+        for (long tagId : oldTags) {
+            if (Arrays.binarySearch(newTags, tagId) < 0) {
+                current.postsByTag().computeIfPresent(tagId, (id, posts) -> {
+                    long[] remaining = without(posts, postId);
+                    return remaining.length > 0 ? remaining : null;
+                });
+            }
+        }
+        for (long tagId : newTags) {
+            if (Arrays.binarySearch(oldTags, tagId) < 0) {
+                current.postsByTag().merge(tagId, new long[] {postId}, (posts, added) -> with(posts, postId));
+            }
+        }
+        if (newTags.length > 0) {
+            current.tagsByPost().put(postId, newTags);
+        } else {
+            current.tagsByPost().remove(postId);
+        }
+        invalidateSharing(current, postId, newTags);
+    }
+
+    /**
+     * 删除的帖子
+     */
+    public void remove(Long postId) {
+        update(postId, List.of());
+    }
+
+    private void invalidateSharing(State current, Long postId, long[] tagIds) {
+        results.invalidate(postId);
+        for (long tagId : tagIds) {
+            for (long other : current.postsByTag().getOrDefault(tagId, NONE)) {
+                results.invalidate(other);
+            }
+        }
+    }
+
+    /**
+     * 和 postId 最相关的 limit 个帖子（不含自身），相似度相同时新帖子（ID 大）在前
+     */
+    public List<RelatedPost> relatedPosts(Long postId, int limit) {
+        List<RelatedPost> related = results.get(postId, this::compute);
+        return related.size() > limit ? related.subList(0, limit) : related;
+    }
+
+    private List<RelatedPost> compute(Long postId) {
+        computations.incrementAndGet();
+        State current = state;
+        long[] tags = current.tagsByPost().get(postId);
+        if (tags == null) {
+            return List.of();
+        }
+        int totalPosts = current.tagsByPost().size();
+        double ownWeight = 0;
+        // 候选帖子 -> [共有标签的权重之和, 共有标签数]
+        Map<Long, double[]> shared = new HashMap<>();
+        for (long tagId : tags) {
+            long[] posts = current.postsByTag().getOrDefault(tagId, NONE);
+            double weight = weight(totalPosts, posts.length);
+            ownWeight += weight;
+            for (long other : posts) {
+                if (other != postId) {
+                    double[] overlap = shared.computeIfAbsent(other, id -> new double[2]);
+                    overlap[0] += weight;
+                    overlap[1]++;
+                }
+            }
+        }
+
+        Map<Long, Double> weights = new HashMap<>();
+        PriorityQueue<RelatedPost> top = new PriorityQueue<>(MAX_RELATED + 1,
+                (a, b) -> a.score() != b.score() ? Double.compare(a.score(), b.score()) : Long.compare(a.postId(), b.postId()));
+        for (Map.Entry<Long, double[]> candidate : shared.entrySet()) {
+            double otherWeight = 0;
+            for (long tagId : current.tagsByPost().getOrDefault(candidate.getKey(), NONE)) {
+                otherWeight += weights.computeIfAbsent(tagId,
+                        id -> weight(totalPosts, current.postsByTag().getOrDefault(id, NONE).length));
+            }
+            double sharedWeight = candidate.getValue()[0];
+            double union = ownWeight + otherWeight - sharedWeight;
+            if (union <= 0) {
+                continue;
+            }
+            top.add(new RelatedPost(candidate.getKey(), sharedWeight / union, (int) candidate.getValue()[1]));
+            if (top.size() > MAX_RELATED) {
+                top.poll();
+            }
+        }
+        List<RelatedPost> related = new ArrayList<>(top);
+        related.sort(top.comparator().reversed());
+        // 缓存的结果由调用方共享，不可修改
+        return List.copyOf(related);
+    }
+
+    private static double weight(int totalPosts, int postsWithTag) {
+        return Math.log(1 + (double) totalPosts / Math.max(1, postsWithTag));
+    }
+
+    private static long[] with(long[] posts, long postId) {
+        int index = Arrays.binarySearch(posts, postId);
+        if (index >= 0) {
+            return posts;
+        }
+        int at = -index - 1;
+        long[] added = new long[posts.length + 1];
+        System.arraycopy(posts, 0, added, 0, at);
+        added[at] = postId;
+        System.arraycopy(posts, at, added, at + 1, posts.length - at);
+        return added;
+    }
+
+    private static long[] without(long[] posts, long postId) {
+        int index = Arrays.binarySearch(posts, postId);
+        if (index < 0) {
+            return posts;
+        }
+        long[] removed = new long[posts.length - 1];
+        System.arraycopy(posts, 0, removed, 0, index);
+        System.arraycopy(posts, index + 1, removed, index, posts.length - index - 1);
+        return removed;
+    }
+
+    public Map<String, Object> getStats() {
+        State current = state;
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("posts", current.tagsByPost().size());
+        stats.put("tags", current.postsByTag().size());
+        stats.put("loadedAt", loadedAt);
+        stats.put("cachedResults", results.estimatedSize());
+        stats.put("cacheHitRate", results.stats().hitRate());
+        stats.put("computations", computations.get());
+        return stats;
+    }
+
+    @Override
+    public void close() {
+        reloader.shutdown();
+    }
+
+    // 加载时使用的可增长 long 数组
+    private static final class LongArrayBuilder {
+
+        private long[] values = new long[4];
+        private int size;
+
+        void add(long value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        long[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+}
@@ -0,0 +1,284 @@
+package com.broadblog.service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import com.broadblog.repository.TagCooccurrenceRepository;
+
+/**
+ * 标签共现索引：两个标签同时出现在多少个帖子中
+ * 每个标签的相邻标签存放在按次数降序排列的 long[]/int[] 并行数组中，取前 K 个相关标签只需读前 K 项
+ * 帖子保存和删除时按标签的变化增量更新（次数每次只变 1，和同次数段的边界交换一次即保持有序），
+ * 定期从 post_tags 重新加载快照，同步其他节点的改动并修正增量与快照交替时的偏差
+ */
+@Service
+public class TagCooccurrenceIndex implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(TagCooccurrenceIndex.class);
+
+    public record RelatedTag(Long tagId, int posts) {
+    }
+
+    private final TagCooccurrenceRepository cooccurrenceRepository;
+    private final ScheduledExecutorService snapshotter;
+
+    private volatile Map<Long, Neighbors> neighbors = new ConcurrentHashMap<>();
+    private volatile LocalDateTime snapshotAt;
+    private final AtomicLong snapshots = new AtomicLong();
+    private final AtomicLong updates = new AtomicLong();
+
+    @Autowired
+    public TagCooccurrenceIndex(TagCooccurrenceRepository cooccurrenceRepository,
+                                @Value("${tag.cooccurrence.snapshot-interval:30m}") Duration snapshotInterval) {
+        this.cooccurrenceRepository = cooccurrenceRepository;
+        this.snapshotter = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "tag-cooccurrence-index");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long intervalMillis = Math.max(1, snapshotInterval.toMillis());
+        snapshotter.scheduleWithFixedDelay(this::loadSnapshotSafely, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 应用启动完成后在后台加载快照，不阻塞启动
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadSnapshotOnStartup() {
+        snapshotter.execute(this::loadSnapshotSafely);
+    }
+
+    /**
+     * 从 post_tags 加载全部标签对，构建完成后整体替换
+     * 加载期间本节点的增量只作用在旧索引上，差异在下次快照时修正
+     */
+    public void loadSnapshot() {
+        long startedAt = System.nanoTime();
+        Map<Long, Neighbors> loaded = new ConcurrentHashMap<>();
+        AtomicLong pairs = new AtomicLong();
+        cooccurrenceRepository.forEachPair((tagId, otherTagId, posts) -> {
+            loaded.computeIfAbsent(tagId, id -> new Neighbors()).append(otherTagId, posts);
+            loaded.computeIfAbsent(otherTagId, id -> new Neighbors()).append(tagId, posts);
+            pairs.incrementAndGet();
+        });
+        loaded.values().forEach(Neighbors::sort);
+        neighbors = loaded;
+        snapshotAt = LocalDateTime.now();
+        snapshots.incrementAndGet();
+        logger.info("Loaded tag co-occurrence snapshot of {} tags and {} pairs in {} ms", loaded.size(), pairs.get(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt));
+    }
+
+    private void loadSnapshotSafely() {
+        try {
+            loadSnapshot();
+        } catch (RuntimeException e) {
+            logger.warn("Failed to load tag co-occurrence snapshot: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 帖子的标签从 oldTagIds 变为 newTagIds（新建时 oldTagIds 为空，删除时 newTagIds 为空）
+     * 只有两边不同时包含的标签对才变化
+     */
+    public void update(Collection<Long> oldTagIds, Collection<Long> newTagIds) {
+        Set<Long> before = new HashSet<>(oldTagIds);
+        Set<Long> after = new HashSet<>(newTagIds);
+        if (before.equals(after)) {
+            return;
+        }
+        Map<Long, Neighbors> current = neighbors;
+        applyPairs(current, before, after, -1);
+        applyPairs(current, after, before, 1);
+        updates.incrementAndGet();
+    }
+
+    // tags 中的每一对，除非两个标签都在 unchanged 中，次数加 delta
+    private static void applyPairs(Map<Long, Neighbors> current, Set<Long> tags, Set<Long> unchanged, int delta) {
+        Long[] ids = tags.toArray(new Long[0]);
+        for (int i = 0; i < ids.length; i++) {
+            for (int j = i + 1; j < ids.length; j++) {
+                if (unchanged.contains(ids[i]) && unchanged.contains(ids[j])) {
+                    continue;
+                }
+                current.computeIfAbsent(ids[i], id -> new Neighbors()).add(ids[j], delta);
+                current.computeIfAbsent(ids[j], id -> new Neighbors()).add(ids[i], delta);
+            }
+        }
+    }
+
+    /**
+     * 和 tagId 共同出现次数最多的 limit 个标签
+     */
+    public List<RelatedTag> relatedTags(Long tagId, int limit) {
+        Neighbors tagNeighbors = neighbors.get(tagId);
+        return tagNeighbors != null ? tagNeighbors.top(limit) : new ArrayList<>();
+    }
+
+    /**
+     * 两个标签共同出现的帖子数
+     */
+    public int posts(Long tagId, Long otherTagId) {
+        Neighbors tagNeighbors = neighbors.get(tagId);
+        return tagNeighbors != null ? tagNeighbors.count(otherTagId) : 0;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<Long, Neighbors> current = neighbors;
+        long entries = 0;
+        for (Neighbors tagNeighbors : current.values()) {
+            entries += tagNeighbors.size();
+        }
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("tags", current.size());
+        stats.put("pairs", entries / 2);
+        stats.put("snapshotAt", snapshotAt);
+        stats.put("snapshots", snapshots.get());
+        stats.put("updates", updates.get());
+        return stats;
+    }
+
+    @Override
+    public void close() {
+        snapshotter.shutdown();
+    }
+
+    /**
+     * 一个标签的相邻标签：ids[i] 与本标签共同出现 counts[i] 次，counts 降序，不保存 0
+     */
+    static final class Neighbors {
+
+        private long[] ids = new long[4];
+        private int[] counts = new int[4];
+        private int size;
+
+        // 加载快照时使用，加载完后调用 sort
+        void append(long id, int count) {
+            grow();
+            ids[size] = id;
+            counts[size] = count;
+            size++;
+        }
+
+        void sort() {
+            // 次数取反放在高 32 位、原位置放在低 32 位，一次基本类型排序得到降序
+            long[] order = new long[size];
+            for (int i = 0; i < size; i++) {
+                order[i] = ((long) (Integer.MAX_VALUE - counts[i]) << 32) | i;
+            }
+            Arrays.sort(order);
+            long[] sortedIds = new long[Math.max(4, size)];
+            int[] sortedCounts = new int[sortedIds.length];
+            for (int i = 0; i < size; i++) {
+                int from = (int) order[i];
+                sortedIds[i] = ids[from];
+                sortedCounts[i] = counts[from];
+            }
+            ids = sortedIds;
+            counts = sortedCounts;
+        }
+
+        /**
+         * 次数加一或减一：先和同次数段的第一项（加一）或最后一项（减一）交换，再修改次数，数组仍然有序
+         */
+        synchronized void add(long id, int delta) {
+            int index = indexOf(id);
+            if (index < 0) {
+                if (delta < 0) {
+                    return;
+                }
+                grow();
+                ids[size] = id;
+                counts[size] = 0;
+                index = size++;
+            }
+            int count = counts[index];
+            int swapWith = delta > 0 ? firstWithCountAtMost(count) : firstWithCountAtMost(count - 1) - 1;
+            swap(index, swapWith);
+            counts[swapWith] = count + delta;
+            if (counts[swapWith] <= 0) {
+                // 次数为 1 的段在末尾，减到 0 的一项就是最后一项
+                size--;
+            }
+        }
+
+        synchronized List<RelatedTag> top(int limit) {
+            int n = Math.min(limit, size);
+            List<RelatedTag> related = new ArrayList<>(n);
+            for (int i = 0; i < n; i++) {
+                related.add(new RelatedTag(ids[i], counts[i]));
+            }
+            return related;
+        }
+
+        synchronized int count(long id) {
+            int index = indexOf(id);
+            return index >= 0 ? counts[index] : 0;
+        }
+
+        synchronized int size() {
+            return size;
+        }
+
+        private int indexOf(long id) {
+            for (int i = 0; i < size; i++) {
+                if (ids[i] == id) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        // 第一个次数不大于 count 的位置（counts 降序，二分查找）
+        private int firstWithCountAtMost(int count) {
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (counts[mid] > count) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        private void swap(int i, int j) {
+            long id = ids[i];
+            ids[i] = ids[j];
+            ids[j] = id;
+            int count = counts[i];
+            counts[i] = counts[j];
+            counts[j] = count;
+        }
+
+        private void grow() {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+                counts = Arrays.copyOf(counts, size * 2);
+            }
+        }
+    }
+}
@@ -1,31 +1,63 @@
 package com.broadblog.service;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.Cache;
 import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.Cacheable;
 import org.springframework.stereotype.Service;
 
+import com.broadblog.config.TwoLevelCacheManager;
 import com.broadblog.entity.Tag;
+import com.broadblog.repository.TagBulkRepository;
 import com.broadblog.repository.TagRepository;
 
 @Service
 public class TagService {
     
+    // 与 tags.name 列的长度一致
+    static final int MAX_NAME_LENGTH = 50;
+    
     private final TagRepository tagRepository;
     private final CacheService cacheService;
+    private final EntityIdFilterService idFilterService;
+    private final TwoLevelCacheManager cacheManager;
+    private final TagUsageAccumulator tagUsageAccumulator;
+    private final TagBulkRepository tagBulkRepository;
+    private final TagSuggestionIndex suggestionIndex;
     
     @Autowired
-    public TagService(TagRepository tagRepository, CacheService cacheService) {
+    public TagService(TagRepository tagRepository, CacheService cacheService, EntityIdFilterService idFilterService,
+                      TwoLevelCacheManager cacheManager, TagUsageAccumulator tagUsageAccumulator,
+                      TagBulkRepository tagBulkRepository, TagSuggestionIndex suggestionIndex) {
         this.tagRepository = tagRepository;
         this.cacheService = cacheService;
+        this.idFilterService = idFilterService;
+        this.cacheManager = cacheManager;
+        this.tagUsageAccumulator = tagUsageAccumulator;
+        this.tagBulkRepository = tagBulkRepository;
+        this.suggestionIndex = suggestionIndex;
     }
     
     @CacheEvict(value = {"tags", "popularTags", "tagCloud", "tagStats"}, allEntries = true)
     public Tag saveTag(Tag tag) {
+        boolean created = tag.getId() == null;
         Tag savedTag = tagRepository.save(tag);
+        if (created) {
+            idFilterService.addTag(savedTag.getId());
+        }
+        suggestionIndex.put(savedTag);
         clearTagRelatedCache();
         return savedTag;
     }
@@ -37,14 +69,73 @@ public class TagService {
     
     @Cacheable(value = "tags", key = "#id")
     public Optional<Tag> getTagById(Long id) {
+        // 一定不存在的 ID 直接返回空，不访问数据库
+        if (!idFilterService.mightContainTag(id)) {
+            return Optional.empty();
+        }
         return tagRepository.findById(id);
     }
     
-    @Cacheable(value = "tags", key = "'name:' + #name")
+    // 名称比较不区分大小写，缓存键统一小写，各种大小写的查询共用一个条目，新建时清除一个键即可
+    @Cacheable(value = "tags", key = "'name:' + #name?.toLowerCase(T(java.util.Locale).ROOT)")
     public Optional<Tag> getTagByName(String name) {
         return tagRepository.findByName(name);
     }
     
+    /**
+     * 按名称批量获取标签，不存在的批量创建，按传入顺序返回（忽略空白和重复的名称）
+     * 一次 IN 查询已有的标签，批量插入缺少的（重复键跳过，并发创建同名标签不会失败），再一次 IN 查询取回
+     * 新标签没有分类、使用次数为 0，只影响全部标签列表和按名称查找的缓存，只清除这些键
+     */
+    public List<Tag> resolveOrCreateTags(Collection<String> names) {
+        Set<String> distinct = new LinkedHashSet<>();
+        for (String name : names) {
+            if (name != null && !name.isBlank()) {
+                String trimmed = name.trim();
+                // 超长的名称直接拒绝，不截断写入
+                if (trimmed.length() > MAX_NAME_LENGTH) {
+                    throw new IllegalArgumentException(
+                        "Tag name must be at most " + MAX_NAME_LENGTH + " characters: " + trimmed);
+                }
+                distinct.add(trimmed);
+            }
+        }
+        if (distinct.isEmpty()) {
+            return new ArrayList<>();
+        }
+        // MySQL 默认排序规则不区分大小写，按小写名称对应
+        Map<String, Tag> byName = new HashMap<>();
+        tagRepository.findByNameIn(distinct).forEach(tag -> byName.put(nameKey(tag.getName()), tag));
+        List<String> missing = distinct.stream()
+            .filter(name -> !byName.containsKey(nameKey(name)))
+            .toList();
+        if (!missing.isEmpty()) {
+            tagBulkRepository.insertIfAbsent(missing);
+            for (Tag tag : tagRepository.findByNameIn(missing)) {
+                byName.put(nameKey(tag.getName()), tag);
+                idFilterService.addTag(tag.getId());
+                suggestionIndex.put(tag);
+            }
+            Cache tags = cacheManager.getCache("tags");
+            if (tags != null) {
+                tags.evict("all");
+                missing.forEach(name -> tags.evict("name:" + nameKey(name)));
+            }
+        }
+        List<Tag> resolved = new ArrayList<>();
+        for (String name : distinct) {
+            Tag tag = byName.get(nameKey(name));
+            if (tag != null && !resolved.contains(tag)) {
+                resolved.add(tag);
+            }
+        }
+        return resolved;
+    }
+
+    private static String nameKey(String name) {
+        return name.toLowerCase(Locale.ROOT);
+    }
+    
     @CacheEvict(value = {"tags", "popularTags", "tagCloud", "tagStats"}, allEntries = true)
     public Tag updateTag(Long id, Tag tagDetails) {
         Optional<Tag> optionalTag = tagRepository.findById(id);
@@ -56,6 +147,7 @@ public class TagService {
         tag.setName(tagDetails.getName());
         
         Tag updatedTag = tagRepository.save(tag);
+        suggestionIndex.put(updatedTag);
         clearTagRelatedCache();
         return updatedTag;
     }
@@ -66,53 +158,38 @@ public class TagService {
             throw new RuntimeException("Tag not found");
         }
         tagRepository.deleteById(id);
+        suggestionIndex.remove(id);
         clearTagRelatedCache();
     }
     
     // 获取热门标签（使用次数 > 0，按使用次数降序）- 带缓存
-    @Cacheable(value = "popularTags", key = "'all'")
+    @Cacheable(value = "popularTags", key = "'all'", sync = true)
     public List<Tag> getPopularTags() {
         return tagRepository.findPopularTags();
     }
     
     // 获取标签云（前20个最热门的标签）- 带缓存
-    @Cacheable(value = "tagCloud", key = "'top20'")
+    @Cacheable(value = "tagCloud", key = "'top20'", sync = true)
     public List<Tag> getTagCloud() {
         return tagRepository.findTop20ByOrderByUsageCountDesc();
     }
     
     // 获取标签统计信息 - 带缓存
-    @Cacheable(value = "tagStats", key = "'byCategory'")
+    @Cacheable(value = "tagStats", key = "'byCategory'", sync = true)
     public List<Object[]> getTagStatistics() {
         return tagRepository.countTagsByCategory();
     }
     
-    // 增加标签使用次数（当帖子添加标签时调用）
-    @CacheEvict(value = {"popularTags", "tagCloud", "tagStats"}, allEntries = true)
+    // 增加标签使用次数（当帖子添加标签时调用），由 TagUsageAccumulator 合并后批量写入，补全索引中的排序立即生效
     public void incrementTagUsage(Long tagId) {
-        Optional<Tag> optionalTag = tagRepository.findById(tagId);
-        if (optionalTag.isPresent()) {
-            Tag tag = optionalTag.get();
-            tag.incrementUsageCount();
-            tagRepository.save(tag);
-            
-            
-            updateTagUsageInCache(tag);
-        }
+        tagUsageAccumulator.add(tagId, 1);
+        suggestionIndex.addUsage(tagId, 1);
     }
     
     // 减少标签使用次数（当帖子移除标签时调用）
-    @CacheEvict(value = {"popularTags", "tagCloud", "tagStats"}, allEntries = true)
     public void decrementTagUsage(Long tagId) {
-        Optional<Tag> optionalTag = tagRepository.findById(tagId);
-        if (optionalTag.isPresent()) {
-            Tag tag = optionalTag.get();
-            tag.decrementUsageCount();
-            tagRepository.save(tag);
-            
-            // 更新Redis中的标签使用计数缓存
-            updateTagUsageInCache(tag);
-        }
+        tagUsageAccumulator.add(tagId, -1);
+        suggestionIndex.addUsage(tagId, -1);
     }
     
     // 根据分类ID获取标签
@@ -139,14 +216,20 @@ public class TagService {
             return buildPopularTagsCache(top);
         }
         
-        // 根据ID列表获取标签详情
-        List<Tag> topTags = topTagIds.stream()
-            .map(id -> tagRepository.findById(Long.valueOf(id.toString())))
-            .filter(Optional::isPresent)
-            .map(Optional::get)
+        // 根据ID列表批量获取标签详情
+        List<Long> ids = topTagIds.stream()
+            .map(id -> Long.valueOf(id.toString()))
             .collect(java.util.stream.Collectors.toList());
-        
-        return topTags;
+        return new ArrayList<>(getTagsByIds(ids).values());
+    }
+    
+    /**
+     * 按 ID 批量获取标签，与 getTagById 共用 tags 缓存：先查 L1，再一次 MGET 查 L2，剩余的一次 IN 查询加载
+     * 结果按 ids 的顺序排列，不存在的 ID 不出现在结果中
+     */
+    public Map<Long, Tag> getTagsByIds(Collection<Long> ids) {
+        return cacheManager.getAll("tags", ids, missing -> tagRepository.findAllById(missing).stream()
+            .collect(java.util.stream.Collectors.toMap(Tag::getId, Function.identity())));
     }
     
     /**
@@ -161,13 +244,14 @@ public class TagService {
             .limit(top)
             .collect(java.util.stream.Collectors.toList());
         
-        // 将结果存入Redis缓存
+        // 将结果一次性存入Redis缓存
         String popularTagsKey = "popular_tags_ranking";
+        Map<Object, Double> scores = new LinkedHashMap<>();
         for (Tag tag : topTags) {
             // 使用标签使用次数作为分数
-            double score = tag.getUsageCount() != null ? tag.getUsageCount().doubleValue() : 0.0;
-            cacheService.zAdd(popularTagsKey, tag.getId().toString(), score);
+            scores.put(tag.getId().toString(), tag.getUsageCount() != null ? tag.getUsageCount().doubleValue() : 0.0);
         }
+        cacheService.zAddAll(popularTagsKey, scores);
         
         // 设置缓存过期时间
         cacheService.expire(popularTagsKey, java.time.Duration.ofHours(6));
@@ -175,35 +259,15 @@ public class TagService {
         return topTags;
     }
     
-    /**
-     * 更新Redis中的标签使用计数缓存
-     */
-    private void updateTagUsageInCache(Tag tag) {
-        String popularTagsKey = "popular_tags_ranking";
-        String tagUsageKey = "tag:" + tag.getId() + ":usage";
-        
-        // 更新标签使用计数缓存
-        cacheService.set(tagUsageKey, tag.getUsageCount() != null ? tag.getUsageCount().longValue() : 0L, java.time.Duration.ofDays(7));
-        
-        // 更新热门标签排行
-        double score = tag.getUsageCount() != null ? tag.getUsageCount().doubleValue() : 0.0;
-        cacheService.zAdd(popularTagsKey, tag.getId().toString(), score);
-        
-        // 设置热门标签排行的过期时间
-        cacheService.expire(popularTagsKey, java.time.Duration.ofHours(6));
-        
-        System.out.println("tag usage count updated: " + tag.getName() + " -> " + tag.getUsageCount());
-    }
-    
     /**
      * 获取标签使用次数（从缓存）
      */
     public Long getTagUsageCount(Long tagId) {
-        String tagUsageKey = "tag:" + tagId + ":usage";
-        Optional<Long> usage = cacheService.get(tagUsageKey, Long.class);
+        String tagUsageKey = TagUsageAccumulator.usageKey(tagId);
+        Optional<Number> usage = cacheService.get(tagUsageKey, Number.class);
         
         if (usage.isPresent()) {
-            return usage.get();
+            return usage.get().longValue();
         }
         
         // 缓存中没有，从数据库获取
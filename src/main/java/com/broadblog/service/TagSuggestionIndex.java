@@ -0,0 +1,212 @@
+package com.broadblog.service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import com.broadblog.entity.Tag;
+import com.broadblog.repository.TagRepository;
+
+/**
+ * 标签名称补全索引
+ * 标签按小写名称排序存放在数组中，按前缀二分查找出范围，再按使用次数取前 N 个，查询不访问数据库。
+ * 本节点创建、改名、删除标签和使用次数变化时增量更新（写时复制，读不加锁），
+ * 其他节点的改动由定期全量重建同步。
+ */
+@Service
+public class TagSuggestionIndex implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(TagSuggestionIndex.class);
+
+    public record Suggestion(Long id, String name, int usageCount) {
+    }
+
+    // 使用次数可以原地更新，名称不变；改名按删除再插入处理
+    private static final class Entry {
+        final Long id;
+        final String name;
+        final String key;
+        volatile int usageCount;
+
+        Entry(Long id, String name, int usageCount) {
+            this.id = id;
+            this.name = name;
+            this.key = normalize(name);
+            this.usageCount = usageCount;
+        }
+
+        Suggestion toSuggestion() {
+            return new Suggestion(id, name, usageCount);
+        }
+    }
+
+    private static final Comparator<Entry> BY_KEY = Comparator.comparing(entry -> entry.key);
+    // 使用次数高的在前，相同时按名称
+    private static final Comparator<Entry> BY_RANK =
+            Comparator.<Entry>comparingInt(entry -> entry.usageCount).reversed().thenComparing(entry -> entry.key);
+
+    private final TagRepository tagRepository;
+    private final ScheduledExecutorService rebuilder;
+
+    private volatile Entry[] sorted = new Entry[0];
+    private final Map<Long, Entry> byId = new ConcurrentHashMap<>();
+
+    @Autowired
+    public TagSuggestionIndex(TagRepository tagRepository,
+                              @Value("${tag.suggest.rebuild-interval:10m}") Duration rebuildInterval) {
+        this.tagRepository = tagRepository;
+        this.rebuilder = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "tag-suggestion-index");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long intervalMillis = Math.max(1, rebuildInterval.toMillis());
+        rebuilder.scheduleWithFixedDelay(this::rebuildSafely, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    static String normalize(String name) {
+        return name.trim().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * 应用启动完成后加载全部标签（一次只取 ID、名称和使用次数的查询）
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        long startedAt = System.nanoTime();
+        List<Entry> entries = new ArrayList<>();
+        for (Object[] row : tagRepository.findIdNameAndUsage()) {
+            entries.add(new Entry((Long) row[0], (String) row[1], row[2] != null ? ((Number) row[2]).intValue() : 0));
+        }
+        Entry[] rebuilt = entries.toArray(new Entry[0]);
+        Arrays.sort(rebuilt, BY_KEY);
+        synchronized (this) {
+            sorted = rebuilt;
+            byId.clear();
+            for (Entry entry : rebuilt) {
+                byId.put(entry.id, entry);
+            }
+        }
+        logger.info("Built tag suggestion index of {} tags in {} ms", rebuilt.length,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt));
+    }
+
+    private void rebuildSafely() {
+        try {
+            rebuild();
+        } catch (RuntimeException e) {
+            logger.warn("Failed to rebuild tag suggestion index: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 新增或改名后的标签
+     */
+    public synchronized void put(Tag tag) {
+        if (tag.getId() == null || tag.getName() == null) {
+            return;
+        }
+        Entry previous = byId.get(tag.getId());
+        if (previous != null && previous.name.equals(tag.getName())) {
+            return;
+        }
+        int usageCount = previous != null ? previous.usageCount : tag.getUsageCount() != null ? tag.getUsageCount() : 0;
+        Entry entry = new Entry(tag.getId(), tag.getName(), usageCount);
+        List<Entry> entries = new ArrayList<>(sorted.length + 1);
+        for (Entry existing : sorted) {
+            if (!existing.id.equals(tag.getId())) {
+                entries.add(existing);
+            }
+        }
+        int position = Collections.binarySearch(entries, entry, BY_KEY);
+        entries.add(position >= 0 ? position : -position - 1, entry);
+        sorted = entries.toArray(new Entry[0]);
+        byId.put(entry.id, entry);
+    }
+
+    /**
+     * 删除的标签
+     */
+    public synchronized void remove(Long tagId) {
+        if (byId.remove(tagId) == null) {
+            return;
+        }
+        sorted = Arrays.stream(sorted).filter(entry -> !entry.id.equals(tagId)).toArray(Entry[]::new);
+    }
+
+    /**
+     * 使用次数的变化（原地更新，不复制数组）
+     */
+    public void addUsage(Long tagId, long delta) {
+        Entry entry = byId.get(tagId);
+        if (entry != null) {
+            synchronized (entry) {
+                entry.usageCount = (int) Math.max(0, entry.usageCount + delta);
+            }
+        }
+    }
+
+    /**
+     * 名称以 prefix 开头（不区分大小写）的标签，按使用次数降序取前 limit 个
+     */
+    public List<Suggestion> suggest(String prefix, int limit) {
+        Entry[] entries = sorted;
+        String key = prefix != null ? normalize(prefix) : "";
+        int from = lowerBound(entries, key);
+        // 小顶堆保留使用次数最高的 limit 个
+        PriorityQueue<Entry> top = new PriorityQueue<>(limit + 1, BY_RANK.reversed());
+        for (int i = from; i < entries.length && entries[i].key.startsWith(key); i++) {
+            top.add(entries[i]);
+            if (top.size() > limit) {
+                top.poll();
+            }
+        }
+        List<Entry> ranked = new ArrayList<>(top);
+        ranked.sort(BY_RANK);
+        List<Suggestion> suggestions = new ArrayList<>(ranked.size());
+        ranked.forEach(entry -> suggestions.add(entry.toSuggestion()));
+        return suggestions;
+    }
+
+    // 第一个不小于 key 的位置
+    private static int lowerBound(Entry[] entries, String key) {
+        int low = 0;
+        int high = entries.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (entries[mid].key.compareTo(key) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    public int size() {
+        return sorted.length;
+    }
+
+    @Override
+    public void close() {
+        rebuilder.shutdown();
+    }
+}
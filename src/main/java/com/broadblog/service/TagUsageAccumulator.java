@@ -0,0 +1,156 @@
+package com.broadblog.service;
+
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.stereotype.Service;
+
+import com.broadblog.config.TwoLevelCacheManager;
+import com.broadblog.repository.TagUsageCountRepository;
+
+/**
+ * 标签使用次数累加器
+ * 帖子增删标签时只在内存中合并 +1/-1，定时把合并后的增量一次 JDBC 批处理原子累加到数据库，
+ * 一次管道 ZINCRBY 更新热门标签排行，并且每次刷新只清除一次热门标签和标签云缓存
+ */
+@Service
+public class TagUsageAccumulator implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(TagUsageAccumulator.class);
+
+    static final String POPULAR_TAGS_KEY = "popular_tags_ranking";
+    private static final Duration POPULAR_TAGS_TTL = Duration.ofHours(6);
+
+    private final TagUsageCountRepository usageCountRepository;
+    private final CacheService cacheService;
+    private final TwoLevelCacheManager cacheManager;
+    // 按标签合并的增量；merge 和 remove 都是按键原子的，刷新时不会丢失并发的增量
+    private final ConcurrentMap<Long, Long> pending = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService flusher;
+
+    private final AtomicLong flushes = new AtomicLong();
+    private final AtomicLong flushedTags = new AtomicLong();
+
+    @Autowired
+    public TagUsageAccumulator(TagUsageCountRepository usageCountRepository, CacheService cacheService,
+                               TwoLevelCacheManager cacheManager,
+                               @Value("${tag.usage.flush-interval:1s}") Duration flushInterval) {
+        this.usageCountRepository = usageCountRepository;
+        this.cacheService = cacheService;
+        this.cacheManager = cacheManager;
+        this.flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "tag-usage-accumulator");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long intervalMillis = Math.max(1, flushInterval.toMillis());
+        flusher.scheduleWithFixedDelay(this::flushSafely, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    static String usageKey(Long tagId) {
+        return "tag:" + tagId + ":usage";
+    }
+
+    /**
+     * 记录标签使用次数的变化（只在内存中合并）
+     */
+    public void add(Long tagId, long delta) {
+        // 合并为 0 时移除，一加一减的标签不产生写入
+        pending.merge(tagId, delta, (current, added) -> current + added == 0 ? null : current + added);
+    }
+
+    /**
+     * 尚未写入数据库的增量
+     */
+    public long pendingDelta(Long tagId) {
+        return pending.getOrDefault(tagId, 0L);
+    }
+
+    /**
+     * 把合并后的增量写入数据库和 Redis，并刷新一次标签聚合缓存
+     * 写数据库失败时增量放回，下次刷新重试
+     */
+    public synchronized void flush() {
+        Map<Long, Long> deltas = new LinkedHashMap<>();
+        for (Long tagId : pending.keySet()) {
+            Long delta = pending.remove(tagId);
+            if (delta != null && delta != 0) {
+                deltas.put(tagId, delta);
+            }
+        }
+        if (deltas.isEmpty()) {
+            return;
+        }
+        try {
+            usageCountRepository.applyDeltas(deltas);
+        } catch (RuntimeException e) {
+            deltas.forEach(this::add);
+            throw e;
+        }
+
+        Map<Object, Double> scoreDeltas = new LinkedHashMap<>();
+        Set<String> usageKeys = new HashSet<>();
+        deltas.forEach((tagId, delta) -> {
+            scoreDeltas.put(tagId.toString(), delta.doubleValue());
+            usageKeys.add(usageKey(tagId));
+        });
+        // 排行不存在时不累加（只含本批标签的排行会被当成完整的），下次读取时从数据库重建
+        if (cacheService.exists(POPULAR_TAGS_KEY)) {
+            Map<String, Map<Object, Double>> scores = new LinkedHashMap<>();
+            scores.put(POPULAR_TAGS_KEY, scoreDeltas);
+            Map<String, Duration> expirations = new LinkedHashMap<>();
+            expirations.put(POPULAR_TAGS_KEY, POPULAR_TAGS_TTL);
+            cacheService.incrementBatch(Map.of(), scores, expirations);
+        }
+        cacheService.delete(usageKeys);
+        // 数据库中的计数已变，聚合结果失效一次；两个缓存各只有一个键，只删除该键，不清空整个缓存（SCAN）
+        evict("popularTags", "all");
+        evict("tagCloud", "top20");
+
+        flushes.incrementAndGet();
+        flushedTags.addAndGet(deltas.size());
+    }
+
+    private void evict(String cacheName, Object key) {
+        Cache cache = cacheManager.getCache(cacheName);
+        if (cache != null) {
+            cache.evict(key);
+        }
+    }
+
+    private void flushSafely() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            logger.warn("Failed to flush tag usage counts: {}", e.getMessage());
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("pendingTags", pending.size());
+        stats.put("flushes", flushes.get());
+        stats.put("flushedTags", flushedTags.get());
+        return stats;
+    }
+
+    @Override
+    public void close() {
+        flusher.shutdown();
+        flushSafely();
+    }
+}
@@ -0,0 +1,197 @@
+package com.broadblog.service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * 帖子趋势排行
+ * 阅读和评论按小时累加到分桶（trending:h:{yyyyMMddHH}），后台任务把分桶按指数衰减合并成各时间窗口的排行。
+ * 每个窗口的基线（已结束的小时）每小时由上一小时的基线递推一次：
+ * base(h) = d * base(h-1) + bucket(h-1) - d^W * bucket(h-1-W)，d 为每小时的衰减系数，W 为窗口的小时数；
+ * 排行每次刷新只把基线和当前小时的分桶合并，读请求直接 ZREVRANGE，不访问数据库
+ */
+@Service
+public class TrendingService implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(TrendingService.class);
+
+    /**
+     * 时间窗口：标签、覆盖的小时数、半衰期（小时）
+     */
+    public enum Window {
+        HOUR("1h", 1, 1),
+        DAY("24h", 24, 6),
+        WEEK("7d", 168, 24);
+
+        private final String label;
+        private final int hours;
+        private final int halfLifeHours;
+
+        Window(String label, int hours, int halfLifeHours) {
+            this.label = label;
+            this.hours = hours;
+            this.halfLifeHours = halfLifeHours;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+
+        // 每过一小时分数乘以的系数
+        double hourlyDecay() {
+            return Math.pow(0.5, 1.0 / halfLifeHours);
+        }
+
+        public static Window of(String label) {
+            for (Window window : values()) {
+                if (window.label.equals(label)) {
+                    return window;
+                }
+            }
+            throw new IllegalArgumentException("Unknown trending window: " + label);
+        }
+    }
+
+    static final double VIEW_WEIGHT = 1;
+    static final double COMMENT_WEIGHT = 5;
+    // 分桶要保留到最长的窗口用完，再多留一小时给递推时减去
+    static final Duration BUCKET_TTL = Duration.ofHours(Window.WEEK.hours + 2);
+    private static final Duration BASE_TTL = Duration.ofHours(2);
+    private static final Duration RANKING_TTL = Duration.ofHours(2);
+    // 衰减后的残余和浮点误差，不高于该分数的成员从排行中移除
+    private static final double MIN_SCORE = 0.01;
+    private static final DateTimeFormatter HOUR_FORMAT = DateTimeFormatter.ofPattern("yyyyMMddHH");
+
+    private final CacheService cacheService;
+    private final ScheduledExecutorService refresher;
+
+    @Autowired
+    public TrendingService(CacheService cacheService,
+                           @Value("${post.trending.refresh-interval:1m}") Duration refreshInterval) {
+        this.cacheService = cacheService;
+        this.refresher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "post-trending");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long intervalMillis = Math.max(1, refreshInterval.toMillis());
+        refresher.scheduleWithFixedDelay(this::refreshSafely, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    static String bucketKey(LocalDateTime time) {
+        return "trending:h:" + time.truncatedTo(ChronoUnit.HOURS).format(HOUR_FORMAT);
+    }
+
+    static String rankingKey(Window window) {
+        return "trending:" + window.label;
+    }
+
+    static String baseKey(Window window, LocalDateTime hour) {
+        return "trending:" + window.label + ":base:" + hour.format(HOUR_FORMAT);
+    }
+
+    /**
+     * 记录一条评论（直接写入当前小时的分桶）
+     */
+    public void recordComment(Long postId) {
+        String bucket = bucketKey(LocalDateTime.now());
+        Map<Object, Double> deltas = new LinkedHashMap<>();
+        deltas.put(postId.toString(), COMMENT_WEIGHT);
+        Map<String, Map<Object, Double>> scoreDeltas = new LinkedHashMap<>();
+        scoreDeltas.put(bucket, deltas);
+        Map<String, Duration> expirations = new LinkedHashMap<>();
+        expirations.put(bucket, BUCKET_TTL);
+        cacheService.incrementBatch(Map.of(), scoreDeltas, expirations);
+    }
+
+    /**
+     * 时间窗口内趋势最高的帖子 ID，按分数降序
+     */
+    public List<Long> topPostIds(Window window, int limit) {
+        Set<Object> members = cacheService.zRevRange(rankingKey(window), 0, limit - 1);
+        List<Long> ids = new ArrayList<>();
+        if (members != null) {
+            members.forEach(member -> ids.add(Long.valueOf(member.toString())));
+        }
+        return ids;
+    }
+
+    /**
+     * 刷新所有窗口的排行
+     */
+    public synchronized void refresh() {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime hour = now.truncatedTo(ChronoUnit.HOURS);
+        double elapsedHours = Duration.between(hour, now).toMillis() / 3_600_000.0;
+        for (Window window : Window.values()) {
+            refresh(window, hour, elapsedHours);
+        }
+    }
+
+    /**
+     * 排行 = 基线按当前小时已过去的时间衰减 + 当前小时的分桶
+     */
+    boolean refresh(Window window, LocalDateTime hour, double elapsedHours) {
+        String base = baseKey(window, hour);
+        if (!cacheService.exists(base) && !buildBase(window, hour)) {
+            return false;
+        }
+        double[] weights = {Math.pow(window.hourlyDecay(), elapsedHours), VIEW_WEIGHT};
+        return cacheService.zUnionStore(rankingKey(window), List.of(base, bucketKey(hour)), weights, MIN_SCORE, RANKING_TTL);
+    }
+
+    /**
+     * 生成 hour 的基线：有上一小时的基线时递推，否则（以及每天零点消除累计的浮点误差）由窗口内的分桶全量合并
+     * 结果只取决于已结束的分桶，多个节点同时生成也得到相同的结果
+     */
+    boolean buildBase(Window window, LocalDateTime hour) {
+        double decay = window.hourlyDecay();
+        LocalDateTime previousHour = hour.minusHours(1);
+        String previousBase = baseKey(window, previousHour);
+        List<String> keys = new ArrayList<>();
+        double[] weights;
+        if (hour.getHour() != 0 && cacheService.exists(previousBase)) {
+            keys.add(previousBase);
+            keys.add(bucketKey(previousHour));
+            keys.add(bucketKey(previousHour.minusHours(window.hours)));
+            weights = new double[] {decay, 1, -Math.pow(decay, window.hours)};
+        } else {
+            weights = new double[window.hours];
+            for (int age = 1; age <= window.hours; age++) {
+                keys.add(bucketKey(hour.minusHours(age)));
+                weights[age - 1] = Math.pow(decay, age - 1);
+            }
+            logger.debug("Rebuilding {} trending base for {} from {} buckets", window.label, hour, window.hours);
+        }
+        return cacheService.zUnionStore(baseKey(window, hour), keys, weights, MIN_SCORE, BASE_TTL);
+    }
+
+    private void refreshSafely() {
+        try {
+            refresh();
+        } catch (RuntimeException e) {
+            logger.warn("Failed to refresh trending posts: {}", e.getMessage());
+        }
+    }
+
+    @Override
+    public void close() {
+        refresher.shutdown();
+    }
+}
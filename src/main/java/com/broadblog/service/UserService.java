@@ -20,12 +20,17 @@ public class UserService {
     private final UserRepository userRepository;
     private final PasswordEncoder passwordEncoder;
     private final CacheService cacheService;
+    private final EntityIdFilterService idFilterService;
+    private final PostService postService;
 
     @Autowired
-    public UserService(UserRepository userRepository, PasswordEncoder passwordEncoder, CacheService cacheService) {
+    public UserService(UserRepository userRepository, PasswordEncoder passwordEncoder, CacheService cacheService,
+                       EntityIdFilterService idFilterService, PostService postService) {
         this.userRepository = userRepository;
         this.passwordEncoder = passwordEncoder;
         this.cacheService = cacheService;
+        this.idFilterService = idFilterService;
+        this.postService = postService;
     }
 
     // 用户注册
@@ -50,6 +55,7 @@ public class UserService {
         }
         
         User savedUser = userRepository.save(user);
+        idFilterService.addUser(savedUser.getId());
         
         // 更新用户统计缓存
         updateUserStatsCache();
@@ -66,6 +72,10 @@ public class UserService {
     
     @Cacheable(value = "users", key = "#id")
     public Optional<User> getUserById(Long id) {
+        // 一定不存在的 ID 直接返回空，不访问数据库
+        if (!idFilterService.mightContainUser(id)) {
+            return Optional.empty();
+        }
         return userRepository.findById(id);
     }
 
@@ -88,6 +98,8 @@ public class UserService {
         
         // 清除相关缓存
         clearUserRelatedCache(user.getId());
+        // 帖子详情和列表缓存了作者的用户名和头像
+        postService.clearAuthorProfileCache(user.getId());
         
         return updatedUser;
     }
@@ -122,6 +134,7 @@ public class UserService {
         user.setRoles(List.of(RoleConstants.ROLE_ADMIN));
         
         User savedAdmin = userRepository.save(user);
+        idFilterService.addUser(savedAdmin.getId());
         
         // 更新用户统计缓存
         updateUserStatsCache();
@@ -349,9 +362,6 @@ public class UserService {
     public void warmUpUserCache() {
         System.out.println("warm up user cache");
         
-        // 预热所有用户
-        getAllUsers();
-        
         // 预热所有管理员
         getAllAdmins();
         
@@ -0,0 +1,112 @@
+package com.broadblog.cache;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import org.springframework.cache.Cache;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisKeyCommands;
+import org.springframework.data.redis.connection.RedisZSetCommands;
+import org.springframework.data.redis.core.DefaultTypedTuple;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+
+import com.broadblog.config.TwoLevelCacheManager;
+import com.broadblog.config.TwoLevelCacheSupport;
+
+class CacheAccessRecorderTest {
+
+    // Sorted sets by key, member -> score
+    private final Map<String, Map<String, Double>> redisZSets = new ConcurrentHashMap<>();
+    private final CacheAccessRecorder recorder =
+            new CacheAccessRecorder(redisTemplate(), 1, Duration.ofHours(1), Duration.ofHours(1), 100, null);
+
+    @AfterEach
+    void closeRecorder() {
+        recorder.close();
+    }
+
+    @SuppressWarnings("unchecked")
+    private StringRedisTemplate redisTemplate() {
+        RedisZSetCommands zSetCommands = mock(RedisZSetCommands.class);
+        when(zSetCommands.zIncrBy(any(byte[].class), anyDouble(), any(byte[].class))).thenAnswer(call -> redisZSets
+                .computeIfAbsent(new String((byte[]) call.getArgument(0), StandardCharsets.UTF_8), k -> new ConcurrentHashMap<>())
+                .merge(new String((byte[]) call.getArgument(2), StandardCharsets.UTF_8), call.getArgument(1), Double::sum));
+        RedisConnection connection = mock(RedisConnection.class);
+        when(connection.zSetCommands()).thenReturn(zSetCommands);
+        when(connection.keyCommands()).thenReturn(mock(RedisKeyCommands.class));
+
+        ZSetOperations<String, String> zSetOperations = mock(ZSetOperations.class);
+        when(zSetOperations.reverseRangeWithScores(anyString(), anyLong(), anyLong())).thenAnswer(call -> {
+            Set<ZSetOperations.TypedTuple<String>> tuples = new LinkedHashSet<>();
+            redisZSets.getOrDefault((String) call.getArgument(0), Map.of()).entrySet().stream()
+                    .sorted(Map.Entry.<String, Double>comparingByValue().reversed())
+                    .limit((long) call.getArgument(2) + 1)
+                    .forEach(entry -> tuples.add(new DefaultTypedTuple<>(entry.getKey(), entry.getValue())));
+            return tuples;
+        });
+        StringRedisTemplate redisTemplate = mock(StringRedisTemplate.class);
+        when(redisTemplate.opsForZSet()).thenReturn(zSetOperations);
+        when(redisTemplate.executePipelined(any(RedisCallback.class)))
+                .thenAnswer(call -> {
+                    ((RedisCallback<Object>) call.getArgument(0)).doInRedis(connection);
+                    return List.of();
+                });
+        return redisTemplate;
+    }
+
+    @Test
+    void lookups_shouldBeRankedWithTheirOriginalKeyTypes() {
+        TwoLevelCacheSupport support = new TwoLevelCacheSupport();
+        support.setAccessRecorder(recorder);
+        TwoLevelCacheManager manager =
+                new TwoLevelCacheManager(new CaffeineCacheManager(), new ConcurrentMapCacheManager(), support);
+        Cache posts = manager.getCache("posts");
+        Cache users = manager.getCache("users");
+
+        for (int i = 0; i < 5; i++) {
+            posts.get(42L);
+        }
+        for (int i = 0; i < 3; i++) {
+            posts.get("page:1:10", () -> "feed");
+        }
+        users.get(7L, String.class);
+        recorder.flush();
+
+        assertThat(recorder.topKeys(2)).extracting(CacheAccessRecorder.AccessedKey::cacheName,
+                        CacheAccessRecorder.AccessedKey::key, CacheAccessRecorder.AccessedKey::score)
+                .containsExactly(
+                        tuple("posts", 42L, 5.0),
+                        tuple("posts", "page:1:10", 3.0));
+        assertThat(recorder.topKeys(10)).extracting(CacheAccessRecorder.AccessedKey::key)
+                .containsExactly(42L, "page:1:10", 7L);
+    }
+
+    @Test
+    void members_shouldRoundTripAndRejectUnknownTypes() {
+        assertThat(CacheAccessRecorder.encode("tags", 3)).isEqualTo("tags::I:3");
+        assertThat(CacheAccessRecorder.decode("tags::I:3", 1).key()).isEqualTo(3);
+        assertThat(CacheAccessRecorder.decode("posts::S:author:7", 1).key()).isEqualTo("author:7");
+        assertThat(CacheAccessRecorder.encode("posts", new Object())).isNull();
+        assertThat(CacheAccessRecorder.decode("posts::L:abc", 1)).isNull();
+        assertThat(CacheAccessRecorder.decode("garbage", 1)).isNull();
+    }
+}
@@ -0,0 +1,131 @@
+package com.broadblog.cache;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import org.springframework.cache.Cache;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+
+import com.broadblog.config.TwoLevelCacheManager;
+import com.broadblog.config.TwoLevelCacheSupport;
+
+class CacheGenerationsTest {
+
+    private final Map<String, Long> redisCounters = new ConcurrentHashMap<>();
+    private final LocalCacheInvalidationTransport transport = new LocalCacheInvalidationTransport();
+    private final ConcurrentMapCacheManager sharedL2 = new ConcurrentMapCacheManager();
+    private CacheInvalidationBus busA;
+    private CacheInvalidationBus busB;
+    private TwoLevelCacheManager nodeA;
+    private TwoLevelCacheManager nodeB;
+
+    @BeforeEach
+    void startNodes() {
+        busA = new CacheInvalidationBus(transport, Duration.ofMillis(5), 100, 1000);
+        busB = new CacheInvalidationBus(transport, Duration.ofMillis(5), 100, 1000);
+        nodeA = new TwoLevelCacheManager(new CaffeineCacheManager(), sharedL2, support(busA));
+        nodeB = new TwoLevelCacheManager(new CaffeineCacheManager(), sharedL2, support(busB));
+    }
+
+    @AfterEach
+    void stopNodes() {
+        busA.close();
+        busB.close();
+    }
+
+    @SuppressWarnings("unchecked")
+    private TwoLevelCacheSupport support(CacheInvalidationBus bus) {
+        StringRedisTemplate redisTemplate = mock(StringRedisTemplate.class);
+        ValueOperations<String, String> values = mock(ValueOperations.class);
+        when(redisTemplate.opsForValue()).thenReturn(values);
+        when(values.increment(anyString())).thenAnswer(call -> redisCounters.merge(call.getArgument(0), 1L, Long::sum));
+        when(values.multiGet(anyList())).thenAnswer(call -> ((List<String>) call.getArgument(0)).stream()
+                .map(key -> redisCounters.containsKey(key) ? String.valueOf(redisCounters.get(key)) : null)
+                .toList());
+
+        TwoLevelCacheSupport support = new TwoLevelCacheSupport();
+        support.setInvalidationBus(bus);
+        // A long refresh interval: peers may only learn about bumps from the bus
+        support.setGenerations(new CacheGenerations(redisTemplate, Duration.ofHours(1), bus));
+        support.addVersionedCache("posts", new PostCacheNamespaces(2));
+        return support;
+    }
+
+    @Test
+    void authorBump_shouldOnlyHideThatAuthorsPages() {
+        Cache posts = nodeA.getCache("posts");
+        posts.put("authorPage:7:1:10", "author 7");
+        posts.put("authorPage:8:1:10", "author 8");
+        posts.put("page:5:10", "feed page 5");
+
+        nodeA.bumpGeneration(PostCacheNamespaces.author(7L));
+
+        assertThat(posts.get("authorPage:7:1:10")).isNull();
+        assertThat(posts.get("authorPage:8:1:10").get()).isEqualTo("author 8");
+        assertThat(posts.get("page:5:10").get()).isEqualTo("feed page 5");
+    }
+
+    @Test
+    void feedHeadBump_shouldHideFirstPagesOnly() {
+        Cache posts = nodeA.getCache("posts");
+        posts.put("page:1:10", "head");
+        posts.put("page:3:10", "deep");
+
+        nodeA.bumpGeneration(PostCacheNamespaces.FEED_HEAD);
+        assertThat(posts.get("page:1:10")).isNull();
+        assertThat(posts.get("page:3:10").get()).isEqualTo("deep");
+
+        nodeA.bumpGeneration(PostCacheNamespaces.FEED);
+        assertThat(posts.get("page:3:10")).isNull();
+    }
+
+    @Test
+    void clear_shouldBumpInsteadOfDeletingL2() {
+        Cache posts = nodeA.getCache("posts");
+        posts.put(42L, "post 42");
+        int storedBefore = ((Map<?, ?>) sharedL2.getCache("posts").getNativeCache()).size();
+
+        posts.clear();
+
+        assertThat(posts.get(42L)).isNull();
+        // Old entries are left to expire rather than deleted
+        assertThat(((Map<?, ?>) sharedL2.getCache("posts").getNativeCache()).size()).isEqualTo(storedBefore);
+    }
+
+    @Test
+    void bumpOnOneNode_shouldReachPeerBeforeItsRefresh() {
+        Cache postsA = nodeA.getCache("posts");
+        Cache postsB = nodeB.getCache("posts");
+        postsA.put("author:7", "old");
+        assertThat(postsB.get("author:7").get()).isEqualTo("old");
+
+        nodeA.bumpGeneration(PostCacheNamespaces.author(7L));
+
+        await().atMost(Duration.ofSeconds(2))
+                .untilAsserted(() -> assertThat(postsB.get("author:7")).isNull());
+    }
+
+    @Test
+    void generationEvent_shouldRoundTripOnTheWire() {
+        CacheInvalidationMessage message = new CacheInvalidationMessage("node",
+                List.of(CacheInvalidationEvent.generation("posts:author:7", 12L)));
+
+        CacheInvalidationMessage decoded = CacheInvalidationMessage.decode(message.encode());
+
+        assertThat(decoded.getEvents()).containsExactly(CacheInvalidationEvent.generation("posts:author:7", 12L));
+    }
+}
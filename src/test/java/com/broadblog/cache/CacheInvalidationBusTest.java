@@ -0,0 +1,172 @@
+package com.broadblog.cache;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.Cache;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.data.redis.RedisConnectionFailureException;
+
+import com.broadblog.config.TwoLevelCacheManager;
+import com.broadblog.config.TwoLevelCacheSupport;
+
+class CacheInvalidationBusTest {
+
+    private final LocalCacheInvalidationTransport transport = new LocalCacheInvalidationTransport();
+    private final ConcurrentMapCacheManager sharedL2 = new ConcurrentMapCacheManager();
+    private CacheInvalidationBus busA;
+    private CacheInvalidationBus busB;
+    private TwoLevelCacheManager nodeA;
+    private TwoLevelCacheManager nodeB;
+
+    @BeforeEach
+    void startNodes() {
+        busA = new CacheInvalidationBus(transport, Duration.ofMillis(5), 100, 1000);
+        busB = new CacheInvalidationBus(transport, Duration.ofMillis(5), 100, 1000);
+        nodeA = new TwoLevelCacheManager(new CaffeineCacheManager(), sharedL2, support(busA));
+        nodeB = new TwoLevelCacheManager(new CaffeineCacheManager(), sharedL2, support(busB));
+    }
+
+    private static TwoLevelCacheSupport support(CacheInvalidationBus bus) {
+        TwoLevelCacheSupport support = new TwoLevelCacheSupport();
+        support.setInvalidationBus(bus);
+        return support;
+    }
+
+    @AfterEach
+    void stopNodes() {
+        busA.close();
+        busB.close();
+    }
+
+    @Test
+    void evictOnOneNode_shouldDropPeerL1() {
+        Cache postsA = nodeA.getCache("posts");
+        Cache postsB = nodeB.getCache("posts");
+        postsA.put(1L, "v1");
+        assertThat(postsB.get(1L).get()).isEqualTo("v1"); // back-fills B's L1
+
+        postsA.evict(1L);
+        // Without the bus, B would keep serving "v1" from its L1
+        sharedL2.getCache("posts").put(1L, "v2");
+
+        await().atMost(Duration.ofSeconds(2))
+                .untilAsserted(() -> assertThat(postsB.get(1L).get()).isEqualTo("v2"));
+    }
+
+    @Test
+    void clearOnOneNode_shouldClearPeerL1() {
+        Cache postsA = nodeA.getCache("posts");
+        Cache postsB = nodeB.getCache("posts");
+        postsA.put("page:1:10", "old");
+        postsB.get("page:1:10");
+
+        postsA.clear();
+
+        await().atMost(Duration.ofSeconds(2))
+                .untilAsserted(() -> assertThat(postsB.get("page:1:10")).isNull());
+    }
+
+    @Test
+    void burstOfEvictions_shouldBeBatchedAndCollapsedByClear() {
+        List<CacheInvalidationMessage> sent = new ArrayList<>();
+        CacheInvalidationTransport recording = new CacheInvalidationTransport() {
+            @Override
+            public void send(CacheInvalidationMessage message) {
+                sent.add(message);
+            }
+
+            @Override
+            public void subscribe(Consumer<CacheInvalidationMessage> receiver) {
+            }
+        };
+        // Long interval so the test drives the flush itself
+        CacheInvalidationBus bus = new CacheInvalidationBus(recording, Duration.ofHours(1), 100, 1000);
+        try {
+            for (long id = 0; id < 250; id++) {
+                bus.publishEvict("posts", id);
+                bus.publishEvict("tags", id);
+            }
+            bus.publishClear("tags");
+            bus.flush();
+        } finally {
+            bus.close();
+        }
+
+        List<CacheInvalidationEvent> events = sent.stream().flatMap(m -> m.getEvents().stream()).toList();
+        assertThat(sent).hasSize(3); // 251 events in batches of 100
+        assertThat(events).hasSize(251);
+        assertThat(events).contains(CacheInvalidationEvent.clear("tags"));
+        assertThat(events).noneMatch(e -> e.getType() == CacheInvalidationEvent.Type.EVICT
+                && e.getCacheName().equals("tags"));
+    }
+
+    @Test
+    void failedSend_shouldBeRetriedAsClearsOnTheNextFlush() {
+        List<CacheInvalidationMessage> sent = new ArrayList<>();
+        AtomicBoolean redisDown = new AtomicBoolean(true);
+        CacheInvalidationTransport flaky = new CacheInvalidationTransport() {
+            @Override
+            public void send(CacheInvalidationMessage message) {
+                if (redisDown.get()) {
+                    throw new RedisConnectionFailureException("down");
+                }
+                sent.add(message);
+            }
+
+            @Override
+            public void subscribe(Consumer<CacheInvalidationMessage> receiver) {
+            }
+        };
+        RedisCircuitBreaker breaker = new RedisCircuitBreaker(1, Duration.ofMillis(10), () -> {
+            if (redisDown.get()) {
+                throw new RedisConnectionFailureException("down");
+            }
+        });
+        CacheInvalidationBus bus = new CacheInvalidationBus(flaky, Duration.ofHours(1), 100, 1000, breaker);
+        try {
+            bus.publishEvict("posts", 1L);
+            bus.publishEvict("posts", 2L);
+            bus.publishGeneration("posts:feed", 7);
+            bus.flush();
+            assertThat(breaker.getState()).isEqualTo(RedisCircuitBreaker.State.OPEN);
+            // Skipped by the open breaker, and kept for the next flush again
+            bus.flush();
+            assertThat(breaker.getStats()).containsEntry("shortCircuitedCalls", 1L);
+
+            redisDown.set(false);
+            await().atMost(Duration.ofSeconds(2))
+                    .until(() -> breaker.getState() == RedisCircuitBreaker.State.CLOSED);
+            bus.flush();
+        } finally {
+            bus.close();
+            breaker.close();
+        }
+
+        assertThat(sent).singleElement().satisfies(message -> assertThat(message.getEvents())
+                .containsExactly(CacheInvalidationEvent.clear("posts"), CacheInvalidationEvent.generation("posts:feed", 7)));
+    }
+
+    @Test
+    void message_shouldPreserveKeyTypes() {
+        CacheInvalidationMessage message = new CacheInvalidationMessage("node", List.of(
+                CacheInvalidationEvent.evict("posts", 42L),
+                CacheInvalidationEvent.evict("posts", "page:1:10"),
+                CacheInvalidationEvent.clear("tags")));
+
+        CacheInvalidationMessage decoded = CacheInvalidationMessage.decode(message.encode());
+
+        assertThat(decoded.getOriginId()).isEqualTo("node");
+        assertThat(decoded.getEvents()).containsExactlyElementsOf(message.getEvents());
+        assertThat(decoded.getEvents().get(0).getKey()).isInstanceOf(Long.class);
+    }
+}
@@ -0,0 +1,121 @@
+package com.broadblog.cache;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+class CacheKeyIndexTest {
+
+    @Test
+    void groupsOf_shouldIncludeCacheAndFirstSegment() {
+        assertThat(CacheKeyIndex.groupsOf("posts::page:1:10")).containsExactly("posts::", "posts::page:");
+        assertThat(CacheKeyIndex.groupsOf("posts::42")).containsExactly("posts::");
+        assertThat(CacheKeyIndex.groupsOf("hot_posts")).isEmpty();
+    }
+
+    @Test
+    void isGroup_shouldOnlyAcceptRegisteredShapes() {
+        assertThat(CacheKeyIndex.isGroup("searchResults::")).isTrue();
+        assertThat(CacheKeyIndex.isGroup("posts::authorPage:")).isTrue();
+        assertThat(CacheKeyIndex.isGroup("posts::authorPage:7:")).isFalse();
+        assertThat(CacheKeyIndex.isGroup("tag::*:usage")).isFalse();
+        assertThat(CacheKeyIndex.isGroup("popular:tags")).isFalse();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void excludedCaches_shouldNotBeIndexedAndShouldAlwaysBeScanned() {
+        StringRedisTemplate redis = mock(StringRedisTemplate.class);
+        Cursor<String> cursor = mock(Cursor.class);
+        when(redis.scan(any())).thenReturn(cursor);
+        CacheKeyIndex index = new CacheKeyIndex(redis, Duration.ZERO, 500);
+        index.excludeCache("posts");
+
+        index.registerAll(List.of("posts::page:1:10@v3", "posts::42@v3"));
+        index.invalidate("posts::page:");
+
+        verify(redis, never()).executePipelined(any(RedisCallback.class));
+        verify(redis).scan(any());
+        verify(redis, never()).opsForValue();
+    }
+
+    /**
+     * Save-path invalidation latency against a growing keyspace. Needs a disposable Redis:
+     * {@code mvn test -Dtest=CacheKeyIndexTest -Dbenchmark.redis.host=localhost}.
+     * The database is flushed between rounds.
+     */
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark.redis.host", matches = ".+")
+    void benchmark_invalidationLatencyStaysFlatAsKeyspaceGrows() {
+        RedisStandaloneConfiguration config = new RedisStandaloneConfiguration(
+                System.getProperty("benchmark.redis.host"),
+                Integer.getInteger("benchmark.redis.port", 6379));
+        config.setDatabase(Integer.getInteger("benchmark.redis.database", 15));
+        LettuceConnectionFactory connectionFactory = new LettuceConnectionFactory(config);
+        connectionFactory.afterPropertiesSet();
+        try {
+            StringRedisTemplate redis = new StringRedisTemplate(connectionFactory);
+            // Zero TTL makes the index authoritative immediately
+            CacheKeyIndex index = new CacheKeyIndex(redis, Duration.ZERO, 500);
+            System.out.printf("%12s %16s %16s%n", "keyspace", "index (ms)", "scan (ms)");
+            for (int keyspace : List.of(10_000, 100_000, 1_000_000)) {
+                redis.execute((RedisCallback<Object>) connection -> {
+                    connection.serverCommands().flushDb();
+                    return null;
+                });
+                fill(redis, keyspace);
+
+                registerPages(redis, index);
+                long start = System.nanoTime();
+                long indexed = index.invalidate("posts::page:");
+                long indexMillis = (System.nanoTime() - start) / 1_000_000;
+
+                registerPages(redis, index);
+                start = System.nanoTime();
+                long scanned = index.scanAndDelete("posts::page:*");
+                long scanMillis = (System.nanoTime() - start) / 1_000_000;
+
+                assertThat(indexed).isEqualTo(200);
+                assertThat(scanned).isEqualTo(200);
+                System.out.printf("%12d %16d %16d%n", keyspace, indexMillis, scanMillis);
+            }
+        } finally {
+            connectionFactory.destroy();
+        }
+    }
+
+    private static void fill(StringRedisTemplate redis, int keys) {
+        for (int from = 0; from < keys; from += 10_000) {
+            int batchStart = from;
+            redis.executePipelined((RedisCallback<Object>) connection -> {
+                for (int i = batchStart; i < Math.min(batchStart + 10_000, keys); i++) {
+                    connection.stringCommands().set(("filler::" + i).getBytes(StandardCharsets.UTF_8),
+                            new byte[] {1});
+                }
+                return null;
+            });
+        }
+    }
+
+    private static void registerPages(StringRedisTemplate redis, CacheKeyIndex index) {
+        for (int page = 1; page <= 200; page++) {
+            String key = "posts::page:" + page + ":10";
+            redis.opsForValue().set(key, "page");
+            index.register(key);
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.broadblog.cache;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import org.assertj.core.api.InstanceOfAssertFactories;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.Cache;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+
+import com.broadblog.config.TwoLevelCacheManager;
+import com.broadblog.config.TwoLevelCacheProperties;
+import com.broadblog.config.TwoLevelCacheSupport;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class CacheMetricsTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final ConcurrentMapCacheManager l2Manager = new ConcurrentMapCacheManager();
+
+    private TwoLevelCacheManager manager() {
+        TwoLevelCacheSupport support = new TwoLevelCacheSupport();
+        support.setPolicies(new TwoLevelCacheProperties()::policyFor);
+        support.setMeterRegistry(registry);
+        return new TwoLevelCacheManager(new CaffeineCacheManager(), l2Manager, support);
+    }
+
+    @Test
+    void lookups_shouldBeCountedOncePerLevel() {
+        TwoLevelCacheManager manager = manager();
+        Cache posts = manager.getCache("posts");
+
+        posts.get(1L, () -> "post 1");            // miss + load
+        posts.get(1L, () -> "unused");            // L1 hit
+        l2Manager.getCache("posts").put(2L, "post 2");
+        posts.get(2L);                            // L2 hit
+        posts.evict(1L);
+        assertThatThrownBy(() -> posts.get(3L, () -> {
+            throw new IllegalStateException("down");
+        })).isInstanceOf(Cache.ValueRetrievalException.class);
+
+        Map<String, Object> snapshot = manager.getMetrics().get("posts");
+        assertThat(snapshot)
+                .containsEntry("l1Hits", 1L)
+                .containsEntry("l2Hits", 1L)
+                .containsEntry("misses", 2L)
+                .containsEntry("explicitEvictions", 1L)
+                .containsEntry("loads", 1L)
+                .containsEntry("loadFailures", 1L)
+                .containsEntry("l1Entries", 1L);
+        assertThat(snapshot.get("l2GetMillis")).asInstanceOf(InstanceOfAssertFactories.MAP).containsKeys("p50", "p95", "p99", "max");
+    }
+
+    @Test
+    void meters_shouldBeTaggedWithCacheAndLevel() {
+        Cache tags = manager().getCache("tags");
+        tags.get("all", () -> "tags");
+        tags.get("all", () -> "tags");
+
+        assertThat(registry.get("cache.twolevel.gets").tags("cache", "tags", "level", "l1", "result", "hit")
+                .functionCounter().count()).isEqualTo(1.0);
+        assertThat(registry.get("cache.twolevel.gets").tags("cache", "tags", "result", "miss")
+                .functionCounter().count()).isEqualTo(1.0);
+        assertThat(registry.get("cache.twolevel.l2.latency").tags("cache", "tags", "operation", "put")
+                .timer().count()).isEqualTo(1);
+        assertThat(registry.get("cache.twolevel.size").tags("cache", "tags").gauge().value()).isEqualTo(1.0);
+    }
+}
@@ -0,0 +1,104 @@
+package com.broadblog.cache;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.Cache;
+import org.springframework.cache.caffeine.CaffeineCache;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.util.unit.DataSize;
+
+import com.broadblog.config.CachePolicy;
+import com.broadblog.config.TwoLevelCacheManager;
+import com.broadblog.config.TwoLevelCacheProperties;
+import com.broadblog.config.TwoLevelCacheSupport;
+import com.broadblog.entity.Comment;
+import com.broadblog.entity.Post;
+
+class CachePolicyTest {
+
+    private final TwoLevelCacheProperties properties = new TwoLevelCacheProperties();
+    private final CaffeineCacheManager l1Manager = new CaffeineCacheManager();
+    private final ConcurrentMapCacheManager l2Manager = new ConcurrentMapCacheManager();
+
+    private TwoLevelCacheManager manager() {
+        TwoLevelCacheSupport support = new TwoLevelCacheSupport();
+        support.setPolicies(properties::policyFor);
+        return new TwoLevelCacheManager(l1Manager, l2Manager, support);
+    }
+
+    private CachePolicy policy(String cacheName) {
+        return properties.getCaches().computeIfAbsent(cacheName, n -> new CachePolicy());
+    }
+
+    @Test
+    void weigher_shouldTellPagesFromFlags() {
+        List<Post> page = new ArrayList<>();
+        for (long id = 1; id <= 10; id++) {
+            Post post = new Post();
+            post.setId(id);
+            post.setTitle("Post " + id);
+            post.setContent("x".repeat(2000));
+            post.setCreatedAt(LocalDateTime.now());
+            Comment comment = new Comment();
+            comment.setPost(post); // back-reference must not loop
+            post.setComments(List.of(comment));
+            page.add(post);
+        }
+
+        long pageWeight = SizeEstimatingWeigher.estimate(page);
+        long flagWeight = SizeEstimatingWeigher.estimate(Boolean.TRUE);
+
+        assertThat(pageWeight).isGreaterThan(40_000);
+        assertThat(flagWeight).isLessThan(100);
+    }
+
+    @Test
+    void weightBoundedL1_shouldNotLetOneLargeEntryEvictSmallOnes() {
+        policy("posts").setMaxWeight(DataSize.ofKilobytes(16));
+        Cache posts = manager().getCache("posts");
+        for (int i = 0; i < 20; i++) {
+            posts.put("isAdmin:" + i, Boolean.TRUE);
+        }
+
+        posts.put("all", "x".repeat(20_000));
+        ((CaffeineCache) l1Manager.getCache("posts")).getNativeCache().cleanUp();
+
+        Map<Object, Object> l1 = ((CaffeineCache) l1Manager.getCache("posts")).getNativeCache().asMap();
+        assertThat(l1).doesNotContainKey("all").containsKey("isAdmin:0");
+        assertThat(posts.get("all")).isNotNull(); // still served from L2
+    }
+
+    @Test
+    void modes_shouldSkipTheAbsentLevel() {
+        policy("tagStats").setMode(CachePolicy.Mode.L2_ONLY);
+        policy("sessions").setMode(CachePolicy.Mode.L1_ONLY);
+        TwoLevelCacheManager manager = manager();
+
+        manager.getCache("tagStats").put("byCategory", "stats");
+        manager.getCache("sessions").put("42", "local");
+
+        assertThat(l1Manager.getCacheNames()).doesNotContain("tagStats");
+        assertThat(l2Manager.getCache("tagStats").get("byCategory")).isNotNull();
+        assertThat(manager.getCache("sessions").get("42").get()).isEqualTo("local");
+        assertThat(l2Manager.getCacheNames()).doesNotContain("sessions");
+    }
+
+    @Test
+    void refreshInterval_shouldReloadL1FromL2InBackground() {
+        policy("posts").setRefreshInterval(Duration.ofMillis(50));
+        Cache posts = manager().getCache("posts");
+        posts.put(1L, "v1");
+        l2Manager.getCache("posts").put(1L, "v2");
+
+        await().atMost(Duration.ofSeconds(2)).pollInterval(Duration.ofMillis(20))
+                .untilAsserted(() -> assertThat(posts.get(1L).get()).isEqualTo("v2"));
+    }
+}
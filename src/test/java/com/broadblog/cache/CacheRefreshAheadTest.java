@@ -0,0 +1,87 @@
+package com.broadblog.cache;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.Cache;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+
+import com.broadblog.config.CachePolicy;
+import com.broadblog.config.TwoLevelCacheManager;
+import com.broadblog.config.TwoLevelCacheProperties;
+import com.broadblog.config.TwoLevelCacheSupport;
+
+class CacheRefreshAheadTest {
+
+    private final TwoLevelCacheProperties properties = new TwoLevelCacheProperties();
+    private final CaffeineCacheManager l1Manager = new CaffeineCacheManager();
+    private final ConcurrentMapCacheManager l2Manager = new ConcurrentMapCacheManager();
+    private final CacheRefresher refresher = new CacheRefresher(2, 16);
+
+    @AfterEach
+    void closeRefresher() {
+        refresher.close();
+    }
+
+    private Cache cache(String name, Duration softTtl) {
+        CachePolicy policy = new CachePolicy();
+        policy.setSoftTtl(softTtl);
+        properties.getCaches().put(name, policy);
+        TwoLevelCacheSupport support = new TwoLevelCacheSupport();
+        support.setPolicies(properties::policyFor);
+        support.setRefresher(refresher);
+        return new TwoLevelCacheManager(l1Manager, l2Manager, support).getCache(name);
+    }
+
+    @Test
+    void staleHit_shouldReturnOldValueAndReloadOnceInBackground() throws Exception {
+        Cache cache = cache("tagCloud", Duration.ofMillis(50));
+        AtomicInteger loads = new AtomicInteger();
+        cache.get("top20", () -> "v" + loads.incrementAndGet());
+        Thread.sleep(100);
+
+        // Several stale hits before the reload lands still schedule only one reload
+        for (int i = 0; i < 5; i++) {
+            assertThat(cache.get("top20", () -> "v" + loads.incrementAndGet())).isIn("v1", "v2");
+        }
+
+        await().atMost(Duration.ofSeconds(2))
+                .untilAsserted(() -> assertThat(cache.get("top20").get()).isEqualTo("v2"));
+        assertThat(loads).hasValue(2);
+        assertThat(l2Manager.getCache("tagCloud").get("top20").get()).isEqualTo("v2");
+        assertThat(refresher.getStats()).containsEntry("succeeded", 1L);
+    }
+
+    @Test
+    void failingReload_shouldKeepServingTheOldValue() throws Exception {
+        Cache cache = cache("tagCloud", Duration.ofMillis(50));
+        cache.get("top20", () -> "v1");
+        Thread.sleep(100);
+
+        Object value = cache.get("top20", () -> {
+            throw new IllegalStateException("database down");
+        });
+
+        assertThat(value).isEqualTo("v1");
+        await().atMost(Duration.ofSeconds(2))
+                .untilAsserted(() -> assertThat(refresher.getStats()).containsEntry("failed", 1L));
+        assertThat(cache.get("top20").get()).isEqualTo("v1");
+    }
+
+    @Test
+    void freshHit_shouldNotReload() {
+        Cache cache = cache("tagCloud", Duration.ofMinutes(5));
+        AtomicInteger loads = new AtomicInteger();
+        cache.get("top20", () -> "v" + loads.incrementAndGet());
+
+        cache.get("top20", () -> "v" + loads.incrementAndGet());
+
+        assertThat(loads).hasValue(1);
+        assertThat(refresher.getStats()).containsEntry("scheduled", 0L);
+    }
+}
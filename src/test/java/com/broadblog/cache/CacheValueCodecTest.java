@@ -0,0 +1,154 @@
+package com.broadblog.cache;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+
+import com.broadblog.dto.PostDTO;
+import com.broadblog.dto.PostDetail;
+import com.broadblog.dto.PostPage;
+import com.broadblog.dto.PostSummary;
+import com.fasterxml.jackson.core.JsonFactory;
+
+class CacheValueCodecTest {
+
+    @Test
+    void everyFormat_shouldRoundTripTypedValues() {
+        List<PostDTO> page = postPage(20);
+        for (CacheValueCodec codec : List.of(
+                new CacheValueCodec(CacheValueCodec.Format.LEGACY_JSON, 0),
+                new CacheValueCodec(CacheValueCodec.Format.JSON, -1),
+                new CacheValueCodec(CacheValueCodec.Format.SMILE, -1),
+                new CacheValueCodec(CacheValueCodec.Format.SMILE, 0))) {
+            @SuppressWarnings("unchecked")
+            List<PostDTO> decoded = (List<PostDTO>) codec.deserialize(codec.serialize(page));
+
+            assertThat(decoded).hasSize(20);
+            assertThat(decoded.get(3).getId()).isEqualTo(4L);
+            assertThat(decoded.get(3).getCreatedAt()).isEqualTo(page.get(3).getCreatedAt());
+            assertThat(decoded.get(3).getTagNames()).containsExactly("caching", "redis", "spring");
+        }
+    }
+
+    @Test
+    void postReadModel_shouldRoundTripAsItsOwnTypes() {
+        LocalDateTime now = LocalDateTime.of(2024, 5, 1, 12, 0);
+        PostSummary summary = new PostSummary(1L, "title", "content", now, now, 7L, "minghe",
+                List.of("redis"), 2);
+        PostDetail detail = new PostDetail(1L, "title", "content", now, now, 7L, "minghe", "/avatars/7.png",
+                List.of("redis"), 2);
+        PostPage page = new PostPage(List.of(summary), 1, 10, 1);
+
+        for (CacheValueCodec codec : List.of(
+                new CacheValueCodec(CacheValueCodec.Format.JSON, -1),
+                new CacheValueCodec(CacheValueCodec.Format.SMILE, 0))) {
+            PostPage decodedPage = (PostPage) codec.deserialize(codec.serialize(page));
+            PostDetail decodedDetail = (PostDetail) codec.deserialize(codec.serialize(detail));
+
+            assertThat(decodedPage.getContent()).singleElement()
+                    .satisfies(post -> assertThat(post.getTagNames()).containsExactly("redis"));
+            assertThat(decodedPage.getTotalPages()).isEqualTo(1);
+            assertThat(decodedDetail.getAuthorAvatar()).isEqualTo("/avatars/7.png");
+            assertThat(decodedDetail.getCreatedAt()).isEqualTo(now);
+        }
+    }
+
+    @Test
+    void legacyJson_shouldStayReadable() {
+        GenericJackson2JsonRedisSerializer legacy = new GenericJackson2JsonRedisSerializer(
+                CacheValueCodec.cacheObjectMapper(new JsonFactory()));
+        byte[] written = legacy.serialize(postPage(2));
+
+        Object decoded = new CacheValueCodec(CacheValueCodec.Format.SMILE, 0).deserialize(written);
+
+        assertThat(decoded).asList().hasSize(2).first().isInstanceOf(PostDTO.class);
+    }
+
+    @Test
+    void legacyJsonWriter_shouldBeReadableByThePlainSerializer() {
+        GenericJackson2JsonRedisSerializer legacy = new GenericJackson2JsonRedisSerializer(
+                CacheValueCodec.cacheObjectMapper(new JsonFactory()));
+        // Large enough to be compressed by the other formats
+        byte[] written = new CacheValueCodec(CacheValueCodec.Format.LEGACY_JSON, 0).serialize(postPage(20));
+
+        assertThat(written).isEqualTo(legacy.serialize(postPage(20)));
+        Object decoded = legacy.deserialize(written);
+
+        assertThat(decoded).asList().hasSize(20).first().isInstanceOf(PostDTO.class);
+    }
+
+    @Test
+    void jsonWriter_shouldReadSmileValues() {
+        byte[] smile = new CacheValueCodec(CacheValueCodec.Format.SMILE, 0).serialize(postPage(5));
+
+        Object decoded = new CacheValueCodec(CacheValueCodec.Format.JSON, -1).deserialize(smile);
+
+        assertThat(decoded).asList().hasSize(5);
+    }
+
+    @Test
+    void compressedSmile_shouldBeSmallerThanJsonForPostPages() {
+        List<PostDTO> page = postPage(20);
+        int json = new CacheValueCodec(CacheValueCodec.Format.JSON, -1).serialize(page).length;
+        int smile = new CacheValueCodec(CacheValueCodec.Format.SMILE, -1).serialize(page).length;
+        int compressed = new CacheValueCodec(CacheValueCodec.Format.SMILE, 1024).serialize(page).length;
+
+        assertThat(smile).isLessThan(json);
+        assertThat(compressed).isLessThan(smile);
+    }
+
+    /**
+     * Bytes on the wire and encode/decode time per format for typical post pages:
+     * {@code mvn test -Dtest=CacheValueCodecTest -Dbenchmark.codec=true}.
+     */
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark.codec", matches = "true")
+    void benchmark_bytesAndTimePerFormat() {
+        int iterations = 2_000;
+        System.out.printf("%6s %-16s %10s %14s %14s%n", "posts", "format", "bytes", "encode (us)", "decode (us)");
+        for (int size : List.of(10, 20, 50)) {
+            List<PostDTO> page = postPage(size);
+            benchmark(size, "json", new CacheValueCodec(CacheValueCodec.Format.JSON, -1), page, iterations);
+            benchmark(size, "json+deflate", new CacheValueCodec(CacheValueCodec.Format.JSON, 1024), page, iterations);
+            benchmark(size, "smile", new CacheValueCodec(CacheValueCodec.Format.SMILE, -1), page, iterations);
+            benchmark(size, "smile+deflate", new CacheValueCodec(CacheValueCodec.Format.SMILE, 1024), page, iterations);
+        }
+    }
+
+    private static void benchmark(int size, String name, CacheValueCodec codec, List<PostDTO> page, int iterations) {
+        byte[] bytes = codec.serialize(page);
+        for (int i = 0; i < iterations; i++) { // warm-up
+            codec.deserialize(codec.serialize(page));
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            bytes = codec.serialize(page);
+        }
+        long encodeNanos = System.nanoTime() - start;
+        start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            codec.deserialize(bytes);
+        }
+        long decodeNanos = System.nanoTime() - start;
+        System.out.printf("%6d %-16s %10d %14.1f %14.1f%n", size, name, bytes.length,
+                encodeNanos / 1000.0 / iterations, decodeNanos / 1000.0 / iterations);
+    }
+
+    private static List<PostDTO> postPage(int size) {
+        List<PostDTO> page = new ArrayList<>();
+        LocalDateTime now = LocalDateTime.of(2024, 5, 1, 12, 0);
+        for (long id = 1; id <= size; id++) {
+            PostDTO post = new PostDTO(id, "How we cache post pages, part " + id,
+                    "Caching page lists in Redis. ".repeat(30), now.minusHours(id), now, 7L, "minghe");
+            post.setTagNames(List.of("caching", "redis", "spring"));
+            post.setCommentCount(3);
+            page.add(post);
+        }
+        return page;
+    }
+}
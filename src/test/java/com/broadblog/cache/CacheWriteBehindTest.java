@@ -0,0 +1,116 @@
+package com.broadblog.cache;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.Cache;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+
+import com.broadblog.config.CachePolicy;
+import com.broadblog.config.TwoLevelCacheManager;
+import com.broadblog.config.TwoLevelCacheProperties;
+import com.broadblog.config.TwoLevelCacheSupport;
+
+class CacheWriteBehindTest {
+
+    private final TwoLevelCacheProperties properties = new TwoLevelCacheProperties();
+    private final ConcurrentMapCacheManager l2Manager = new ConcurrentMapCacheManager();
+    private final List<Map<?, ?>> pipelines = new ArrayList<>();
+    // Flushed by hand, so every test sees the queue exactly as it left it
+    private CacheWriteBehind writeBehind = new CacheWriteBehind(Duration.ofHours(1), 500, 100, null);
+
+    @AfterEach
+    void closeQueue() {
+        writeBehind.close();
+    }
+
+    private Cache cache(String name, boolean writeBehindEnabled) {
+        CachePolicy policy = new CachePolicy();
+        policy.setWriteBehind(writeBehindEnabled);
+        properties.getCaches().put(name, policy);
+        TwoLevelCacheSupport support = new TwoLevelCacheSupport();
+        support.setPolicies(properties::policyFor);
+        support.setWriteBehind(writeBehind);
+        support.setBulkOperations(new CacheBulkOperations() {
+            @Override
+            public Map<Object, Object> getAll(String cacheName, List<?> keys) {
+                return Map.of();
+            }
+
+            @Override
+            public void putAll(String cacheName, Map<?, ?> entries, Duration ttl) {
+                pipelines.add(Map.copyOf(entries));
+                entries.forEach(l2Manager.getCache(cacheName)::put);
+            }
+        });
+        return new TwoLevelCacheManager(new CaffeineCacheManager(), l2Manager, support).getCache(name);
+    }
+
+    @Test
+    void loads_shouldReturnBeforeL2AndFlushInOnePipeline() {
+        Cache tagCloud = cache("tagCloud", true);
+        Cache l2 = l2Manager.getCache("tagCloud");
+
+        for (int i = 0; i < 20; i++) {
+            int page = i;
+            tagCloud.get("page:" + page, () -> "cloud " + page);
+        }
+
+        assertThat(tagCloud.get("page:3").get()).isEqualTo("cloud 3");
+        assertThat(l2.get("page:3")).isNull();
+        writeBehind.flush();
+
+        assertThat(pipelines).singleElement().satisfies(batch -> assertThat(batch).hasSize(20));
+        assertThat(l2.get("page:3").get()).isEqualTo("cloud 3");
+        assertThat(writeBehind.getStats()).containsEntry("written", 20L).containsEntry("pending", 0);
+    }
+
+    @Test
+    void rewrites_shouldCoalesceAndEvictionsCancel() {
+        Cache tagCloud = cache("tagCloud", true);
+        Cache l2 = l2Manager.getCache("tagCloud");
+
+        tagCloud.put("top20", "v1");
+        tagCloud.put("top20", "v2");
+        tagCloud.put("top50", "v1");
+        tagCloud.evict("top50");
+        writeBehind.flush();
+
+        assertThat(l2.get("top20").get()).isEqualTo("v2");
+        assertThat(l2.get("top50")).isNull();
+        assertThat(writeBehind.getStats()).containsEntry("coalesced", 1L).containsEntry("cancelled", 1L)
+                .containsEntry("written", 1L);
+    }
+
+    @Test
+    void fullQueue_shouldDropL2WritesButKeepL1() {
+        writeBehind.close();
+        writeBehind = new CacheWriteBehind(Duration.ofHours(1), 500, 2, null);
+        Cache tagCloud = cache("tagCloud", true);
+
+        tagCloud.put("a", "1");
+        tagCloud.put("b", "2");
+        tagCloud.put("c", "3");
+        writeBehind.flush();
+
+        assertThat(tagCloud.get("c").get()).isEqualTo("3");
+        assertThat(l2Manager.getCache("tagCloud").get("c")).isNull();
+        assertThat(writeBehind.getStats()).containsEntry("overflows", 1L).containsEntry("written", 2L);
+    }
+
+    @Test
+    void cachesWithoutWriteBehind_shouldStillWriteThrough() {
+        Cache users = cache("users", false);
+
+        users.put(1L, "alice");
+
+        assertThat(l2Manager.getCache("users").get(1L).get()).isEqualTo("alice");
+        assertThat(writeBehind.getStats()).containsEntry("queued", 0L);
+    }
+}
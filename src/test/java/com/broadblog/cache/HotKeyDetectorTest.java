@@ -0,0 +1,86 @@
+package com.broadblog.cache;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.Cache;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.cache.concurrent.ConcurrentMapCache;
+
+import com.broadblog.config.TwoLevelCache;
+import com.broadblog.config.TwoLevelCacheSupport;
+
+class HotKeyDetectorTest {
+
+    @Test
+    void viralKey_shouldStandOutOfTheLongTail() {
+        HotKeyDetector detector = new HotKeyDetector(1, 200, Duration.ofMinutes(1), 4096, 8);
+
+        for (int i = 0; i < 50_000; i++) {
+            detector.record("posts", 12345L);
+            detector.record("posts", (long) i);
+        }
+
+        assertThat(detector.isHot("posts", 12345L)).isTrue();
+        assertThat(detector.isHot("posts", 777L)).isFalse();
+        assertThat(detector.hotKeys("posts")).containsOnlyKeys(12345L);
+        assertThat(detector.hotKeys("users")).isEmpty();
+    }
+
+    @Test
+    void sampling_shouldStillFindTheKeyAndScaleItsRate() {
+        HotKeyDetector detector = new HotKeyDetector(8, 200, Duration.ofMinutes(1), 4096, 8);
+
+        for (int i = 0; i < 80_000; i++) {
+            detector.record("posts", 12345L);
+        }
+
+        // 80,000 lookups leave a decayed count worth 40,000 per window of 60 seconds
+        assertThat(detector.hotKeys("posts").get(12345L)).isBetween(500.0, 800.0);
+    }
+
+    @Test
+    void hotKey_shouldBeServedPinnedAfterLeavingL1UntilEvicted() {
+        CountingCache l2 = new CountingCache("posts");
+        Cache l1 = new CaffeineCacheManager().getCache("posts");
+        TwoLevelCacheSupport support = new TwoLevelCacheSupport();
+        support.setHotKeyDetector(new HotKeyDetector(1, 10, Duration.ofMinutes(1), 1024, 8));
+        TwoLevelCache cache = new TwoLevelCache("posts", l1, l2, support);
+        cache.put(12345L, "viral");
+
+        for (int i = 0; i < 2_000; i++) {
+            cache.get(12345L);
+        }
+        l1.evict(12345L);                                       // pushed out of L1
+        for (int i = 0; i < 100; i++) {
+            assertThat(cache.get(12345L).get()).isEqualTo("viral");
+        }
+
+        assertThat(l2.lookups).hasValue(0);
+        assertThat(cache.getHotKeys()).singleElement()
+                .satisfies(hotKey -> assertThat(hotKey).containsEntry("key", 12345L).containsEntry("pinned", true));
+        assertThat(cache.getMetrics().snapshot()).containsEntry("pinnedHits", 100L);
+
+        cache.evictLocal(12345L);                               // invalidation from another node
+        l2.evict(12345L);
+        assertThat(cache.get(12345L)).isNull();
+        assertThat(l2.lookups).hasValue(1);
+    }
+
+    private static class CountingCache extends ConcurrentMapCache {
+
+        private final AtomicInteger lookups = new AtomicInteger();
+
+        CountingCache(String name) {
+            super(name);
+        }
+
+        @Override
+        protected Object lookup(Object key) {
+            lookups.incrementAndGet();
+            return super.lookup(key);
+        }
+    }
+}
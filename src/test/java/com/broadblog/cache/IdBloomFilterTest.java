@@ -0,0 +1,111 @@
+package com.broadblog.cache;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+class IdBloomFilterTest {
+
+    @Test
+    void beforeRebuild_shouldRejectNothing() {
+        IdBloomFilter filter = new IdBloomFilter("posts", 1_000, 0.01, null);
+
+        assertThat(filter.mightContain(42L)).isTrue();
+        assertThat(filter.getStats()).containsEntry("checks", 0L);
+    }
+
+    @Test
+    void rebuiltFilter_shouldKeepAllIdsAndRejectMostUnknownOnes() {
+        IdBloomFilter filter = new IdBloomFilter("posts", 10_000, 0.01, null);
+        filter.rebuild(LongStream.rangeClosed(1, 10_000).boxed().toList());
+
+        assertThat(LongStream.rangeClosed(1, 10_000).allMatch(filter::mightContain)).isTrue();
+        long falsePositives = LongStream.rangeClosed(1_000_001, 1_100_000).filter(filter::mightContain).count();
+        assertThat(falsePositives / 100_000.0).isLessThan(0.02);
+        assertThat(filter.estimatedFpp()).isBetween(0.005, 0.015);
+    }
+
+    @Test
+    void addedIds_shouldBeFoundAfterRebuild() {
+        IdBloomFilter filter = new IdBloomFilter("tags", 1_000, 0.01, null);
+        filter.rebuild(List.of(1L, 2L, 3L));
+        long unknown = LongStream.range(1_000, 2_000).filter(id -> !filter.mightContain(id)).findFirst().orElseThrow();
+
+        filter.add(unknown);
+
+        assertThat(filter.mightContain(unknown)).isTrue();
+        assertThat(filter.getStats()).containsEntry("insertions", 4L);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void unreachableSharedBitmap_shouldLetLookupsThrough() {
+        StringRedisTemplate redis = mock(StringRedisTemplate.class);
+        when(redis.executePipelined(any(RedisCallback.class))).thenThrow(new RedisConnectionFailureException("down"));
+        IdBloomFilter filter = new IdBloomFilter("users", 1_000, 0.01, redis);
+        filter.rebuild(List.of(1L));
+
+        assertThat(LongStream.range(1_000, 1_100).allMatch(filter::mightContain)).isTrue();
+        assertThat((Long) filter.getStats().get("sharedErrors")).isPositive();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void openBreaker_shouldLetLookupsThroughWithoutCallingRedis() {
+        StringRedisTemplate redis = mock(StringRedisTemplate.class);
+        when(redis.executePipelined(any(RedisCallback.class))).thenThrow(new RedisConnectionFailureException("down"));
+        RedisCircuitBreaker breaker = new RedisCircuitBreaker(1, Duration.ofHours(1), () -> { });
+        try {
+            IdBloomFilter filter = new IdBloomFilter("users", 1_000, 0.01, redis, breaker, true);
+            filter.rebuild(List.of(1L));
+
+            assertThat(LongStream.range(1_000, 1_100).allMatch(filter::mightContain)).isTrue();
+            // The first failure opens the breaker; later lookups skip Redis
+            verify(redis, times(1)).executePipelined(any(RedisCallback.class));
+        } finally {
+            breaker.close();
+        }
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void sync_shouldPullIdsAddedOnOtherNodes() {
+        RedisConnection connection = mock(RedisConnection.class, RETURNS_DEEP_STUBS);
+        StringRedisTemplate redisA = mock(StringRedisTemplate.class);
+        when(redisA.execute(any(RedisCallback.class)))
+                .thenAnswer(call -> ((RedisCallback<Object>) call.getArgument(0)).doInRedis(connection));
+        IdBloomFilter nodeA = new IdBloomFilter("posts", 1_000, 0.01, redisA, null, false);
+        nodeA.rebuild(List.of(1L, 2L, 500L));
+        ArgumentCaptor<byte[]> bitmap = ArgumentCaptor.forClass(byte[].class);
+        verify(connection.stringCommands()).set(any(), bitmap.capture(), any(), any());
+
+        // Node B sees the bitmap node A published
+        StringRedisTemplate redisB = mock(StringRedisTemplate.class);
+        when(redisB.execute(any(RedisCallback.class))).thenReturn(bitmap.getValue());
+        IdBloomFilter nodeB = new IdBloomFilter("posts", 1_000, 0.01, redisB, null, false);
+        nodeB.rebuild(List.of(1L));
+        assertThat(nodeB.mightContain(500L)).isFalse();
+
+        nodeB.sync();
+
+        assertThat(nodeB.mightContain(2L)).isTrue();
+        assertThat(nodeB.mightContain(500L)).isTrue();
+        // Local rejections are final, so no lookup asked Redis
+        verify(redisB, never()).executePipelined(any(RedisCallback.class));
+    }
+}
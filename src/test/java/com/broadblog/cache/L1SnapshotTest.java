@@ -0,0 +1,103 @@
+package com.broadblog.cache;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.cache.Cache;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+
+import com.broadblog.config.CachePolicy;
+import com.broadblog.config.L1SnapshotLifecycle;
+import com.broadblog.config.TwoLevelCacheManager;
+import com.broadblog.config.TwoLevelCacheProperties;
+import com.broadblog.config.TwoLevelCacheSupport;
+
+class L1SnapshotTest {
+
+    @TempDir
+    Path dir;
+
+    private final CacheValueCodec codec = new CacheValueCodec(CacheValueCodec.Format.SMILE, 1024);
+    // Only observed generations, refreshed once an hour: the template is never called
+    private final CacheGenerations generations = new CacheGenerations(null, Duration.ofHours(1), null);
+
+    private TwoLevelCacheManager manager(ConcurrentMapCacheManager l2Manager) {
+        TwoLevelCacheProperties properties = new TwoLevelCacheProperties();
+        properties.getCaches().put("posts", new CachePolicy());
+        TwoLevelCacheSupport support = new TwoLevelCacheSupport();
+        support.setPolicies(properties::policyFor);
+        support.setGenerations(generations);
+        support.addVersionedCache("searchResults", CacheNamespaceResolver.CACHE_ONLY);
+        return new TwoLevelCacheManager(new CaffeineCacheManager(), l2Manager, support);
+    }
+
+    private L1SnapshotLifecycle lifecycle(TwoLevelCacheManager manager, Duration maxAge) {
+        return new L1SnapshotLifecycle(manager, new L1Snapshot(dir.resolve("l1.snapshot"), codec), 100, maxAge);
+    }
+
+    @Test
+    void restart_shouldServeSnapshottedEntriesFromL1() throws IOException {
+        TwoLevelCacheManager before = manager(new ConcurrentMapCacheManager());
+        before.getCache("posts").put(1L, "post 1");
+        before.getCache("posts").put("page:1:10", new ArrayList<>(List.of("post 1", "post 2")));
+        before.getCache("users").put("alice", new HashMap<>(Map.of("id", 7L)));
+        assertThat(lifecycle(before, Duration.ofMinutes(5)).save()).isEqualTo(3);
+
+        ConcurrentMapCacheManager emptyL2 = new ConcurrentMapCacheManager();
+        TwoLevelCacheManager after = manager(emptyL2);
+        assertThat(lifecycle(after, Duration.ofMinutes(5)).restore()).isEqualTo(3);
+
+        assertThat(after.getCache("posts").get(1L).get()).isEqualTo("post 1");
+        assertThat(after.getCache("posts").get("page:1:10").get()).isEqualTo(List.of("post 1", "post 2"));
+        assertThat(after.getCache("users").get("alice").get()).isEqualTo(Map.of("id", 7L));
+        // Restored into L1 only
+        assertThat(emptyL2.getCache("posts").get(1L)).isNull();
+    }
+
+    @Test
+    void versionedEntries_shouldOnlyComeBackUnderTheCurrentGeneration() throws IOException {
+        generations.observe("searchResults", 1);
+        TwoLevelCacheManager before = manager(new ConcurrentMapCacheManager());
+        Cache searchResults = before.getCache("searchResults");
+        searchResults.put("spring", "result v1");
+        lifecycle(before, Duration.ofMinutes(5)).save();
+
+        TwoLevelCacheManager unchanged = manager(new ConcurrentMapCacheManager());
+        assertThat(lifecycle(unchanged, Duration.ofMinutes(5)).restore()).isEqualTo(1);
+        assertThat(unchanged.getCache("searchResults").get("spring").get()).isEqualTo("result v1");
+
+        generations.observe("searchResults", 2);                 // cleared while the node was down
+        TwoLevelCacheManager bumped = manager(new ConcurrentMapCacheManager());
+        assertThat(lifecycle(bumped, Duration.ofMinutes(5)).restore()).isZero();
+        assertThat(bumped.getCache("searchResults").get("spring")).isNull();
+    }
+
+    @Test
+    void oldOrCorruptSnapshots_shouldBeIgnored() throws IOException {
+        TwoLevelCacheManager before = manager(new ConcurrentMapCacheManager());
+        before.getCache("posts").put(1L, "post 1");
+        lifecycle(before, Duration.ofMinutes(5)).save();
+
+        assertThat(lifecycle(manager(new ConcurrentMapCacheManager()), Duration.ZERO.minusMillis(1)).restore()).isZero();
+
+        Path file = dir.resolve("l1.snapshot");
+        byte[] bytes = Files.readAllBytes(file);
+        bytes[bytes.length / 2] ^= 0x5A;
+        Files.write(file, bytes);
+        assertThat(new L1Snapshot(file, codec).read()).isNull();
+
+        Files.write(file, ByteBuffer.allocate(8).putInt(0xCAFEBABE).array());
+        assertThat(new L1Snapshot(file, codec).read()).isNull();
+    }
+}
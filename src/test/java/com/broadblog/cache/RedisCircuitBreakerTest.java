@@ -0,0 +1,243 @@
+package com.broadblog.cache;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.DoubleAdder;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.cache.concurrent.ConcurrentMapCache;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import com.broadblog.config.TwoLevelCache;
+import com.broadblog.config.TwoLevelCacheSupport;
+
+class RedisCircuitBreakerTest {
+
+    private final AtomicBoolean redisDown = new AtomicBoolean();
+    private final RedisCircuitBreaker breaker = new RedisCircuitBreaker(2, Duration.ofMillis(20), () -> {
+        if (redisDown.get()) {
+            throw new RedisConnectionFailureException("probe refused");
+        }
+    });
+
+    @AfterEach
+    void closeBreaker() {
+        breaker.close();
+    }
+
+    @Test
+    void consecutiveOutages_shouldOpenAndShortCircuit() {
+        AtomicInteger calls = new AtomicInteger();
+        redisDown.set(true);
+
+        for (int i = 0; i < 5; i++) {
+            String value = breaker.execute(() -> {
+                calls.incrementAndGet();
+                throw new RedisConnectionFailureException("refused");
+            }, () -> "fallback");
+            assertThat(value).isEqualTo("fallback");
+        }
+
+        assertThat(breaker.getState()).isEqualTo(RedisCircuitBreaker.State.OPEN);
+        assertThat(calls).hasValue(2);
+        assertThat(breaker.getStats()).containsEntry("shortCircuitedCalls", 3L);
+    }
+
+    @Test
+    void otherErrors_shouldNeitherCountNorFallBack() {
+        for (int i = 0; i < 3; i++) {
+            assertThatThrownBy(() -> breaker.execute(() -> {
+                throw new SerializationException("bad payload");
+            }, () -> "fallback")).isInstanceOf(SerializationException.class);
+        }
+
+        assertThat(breaker.getState()).isEqualTo(RedisCircuitBreaker.State.CLOSED);
+    }
+
+    @Test
+    void successfulProbe_shouldReplayBeforeClosing() throws InterruptedException {
+        List<RedisCircuitBreaker.State> statesDuringReplay = new ArrayList<>();
+        breaker.addRecoveryListener(() -> statesDuringReplay.add(breaker.getState()));
+        redisDown.set(true);
+        openBreaker();
+
+        Thread.sleep(100);
+        assertThat(breaker.getState()).isEqualTo(RedisCircuitBreaker.State.OPEN);
+        redisDown.set(false);
+        awaitClosed();
+
+        assertThat(statesDuringReplay).first().isEqualTo(RedisCircuitBreaker.State.OPEN);
+    }
+
+    @Test
+    void writeBuffer_shouldMergeAndReplayDeferredWritesInOrder() {
+        RedisWriteBuffer buffer = new RedisWriteBuffer(null, 3);
+        List<String> replayed = new ArrayList<>();
+
+        buffer.defer("evict:posts::1", () -> replayed.add("evict 1 (old)"));
+        buffer.defer("evict:posts::2", () -> replayed.add("evict 2"));
+        buffer.defer("evict:posts::1", () -> replayed.add("evict 1"));
+        buffer.defer("evict:posts::3", () -> replayed.add("evict 3"));
+        buffer.defer("evict:posts::4", () -> replayed.add("evict 4"));     // over capacity
+
+        assertThat(buffer.size()).isEqualTo(3);
+        buffer.replay();
+
+        assertThat(replayed).containsExactly("evict 2", "evict 1", "evict 3");
+        assertThat(buffer.size()).isZero();
+        assertThat(buffer.getStats()).containsEntry("dropped", 1L).containsEntry("replayed", 3L);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void writeBuffer_shouldNotLoseIncrementsAddedDuringReplay() throws Exception {
+        AtomicLong replayedCount = new AtomicLong();
+        DoubleAdder replayedScore = new DoubleAdder();
+        ValueOperations<String, Object> valueOperations = mock(ValueOperations.class);
+        when(valueOperations.increment(anyString(), anyLong()))
+                .thenAnswer(call -> replayedCount.addAndGet(call.getArgument(1)));
+        ZSetOperations<String, Object> zSetOperations = mock(ZSetOperations.class);
+        when(zSetOperations.incrementScore(anyString(), any(), anyDouble())).thenAnswer(call -> {
+            replayedScore.add(call.getArgument(2));
+            return null;
+        });
+        RedisTemplate<String, Object> redisTemplate = mock(RedisTemplate.class);
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(redisTemplate.opsForZSet()).thenReturn(zSetOperations);
+        when(redisTemplate.executePipelined(any(SessionCallback.class))).thenAnswer(call -> {
+            ((SessionCallback<Object>) call.getArgument(0)).execute(redisTemplate);
+            return List.of();
+        });
+        RedisWriteBuffer buffer = new RedisWriteBuffer(redisTemplate, 100);
+        int writes = 20_000;
+
+        Thread writer = new Thread(() -> {
+            for (int i = 0; i < writes; i++) {
+                buffer.increment("post:1:views", 1);
+                buffer.incrementScore("trending", "1", 1);
+            }
+        });
+        writer.start();
+        while (writer.isAlive()) {
+            buffer.replay();
+        }
+        writer.join();
+        buffer.replay();
+
+        assertThat(replayedCount).hasValue(writes);
+        assertThat(replayedScore.sum()).isEqualTo(writes);
+        assertThat(buffer.size()).isZero();
+    }
+
+    @Test
+    void twoLevelCache_shouldServeFromL1AndLoaderWhileRedisIsDown() throws InterruptedException {
+        FlakyCache l2 = new FlakyCache("posts");
+        RedisWriteBuffer buffer = new RedisWriteBuffer(null, 100);
+        breaker.addRecoveryListener(buffer::replay);
+        TwoLevelCacheSupport support = new TwoLevelCacheSupport();
+        support.setCircuitBreaker(breaker);
+        support.setWriteBuffer(buffer);
+        TwoLevelCache cache = new TwoLevelCache("posts", new CaffeineCacheManager().getCache("posts"), l2, support);
+        cache.put(1L, "cached");
+        l2.put(2L, "stale");
+
+        redisDown.set(true);
+        assertThat(cache.get(1L, () -> "loaded")).isEqualTo("cached");
+        for (long id = 3; id < 8; id++) {
+            long key = id;
+            assertThat(cache.get(key, () -> "post " + key)).isEqualTo("post " + key);
+        }
+        cache.evict(2L);
+
+        assertThat(breaker.getState()).isEqualTo(RedisCircuitBreaker.State.OPEN);
+        assertThat(l2.calls).hasValue(2);
+        assertThat(cache.getMetrics().snapshot()).containsEntry("l2Unavailable", 5L);
+        assertThat(buffer.size()).isEqualTo(1);
+
+        redisDown.set(false);
+        awaitClosed();
+
+        assertThat(l2.get(2L)).isNull();
+        assertThat(cache.get(8L, () -> "post 8")).isEqualTo("post 8");
+        assertThat(l2.get(8L).get()).isEqualTo("post 8");
+    }
+
+    private void openBreaker() {
+        for (int i = 0; i < 2; i++) {
+            breaker.execute(() -> {
+                throw new RedisConnectionFailureException("refused");
+            }, () -> null);
+        }
+        assertThat(breaker.getState()).isEqualTo(RedisCircuitBreaker.State.OPEN);
+    }
+
+    private void awaitClosed() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 2000;
+        while (breaker.getState() == RedisCircuitBreaker.State.OPEN && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(breaker.getState()).isEqualTo(RedisCircuitBreaker.State.CLOSED);
+    }
+
+    /**
+     * An L2 that refuses every operation while {@code redisDown} is set, counting refused calls.
+     */
+    private class FlakyCache extends ConcurrentMapCache {
+
+        private final AtomicInteger calls = new AtomicInteger();
+
+        FlakyCache(String name) {
+            super(name);
+        }
+
+        private void checkUp() {
+            if (redisDown.get()) {
+                calls.incrementAndGet();
+                throw new RedisConnectionFailureException("Connection refused");
+            }
+        }
+
+        @Override
+        protected Object lookup(Object key) {
+            checkUp();
+            return super.lookup(key);
+        }
+
+        @Override
+        public void put(Object key, Object value) {
+            checkUp();
+            super.put(key, value);
+        }
+
+        @Override
+        public void evict(Object key) {
+            checkUp();
+            super.evict(key);
+        }
+
+        @Override
+        public void clear() {
+            checkUp();
+            super.clear();
+        }
+    }
+}
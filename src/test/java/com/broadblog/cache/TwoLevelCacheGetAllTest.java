@@ -0,0 +1,110 @@
+package com.broadblog.cache;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.Cache;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+
+import com.broadblog.config.TwoLevelCache;
+import com.broadblog.config.TwoLevelCacheManager;
+import com.broadblog.config.TwoLevelCacheProperties;
+import com.broadblog.config.TwoLevelCacheSupport;
+
+class TwoLevelCacheGetAllTest {
+
+    private final CaffeineCacheManager l1Manager = new CaffeineCacheManager();
+    private final ConcurrentMapCacheManager l2Manager = new ConcurrentMapCacheManager();
+    private final CountingBulkOperations bulkOperations = new CountingBulkOperations();
+
+    private TwoLevelCache cache(String name) {
+        TwoLevelCacheSupport support = new TwoLevelCacheSupport();
+        support.setPolicies(new TwoLevelCacheProperties()::policyFor);
+        support.setBulkOperations(bulkOperations);
+        return (TwoLevelCache) new TwoLevelCacheManager(l1Manager, l2Manager, support).getCache(name);
+    }
+
+    @Test
+    void topFifty_shouldTakeOneRoundTripPerLevel() {
+        TwoLevelCache tags = cache("tags");
+        for (long id = 1; id <= 10; id++) {
+            tags.put(id, "tag " + id);                                // L1 (and L2)
+        }
+        for (long id = 11; id <= 30; id++) {
+            l2Manager.getCache("tags").put(id, "tag " + id);            // L2 only
+        }
+        List<Long> ids = LongStream.rangeClosed(1, 50).map(id -> 51 - id).boxed().toList();
+        List<List<Long>> loaderCalls = new ArrayList<>();
+
+        Map<Long, String> found = tags.getAll(ids, missing -> {
+            loaderCalls.add(missing);
+            return missing.stream().filter(id -> id != 40L)         // 40 no longer exists
+                    .collect(Collectors.toMap(Function.identity(), id -> "tag " + id));
+        });
+
+        assertThat(found).hasSize(49).doesNotContainKey(40L);
+        assertThat(found.keySet()).first().isEqualTo(50L);
+        assertThat(bulkOperations.gets).hasValue(1);
+        assertThat(bulkOperations.puts).hasValue(1);
+        assertThat(loaderCalls).singleElement().asList().hasSize(20);
+        assertThat(l2Manager.getCache("tags").get(31L).get()).isEqualTo("tag 31");
+    }
+
+    @Test
+    void secondLookup_shouldBeServedFromL1() {
+        TwoLevelCache tags = cache("tags");
+        List<Long> ids = List.of(1L, 2L, 3L);
+        AtomicInteger loads = new AtomicInteger();
+        Function<List<Long>, Map<Long, String>> loader = missing -> {
+            loads.incrementAndGet();
+            return missing.stream().collect(Collectors.toMap(Function.identity(), id -> "tag " + id));
+        };
+
+        tags.getAll(ids, loader);
+        Map<Long, String> again = tags.getAll(ids, loader);
+
+        assertThat(again).containsExactly(Map.entry(1L, "tag 1"), Map.entry(2L, "tag 2"), Map.entry(3L, "tag 3"));
+        assertThat(loads).hasValue(1);
+        assertThat(bulkOperations.gets).hasValue(1);
+        assertThat(tags.getMetrics().snapshot()).containsEntry("l1Hits", 3L).containsEntry("misses", 3L);
+    }
+
+    /**
+     * Serves L2 from the in-memory L2 caches, counting round trips.
+     */
+    private class CountingBulkOperations implements CacheBulkOperations {
+
+        final AtomicInteger gets = new AtomicInteger();
+        final AtomicInteger puts = new AtomicInteger();
+
+        @Override
+        public Map<Object, Object> getAll(String cacheName, List<?> keys) {
+            gets.incrementAndGet();
+            Cache l2 = l2Manager.getCache(cacheName);
+            Map<Object, Object> found = new HashMap<>();
+            for (Object key : keys) {
+                Cache.ValueWrapper value = l2.get(key);
+                if (value != null) {
+                    found.put(key, value.get());
+                }
+            }
+            return found;
+        }
+
+        @Override
+        public void putAll(String cacheName, Map<?, ?> entries, Duration ttl) {
+            puts.incrementAndGet();
+            entries.forEach(l2Manager.getCache(cacheName)::put);
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package com.broadblog.cache;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.concurrent.ConcurrentMapCache;
+
+import com.broadblog.config.TwoLevelCache;
+import com.broadblog.config.TwoLevelCacheSupport;
+
+class TwoLevelCacheSingleFlightTest {
+
+    private static final int CALLERS = 200;
+
+    @Test
+    void concurrentMisses_shouldRunLoaderExactlyOnce() throws Exception {
+        TwoLevelCache cache = new TwoLevelCache("posts", new ConcurrentMapCache("l1"), new ConcurrentMapCache("l2"));
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(CALLERS);
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < CALLERS; i++) {
+                results.add(pool.submit(() -> {
+                    start.await();
+                    return cache.get("page:1:10", () -> {
+                        loads.incrementAndGet();
+                        Thread.sleep(100);
+                        return "page-1";
+                    });
+                }));
+            }
+            start.countDown();
+            for (Future<String> result : results) {
+                assertThat(result.get(10, TimeUnit.SECONDS)).isEqualTo("page-1");
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        assertThat(loads.get()).isEqualTo(1);
+        assertThat(cache.get("page:1:10").get()).isEqualTo("page-1");
+    }
+
+    @Test
+    void loaderFailure_shouldPropagateToWaitersAndAllowRetry() {
+        TwoLevelCache cache = new TwoLevelCache("posts", new ConcurrentMapCache("l1"), new ConcurrentMapCache("l2"));
+
+        assertThatThrownBy(() -> cache.get("page:1:10", () -> {
+            throw new IllegalStateException("db down");
+        })).hasRootCauseMessage("db down");
+
+        assertThat(cache.get("page:1:10", () -> "page-1")).isEqualTo("page-1");
+    }
+
+    @Test
+    void loaderError_shouldReleaseWaiters() throws Exception {
+        TwoLevelCache cache = new TwoLevelCache("posts", new ConcurrentMapCache("l1"), new ConcurrentMapCache("l2"));
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch waiterStarted = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            Future<String> leader = pool.submit(() -> cache.get("page:1:10", () -> {
+                loading.countDown();
+                // Give the second caller time to park on the in-flight load
+                waiterStarted.await();
+                Thread.sleep(100);
+                throw new AssertionError("loader broke");
+            }));
+            loading.await();
+            Future<String> waiter = pool.submit(() -> {
+                waiterStarted.countDown();
+                return cache.get("page:1:10", () -> "should-not-load");
+            });
+
+            assertThatThrownBy(() -> leader.get(10, TimeUnit.SECONDS)).hasRootCauseMessage("loader broke");
+            assertThatThrownBy(() -> waiter.get(10, TimeUnit.SECONDS)).hasRootCauseMessage("loader broke");
+        } finally {
+            pool.shutdownNow();
+        }
+
+        assertThat(cache.get("page:1:10", () -> "page-1")).isEqualTo("page-1");
+    }
+
+    @Test
+    void leaseHeldElsewhere_shouldWaitForSharedValue() {
+        ConcurrentMapCache l2 = new ConcurrentMapCache("l2");
+        CacheLoadLease heldByOtherNode = new CacheLoadLease() {
+            @Override
+            public boolean tryAcquire(String cacheName, Object key) {
+                // Simulate the other node publishing its value while we wait
+                l2.put(key, "from-other-node");
+                return false;
+            }
+
+            @Override
+            public void release(String cacheName, Object key) {
+            }
+        };
+        TwoLevelCacheSupport support = new TwoLevelCacheSupport();
+        support.setLoadLease(heldByOtherNode);
+        support.setLeaseWait(Duration.ofSeconds(1));
+        TwoLevelCache cache = new TwoLevelCache("posts", new ConcurrentMapCache("l1"), l2, support);
+        AtomicInteger loads = new AtomicInteger();
+
+        String value = cache.get("page:1:10", () -> {
+            loads.incrementAndGet();
+            return "local";
+        });
+
+        assertThat(value).isEqualTo("from-other-node");
+        assertThat(loads.get()).isZero();
+    }
+}
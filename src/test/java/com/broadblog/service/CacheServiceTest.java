@@ -0,0 +1,72 @@
+package com.broadblog.service;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.broadblog.cache.RedisCircuitBreaker;
+import com.broadblog.cache.RedisWriteBuffer;
+
+class CacheServiceTest {
+
+    private final RedisCircuitBreaker circuitBreaker = new RedisCircuitBreaker(1, Duration.ofHours(1), () -> {
+        throw new RedisConnectionFailureException("probe refused");
+    });
+    private final RedisWriteBuffer writeBuffer = new RedisWriteBuffer(redisDown(), 100);
+    private final CacheService cacheService = cacheService();
+
+    @AfterEach
+    void closeBreaker() {
+        circuitBreaker.close();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static RedisTemplate<String, Object> redisDown() {
+        ValueOperations<String, Object> valueOperations = mock(ValueOperations.class);
+        when(valueOperations.multiGet(anyCollection())).thenThrow(new RedisConnectionFailureException("refused"));
+        RedisTemplate<String, Object> redisTemplate = mock(RedisTemplate.class);
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(redisTemplate.executePipelined(any(SessionCallback.class)))
+                .thenThrow(new RedisConnectionFailureException("refused"));
+        return redisTemplate;
+    }
+
+    private CacheService cacheService() {
+        CacheService service = new CacheService();
+        ReflectionTestUtils.setField(service, "redisTemplate", redisDown());
+        ReflectionTestUtils.setField(service, "circuitBreaker", circuitBreaker);
+        ReflectionTestUtils.setField(service, "writeBuffer", writeBuffer);
+        return service;
+    }
+
+    @Test
+    void bulkReads_shouldReportMissesWhileRedisIsDown() {
+        assertThat(cacheService.multiGet(List.of("a", "b"))).isEqualTo(Arrays.asList(null, null));
+        assertThat(cacheService.multiGetMap(List.of("a", "b"))).isEmpty();
+        assertThat(circuitBreaker.isOpen()).isTrue();
+    }
+
+    @Test
+    void bulkWrites_shouldNotThrowAndBufferIncrements() {
+        cacheService.multiSet(Map.of("a", "value"), Duration.ofMinutes(1));
+
+        Map<String, Long> results = cacheService.incrementAll(Map.of("counter:a", 2L, "counter:b", 3L));
+
+        assertThat(results).containsOnlyKeys("counter:a", "counter:b").containsValues((Long) null);
+        assertThat(writeBuffer.size()).isEqualTo(2);
+    }
+}
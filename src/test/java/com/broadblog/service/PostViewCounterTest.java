@@ -0,0 +1,190 @@
+package com.broadblog.service;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class PostViewCounterTest {
+
+    private final CacheService cacheService = mock(CacheService.class);
+    // The scheduled flush never fires during a test; flush() is called explicitly
+    private final PostViewCounter counter = new PostViewCounter(cacheService, Duration.ofHours(1), 100_000);
+
+    @AfterEach
+    void closeCounter() {
+        counter.close();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void concurrentViews_shouldBeFlushedAsOneBatch() throws InterruptedException {
+        ExecutorService readers = Executors.newFixedThreadPool(8);
+        for (int i = 0; i < 8; i++) {
+            readers.execute(() -> {
+                for (int j = 0; j < 1000; j++) {
+                    counter.record(1L, null);
+                    if (j % 10 == 0) {
+                        counter.record(2L, null);
+                    }
+                }
+            });
+        }
+        readers.shutdown();
+        assertThat(readers.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+        assertThat(counter.pendingViews(1L)).isEqualTo(8000);
+
+        counter.flush();
+
+        ArgumentCaptor<Map<String, Map<Object, Double>>> scores = ArgumentCaptor.forClass(Map.class);
+        ArgumentCaptor<Map<String, Duration>> expirations = ArgumentCaptor.forClass(Map.class);
+        verify(cacheService, times(1)).incrementBatch(any(), scores.capture(), any(), expirations.capture());
+        assertThat(scores.getValue().get(PostViewCounter.PENDING_VIEWS_KEY)).containsOnly(
+                Map.entry("1", 8000.0),
+                Map.entry("2", 800.0));
+        assertThat(scores.getValue().get(TrendingService.bucketKey(LocalDateTime.now()))).containsOnly(
+                Map.entry("1", 8000.0),
+                Map.entry("2", 800.0));
+        // Pending views are kept until persisted
+        assertThat(expirations.getValue()).doesNotContainKey(PostViewCounter.PENDING_VIEWS_KEY);
+        assertThat(counter.pendingViews(1L)).isZero();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void viewsRecordedDuringFlushes_shouldAllBeFlushedExactlyOnce() throws InterruptedException {
+        ArgumentCaptor<Map<String, Map<Object, Double>>> scores = ArgumentCaptor.forClass(Map.class);
+        ExecutorService readers = Executors.newFixedThreadPool(4);
+        for (int i = 0; i < 4; i++) {
+            readers.execute(() -> {
+                for (int j = 0; j < 20000; j++) {
+                    counter.record(1L, null);
+                }
+            });
+        }
+        readers.shutdown();
+        while (!readers.awaitTermination(1, TimeUnit.MILLISECONDS)) {
+            counter.flush();
+        }
+        counter.flush();
+
+        verify(cacheService, atLeastOnce()).incrementBatch(any(), scores.capture(), any(), any());
+        double flushed = scores.getAllValues().stream()
+                .mapToDouble(batch -> batch.get(PostViewCounter.PENDING_VIEWS_KEY).getOrDefault("1", 0.0))
+                .sum();
+        assertThat(flushed).isEqualTo(80000.0);
+        assertThat(counter.pendingViews(1L)).isZero();
+    }
+
+    @Test
+    void idleFlush_shouldNotCallRedis() {
+        counter.record(1L, null);
+        counter.flush();
+        counter.flush();
+
+        verify(cacheService, times(1)).incrementBatch(any(), any(), any(), any());
+        // Under the limit, the idle counter is kept for the post's next view
+        assertThat(counter.getStats()).containsEntry("pendingPosts", 1).containsEntry("flushedViews", 1L);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void idleCountersOverTheLimit_shouldBeDroppedWithoutLosingViews() {
+        PostViewCounter bounded = new PostViewCounter(cacheService, Duration.ofHours(1), 1);
+        try {
+            bounded.record(1L, null);
+            bounded.record(2L, null);
+            bounded.flush();
+            bounded.flush();
+            assertThat(bounded.getStats()).containsEntry("pendingPosts", 0);
+
+            bounded.record(1L, null);
+            bounded.flush();
+        } finally {
+            bounded.close();
+        }
+
+        ArgumentCaptor<Map<String, Map<Object, Double>>> scores = ArgumentCaptor.forClass(Map.class);
+        verify(cacheService, times(2)).incrementBatch(any(), scores.capture(), any(), any());
+        assertThat(scores.getAllValues().get(1).get(PostViewCounter.PENDING_VIEWS_KEY))
+                .containsOnly(Map.entry("1", 1.0));
+    }
+
+    @Test
+    void noViews_shouldNotFlush() {
+        counter.flush();
+
+        verify(cacheService, never()).incrementBatch(any(), any(), any(), any());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void visitors_shouldBeAddedToTodaysSketchOncePerFlush() {
+        counter.record(1L, "u:7");
+        counter.record(1L, "u:7");
+        counter.record(1L, "u:8");
+        counter.record(2L, null);
+        counter.flush();
+
+        LocalDate today = LocalDate.now();
+        ArgumentCaptor<Map<String, Map<Object, Double>>> scores = ArgumentCaptor.forClass(Map.class);
+        ArgumentCaptor<Map<String, Collection<String>>> visitors = ArgumentCaptor.forClass(Map.class);
+        verify(cacheService).incrementBatch(any(), scores.capture(), visitors.capture(), any());
+        assertThat(visitors.getValue()).containsOnlyKeys("post:1:uv:" + today.format(DateTimeFormatter.BASIC_ISO_DATE));
+        assertThat(visitors.getValue().values().iterator().next()).containsExactlyInAnyOrder("u:7", "u:8");
+        assertThat(scores.getValue().get(PostViewCounter.visitedPostsKey(today))).containsOnly(Map.entry("1", 2.0));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void rollUp_shouldMergeTheDayIntoItsWeekAndAllTime() {
+        LocalDate sunday = LocalDate.of(2026, 10, 11);
+        when(cacheService.zMembers(PostViewCounter.visitedPostsKey(sunday))).thenReturn(Set.of("5"));
+        when(cacheService.pfMergeBatch(any(), any())).thenReturn(true);
+
+        assertThat(counter.rollUp(sunday)).isTrue();
+
+        ArgumentCaptor<Map<String, Collection<String>>> merges = ArgumentCaptor.forClass(Map.class);
+        verify(cacheService).pfMergeBatch(merges.capture(), any());
+        assertThat(merges.getValue()).containsOnly(
+                Map.entry("post:5:uv:w:2026W41", List.of("post:5:uv:20261011")),
+                Map.entry("post:5:uv:all", List.of("post:5:uv:20261011")));
+    }
+
+    @Test
+    void rollUp_shouldBeRetriedWhileRedisIsDown() {
+        LocalDate day = LocalDate.of(2026, 10, 11);
+        when(cacheService.zMembers(PostViewCounter.visitedPostsKey(day))).thenReturn(null);
+
+        assertThat(counter.rollUp(day)).isFalse();
+        verify(cacheService, never()).pfMergeBatch(any(), any());
+    }
+
+    @Test
+    void visitorId_shouldPreferTheUserAndHashAddresses() {
+        assertThat(PostViewCounter.visitorId(7L, "10.0.0.1")).isEqualTo("u:7");
+        assertThat(PostViewCounter.visitorId(null, "10.0.0.1"))
+                .startsWith("ip:").hasSize(19).doesNotContain("10.0.0.1")
+                .isEqualTo(PostViewCounter.visitorId(null, "10.0.0.1"));
+        assertThat(PostViewCounter.visitorId(null, null)).isNull();
+    }
+}
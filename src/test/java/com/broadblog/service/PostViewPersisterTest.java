@@ -0,0 +1,101 @@
+package com.broadblog.service;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.broadblog.repository.PostViewCountRepository;
+
+class PostViewPersisterTest {
+
+    private final CacheService cacheService = mock(CacheService.class);
+    private final PostViewCountRepository repository = mock(PostViewCountRepository.class);
+    // The scheduled run never fires during a test; persist() is called explicitly
+    private final PostViewPersister persister = new PostViewPersister(cacheService, repository, Duration.ofHours(1));
+
+    @BeforeEach
+    void mockRedis() {
+        when(cacheService.get(anyString(), any())).thenReturn(Optional.empty());
+        when(cacheService.setIfAbsent(eq("post:views:persister"), any(), any())).thenReturn(true);
+    }
+
+    @AfterEach
+    void closePersister() {
+        persister.close();
+    }
+
+    private static Map<Object, Double> members(Object... membersAndScores) {
+        Map<Object, Double> members = new LinkedHashMap<>();
+        for (int i = 0; i < membersAndScores.length; i += 2) {
+            members.put(membersAndScores[i], (Double) membersAndScores[i + 1]);
+        }
+        return members;
+    }
+
+    @Test
+    void pendingViews_shouldBeRenamedIntoANumberedBatchAndApplied() {
+        when(cacheService.exists(PostViewCounter.PENDING_VIEWS_KEY)).thenReturn(true);
+        when(cacheService.increment("post:views:batch-seq")).thenReturn(7L);
+        when(cacheService.renameWithMarker(PostViewCounter.PENDING_VIEWS_KEY, PostViewPersister.PERSISTING_VIEWS_KEY,
+                "post:views:persisting:batch", 7L)).thenReturn(true);
+        when(cacheService.zMembersWithScores(PostViewPersister.PERSISTING_VIEWS_KEY)).thenReturn(members("1", 30.0, "2", 12.0));
+        when(repository.applyBatch(eq(7L), any())).thenReturn(true);
+
+        assertThat(persister.persist()).isEqualTo(42);
+
+        verify(repository).applyBatch(7L, Map.of(1L, 30L, 2L, 12L));
+        verify(cacheService).deleteIfMarker("post:views:persisting:batch", 7L, PostViewPersister.PERSISTING_VIEWS_KEY);
+    }
+
+    @Test
+    void alreadyPersistedBatch_shouldOnlyBeCleared() {
+        // A previous leader committed batch 6 but died before deleting it
+        when(cacheService.get("post:views:persisting:batch", Number.class)).thenReturn(Optional.of(6));
+        when(cacheService.zMembersWithScores(PostViewPersister.PERSISTING_VIEWS_KEY)).thenReturn(members("1", 5.0));
+        when(repository.applyBatch(eq(6L), any())).thenReturn(false);
+
+        assertThat(persister.persist()).isZero();
+
+        verify(cacheService, never()).renameWithMarker(anyString(), anyString(), anyString(), any());
+        verify(cacheService).deleteIfMarker("post:views:persisting:batch", 6L, PostViewPersister.PERSISTING_VIEWS_KEY);
+        assertThat(persister.getStats()).containsEntry("skippedBatches", 1L);
+    }
+
+    @Test
+    void batchStartedByAnotherLeader_shouldNotBeRenamedOver() {
+        // Another node took the lease and started batch 8 after our in-flight check
+        when(cacheService.exists(PostViewCounter.PENDING_VIEWS_KEY)).thenReturn(true);
+        when(cacheService.increment("post:views:batch-seq")).thenReturn(9L);
+        when(cacheService.renameWithMarker(anyString(), anyString(), anyString(), any())).thenReturn(false);
+
+        assertThat(persister.persist()).isZero();
+
+        verify(cacheService, never()).zMembersWithScores(anyString());
+        verify(cacheService, never()).deleteIfMarker(anyString(), any(), any());
+    }
+
+    @Test
+    void otherNodes_shouldNotPersist() {
+        when(cacheService.setIfAbsent(eq("post:views:persister"), any(), any())).thenReturn(false);
+        when(cacheService.expireIfValue(eq("post:views:persister"), any(), any())).thenReturn(false);
+
+        assertThat(persister.persist()).isZero();
+
+        verify(repository, never()).applyBatch(anyLong(), any());
+        verify(cacheService, never()).zMembersWithScores(anyString());
+    }
+}
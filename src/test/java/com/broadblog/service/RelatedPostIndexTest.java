@@ -0,0 +1,101 @@
+package com.broadblog.service;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+import com.broadblog.repository.PostTagRepository;
+
+class RelatedPostIndexTest {
+
+    private final PostTagRepository repository = mock(PostTagRepository.class);
+    private final RelatedPostIndex index = new RelatedPostIndex(repository, Duration.ofHours(1), 100);
+
+    @BeforeEach
+    void loadPostTags() {
+        // 标签 1 几乎每个帖子都有，标签 2、3 较少
+        doAnswer(call -> {
+            PostTagRepository.PostTagConsumer consumer = call.getArgument(0);
+            for (long postId = 1; postId <= 6; postId++) {
+                consumer.accept(1, postId);
+            }
+            consumer.accept(2, 1);
+            consumer.accept(2, 2);
+            consumer.accept(3, 1);
+            consumer.accept(3, 3);
+            consumer.accept(4, 4);
+            return null;
+        }).when(repository).forEachPostTag(any());
+        index.reload();
+    }
+
+    @AfterEach
+    void closeIndex() {
+        index.close();
+    }
+
+    @Test
+    void relatedPosts_shouldRankRareSharedTagsHigher() {
+        List<RelatedPostIndex.RelatedPost> related = index.relatedPosts(1L, 10);
+
+        assertThat(related).extracting(RelatedPostIndex.RelatedPost::postId).startsWith(3L, 2L)
+                .doesNotContain(1L).hasSize(5);
+        assertThat(related.get(0).sharedTags()).isEqualTo(2);
+        // 只共有常见标签 1 的帖子中，没有其他标签的（6、5）比还有标签 4 的（4）更相似
+        assertThat(related).extracting(RelatedPostIndex.RelatedPost::postId).endsWith(6L, 5L, 4L);
+        assertThat(index.relatedPosts(1L, 2)).hasSize(2);
+        assertThat(index.relatedPosts(99L, 10)).isEmpty();
+    }
+
+    @Test
+    void tagChanges_shouldInvalidateCachedResultsOfPostsSharingTags() {
+        assertThat(index.relatedPosts(2L, 1)).extracting(RelatedPostIndex.RelatedPost::postId).containsExactly(1L);
+        assertThat(index.relatedPosts(4L, 10)).extracting(RelatedPostIndex.RelatedPost::postId).doesNotContain(7L);
+
+        index.update(7L, List.of(2L, 4L));
+        index.update(1L, List.of(1L, 3L));
+
+        assertThat(index.relatedPosts(2L, 1)).extracting(RelatedPostIndex.RelatedPost::postId).containsExactly(7L);
+        assertThat(index.relatedPosts(4L, 1)).extracting(RelatedPostIndex.RelatedPost::postId).containsExactly(7L);
+
+        index.remove(7L);
+        assertThat(index.relatedPosts(2L, 10)).extracting(RelatedPostIndex.RelatedPost::postId)
+                .doesNotContain(7L).hasSize(5);
+        assertThat(index.getStats()).containsEntry("posts", 6).containsEntry("tags", 4);
+    }
+
+    @Test
+    void updatesDuringReload_shouldBeReplayedOntoTheNewIndex() {
+        doAnswer(call -> {
+            PostTagRepository.PostTagConsumer consumer = call.getArgument(0);
+            consumer.accept(1, 1);
+            consumer.accept(1, 2);
+            // 读取 post_tags 期间保存了帖子 7、删除了帖子 2，读到的数据不包含这两个改动
+            index.update(7L, List.of(1L));
+            index.remove(2L);
+            consumer.accept(2, 1);
+            return null;
+        }).when(repository).forEachPostTag(any());
+
+        index.reload();
+
+        assertThat(index.relatedPosts(1L, 10)).extracting(RelatedPostIndex.RelatedPost::postId).containsExactly(7L);
+        assertThat(index.getStats()).containsEntry("posts", 2);
+    }
+
+    @Test
+    void cachedResults_shouldNotBeModifiable() {
+        List<RelatedPostIndex.RelatedPost> related = index.relatedPosts(1L, 2);
+
+        assertThatThrownBy(related::clear).isInstanceOf(UnsupportedOperationException.class);
+        assertThat(index.relatedPosts(1L, 10)).hasSize(5);
+    }
+}
@@ -0,0 +1,90 @@
+package com.broadblog.service;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+import com.broadblog.repository.TagCooccurrenceRepository;
+
+class TagCooccurrenceIndexTest {
+
+    private final TagCooccurrenceRepository repository = mock(TagCooccurrenceRepository.class);
+    private final TagCooccurrenceIndex index = new TagCooccurrenceIndex(repository, Duration.ofHours(1));
+
+    @AfterEach
+    void closeIndex() {
+        index.close();
+    }
+
+    @Test
+    void snapshot_shouldRankRelatedTagsByPostCount() {
+        doAnswer(call -> {
+            TagCooccurrenceRepository.PairConsumer consumer = call.getArgument(0);
+            consumer.accept(1, 2, 3);
+            consumer.accept(1, 3, 7);
+            consumer.accept(1, 4, 5);
+            consumer.accept(2, 3, 1);
+            return null;
+        }).when(repository).forEachPair(any());
+        index.loadSnapshot();
+
+        assertThat(index.relatedTags(1L, 2)).extracting(TagCooccurrenceIndex.RelatedTag::tagId,
+                        TagCooccurrenceIndex.RelatedTag::posts)
+                .containsExactly(tuple(3L, 7), tuple(4L, 5));
+        assertThat(index.relatedTags(3L, 10)).extracting(TagCooccurrenceIndex.RelatedTag::tagId)
+                .containsExactly(1L, 2L);
+        assertThat(index.relatedTags(9L, 10)).isEmpty();
+        assertThat(index.getStats()).containsEntry("tags", 4).containsEntry("pairs", 4L);
+    }
+
+    @Test
+    void tagChanges_shouldOnlyTouchPairsThatChanged() {
+        index.update(List.of(), List.of(1L, 2L, 3L));
+        index.update(List.of(), List.of(1L, 2L));
+        // 第二个帖子去掉标签 2、加上标签 4：(1,2) 减一，(1,4) 加一
+        index.update(List.of(1L, 2L), List.of(1L, 4L));
+        index.update(List.of(), List.of(1L, 4L));
+
+        assertThat(index.relatedTags(1L, 10)).extracting(TagCooccurrenceIndex.RelatedTag::tagId,
+                        TagCooccurrenceIndex.RelatedTag::posts)
+                .containsExactlyInAnyOrder(tuple(4L, 2), tuple(2L, 1), tuple(3L, 1));
+        assertThat(index.relatedTags(1L, 1)).extracting(TagCooccurrenceIndex.RelatedTag::tagId)
+                .containsExactly(4L);
+        assertThat(index.posts(2L, 3L)).isEqualTo(1);
+
+        // 删除第一个帖子后，只在它上面同时出现的标签对消失
+        index.update(List.of(1L, 2L, 3L), List.of());
+        assertThat(index.relatedTags(1L, 10)).extracting(TagCooccurrenceIndex.RelatedTag::tagId)
+                .containsExactly(4L);
+        assertThat(index.relatedTags(2L, 10)).isEmpty();
+        assertThat(index.posts(4L, 1L)).isEqualTo(2);
+    }
+
+    @Test
+    void neighbors_shouldStaySortedUnderRandomUpdates() {
+        TagCooccurrenceIndex.Neighbors neighbors = new TagCooccurrenceIndex.Neighbors();
+        int[] expected = new int[20];
+        Random random = new Random(42);
+        for (int i = 0; i < 5_000; i++) {
+            int id = random.nextInt(expected.length);
+            int delta = random.nextInt(3) == 0 ? -1 : 1;
+            neighbors.add(id, delta);
+            expected[id] = Math.max(0, expected[id] + delta);
+        }
+
+        List<TagCooccurrenceIndex.RelatedTag> top = neighbors.top(expected.length);
+        assertThat(top).extracting(TagCooccurrenceIndex.RelatedTag::posts).isSortedAccordingTo((a, b) -> b - a)
+                .doesNotContain(0);
+        top.forEach(related -> assertThat(related.posts()).isEqualTo(expected[related.tagId().intValue()]));
+        assertThat(top).hasSize((int) Arrays.stream(expected).filter(count -> count > 0).count());
+    }
+}
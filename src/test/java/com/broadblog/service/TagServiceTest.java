@@ -0,0 +1,141 @@
+package com.broadblog.service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import org.junit.jupiter.api.Test;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import org.springframework.cache.Cache;
+
+import com.broadblog.config.TwoLevelCacheManager;
+import com.broadblog.entity.Tag;
+import com.broadblog.repository.TagBulkRepository;
+import com.broadblog.repository.TagRepository;
+
+class TagServiceTest {
+
+    private final TagRepository tagRepository = mock(TagRepository.class);
+    private final TagBulkRepository tagBulkRepository = mock(TagBulkRepository.class);
+    private final EntityIdFilterService idFilterService = mock(EntityIdFilterService.class);
+    private final TwoLevelCacheManager cacheManager = mock(TwoLevelCacheManager.class);
+    private final Cache tagsCache = mock(Cache.class);
+    // Tags in the database, matched case-insensitively like the MySQL collation
+    private final List<Tag> stored = new ArrayList<>();
+    private final TagService tagService = tagService();
+
+    private TagService tagService() {
+        when(cacheManager.getCache("tags")).thenReturn(tagsCache);
+        when(tagRepository.findByNameIn(anyCollection())).thenAnswer(call -> {
+            Collection<String> names = call.getArgument(0);
+            return stored.stream()
+                    .filter(tag -> names.stream().anyMatch(name -> name.equalsIgnoreCase(tag.getName())))
+                    .toList();
+        });
+        return new TagService(tagRepository, mock(CacheService.class), idFilterService, cacheManager,
+                mock(TagUsageAccumulator.class), tagBulkRepository, mock(TagSuggestionIndex.class));
+    }
+
+    private Tag store(long id, String name) {
+        Tag tag = new Tag();
+        tag.setId(id);
+        tag.setName(name);
+        stored.add(tag);
+        return tag;
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void missingTags_shouldBeInsertedInOneBatch() {
+        Tag java = store(1, "Java");
+        doAnswer(call -> {
+            long id = 10;
+            for (String name : (Collection<String>) call.getArgument(0)) {
+                store(id++, name);
+            }
+            return null;
+        }).when(tagBulkRepository).insertIfAbsent(anyCollection());
+
+        List<Tag> tags = tagService.resolveOrCreateTags(List.of("redis", " java ", "", "cache", "redis"));
+
+        assertThat(tags).extracting(Tag::getName).containsExactly("redis", "Java", "cache");
+        assertThat(tags.get(1)).isSameAs(java);
+        verify(tagBulkRepository).insertIfAbsent(List.of("redis", "cache"));
+        verify(idFilterService).addTag(10L);
+        verify(idFilterService).addTag(11L);
+        verify(tagsCache).evict("all");
+        verify(tagsCache).evict("name:redis");
+        verify(tagsCache).evict("name:cache");
+        verify(tagsCache, never()).clear();
+    }
+
+    @Test
+    void newTag_shouldEvictTheLowerCaseNameKey() {
+        doAnswer(call -> {
+            store(10, "Redis");
+            return null;
+        }).when(tagBulkRepository).insertIfAbsent(anyCollection());
+
+        tagService.resolveOrCreateTags(List.of("Redis"));
+
+        // getTagByName caches every casing under this one key
+        verify(tagsCache).evict("name:redis");
+        verify(tagsCache, never()).evict("name:Redis");
+    }
+
+    @Test
+    void tooLongNames_shouldBeRejectedBeforeAnyWrite() {
+        String tooLong = "x".repeat(TagService.MAX_NAME_LENGTH + 1);
+
+        assertThatThrownBy(() -> tagService.resolveOrCreateTags(List.of("java", tooLong)))
+                .isInstanceOf(IllegalArgumentException.class);
+
+        verify(tagBulkRepository, never()).insertIfAbsent(any());
+        verify(tagRepository, never()).findByNameIn(anyCollection());
+    }
+
+    @Test
+    void existingTags_shouldNotTouchTheCaches() {
+        store(1, "java");
+        store(2, "spring");
+
+        assertThat(tagService.resolveOrCreateTags(List.of("spring", "java")))
+                .extracting(Tag::getId).containsExactly(2L, 1L);
+
+        verify(tagBulkRepository, never()).insertIfAbsent(any());
+        verify(tagsCache, never()).evict(any());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void tagsByIds_shouldLoadAllMissesInOneQuery() {
+        store(1, "java");
+        store(2, "spring");
+        when(tagRepository.findAllById(any())).thenAnswer(call -> {
+            Collection<Long> ids = call.getArgument(0);
+            return stored.stream().filter(tag -> ids.contains(tag.getId())).toList();
+        });
+        // The cache has nothing yet, so every key goes to the bulk loader at once
+        when(cacheManager.getAll(eq("tags"), anyCollection(), any())).thenAnswer(call -> {
+            Function<List<Long>, Map<Long, Tag>> loader = call.getArgument(2);
+            return loader.apply(new ArrayList<>((Collection<Long>) call.getArgument(1)));
+        });
+
+        Map<Long, Tag> tags = tagService.getTagsByIds(List.of(2L, 1L, 3L));
+
+        assertThat(tags.keySet()).containsExactlyInAnyOrder(1L, 2L);
+        verify(tagRepository).findAllById(List.of(2L, 1L, 3L));
+        verify(tagRepository, never()).findById(any());
+    }
+}
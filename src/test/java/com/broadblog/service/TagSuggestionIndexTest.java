@@ -0,0 +1,90 @@
+package com.broadblog.service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.broadblog.entity.Tag;
+import com.broadblog.repository.TagRepository;
+
+class TagSuggestionIndexTest {
+
+    private final TagRepository tagRepository = mock(TagRepository.class);
+    private final TagSuggestionIndex index = new TagSuggestionIndex(tagRepository, Duration.ofHours(1));
+
+    @BeforeEach
+    void loadTags() {
+        List<Object[]> rows = new ArrayList<>();
+        rows.add(new Object[] {1L, "Java", 12});
+        rows.add(new Object[] {2L, "JavaScript", 30});
+        rows.add(new Object[] {3L, "jvm", 5});
+        rows.add(new Object[] {4L, "Kotlin", 8});
+        rows.add(new Object[] {5L, "jakarta", null});
+        when(tagRepository.findIdNameAndUsage()).thenReturn(rows);
+        index.rebuild();
+    }
+
+    @AfterEach
+    void closeIndex() {
+        index.close();
+    }
+
+    private static Tag tag(long id, String name) {
+        Tag tag = new Tag();
+        tag.setId(id);
+        tag.setName(name);
+        return tag;
+    }
+
+    @Test
+    void suggest_shouldMatchPrefixIgnoringCaseAndRankByUsage() {
+        assertThat(index.suggest("ja", 10)).extracting(TagSuggestionIndex.Suggestion::name)
+                .containsExactly("JavaScript", "Java", "jakarta");
+        assertThat(index.suggest("J", 2)).extracting(TagSuggestionIndex.Suggestion::name)
+                .containsExactly("JavaScript", "Java");
+        assertThat(index.suggest("  JAVAS", 10)).extracting(TagSuggestionIndex.Suggestion::id)
+                .containsExactly(2L);
+        assertThat(index.suggest("rust", 10)).isEmpty();
+        assertThat(index.suggest("", 10)).hasSize(5);
+    }
+
+    @Test
+    void createdRenamedAndDeletedTags_shouldBeVisibleWithoutRebuild() {
+        Tag created = tag(6L, "Jackson");
+        created.setUsageCount(0);
+        index.put(created);
+        index.put(tag(3L, "Kubernetes"));
+        index.remove(2L);
+
+        assertThat(index.suggest("ja", 10)).extracting(TagSuggestionIndex.Suggestion::name)
+                .containsExactly("Java", "Jackson", "jakarta");
+        // 改名保留原有的使用次数
+        assertThat(index.suggest("k", 10)).extracting(TagSuggestionIndex.Suggestion::name,
+                        TagSuggestionIndex.Suggestion::usageCount)
+                .containsExactly(
+                        tuple("Kotlin", 8),
+                        tuple("Kubernetes", 5));
+        assertThat(index.suggest("jv", 10)).isEmpty();
+        assertThat(index.size()).isEqualTo(5);
+    }
+
+    @Test
+    void usageChanges_shouldReorderSuggestions() {
+        index.addUsage(1L, 20);
+        index.addUsage(5L, -3);
+
+        assertThat(index.suggest("ja", 10)).extracting(TagSuggestionIndex.Suggestion::name,
+                        TagSuggestionIndex.Suggestion::usageCount)
+                .first().isEqualTo(tuple("Java", 32));
+        assertThat(index.suggest("jak", 10)).extracting(TagSuggestionIndex.Suggestion::usageCount)
+                .containsExactly(0);
+    }
+}
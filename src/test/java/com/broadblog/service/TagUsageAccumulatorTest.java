@@ -0,0 +1,94 @@
+package com.broadblog.service;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import org.springframework.cache.Cache;
+
+import com.broadblog.config.TwoLevelCacheManager;
+import com.broadblog.repository.TagUsageCountRepository;
+
+class TagUsageAccumulatorTest {
+
+    private final TagUsageCountRepository repository = mock(TagUsageCountRepository.class);
+    private final CacheService cacheService = mock(CacheService.class);
+    private final TwoLevelCacheManager cacheManager = mock(TwoLevelCacheManager.class);
+    private final Cache popularTags = mock(Cache.class);
+    private final Cache tagCloud = mock(Cache.class);
+    // The scheduled flush never fires during a test; flush() is called explicitly
+    private final TagUsageAccumulator accumulator = accumulator();
+
+    private TagUsageAccumulator accumulator() {
+        when(cacheManager.getCache("popularTags")).thenReturn(popularTags);
+        when(cacheManager.getCache("tagCloud")).thenReturn(tagCloud);
+        return new TagUsageAccumulator(repository, cacheService, cacheManager, Duration.ofHours(1));
+    }
+
+    @AfterEach
+    void closeAccumulator() {
+        accumulator.close();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void deltas_shouldBeMergedIntoOneBatchAndOneCacheRefresh() {
+        when(cacheService.exists(TagUsageAccumulator.POPULAR_TAGS_KEY)).thenReturn(true);
+        // A post saved with tags 1, 2, 3, then tag 3 swapped for tag 4, then another post tagged 1
+        accumulator.add(1L, 1);
+        accumulator.add(2L, 1);
+        accumulator.add(3L, 1);
+        accumulator.add(3L, -1);
+        accumulator.add(4L, 1);
+        accumulator.add(1L, 1);
+        assertThat(accumulator.pendingDelta(3L)).isZero();
+
+        accumulator.flush();
+
+        verify(repository).applyDeltas(Map.of(1L, 2L, 2L, 1L, 4L, 1L));
+        ArgumentCaptor<Map<String, Map<Object, Double>>> scores = ArgumentCaptor.forClass(Map.class);
+        verify(cacheService).incrementBatch(any(), scores.capture(), any());
+        assertThat(scores.getValue().get(TagUsageAccumulator.POPULAR_TAGS_KEY))
+                .containsOnly(Map.entry("1", 2.0), Map.entry("2", 1.0), Map.entry("4", 1.0));
+        verify(cacheService).delete(Set.of("tag:1:usage", "tag:2:usage", "tag:4:usage"));
+        verify(popularTags, times(1)).evict("all");
+        verify(tagCloud, times(1)).evict("top20");
+        verify(popularTags, never()).clear();
+        verify(tagCloud, never()).clear();
+
+        accumulator.flush();
+        verify(repository, times(1)).applyDeltas(any());
+    }
+
+    @Test
+    void missingRanking_shouldNotBeRecreatedFromOneBatch() {
+        accumulator.add(1L, 1);
+        accumulator.flush();
+
+        verify(repository).applyDeltas(Map.of(1L, 1L));
+        verify(cacheService, never()).incrementBatch(any(), any(), any());
+    }
+
+    @Test
+    void failedWrite_shouldKeepTheDeltasForTheNextFlush() {
+        doThrow(new IllegalStateException("database down")).when(repository).applyDeltas(any());
+        accumulator.add(1L, -1);
+
+        assertThatThrownBy(accumulator::flush).hasMessage("database down");
+
+        assertThat(accumulator.pendingDelta(1L)).isEqualTo(-1);
+        verify(popularTags, never()).evict(any());
+    }
+}
@@ -0,0 +1,107 @@
+package com.broadblog.service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class TrendingServiceTest {
+
+    // Sorted sets by key, member -> score
+    private final Map<String, Map<String, Double>> redisZSets = new HashMap<>();
+    private final CacheService cacheService = cacheService();
+    // The scheduled refresh never fires during a test
+    private final TrendingService trending = new TrendingService(cacheService, Duration.ofHours(1));
+
+    @AfterEach
+    void closeTrending() {
+        trending.close();
+    }
+
+    @SuppressWarnings("unchecked")
+    private CacheService cacheService() {
+        CacheService cacheService = mock(CacheService.class);
+        when(cacheService.exists(anyString())).thenAnswer(call -> redisZSets.containsKey((String) call.getArgument(0)));
+        when(cacheService.zUnionStore(anyString(), anyList(), any(double[].class), anyDouble(), any())).thenAnswer(call -> {
+            List<String> keys = call.getArgument(1);
+            double[] weights = call.getArgument(2);
+            double minScore = call.getArgument(3);
+            Map<String, Double> union = new HashMap<>();
+            for (int i = 0; i < keys.size(); i++) {
+                double weight = weights[i];
+                redisZSets.getOrDefault(keys.get(i), Map.of()).forEach((member, score) -> union.merge(member, score * weight, Double::sum));
+            }
+            union.values().removeIf(score -> score <= minScore);
+            if (union.isEmpty()) {
+                redisZSets.remove((String) call.getArgument(0));
+            } else {
+                redisZSets.put(call.getArgument(0), union);
+            }
+            return true;
+        });
+        return cacheService;
+    }
+
+    private void views(LocalDateTime hour, String postId, double views) {
+        redisZSets.computeIfAbsent(TrendingService.bucketKey(hour), k -> new HashMap<>()).merge(postId, views, Double::sum);
+    }
+
+    @Test
+    void incrementalBase_shouldMatchAFullRebuild() {
+        LocalDateTime start = LocalDateTime.of(2026, 10, 16, 1, 0);
+        for (int age = 0; age < 40; age++) {
+            views(start.plusHours(age), "1", 10 + age % 7);
+            views(start.plusHours(age), String.valueOf(2 + age % 3), 25);
+        }
+        for (int age = 30; age <= 40; age++) {
+            assertThat(trending.buildBase(TrendingService.Window.DAY, start.plusHours(age))).isTrue();
+        }
+        Map<String, Double> incremental = redisZSets.get(TrendingService.baseKey(TrendingService.Window.DAY, start.plusHours(40)));
+
+        // No previous base: rebuilt from the 24 hourly buckets
+        LocalDateTime hour = start.plusHours(40);
+        redisZSets.remove(TrendingService.baseKey(TrendingService.Window.DAY, hour.minusHours(1)));
+        trending.buildBase(TrendingService.Window.DAY, hour);
+        Map<String, Double> rebuilt = redisZSets.get(TrendingService.baseKey(TrendingService.Window.DAY, hour));
+
+        assertThat(incremental).containsOnlyKeys(rebuilt.keySet());
+        rebuilt.forEach((member, score) -> assertThat(incremental.get(member)).isCloseTo(score, within(1e-6)));
+    }
+
+    @Test
+    void ranking_shouldFavourRecentActivity() {
+        LocalDateTime hour = LocalDateTime.of(2026, 10, 16, 12, 0);
+        // Same number of views: post 1 a day ago, post 2 in the last hour, post 3 right now
+        views(hour.minusHours(23), "1", 100);
+        views(hour.minusHours(1), "2", 100);
+        views(hour, "3", 100);
+
+        assertThat(trending.refresh(TrendingService.Window.DAY, hour, 0.5)).isTrue();
+        assertThat(trending.refresh(TrendingService.Window.HOUR, hour, 0.5)).isTrue();
+
+        Map<String, Double> day = redisZSets.get(TrendingService.rankingKey(TrendingService.Window.DAY));
+        assertThat(day.get("3")).isGreaterThan(day.get("2"));
+        assertThat(day.get("2")).isGreaterThan(day.get("1"));
+        assertThat(day.get("1")).isCloseTo(100 * Math.pow(0.5, 22.5 / 6), within(1e-6));
+        assertThat(redisZSets.get(TrendingService.rankingKey(TrendingService.Window.HOUR))).containsOnlyKeys("2", "3");
+    }
+
+    @Test
+    void windows_shouldBeLookedUpByLabel() {
+        assertThat(TrendingService.Window.of("7d")).isEqualTo(TrendingService.Window.WEEK);
+        assertThatThrownBy(() -> TrendingService.Window.of("30d")).isInstanceOf(IllegalArgumentException.class);
+    }
+}